@@ -0,0 +1,89 @@
+package org.jetlinks.reactor.ql.benchmark;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主要操作的性能测试,吞吐量以及内存分配(-prof gc)均按每条输入数据统计.
+ * <pre>
+ *     mvn -Pbenchmark verify -DskipTests -Djmh.args="OperatorBenchmark -prof gc"
+ * </pre>
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperatorBenchmark {
+
+    public static final int RECORDS = 1000;
+
+    private static final Map<String, String> sqls = new HashMap<>();
+
+    static {
+        sqls.put("where", "select * from telemetry where temp > 20 and humidity <= 80 and status != 2");
+        sqls.put("projection", "select deviceId,temp * 1.8 + 32 fahrenheit,(humidity / 100) ratio,timestamp - 1000 ts from telemetry");
+        sqls.put("case", "select deviceId,case status when 0 then 'normal' when 1 then 'warn' else 'error' end level from telemetry");
+        sqls.put("like-in", "select deviceId from telemetry where deviceId like 'device-1%' or productId in ('product-1','product-3','product-5')");
+        sqls.put("agg-single", "select avg(temp) avgTemp from telemetry");
+        sqls.put("agg-multi", "select count(1) total,avg(temp) avgTemp,max(temp) maxTemp,min(humidity) minHumidity from telemetry");
+        sqls.put("group-value", "select deviceId,avg(temp) avgTemp from telemetry group by deviceId");
+        sqls.put("group-interval", "select avg(temp) avgTemp from telemetry group by interval('1s')");
+        sqls.put("group-window", "select deviceId,max(temp) maxTemp from telemetry group by _window(100),deviceId");
+        sqls.put("join", "select t.deviceId,d.name from telemetry t left join devices d on d.id = t.deviceId");
+        sqls.put("distinct", "select distinct deviceId from telemetry");
+        sqls.put("order-limit", "select deviceId,temp from telemetry order by temp desc limit 10");
+        sqls.put("sub-select", "select deviceId,(select name from devices d where d.id = t.deviceId) name from telemetry t");
+    }
+
+    @Param({
+            "where",
+            "projection",
+            "case",
+            "like-in",
+            "agg-single",
+            "agg-multi",
+            "group-value",
+            "group-interval",
+            "group-window",
+            "join",
+            "distinct",
+            "order-limit",
+            "sub-select"
+    })
+    public String operator;
+
+    private ReactorQL ql;
+
+    private List<Map<String, Object>> telemetry;
+
+    private List<Map<String, Object>> devices;
+
+    @Setup
+    public void setup() {
+        ql = ReactorQL.builder()
+                      .sql(sqls.get(operator))
+                      .build();
+        telemetry = TelemetryData.telemetry(RECORDS, 1);
+        devices = TelemetryData.devices();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public Long execute() {
+        return ql
+                .start(table -> Flux.fromIterable("devices".equals(table) ? devices : telemetry))
+                .count()
+                .block();
+    }
+}
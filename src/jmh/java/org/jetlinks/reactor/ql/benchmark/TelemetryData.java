@@ -0,0 +1,63 @@
+package org.jetlinks.reactor.ql.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 模拟设备上报的遥测数据
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class TelemetryData {
+
+    public static final int DEVICES = 100;
+
+    public static final int PRODUCTS = 10;
+
+    /**
+     * 生成遥测数据
+     *
+     * @param size 数量
+     * @param seed 随机种子
+     * @return 数据
+     */
+    public static List<Map<String, Object>> telemetry(int size, long seed) {
+        Random random = new Random(seed);
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int device = random.nextInt(DEVICES);
+            Map<String, Object> record = new HashMap<>();
+            record.put("deviceId", "device-" + device);
+            record.put("productId", "product-" + (device % PRODUCTS));
+            record.put("timestamp", now + i * 10L);
+            record.put("temp", 10 + random.nextInt(400) / 10D);
+            record.put("humidity", random.nextInt(100));
+            record.put("status", random.nextInt(3));
+            record.put("online", random.nextBoolean());
+            data.add(record);
+        }
+        return data;
+    }
+
+    /**
+     * 生成设备信息,用于关联查询
+     *
+     * @return 设备信息
+     */
+    public static List<Map<String, Object>> devices() {
+        List<Map<String, Object>> data = new ArrayList<>(DEVICES);
+        for (int i = 0; i < DEVICES; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", "device-" + i);
+            record.put("name", "设备" + i);
+            record.put("productId", "product-" + (i % PRODUCTS));
+            data.add(record);
+        }
+        return data;
+    }
+}
@@ -9,20 +9,36 @@ import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.select.*;
 import org.apache.commons.collections.CollectionUtils;
+import org.jetlinks.reactor.ql.batch.BatchPlan;
+import org.jetlinks.reactor.ql.explain.PlanNode;
+import org.jetlinks.reactor.ql.explain.QueryPlanExplainer;
 import org.jetlinks.reactor.ql.feature.*;
+import org.jetlinks.reactor.ql.metrics.OperatorMetrics;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.metrics.SimpleReactorQLMetricsRegistry;
+import org.jetlinks.reactor.ql.schema.Schema;
 import org.jetlinks.reactor.ql.supports.DefaultReactorQLMetadata;
+import org.jetlinks.reactor.ql.supports.agg.DistinctSet;
+import org.jetlinks.reactor.ql.supports.agg.TimeWeightedAggFeature;
+import org.jetlinks.reactor.ql.supports.map.SelectFeature;
+import org.jetlinks.reactor.ql.supports.map.WindowFunctionFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
 import org.jetlinks.reactor.ql.utils.CompareUtils;
 import org.reactivestreams.Publisher;
 import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
 import reactor.core.publisher.*;
 import reactor.function.Consumer3;
 import reactor.util.context.Context;
 import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
 import reactor.util.function.Tuples;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.*;
 import java.util.function.Function;
@@ -38,6 +54,8 @@ public class DefaultReactorQL implements ReactorQL {
 
     private final ReactorQLMetadata metadata;
 
+    private final ReactorQLMetrics metrics;
+
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> columnMapper;
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> join;
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> where;
@@ -47,55 +65,140 @@ public class DefaultReactorQL implements ReactorQL {
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> offset;
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> distinct;
     private Function<ReactorQLContext, Flux<ReactorQLRecord>> builder;
+    //where之后的操作
+    private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> afterWhere;
+    //select转换之后的操作
+    private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> afterMapper;
+    //列式批处理计划,不支持时为null
+    private BatchPlan batchPlan;
 
 
     public DefaultReactorQL(ReactorQLMetadata metadata) {
-        this.metadata = metadata;
+        this(metadata, ReactorQLMetrics.noop());
+    }
+
+    public DefaultReactorQL(ReactorQLMetadata metadata, ReactorQLMetrics metrics) {
+        //子查询通过元数据获取指标
+        this.metadata = metrics.isEnabled() ? new MetricsReactorQLMetadata(metadata, metrics) : metadata;
+        this.metrics = metrics;
         prepare();
     }
 
 
     protected void prepare() {
-        where = createWhere();
-        columnMapper = createMapper();
-        limit = createLimit();
-        offset = createOffset();
-        groupBy = createGroupBy();
-        join = createJoin();
-        orderBy = createOrderBy();
-        distinct = createDistinct();
-        Function<ReactorQLContext, Flux<ReactorQLRecord>> fromMapper = FromFeature.createFromMapperByBody(metadata.getSql(), metadata);
+        where = metered("where", createWhere());
+        columnMapper = metered("columnMapper", createMapper());
+        limit = metered("limit", createLimit());
+        offset = metered("offset", createOffset());
+        groupBy = metered("groupBy", createGroupBy());
+        join = metered("join", createJoin());
+        orderBy = metered("orderBy", createOrderBy());
+        distinct = metered("distinct", createDistinct());
+        Function<ReactorQLContext, Flux<ReactorQLRecord>> fromMapper = meteredFrom(FromFeature.createFromMapperByBody(metadata.getSql(), metadata));
         PlainSelect select = metadata.getSql();
         if (null != select.getGroupBy()) {
-            builder = ctx ->
+            afterWhere = flux ->
                     limit.apply(
                             offset.apply(
                                     distinct.apply(
                                             orderBy.apply(
-                                                    groupBy.apply(
-                                                            where.apply(
-                                                                    join.apply(fromMapper.apply(ctx))))
+                                                    groupBy.apply(flux)
                                             )
                                     )
                             )
                     );
         } else {
-            builder = ctx ->
-                    limit.apply(
-                            offset.apply(
-                                    distinct.apply(
-                                            orderBy.apply(
-                                                    columnMapper.apply(
-                                                            where.apply(
-                                                                    join.apply(fromMapper.apply(ctx)))
-                                                    )
-                                            )
-                                    )
-                            )
-                    );
+            afterMapper = flux -> limit.apply(offset.apply(distinct.apply(orderBy.apply(flux))));
+            afterWhere = flux -> afterMapper.apply(columnMapper.apply(flux));
         }
+        builder = ctx -> afterWhere.apply(where.apply(join.apply(fromMapper.apply(ctx))));
+        batchPlan = BatchPlan.create(metadata);
     }
 
+    protected Function<ReactorQLContext, Flux<ReactorQLRecord>> meteredFrom(Function<ReactorQLContext, Flux<ReactorQLRecord>> from) {
+        if (!metrics.isEnabled()) {
+            return from;
+        }
+        OperatorMetrics operatorMetrics = metrics.operator("from");
+        return ctx -> from
+                .apply(ctx)
+                .doOnNext(record -> {
+                    operatorMetrics.recordIn();
+                    operatorMetrics.recordOut();
+                })
+                .doOnError(operatorMetrics::recordError);
+    }
+
+    protected Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> metered(String operator,
+                                                                             Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> stage) {
+        if (!metrics.isEnabled() || stage == Function.<Flux<ReactorQLRecord>>identity()) {
+            return stage;
+        }
+        OperatorMetrics operatorMetrics = metrics.operator(operator);
+        return flux -> {
+            AtomicReference<Throwable> upstreamError = new AtomicReference<>();
+            return stage
+                    .apply(flux
+                            .doOnNext(record -> operatorMetrics.recordIn())
+                            .doOnError(upstreamError::set))
+                    .doOnNext(record -> operatorMetrics.recordOut())
+                    .doOnError(error -> {
+                        //只记录当前操作产生的错误
+                        if (error != upstreamError.get()) {
+                            operatorMetrics.recordError(error);
+                        }
+                    });
+        };
+    }
+
+    /**
+     * 统计逐条处理数据的耗时,从开始处理一条数据到处理完成.
+     * 只有where,columnMapper以及join(见{@link #timedMany(String, Function)})会统计耗时,
+     * from是数据源本身,groupBy,orderBy,distinct,offset,limit的输出与输入不是一一对应的,
+     * 单条数据的耗时没有意义,这些操作只统计输入输出数量和错误.
+     */
+    protected <T> Function<ReactorQLRecord, Mono<T>> timed(String operator, Function<ReactorQLRecord, Mono<T>> handler) {
+        if (!metrics.isEnabled()) {
+            return handler;
+        }
+        OperatorMetrics operatorMetrics = metrics.operator(operator);
+        return record -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return handler
+                    .apply(record)
+                    .doOnTerminate(() -> operatorMetrics.recordLatency(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * 统计逐条关联数据的耗时,从收到一条左表数据到其关联结果全部输出完成.
+     */
+    protected <T> Function<ReactorQLRecord, Flux<T>> timedMany(String operator, Function<ReactorQLRecord, Flux<T>> handler) {
+        if (!metrics.isEnabled()) {
+            return handler;
+        }
+        OperatorMetrics operatorMetrics = metrics.operator(operator);
+        return record -> Flux.defer(() -> {
+            long start = System.nanoTime();
+            return handler
+                    .apply(record)
+                    .doOnTerminate(() -> operatorMetrics.recordLatency(System.nanoTime() - start));
+        });
+    }
+
+    protected Flux<ReactorQLRecord> meteredGroup(Flux<ReactorQLRecord> group) {
+        if (!metrics.isEnabled()) {
+            return group;
+        }
+        if (group instanceof GroupedFlux) {
+            return group
+                    .doOnSubscribe(subscription -> metrics.groupOpened())
+                    .doFinally(signal -> metrics.groupClosed());
+        }
+        return group
+                .doOnSubscribe(subscription -> metrics.windowOpened())
+                .doFinally(signal -> metrics.windowClosed());
+    }
 
     protected Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> createDistinct() {
         Distinct distinct;
@@ -128,7 +231,8 @@ public class DefaultReactorQL implements ReactorQL {
             //join (select deviceId,avg(temp) from temp group by interval('10s'),deviceId )
             if (from instanceof SubSelect) {
                 String alias = from.getAlias() == null ? null : from.getAlias().getName();
-                DefaultReactorQL ql = new DefaultReactorQL(new DefaultReactorQLMetadata(((PlainSelect) ((SubSelect) from).getSelectBody())));
+                PlainSelect body = ((PlainSelect) ((SubSelect) from).getSelectBody());
+                DefaultReactorQL ql = new DefaultReactorQL(new DefaultReactorQLMetadata(body), metrics.nested(body.toString()));
                 rightStreamGetter = record -> ql.builder.apply(
                         record.getContext()
                                 .transfer((name, flux) ->
@@ -141,8 +245,23 @@ public class DefaultReactorQL implements ReactorQL {
             } else if ((from instanceof Table)) {
                 String name = ((Table) from).getFullyQualifiedName();
                 String alias = from.getAlias() == null ? name : from.getAlias().getName();
-                rightStreamGetter = left -> left.getDataSource(name)
-                        .map(right -> newRecord(alias, right, left.getContext())
+                Function<Object, Object> rowMapper = Schema
+                        .lookup(metadata, (Table) from)
+                        .<Function<Object, Object>>map(schema -> schema::toRow)
+                        .orElse(Function.identity());
+                Function<ReactorQLRecord, Flux<Object>> rightSource = left -> left.getDataSource(name);
+                if (metrics.isEnabled()) {
+                    //关联表的数据按关联表单独统计
+                    OperatorMetrics rightMetrics = metrics.nested(from.toString()).operator("from");
+                    rightSource = rightSource.andThen(flux -> flux.doOnNext(right -> {
+                        rightMetrics.recordIn();
+                        rightMetrics.recordOut();
+                    }));
+                }
+                Function<ReactorQLRecord, Flux<Object>> fiRightSource = rightSource;
+                rightStreamGetter = left -> fiRightSource
+                        .apply(left)
+                        .map(right -> newRecord(alias, rowMapper.apply(right), left.getContext())
                                 .addRecords(left.getRecords(false)));
             }
             if (rightStreamGetter == null) {
@@ -150,24 +269,25 @@ public class DefaultReactorQL implements ReactorQL {
             }
             Function<ReactorQLRecord, Flux<ReactorQLRecord>> fiRightStreamGetter = rightStreamGetter;
             if (joinInfo.isLeft()) {
-                mapper = mapper.andThen(flux ->
-                        flux.flatMap(left -> fiRightStreamGetter
-                                .apply(left)
-                                .filterWhen(right -> filter.apply(right, right.getRecord()))
-                                .defaultIfEmpty(left), Integer.MAX_VALUE));
+                Function<ReactorQLRecord, Flux<ReactorQLRecord>> joiner = timedMany("join", left -> fiRightStreamGetter
+                        .apply(left)
+                        .filterWhen(right -> filter.apply(right, right.getRecord()))
+                        .defaultIfEmpty(left));
+                mapper = mapper.andThen(flux -> flux.flatMap(joiner, Integer.MAX_VALUE));
             } else if (joinInfo.isRight()) {
-                mapper = mapper.andThen(flux ->
-                        flux.flatMap(left -> fiRightStreamGetter
-                                .apply(left)
-                                .flatMap(right -> filter
-                                        .apply(right, right.getRecord())
-                                        .map(matched -> matched ? right : right.removeRecord(left.getName()))
-                                )
-                                .defaultIfEmpty(left), Integer.MAX_VALUE));
+                Function<ReactorQLRecord, Flux<ReactorQLRecord>> joiner = timedMany("join", left -> fiRightStreamGetter
+                        .apply(left)
+                        .flatMap(right -> filter
+                                .apply(right, right.getRecord())
+                                .map(matched -> matched ? right : right.removeRecord(left.getName()))
+                        )
+                        .defaultIfEmpty(left));
+                mapper = mapper.andThen(flux -> flux.flatMap(joiner, Integer.MAX_VALUE));
             } else {
-                mapper = mapper.andThen(flux ->
-                        flux.flatMap(left -> fiRightStreamGetter.apply(left).filterWhen(v -> filter.apply(v, v.getRecord())))
-                );
+                Function<ReactorQLRecord, Flux<ReactorQLRecord>> joiner = timedMany("join", left -> fiRightStreamGetter
+                        .apply(left)
+                        .filterWhen(v -> filter.apply(v, v.getRecord())));
+                mapper = mapper.andThen(flux -> flux.flatMap(joiner));
             }
         }
         return mapper;
@@ -177,35 +297,43 @@ public class DefaultReactorQL implements ReactorQL {
         PlainSelect select = metadata.getSql();
         GroupByElement groupBy = select.getGroupBy();
         if (null != groupBy) {
-            AtomicReference<Function<Flux<ReactorQLRecord>, Flux<Tuple2<? extends Flux<ReactorQLRecord>, Map<String, Object>>>>> groupByRef = new AtomicReference<>();
+            //分组,分组命名以及分组的键(所有层级中按键分组的键)
+            AtomicReference<Function<Flux<ReactorQLRecord>, Flux<Tuple3<Flux<ReactorQLRecord>, Map<String, Object>, List<Object>>>>> groupByRef = new AtomicReference<>();
 
             Consumer3<String, Expression, GroupFeature> featureConsumer = (name, expr, feature) -> {
 
                 Function<Flux<ReactorQLRecord>, Flux<? extends Flux<ReactorQLRecord>>> mapper = feature.createGroupMapper(expr, metadata);
 
-                Function<Flux<ReactorQLRecord>, Flux<Tuple2<? extends Flux<ReactorQLRecord>, Map<String, Object>>>> nameMapper =
-                        flux -> mapper.apply(flux)
-                                .map(group -> {
+                BiFunction<Flux<ReactorQLRecord>, List<Object>, Flux<Tuple3<Flux<ReactorQLRecord>, Map<String, Object>, List<Object>>>> nameMapper =
+                        (flux, parentKey) -> mapper.apply(flux)
+                                .<Tuple3<Flux<ReactorQLRecord>, Map<String, Object>, List<Object>>>map(group -> {
+                                    List<Object> key = parentKey;
+                                    Flux<ReactorQLRecord> grouped = meteredGroup(group);
+                                    if (group instanceof GroupedFlux) {
+                                        key = new ArrayList<>(parentKey);
+                                        key.add(((GroupedFlux<?, ?>) group).key());
+                                        grouped = TimeWeightedAggFeature.releaseOnTerminate(grouped, key);
+                                    }
                                     if (name != null) {
                                         //指定分组命名
-                                        return Tuples.of(group, Collections.singletonMap(name, ((GroupedFlux<?, ?>) group).key()));
+                                        return Tuples.of(grouped, Collections.<String, Object>singletonMap(name, ((GroupedFlux<?, ?>) group).key()), key);
                                     }
-                                    return Tuples.of(group, Collections.emptyMap());
+                                    return Tuples.of(grouped, Collections.<String, Object>emptyMap(), key);
                                 });
 
                 if (groupByRef.get() != null) {
-                    groupByRef.set(groupByRef.get().andThen(tp2 -> tp2
+                    groupByRef.set(groupByRef.get().andThen(tp3 -> tp3
                             .flatMap(parent -> nameMapper
-                                    .apply(parent.getT1())
+                                    .apply(parent.getT1(), parent.getT3())
                                     .map(child -> {
                                         //合并所有分组命名
                                         Map<String, Object> zip = new HashMap<>();
                                         zip.putAll(parent.getT2());
                                         zip.putAll(child.getT2());
-                                        return Tuples.of(child.getT1(), zip);
+                                        return Tuples.<Flux<ReactorQLRecord>, Map<String, Object>, List<Object>>of(child.getT1(), zip, child.getT3());
                                     }), Integer.MAX_VALUE)));
                 } else {
-                    groupByRef.set(nameMapper);
+                    groupByRef.set(flux -> nameMapper.apply(flux, Collections.emptyList()));
                 }
             };
             for (Expression groupByExpression : groupBy.getGroupByExpressions()) {
@@ -224,7 +352,7 @@ public class DefaultReactorQL implements ReactorQL {
                 }
             }
 
-            Function<Flux<ReactorQLRecord>, Flux<Tuple2<? extends Flux<ReactorQLRecord>, Map<String, Object>>>> groupMapper = groupByRef.get();
+            Function<Flux<ReactorQLRecord>, Flux<Tuple3<Flux<ReactorQLRecord>, Map<String, Object>, List<Object>>>> groupMapper = groupByRef.get();
             if (groupMapper != null) {
                 Expression having = select.getHaving();
                 if (null != having) {
@@ -235,12 +363,14 @@ public class DefaultReactorQL implements ReactorQL {
                                     .apply(group.getT1())
                                     .filterWhen(ctx -> filter.apply(ctx, ctx.getRecord()))
                                     //分组命名放到上下文里
-                                    .subscriberContext(Context.of("named-group", group.getT2()))
+                                    .subscriberContext(Context.of("named-group", group.getT2(),
+                                                                  TimeWeightedAggFeature.GROUP_KEY_CONTEXT_KEY, group.getT3()))
                             );
                 }
                 return flux -> groupMapper.apply(flux)
                         .flatMap(group -> columnMapper.apply(group.getT1())
-                                .subscriberContext(Context.of("named-group", group.getT2()))
+                                .subscriberContext(Context.of("named-group", group.getT2(),
+                                                              TimeWeightedAggFeature.GROUP_KEY_CONTEXT_KEY, group.getT3()))
                         );
             }
 
@@ -255,7 +385,8 @@ public class DefaultReactorQL implements ReactorQL {
             return Function.identity();
         }
         BiFunction<ReactorQLRecord, Object, Mono<Boolean>> filter = FilterFeature.createPredicateNow(whereExpr, metadata);
-        return flux -> flux.filterWhen(ctx -> filter.apply(ctx, ctx.getRecord()));
+        Function<ReactorQLRecord, Mono<Boolean>> predicate = timed("where", ctx -> filter.apply(ctx, ctx.getRecord()));
+        return flux -> flux.filterWhen(predicate);
     }
 
     protected Optional<Function<ReactorQLRecord, ? extends Publisher<?>>> createExpressionMapper(Expression expression) {
@@ -268,6 +399,10 @@ public class DefaultReactorQL implements ReactorQL {
 
         Consumer<ValueAggMapFeature> featureConsumer = feature -> {
             Function<Flux<ReactorQLRecord>, Flux<Object>> mapper = feature.createMapper(expression, metadata);
+            net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+            if (function.isDistinct()) {
+                mapper = createDistinctAggMapper(function, mapper);
+            }
             ref.set(mapper);
         };
         if (expression instanceof net.sf.jsqlparser.expression.Function) {
@@ -278,6 +413,30 @@ public class DefaultReactorQL implements ReactorQL {
 
     }
 
+    // count(distinct deviceId),sum(distinct val)
+    protected Function<Flux<ReactorQLRecord>, Flux<Object>> createDistinctAggMapper(net.sf.jsqlparser.expression.Function function,
+                                                                                  Function<Flux<ReactorQLRecord>, Flux<Object>> mapper) {
+        if (function.getParameters() == null || CollectionUtils.isEmpty(function.getParameters().getExpressions())) {
+            throw new UnsupportedOperationException("distinct聚合函数必须指定参数:" + function);
+        }
+        Function<ReactorQLRecord, ? extends Publisher<?>> valueMapper = ValueMapFeature
+                .createMapperNow(function.getParameters().getExpressions().get(0), metadata);
+        String name = function.toString();
+        //每次订阅(每个分组,窗口)都使用新的集合
+        return flux -> Flux
+                .deferWithContext(ctx -> {
+                    DistinctSet distinctSet = new DistinctSet();
+                    return mapper
+                            .apply(flux.filterWhen(record -> Mono
+                                    .from(valueMapper.apply(record))
+                                    .map(distinctSet::add)
+                                    .defaultIfEmpty(false)))
+                            .doFinally(signal -> ctx
+                                    .<ReactorQLMetrics>getOrEmpty(ReactorQLMetrics.class)
+                                    .ifPresent(metrics -> metrics.recordMemoryUsage(name, distinctSet.memoryUsage())));
+                });
+    }
+
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> createMapper() {
 
         Map<String, Function<ReactorQLRecord, ? extends Publisher<?>>> mappers = new LinkedHashMap<>();
@@ -291,13 +450,7 @@ public class DefaultReactorQL implements ReactorQL {
                 @Override
                 public void visit(SelectExpressionItem item) {
                     Expression expression = item.getExpression();
-                    String alias = item.getAlias() == null ? expression.toString() : item.getAlias().getName();
-                    if (alias.startsWith("\"")) {
-                        alias = alias.substring(1);
-                    }
-                    if (alias.endsWith("\"")) {
-                        alias = alias.substring(0, alias.length() - 1);
-                    }
+                    String alias = getAlias(item);
                     String fAlias = alias;
                     createExpressionMapper(expression).ifPresent(mapper -> mappers.put(fAlias, mapper));
                     createAggMapper(expression).ifPresent(mapper -> aggMapper.put(fAlias, mapper));
@@ -351,6 +504,12 @@ public class DefaultReactorQL implements ReactorQL {
 
         //聚合结果
         if (!aggMapper.isEmpty()) {
+            Function<ReactorQLRecord, Mono<ReactorQLRecord>> aggResultMapper = hasMapper ? resultMapper : null;
+            //增量输出聚合结果
+            Object emitEvery = metadata.getSetting("emit_every").orElse(null);
+            if (emitEvery != null) {
+                return createIncrementalAggMapper(emitEvery, aggMapper.keySet(), aggResultMapper);
+            }
             int aggSize = aggMapper.size();
             if (aggSize == 1) {
                 String property = aggMapper.keySet().iterator().next();
@@ -363,25 +522,7 @@ public class DefaultReactorQL implements ReactorQL {
                             .as(oneMapper)
                             .flatMap(val -> Mono
                                     .subscriberContext()
-                                    .flatMap(ctx -> {
-                                        ReactorQLRecord newCtx = cursor.get();
-                                        if (newCtx == null) {
-                                            newCtx = newRecord(null, new HashMap<>(), new DefaultReactorQLContext((r) -> Flux.just(1)));
-                                        } else {
-                                            newCtx = newCtx.copy();
-                                        }
-                                        newCtx = newCtx
-                                                .putRecordToResult()
-                                                .resultToRecord(newCtx.getName())
-                                                .setResult(property, val);
-
-                                        newCtx.setResults(ctx.<Map<String, Object>>getOrEmpty("named-group").orElse(Collections.emptyMap()));
-
-                                        if (hasMapper) {
-                                            return resultMapper.apply(newCtx);
-                                        }
-                                        return Mono.just(newCtx);
-                                    }));
+                                    .flatMap(ctx -> createAggResult(cursor.get(), Collections.singletonMap(property, val), ctx, aggResultMapper)));
                 };
             }
             return flux -> {
@@ -416,35 +557,134 @@ public class DefaultReactorQL implements ReactorQL {
                                 return v.getT2();
                             });
                         })
-                        .flatMap(map -> {
-                            return Mono.subscriberContext()
-                                    .flatMap(ctx -> {
-
-
-                                        ReactorQLRecord newCtx = cursor.get();
-                                        if (newCtx == null) {
-                                            newCtx = newRecord(null, new HashMap<>(), new DefaultReactorQLContext((r) -> Flux.just(1)));
-                                        }
-                                        newCtx = newCtx
-                                                .putRecordToResult()
-                                                .resultToRecord(newCtx.getName())
-                                                .setResults(map);
-                                        newCtx.setResults(ctx.<Map<String, Object>>getOrEmpty("named-group").orElse(Collections.emptyMap()));
-                                        if (hasMapper) {
-                                            return resultMapper.apply(newCtx);
-                                        }
-                                        return Mono.just(newCtx);
-                                    });
-                        })
+                        .flatMap(map -> Mono
+                                .subscriberContext()
+                                .flatMap(ctx -> createAggResult(cursor.get(), map, ctx, aggResultMapper)))
                         .flux();
             };
 
         }
+        Function<ReactorQLRecord, Mono<ReactorQLRecord>> timedResultMapper = timed("columnMapper", resultMapper);
         //指定了分组,但是没有聚合.只获取一个结果.
         if (metadata.getSql().getGroupBy() != null) {
-            return flux -> flux.takeLast(1).flatMap(resultMapper);
+            return flux -> flux.takeLast(1).flatMap(timedResultMapper);
+        }
+        return flux -> flux.flatMap(timedResultMapper);
+    }
+
+    private Mono<ReactorQLRecord> createAggResult(ReactorQLRecord cursor,
+                                                  Map<String, Object> results,
+                                                  Context ctx,
+                                                  Function<ReactorQLRecord, Mono<ReactorQLRecord>> resultMapper) {
+        ReactorQLRecord newCtx;
+        if (cursor == null) {
+            newCtx = newRecord(null, new HashMap<>(), new DefaultReactorQLContext((r) -> Flux.just(1)));
+        } else {
+            newCtx = cursor.copy();
+        }
+        newCtx = newCtx
+                .putRecordToResult()
+                .resultToRecord(newCtx.getName())
+                .setResults(results);
+        newCtx.setResults(ctx.<Map<String, Object>>getOrEmpty("named-group").orElse(Collections.emptyMap()));
+        //原始数据不是Map时,this依然指向原始数据,如: select time_bucket(this,'1m') ts,count(1) total from test group by ...
+        Object raw = cursor == null ? null : cursor.getRecord();
+        if (raw != null && !(raw instanceof Map)) {
+            newCtx.addRecord(DefaultReactorQLRecord.THIS_RECORD, raw);
+        }
+        if (resultMapper != null) {
+            return resultMapper.apply(newCtx);
+        }
+        return Mono.just(newCtx);
+    }
+
+    // /*+ emit_every(100) */ 每100条数据输出一次
+    // /*+ emit_every('1s') */ 每个分组最多每秒输出一次
+    private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> createIncrementalAggMapper(Object emitEvery,
+                                                                                            Set<String> aggColumns,
+                                                                                            Function<ReactorQLRecord, Mono<ReactorQLRecord>> resultMapper) {
+        String every = String.valueOf(emitEvery).replace("'", "").replace("\"", "").trim();
+        long everyCount = !every.isEmpty() && every.chars().allMatch(Character::isDigit) ? Long.parseLong(every) : 0;
+        long everyMillis = everyCount > 0 ? 0 : CastUtils.parseDuration(every).toMillis();
+        if (everyCount <= 0 && everyMillis <= 0) {
+            throw new UnsupportedOperationException("emit_every参数错误:" + emitEvery);
+        }
+
+        ClockFeature clock = ClockFeature.getClock(metadata);
+        Map<String, Supplier<? extends ValueAggMapFeature.Accumulator>> accumulators = new LinkedHashMap<>();
+        for (SelectItem selectItem : metadata.getSql().getSelectItems()) {
+            if (!(selectItem instanceof SelectExpressionItem)) {
+                continue;
+            }
+            SelectExpressionItem item = ((SelectExpressionItem) selectItem);
+            String alias = getAlias(item);
+            if (!aggColumns.contains(alias)) {
+                continue;
+            }
+            net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) item.getExpression());
+            Supplier<? extends ValueAggMapFeature.Accumulator> accumulator = function.isDistinct()
+                    ? null
+                    : metadata.getFeatureNow(FeatureId.ValueAggMap.of(function.getName()))
+                              .createAccumulator(function, metadata);
+            if (accumulator == null) {
+                throw new UnsupportedOperationException("聚合函数[" + function + "]不支持增量输出(emit_every)");
+            }
+            accumulators.put(alias, accumulator);
+        }
+
+        return flux -> Flux
+                .deferWithContext(ctx -> {
+                    //每个分组使用独立的聚合状态
+                    Map<String, ValueAggMapFeature.Accumulator> states = new LinkedHashMap<>();
+                    accumulators.forEach((alias, supplier) -> states.put(alias, supplier.get()));
+                    AtomicReference<ReactorQLRecord> cursor = new AtomicReference<>();
+                    AtomicLong counter = new AtomicLong();
+                    AtomicLong lastEmit = new AtomicLong(clock.currentTimeMillis());
+                    //最后一次输出之后是否有新的数据
+                    AtomicBoolean pending = new AtomicBoolean();
+
+                    Supplier<Mono<ReactorQLRecord>> snapshot = () -> {
+                        Map<String, Object> results = new HashMap<>();
+                        states.forEach((alias, state) -> results.put(alias, state.snapshot()));
+                        return createAggResult(cursor.get(), results, ctx, resultMapper);
+                    };
+                    return flux
+                            .concatMap(record -> {
+                                cursor.set(record);
+                                return Flux
+                                        .fromIterable(states.values())
+                                        .<Object>concatMap(state -> state.accumulate(record))
+                                        .then(Mono.fromSupplier(() -> {
+                                            boolean emit;
+                                            if (everyCount > 0) {
+                                                emit = counter.incrementAndGet() % everyCount == 0;
+                                            } else {
+                                                long now = clock.currentTimeMillis();
+                                                emit = now - lastEmit.get() >= everyMillis;
+                                                if (emit) {
+                                                    lastEmit.set(now);
+                                                }
+                                            }
+                                            pending.set(!emit);
+                                            return emit;
+                                        }));
+                            })
+                            .filter(Boolean::booleanValue)
+                            .concatMap(ignore -> snapshot.get())
+                            //分组结束时,如果最后一次输出之后还有数据,输出最终结果
+                            .concatWith(Mono.defer(() -> pending.get() ? snapshot.get() : Mono.empty()));
+                });
+    }
+
+    private static String getAlias(SelectExpressionItem item) {
+        String alias = item.getAlias() == null ? item.getExpression().toString() : item.getAlias().getName();
+        if (alias.startsWith("\"")) {
+            alias = alias.substring(1);
         }
-        return flux -> flux.flatMap(resultMapper);
+        if (alias.endsWith("\"")) {
+            alias = alias.substring(0, alias.length() - 1);
+        }
+        return alias;
     }
 
     private Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> createLimit() {
@@ -503,8 +743,36 @@ public class DefaultReactorQL implements ReactorQL {
 
     @Override
     public Flux<ReactorQLRecord> start(ReactorQLContext context) {
-        return builder
-                .apply(context);
+        if (batchPlan != null && context.isBatchDataSource()) {
+            //批量数据源,按列过滤以及转换后再逐条处理
+            Flux<List<Object>> batches = context.getDataSourceBatch(batchPlan.getTable());
+            Flux<ReactorQLRecord> records = batchPlan.apply(context, batches, where, columnMapper, metrics);
+            return withExecutionContext(batchPlan.isMapped() ? afterMapper.apply(records) : afterWhere.apply(records));
+        }
+        return withExecutionContext(builder.apply(context));
+    }
+
+    private Flux<ReactorQLRecord> withExecutionContext(Flux<ReactorQLRecord> source) {
+        Flux<ReactorQLRecord> flux = Flux.defer(() -> {
+            Map<Object, Object> materialized = new ConcurrentHashMap<>();
+            return source
+                    //每次执行时,按时间加权的聚合在窗口之间携带上一个值,窗口函数保存分区状态,非关联子查询缓存结果
+                    .subscriberContext(ctx -> ctx
+                            .put(TimeWeightedAggFeature.CARRY_CONTEXT_KEY, new ConcurrentHashMap<>())
+                            .put(WindowFunctionFeature.STATE_CONTEXT_KEY, new ConcurrentHashMap<>())
+                            .put(SelectFeature.MATERIALIZED_CONTEXT_KEY, materialized))
+                    //执行结束时取消共享子查询的订阅
+                    .doFinally(signal -> materialized.values().forEach(value -> {
+                        if (value instanceof Disposable) {
+                            ((Disposable) value).dispose();
+                        }
+                    }));
+        });
+        if (metrics.isEnabled()) {
+            //聚合等操作可通过上下文获取指标
+            return flux.subscriberContext(Context.of(ReactorQLMetrics.class, metrics));
+        }
+        return flux;
     }
 
 
@@ -518,4 +786,20 @@ public class DefaultReactorQL implements ReactorQL {
     public ReactorQLMetadata metadata() {
         return metadata;
     }
+
+    @Override
+    public PlanNode explain() {
+        return QueryPlanExplainer.explain(metadata, batchPlan);
+    }
+
+    @Override
+    public Mono<PlanNode> explainAnalyze(ReactorQLContext context) {
+        return Mono.defer(() -> {
+            SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+            DefaultReactorQL analyzer = new DefaultReactorQL(metadata, ReactorQLMetrics.create(registry, "explain"));
+            return analyzer
+                    .start(context)
+                    .then(Mono.fromSupplier(() -> QueryPlanExplainer.analyze(analyzer.explain(), registry, "explain")));
+        });
+    }
 }
@@ -17,10 +17,43 @@ public class DefaultReactorQLContext implements ReactorQLContext {
 
     private final Map<String, Object> namedParameter = new HashMap<>();
 
+    //批量数据源,不是批量数据源时为null
+    private final Function<String, Flux<List<Object>>> batchSupplier;
+
     private BiFunction<String, Flux<Object>, Flux<Object>> mapper = (s, flux) -> flux;
 
     public DefaultReactorQLContext(Function<String, ? extends Publisher<?>> supplier) {
         this.supplier = name -> Flux.from(supplier.apply(name));
+        this.batchSupplier = null;
+    }
+
+    private DefaultReactorQLContext(Function<String, Flux<Object>> supplier,
+                                    Function<String, Flux<List<Object>>> batchSupplier) {
+        this.supplier = supplier;
+        this.batchSupplier = batchSupplier;
+    }
+
+    static DefaultReactorQLContext ofBatch(Function<String, ? extends Publisher<?>> supplier) {
+        Function<String, Flux<List<Object>>> batchSupplier = name -> Flux
+                .from(supplier.apply(name))
+                .map(DefaultReactorQLContext::castBatch);
+        return new DefaultReactorQLContext(name -> batchSupplier
+                .apply(name)
+                .flatMapIterable(Function.identity()), batchSupplier);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> castBatch(Object batch) {
+        if (batch instanceof List) {
+            return ((List<Object>) batch);
+        }
+        if (batch instanceof Collection) {
+            return new ArrayList<>(((Collection<?>) batch));
+        }
+        if (batch instanceof Object[]) {
+            return Arrays.asList(((Object[]) batch));
+        }
+        return Collections.singletonList(batch);
     }
 
     @Override
@@ -54,6 +87,19 @@ public class DefaultReactorQLContext implements ReactorQLContext {
         return mapper.apply(name, supplier.apply(name));
     }
 
+    @Override
+    public Flux<List<Object>> getDataSourceBatch(String name) {
+        if (batchSupplier == null) {
+            return ReactorQLContext.super.getDataSourceBatch(name);
+        }
+        return batchSupplier.apply(getCleanStr(name));
+    }
+
+    @Override
+    public boolean isBatchDataSource() {
+        return batchSupplier != null;
+    }
+
 
     @Override
     public Optional<Object> getParameter(int index) {
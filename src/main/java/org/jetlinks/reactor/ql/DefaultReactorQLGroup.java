@@ -0,0 +1,210 @@
+package org.jetlinks.reactor.ql;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.FromItem;
+import org.jetlinks.reactor.ql.feature.Feature;
+import org.jetlinks.reactor.ql.supports.DefaultReactorQLMetadata;
+import org.jetlinks.reactor.ql.supports.PredicateIndex;
+import org.jetlinks.reactor.ql.supports.SharedExpressionCache;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.EmitterProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.jetlinks.reactor.ql.utils.SqlUtils.getCleanStr;
+
+@Slf4j
+class DefaultReactorQLGroup implements ReactorQLGroup {
+
+    /**
+     * 每个查询等待处理的分发数据的最大数量,超过后丢弃最旧的数据,避免处理缓慢的查询无限占用内存.
+     * 可以在SQL中通过提示修改,如: group_buffer_size(4096)
+     */
+    static final String SETTING_BUFFER_SIZE = "group_buffer_size";
+
+    static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final Function<String, ? extends Publisher<?>> dataSource;
+
+    private final List<Feature> features;
+
+    //表名 -> 共享的数据源
+    private final Map<String, Flux<Object>> sharedSources = new ConcurrentHashMap<>();
+
+    //表名 -> 数据分发器
+    private final Map<String, Router> routers = new ConcurrentHashMap<>();
+
+    private final Map<String, Query> queries = new ConcurrentHashMap<>();
+
+    private final SharedExpressionCache expressionCache = new SharedExpressionCache();
+
+    private volatile boolean disposed;
+
+    DefaultReactorQLGroup(Function<String, ? extends Publisher<?>> dataSource, Feature... features) {
+        this.dataSource = dataSource;
+        this.features = Arrays.asList(features);
+    }
+
+    @Override
+    public ReactorQL compile(String... sql) {
+        DefaultReactorQLMetadata metadata = new DefaultReactorQLMetadata(String.join(" ", sql));
+        metadata.addFeature(features);
+        metadata.setting(SharedExpressionCache.SETTING_KEY, expressionCache);
+        return new DefaultReactorQL(metadata);
+    }
+
+    protected Flux<Object> getSharedSource(String table) {
+        //只要组内还有查询在订阅,数据源就只会被订阅一次
+        return sharedSources.computeIfAbsent(table, name -> Flux.<Object>from(dataSource.apply(name)).share());
+    }
+
+    @Override
+    public Flux<Map<String, Object>> attach(String id, ReactorQL ql) {
+        return Flux.defer(() -> {
+            if (disposed) {
+                return Flux.empty();
+            }
+            Query query = new Query();
+            Query old = queries.put(id, query);
+            if (old != null) {
+                old.stop();
+            }
+            FromItem from = ql.metadata().getSql().getFromItem();
+            if (!(from instanceof Table)) {
+                return ql
+                        .start(new DefaultReactorQLContext(this::getSharedSource))
+                        .map(ReactorQLRecord::asMap)
+                        .takeUntilOther(query.stopped)
+                        .doFinally(signal -> queries.remove(id, query));
+            }
+            //主表的数据由分发器根据where条件索引推送,只推送给可能匹配的查询
+            Table mainTable = ((Table) from);
+            Router router = routers.computeIfAbsent(getCleanStr(mainTable.getName()), Router::new);
+            int bufferSize = ql
+                    .metadata()
+                    .getSetting(SETTING_BUFFER_SIZE)
+                    .map(size -> Integer.parseInt(String.valueOf(size)))
+                    .orElse(DEFAULT_BUFFER_SIZE);
+            Flux<Object> routed = query.processor
+                    .onBackpressureBuffer(bufferSize,
+                                          dropped -> log.warn("query [{}] is too slow, drop data: {}", id, dropped),
+                                          BufferOverflowStrategy.DROP_OLDEST);
+
+            return ql
+                    .start(new DefaultReactorQLContext(this::getSharedSource) {
+                        @Override
+                        public Flux<Object> getFromDataSource(Table table) {
+                            //只有from的表使用分发的数据,join和子查询即使是同一个表也使用共享的数据源
+                            if (table == mainTable) {
+                                return routed;
+                            }
+                            return super.getFromDataSource(table);
+                        }
+                    })
+                    .map(ReactorQLRecord::asMap)
+                    .takeUntilOther(query.stopped)
+                    .doOnSubscribe(subscription -> router.register(query, ql.metadata()))
+                    .doFinally(signal -> {
+                        router.unregister(query);
+                        query.sink.complete();
+                        queries.remove(id, query);
+                    });
+        });
+    }
+
+    @Override
+    public boolean detach(String id) {
+        Query query = queries.remove(id);
+        if (query != null) {
+            query.stop();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> getQueries() {
+        return Collections.unmodifiableSet(queries.keySet());
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (String id : new ArrayList<>(queries.keySet())) {
+            detach(id);
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    static class Query {
+        private final MonoProcessor<Boolean> stopped = MonoProcessor.create();
+
+        private final EmitterProcessor<Object> processor = EmitterProcessor.create(false);
+
+        private final FluxSink<Object> sink = processor.sink(FluxSink.OverflowStrategy.BUFFER);
+
+        void stop() {
+            if (!stopped.isTerminated()) {
+                stopped.onNext(true);
+            }
+        }
+    }
+
+    class Router {
+        private final String table;
+
+        private final PredicateIndex<Query> index = new PredicateIndex<>();
+
+        private final Set<Query> registered = ConcurrentHashMap.newKeySet();
+
+        private Disposable disposable;
+
+        Router(String table) {
+            this.table = table;
+        }
+
+        synchronized void register(Query query, ReactorQLMetadata metadata) {
+            index.register(query, metadata);
+            registered.add(query);
+            if (disposable == null || disposable.isDisposed()) {
+                disposable = getSharedSource(table)
+                        .subscribe(
+                                row -> index.match(row, target -> target.sink.next(row)),
+                                this::error,
+                                this::complete);
+            }
+        }
+
+        synchronized void unregister(Query query) {
+            registered.remove(query);
+            if (index.unregister(query) && index.size() == 0 && disposable != null) {
+                disposable.dispose();
+                disposable = null;
+            }
+        }
+
+        private void error(Throwable error) {
+            for (Query query : registered) {
+                query.sink.error(error);
+            }
+        }
+
+        private void complete() {
+            for (Query query : registered) {
+                query.sink.complete();
+            }
+        }
+    }
+}
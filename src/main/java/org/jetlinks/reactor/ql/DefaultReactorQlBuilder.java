@@ -1,11 +1,11 @@
 package org.jetlinks.reactor.ql;
 
 import org.jetlinks.reactor.ql.feature.Feature;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.schema.Schema;
 import org.jetlinks.reactor.ql.supports.DefaultReactorQLMetadata;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 class DefaultReactorQlBuilder implements ReactorQL.Builder {
 
@@ -13,6 +13,10 @@ class DefaultReactorQlBuilder implements ReactorQL.Builder {
 
     private final List<Feature> features = new ArrayList<>();
 
+    private final Map<String, Schema> schemas = new HashMap<>();
+
+    private ReactorQLMetrics metrics = ReactorQLMetrics.noop();
+
     @Override
     public ReactorQL.Builder sql(String... sql) {
         this.sql = String.join(" ", sql);
@@ -25,10 +29,23 @@ class DefaultReactorQlBuilder implements ReactorQL.Builder {
         return this;
     }
 
+    @Override
+    public ReactorQL.Builder schema(String table, Schema schema) {
+        this.schemas.put(table, schema);
+        return this;
+    }
+
+    @Override
+    public ReactorQL.Builder metrics(ReactorQLMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     @Override
     public ReactorQL build() {
         DefaultReactorQLMetadata metadata = new DefaultReactorQLMetadata(sql);
         metadata.addFeature(features);
-        return new DefaultReactorQL(metadata);
+        metadata.addSchema(schemas);
+        return new DefaultReactorQL(metadata, metrics);
     }
 }
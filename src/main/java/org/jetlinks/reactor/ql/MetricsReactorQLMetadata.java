@@ -0,0 +1,57 @@
+package org.jetlinks.reactor.ql;
+
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.jetlinks.reactor.ql.feature.Feature;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.schema.Schema;
+
+import java.util.Optional;
+
+/**
+ * 携带查询指标的元数据,子查询通过{@link ReactorQLMetrics#of(ReactorQLMetadata)}获取指标.
+ * 不修改原始的元数据,同一个元数据可以同时用于启用和未启用指标的查询.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+class MetricsReactorQLMetadata implements ReactorQLMetadata {
+
+    private final ReactorQLMetadata metadata;
+
+    private final ReactorQLMetrics metrics;
+
+    MetricsReactorQLMetadata(ReactorQLMetadata metadata, ReactorQLMetrics metrics) {
+        this.metadata = metadata;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T extends Feature> Optional<T> getFeature(FeatureId<T> featureId) {
+        return metadata.getFeature(featureId);
+    }
+
+    @Override
+    public Optional<Object> getSetting(String key) {
+        if (ReactorQLMetrics.SETTING_KEY.equals(key)) {
+            return Optional.of(metrics);
+        }
+        return metadata.getSetting(key);
+    }
+
+    @Override
+    public ReactorQLMetadata setting(String key, Object value) {
+        metadata.setting(key, value);
+        return this;
+    }
+
+    @Override
+    public PlainSelect getSql() {
+        return metadata.getSql();
+    }
+
+    @Override
+    public Optional<Schema> getSchema(String table) {
+        return metadata.getSchema(table);
+    }
+}
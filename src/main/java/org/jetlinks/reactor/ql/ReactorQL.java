@@ -1,11 +1,16 @@
 package org.jetlinks.reactor.ql;
 
+import org.jetlinks.reactor.ql.explain.PlanNode;
 import org.jetlinks.reactor.ql.feature.Feature;
 import org.jetlinks.reactor.ql.feature.FilterFeature;
 import org.jetlinks.reactor.ql.feature.GroupFeature;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.schema.Schema;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -56,6 +61,21 @@ public interface ReactorQL {
      */
     ReactorQLMetadata metadata();
 
+    /**
+     * 获取执行计划,包括每个操作使用的策略,特性以及表达式是否异步执行等信息
+     *
+     * @return 执行计划
+     */
+    PlanNode explain();
+
+    /**
+     * 执行查询并获取包含实际执行信息(输入输出数量,选择率,耗时)的执行计划
+     *
+     * @param context 上下文
+     * @return 执行计划
+     */
+    Mono<PlanNode> explainAnalyze(ReactorQLContext context);
+
     /**
      * 使用固定的输入作为数据源,将忽略SQL中指定的表
      *
@@ -66,6 +86,21 @@ public interface ReactorQL {
         return start((table) -> flux);
     }
 
+    /**
+     * 使用批量数据作为数据源执行,将忽略SQL中指定的表.
+     * <p>
+     * 表声明了结构({@link Builder#schema(String, Schema)})并且where条件可以按列计算时,使用列式批处理:
+     * 每批数据按列提取为数组后进行过滤,只有满足条件的数据才会转换为行记录进行后续的处理.否则逐条处理.
+     *
+     * @param batches 批量数据
+     * @return 输出
+     * @see ReactorQLContext#ofBatchDatasource(Function)
+     */
+    default Flux<Map<String, Object>> startBatch(Flux<? extends List<?>> batches) {
+        return start(ReactorQLContext.ofBatchDatasource(table -> batches))
+                .map(ReactorQLRecord::asMap);
+    }
+
     static Builder builder() {
         return new DefaultReactorQlBuilder();
     }
@@ -93,6 +128,25 @@ public interface ReactorQL {
          */
         Builder feature(Feature... features);
 
+        /**
+         * 声明表结构,创建查询时根据列的类型预先转换常量,检查类型,数据源中的数据会被转换为按类型保存的行数据
+         *
+         * @param table  表名
+         * @param schema 表结构
+         * @return this
+         * @see Schema
+         */
+        Builder schema(String table, Schema schema);
+
+        /**
+         * 设置运行时指标,用于统计每个操作的输入输出,耗时等信息
+         *
+         * @param metrics 指标
+         * @return this
+         * @see ReactorQLMetrics#create(org.jetlinks.reactor.ql.metrics.ReactorQLMetricsRegistry, String)
+         */
+        Builder metrics(ReactorQLMetrics metrics);
+
         /**
          * 构造ReactorQL
          *
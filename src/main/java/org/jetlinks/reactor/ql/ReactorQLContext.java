@@ -1,8 +1,11 @@
 package org.jetlinks.reactor.ql;
 
+import net.sf.jsqlparser.schema.Table;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiFunction;
@@ -26,6 +29,22 @@ public interface ReactorQLContext {
         return new DefaultReactorQLContext(supplier);
     }
 
+    /**
+     * 提供一个函数(参数为表名,返回值为批量数据流),创建批量数据源的上下文.
+     * 数据流中的每个元素为一批数据,可以是{@link java.util.Collection}或者数组,其他类型的元素作为只有一条数据的批次.
+     * <pre>
+     *     ReactorQLContext.ofBatchDatasource(table -> kafkaRecords.map(ConsumerRecords::toList))
+     * </pre>
+     * 查询支持列式批处理时({@link org.jetlinks.reactor.ql.batch.BatchPlan}),数据将按批进行处理,否则逐条处理.
+     *
+     * @param supplier 批量数据源
+     * @return 上下文
+     * @since 1.0.8
+     */
+    static ReactorQLContext ofBatchDatasource(Function<String, ? extends Publisher<?>> supplier) {
+        return DefaultReactorQLContext.ofBatch(supplier);
+    }
+
     /**
      * 根据表名获取数据源
      *
@@ -34,6 +53,39 @@ public interface ReactorQLContext {
      */
     Flux<Object> getDataSource(String name);
 
+    /**
+     * 获取from中的表对应的数据源,默认根据表名获取.
+     * 可以根据表对象区分同名的表,如:主表和自关联的表使用不同的数据源.
+     *
+     * @param table from中的表
+     * @return 数据源
+     * @see this#getDataSource(String)
+     * @since 1.0.8
+     */
+    default Flux<Object> getFromDataSource(Table table) {
+        return getDataSource(table.getName());
+    }
+
+    /**
+     * 根据表名获取批量数据源,不是批量数据源时,每条数据作为一批.
+     *
+     * @param name 表名
+     * @return 批量数据源
+     * @see this#isBatchDataSource()
+     * @since 1.0.8
+     */
+    default Flux<List<Object>> getDataSourceBatch(String name) {
+        return getDataSource(name).map(Collections::singletonList);
+    }
+
+    /**
+     * @return 是否为批量数据源
+     * @since 1.0.8
+     */
+    default boolean isBatchDataSource() {
+        return false;
+    }
+
     /**
      * 根据索引获取参数.
      * <pre>
@@ -0,0 +1,75 @@
+package org.jetlinks.reactor.ql;
+
+import org.jetlinks.reactor.ql.feature.Feature;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 查询组,组内的多个查询共享同一个数据源订阅,并且对同一条数据只计算一次公共表达式.
+ * <pre>
+ *
+ *   ReactorQLGroup group = ReactorQLGroup.create(table -> messageTopic);
+ *
+ *   group.attach("rule-1", group.compile("select deviceId,temp from device.message where temp > 10"))
+ *        .subscribe(map -> {
+ *
+ *        });
+ *
+ *   //移除查询,不会影响组内其他查询
+ *   group.detach("rule-1");
+ *
+ * </pre>
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public interface ReactorQLGroup extends Disposable {
+
+    /**
+     * 创建查询组
+     *
+     * @param dataSource 数据源,参数为表名,返回值为数据流.同一个表只会订阅一次.
+     * @param features   组内所有查询共享的特性
+     * @return 查询组
+     */
+    static ReactorQLGroup create(Function<String, ? extends Publisher<?>> dataSource, Feature... features) {
+        return new DefaultReactorQLGroup(dataSource, features);
+    }
+
+    /**
+     * 在组内编译SQL,编译后的查询在组内执行时会共享公共表达式的计算结果
+     *
+     * @param sql SQL
+     * @return ReactorQL
+     */
+    ReactorQL compile(String... sql);
+
+    /**
+     * 添加查询到组内,订阅返回值时开始执行.取消订阅或者调用{@link ReactorQLGroup#detach(String)}时将从组中移除.
+     * 如果已经存在相同ID的查询,旧的查询将被移除.
+     *
+     * @param id 查询ID
+     * @param ql 查询
+     * @return 查询结果
+     */
+    Flux<Map<String, Object>> attach(String id, ReactorQL ql);
+
+    /**
+     * 从组中移除查询,查询结果流将正常结束
+     *
+     * @param id 查询ID
+     * @return 查询是否存在
+     */
+    boolean detach(String id);
+
+    /**
+     * @return 组内正在执行的查询ID
+     */
+    Set<String> getQueries();
+
+}
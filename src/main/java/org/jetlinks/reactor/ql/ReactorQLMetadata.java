@@ -3,6 +3,7 @@ package org.jetlinks.reactor.ql;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import org.jetlinks.reactor.ql.feature.Feature;
 import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.schema.Schema;
 
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -34,6 +35,17 @@ public interface ReactorQLMetadata {
 
     PlainSelect getSql();
 
+    /**
+     * 获取表结构
+     *
+     * @param table 表名
+     * @return 表结构
+     * @see Schema
+     */
+    default Optional<Schema> getSchema(String table) {
+        return Optional.empty();
+    }
+
     /**
      * 获取特性,如果不存在则抛出异常
      *
@@ -0,0 +1,355 @@
+package org.jetlinks.reactor.ql.batch;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import org.jetlinks.reactor.ql.ReactorQLContext;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.supports.agg.CountAggFeature;
+import org.jetlinks.reactor.ql.supports.agg.MapAggFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.CompareUtils;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按列批量计算的聚合,select中只有不分组的count,sum,avg,min,max时
+ * (如: select count(1) total,avg(temp) avg from test where temp > 10),
+ * 直接在列的数组上累加,所有批次处理完成后输出一条聚合结果.
+ * <p>
+ * sum,avg,min,max的参数只能是当前表中类型为LONG或者DOUBLE的列,结果与逐条聚合一致.
+ * 无法按列处理的批次逐条累加.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class BatchAggregation {
+
+    private final String[] names;
+
+    private final List<Supplier<VectorAccumulator>> accumulators;
+
+    private BatchAggregation(String[] names, List<Supplier<VectorAccumulator>> accumulators) {
+        this.names = names;
+        this.accumulators = accumulators;
+    }
+
+    /**
+     * 根据select创建批量聚合
+     *
+     * @param select   查询
+     * @param metadata 元数据
+     * @param schema   表结构
+     * @return 批量聚合, 不支持时返回null
+     */
+    public static BatchAggregation create(PlainSelect select, ReactorQLMetadata metadata, Schema schema) {
+        if (select.getGroupBy() != null
+                || select.getHaving() != null
+                || metadata.getSetting("emit_every").isPresent()) {
+            return null;
+        }
+        List<SelectItem> items = select.getSelectItems();
+        String[] names = new String[items.size()];
+        List<Supplier<VectorAccumulator>> accumulators = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            SelectItem item = items.get(i);
+            if (!(item instanceof SelectExpressionItem)
+                    || !(((SelectExpressionItem) item).getExpression() instanceof net.sf.jsqlparser.expression.Function)) {
+                return null;
+            }
+            SelectExpressionItem expressionItem = ((SelectExpressionItem) item);
+            Supplier<VectorAccumulator> accumulator = createAccumulator(((net.sf.jsqlparser.expression.Function) expressionItem.getExpression()), metadata, schema);
+            if (accumulator == null) {
+                return null;
+            }
+            names[i] = SqlUtils.getCleanStr(expressionItem.getAlias() == null
+                                                    ? expressionItem.getExpression().toString()
+                                                    : expressionItem.getAlias().getName());
+            accumulators.add(accumulator);
+        }
+        return new BatchAggregation(names, accumulators);
+    }
+
+    private static Supplier<VectorAccumulator> createAccumulator(net.sf.jsqlparser.expression.Function function, ReactorQLMetadata metadata, Schema schema) {
+        if (function.isDistinct()) {
+            return null;
+        }
+        String name = function.getName().toLowerCase();
+        ValueAggMapFeature feature = metadata.getFeature(FeatureId.ValueAggMap.of(name)).orElse(null);
+        if ("count".equals(name)) {
+            //count统计的是数据条数,与参数无关
+            return feature instanceof CountAggFeature ? CountAccumulator::new : null;
+        }
+        //只支持内置的聚合函数
+        if (!(feature instanceof MapAggFeature)
+                || function.isAllColumns()
+                || function.getParameters() == null
+                || function.getParameters().getExpressions().size() != 1) {
+            return null;
+        }
+        Expression column = function.getParameters().getExpressions().get(0);
+        int index = BatchPlan.indexOf(column, metadata, schema);
+        if (index < 0) {
+            return null;
+        }
+        DataType type = schema.getType(index);
+        if (type != DataType.LONG && type != DataType.DOUBLE) {
+            return null;
+        }
+        Function<ReactorQLRecord, ? extends Publisher<?>> mapper = ValueMapFeature.createMapperNow(column, metadata);
+        switch (name) {
+            case "sum":
+                return () -> new SumAccumulator(index, mapper, false);
+            case "avg":
+                return () -> new SumAccumulator(index, mapper, true);
+            case "max":
+                return () -> new MinMaxAccumulator(index, mapper, true);
+            case "min":
+                return () -> new MinMaxAccumulator(index, mapper, false);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 创建聚合状态,每次执行查询时创建新的状态
+     *
+     * @return 聚合状态
+     */
+    public State newState() {
+        VectorAccumulator[] state = new VectorAccumulator[names.length];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = accumulators.get(i).get();
+        }
+        return new State(state);
+    }
+
+    public class State {
+        private final VectorAccumulator[] accumulators;
+
+        private State(VectorAccumulator[] accumulators) {
+            this.accumulators = accumulators;
+        }
+
+        /**
+         * 按列累加一批数据中被选择的行
+         *
+         * @param batch     数据
+         * @param selection 选择标记
+         * @return 是否可以按列处理这批数据, 返回false时应该逐条累加
+         */
+        public boolean accumulate(ColumnBatch batch, boolean[] selection) {
+            for (VectorAccumulator accumulator : accumulators) {
+                if (!accumulator.isSupported(batch)) {
+                    return false;
+                }
+            }
+            for (VectorAccumulator accumulator : accumulators) {
+                accumulator.accumulate(batch, selection);
+            }
+            return true;
+        }
+
+        /**
+         * 逐条累加数据
+         *
+         * @param records 数据
+         * @return 累加完成信号
+         */
+        public Mono<Void> accumulate(Flux<ReactorQLRecord> records) {
+            return records
+                    .concatMap(record -> Flux
+                            .fromArray(accumulators)
+                            .concatMap(accumulator -> accumulator.accumulate(record)))
+                    .then();
+        }
+
+        /**
+         * 创建聚合结果
+         *
+         * @param context 上下文
+         * @return 聚合结果
+         */
+        public ReactorQLRecord toRecord(ReactorQLContext context) {
+            Map<String, Object> results = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                results.put(names[i], accumulators[i].snapshot());
+            }
+            return ReactorQLRecord
+                    .newRecord(null, new HashMap<>(), context)
+                    .putRecordToResult()
+                    .resultToRecord(null)
+                    .setResults(results);
+        }
+    }
+
+    abstract static class VectorAccumulator implements ValueAggMapFeature.Accumulator {
+
+        abstract boolean isSupported(ColumnBatch batch);
+
+        abstract void accumulate(ColumnBatch batch, boolean[] selection);
+    }
+
+    static class CountAccumulator extends VectorAccumulator {
+        private long count;
+
+        @Override
+        boolean isSupported(ColumnBatch batch) {
+            return true;
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch, boolean[] selection) {
+            for (boolean selected : selection) {
+                if (selected) {
+                    count++;
+                }
+            }
+        }
+
+        @Override
+        public Publisher<?> accumulate(ReactorQLRecord record) {
+            count++;
+            return Mono.empty();
+        }
+
+        @Override
+        public Object snapshot() {
+            return count;
+        }
+    }
+
+    abstract static class ColumnAccumulator extends VectorAccumulator {
+        final int index;
+
+        private final Function<ReactorQLRecord, ? extends Publisher<?>> mapper;
+
+        ColumnAccumulator(int index, Function<ReactorQLRecord, ? extends Publisher<?>> mapper) {
+            this.index = index;
+            this.mapper = mapper;
+        }
+
+        @Override
+        boolean isSupported(ColumnBatch batch) {
+            return batch.getVector(index) != null;
+        }
+
+        @Override
+        public Publisher<?> accumulate(ReactorQLRecord record) {
+            return Flux.from(mapper.apply(record)).doOnNext(this::add);
+        }
+
+        abstract void add(Object value);
+    }
+
+    //与内置的sum,avg一致,按double累加
+    static class SumAccumulator extends ColumnAccumulator {
+        private final boolean average;
+        private double sum;
+        private long count;
+
+        SumAccumulator(int index, Function<ReactorQLRecord, ? extends Publisher<?>> mapper, boolean average) {
+            super(index, mapper);
+            this.average = average;
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch, boolean[] selection) {
+            ColumnVector vector = batch.getVector(index);
+            double[] values = vector.getDoubles();
+            boolean[] present = vector.getPresent();
+            for (int i = 0; i < selection.length; i++) {
+                if (selection[i] && present[i]) {
+                    sum += values[i];
+                    count++;
+                }
+            }
+        }
+
+        @Override
+        void add(Object value) {
+            sum += CastUtils.castNumber(value).doubleValue();
+            count++;
+        }
+
+        @Override
+        public Object snapshot() {
+            if (average) {
+                return count == 0 ? 0D : sum / count;
+            }
+            return sum;
+        }
+    }
+
+    //与内置的max,min一致,结果为列原始类型的值,没有数据时为0D
+    static class MinMaxAccumulator extends ColumnAccumulator {
+        private final boolean max;
+        private Object value;
+
+        MinMaxAccumulator(int index, Function<ReactorQLRecord, ? extends Publisher<?>> mapper, boolean max) {
+            super(index, mapper);
+            this.max = max;
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch, boolean[] selection) {
+            ColumnVector vector = batch.getVector(index);
+            boolean[] present = vector.getPresent();
+            int found = -1;
+            if (vector.getType() == DataType.LONG) {
+                long[] values = vector.getLongs();
+                for (int i = 0; i < selection.length; i++) {
+                    if (selection[i] && present[i] && (found < 0 || (max ? values[i] > values[found] : values[i] < values[found]))) {
+                        found = i;
+                    }
+                }
+                if (found >= 0) {
+                    add(values[found]);
+                }
+                return;
+            }
+            double[] values = vector.getDoubles();
+            for (int i = 0; i < selection.length; i++) {
+                if (selection[i] && present[i] && (found < 0 || (max ? values[i] > values[found] : values[i] < values[found]))) {
+                    found = i;
+                }
+            }
+            if (found >= 0) {
+                add(values[found]);
+            }
+        }
+
+        @Override
+        void add(Object value) {
+            if (this.value == null) {
+                this.value = value;
+                return;
+            }
+            int compare = CompareUtils.compare(value, this.value);
+            if (max ? compare > 0 : compare < 0) {
+                this.value = value;
+            }
+        }
+
+        @Override
+        public Object snapshot() {
+            return value == null ? 0D : value;
+        }
+    }
+}
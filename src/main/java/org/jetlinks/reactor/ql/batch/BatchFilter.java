@@ -0,0 +1,157 @@
+package org.jetlinks.reactor.ql.batch;
+
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.schema.Column;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.supports.filter.BinaryFilterFeature;
+
+import java.util.Date;
+
+/**
+ * 按列批量计算的过滤条件.
+ * <p>
+ * 支持and,or以及声明了类型的列与常量之间的比较(=,!=,&gt;,&gt;=,&lt;,&lt;=),比较由{@link BinaryFilterFeature}按数组批量执行.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public interface BatchFilter {
+
+    /**
+     * 过滤一批数据,不满足条件的行的选择标记将被设置为false
+     *
+     * @param batch     数据
+     * @param selection 选择标记
+     * @return 是否可以按列处理这批数据, 返回false时应该逐行处理
+     */
+    boolean filter(ColumnBatch batch, boolean[] selection);
+
+    /**
+     * 根据where条件创建批量过滤条件
+     *
+     * @param expression 条件
+     * @param metadata   元数据
+     * @param schema     表结构
+     * @return 过滤条件, 条件不支持按列计算时返回null
+     */
+    static BatchFilter create(Expression expression, ReactorQLMetadata metadata, Schema schema) {
+        if (expression instanceof Parenthesis) {
+            return create(((Parenthesis) expression).getExpression(), metadata, schema);
+        }
+        if (expression instanceof AndExpression) {
+            BatchFilter left = create(((AndExpression) expression).getLeftExpression(), metadata, schema);
+            BatchFilter right = create(((AndExpression) expression).getRightExpression(), metadata, schema);
+            if (left == null || right == null) {
+                return null;
+            }
+            return (batch, selection) -> left.filter(batch, selection) && right.filter(batch, selection);
+        }
+        if (expression instanceof OrExpression) {
+            BatchFilter left = create(((OrExpression) expression).getLeftExpression(), metadata, schema);
+            BatchFilter right = create(((OrExpression) expression).getRightExpression(), metadata, schema);
+            if (left == null || right == null) {
+                return null;
+            }
+            return (batch, selection) -> {
+                boolean[] leftSelection = selection.clone();
+                boolean[] rightSelection = selection.clone();
+                if (!left.filter(batch, leftSelection) || !right.filter(batch, rightSelection)) {
+                    return false;
+                }
+                for (int i = 0; i < selection.length; i++) {
+                    selection[i] = leftSelection[i] | rightSelection[i];
+                }
+                return true;
+            };
+        }
+        if (expression instanceof BinaryExpression) {
+            return createCompare(((BinaryExpression) expression), metadata, schema);
+        }
+        return null;
+    }
+
+    static BatchFilter createCompare(BinaryExpression expression, ReactorQLMetadata metadata, Schema schema) {
+        BinaryFilterFeature feature = metadata
+                .getFeature(FeatureId.Filter.of(expression.getStringExpression()))
+                .filter(BinaryFilterFeature.class::isInstance)
+                .map(BinaryFilterFeature.class::cast)
+                .orElse(null);
+        if (feature == null) {
+            return null;
+        }
+        Expression left = expression.getLeftExpression();
+        Expression right = expression.getRightExpression();
+        boolean constantLeft = !(left instanceof Column);
+        Expression columnExpr = constantLeft ? right : left;
+        Object constant = BinaryFilterFeature.getConstant(constantLeft ? left : right);
+        if (constant == null) {
+            return null;
+        }
+        int index = BatchPlan.indexOf(columnExpr, metadata, schema);
+        if (index < 0) {
+            return null;
+        }
+        DataType type = schema.getType(index);
+        Object value = type.convertConstant(constant);
+        switch (type) {
+            case LONG:
+                if (value instanceof Long || value instanceof Integer) {
+                    long longValue = ((Number) value).longValue();
+                    return (batch, selection) -> {
+                        ColumnVector vector = batch.getVector(index);
+                        if (vector == null) {
+                            return false;
+                        }
+                        feature.testVector(vector.getLongs(), vector.getPresent(), longValue, constantLeft, selection);
+                        return true;
+                    };
+                }
+                //常量为小数时按double比较
+            case DOUBLE:
+                if (!(value instanceof Number)) {
+                    return null;
+                }
+                double doubleValue = ((Number) value).doubleValue();
+                return (batch, selection) -> {
+                    ColumnVector vector = batch.getVector(index);
+                    if (vector == null) {
+                        return false;
+                    }
+                    feature.testVector(vector.getDoubles(), vector.getPresent(), doubleValue, constantLeft, selection);
+                    return true;
+                };
+            case DATE:
+                long millis = ((Date) value).getTime();
+                return (batch, selection) -> {
+                    ColumnVector vector = batch.getVector(index);
+                    if (vector == null) {
+                        return false;
+                    }
+                    feature.testEpochMillisVector(vector.getLongs(), vector.getPresent(), millis, constantLeft, selection);
+                    return true;
+                };
+            case STRING:
+                if (!(value instanceof String)) {
+                    return null;
+                }
+                String string = ((String) value);
+                return (batch, selection) -> {
+                    ColumnVector vector = batch.getVector(index);
+                    if (vector == null) {
+                        return false;
+                    }
+                    feature.testVector(vector.getStrings(), vector.getPresent(), string, constantLeft, selection);
+                    return true;
+                };
+            default:
+                return null;
+        }
+    }
+}
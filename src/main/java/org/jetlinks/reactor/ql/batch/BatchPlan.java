@@ -0,0 +1,249 @@
+package org.jetlinks.reactor.ql.batch;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.jetlinks.reactor.ql.ReactorQLContext;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.metrics.OperatorMetrics;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 列式批处理计划.
+ * <p>
+ * from的表声明了表结构,没有关联并且where条件可以按列计算({@link BatchFilter})时,
+ * 每批数据按列进行过滤,只有满足条件的行才会转换为{@link ReactorQLRecord}进入后续的操作(分组,聚合,select等).
+ * 无法按列处理的批次(如存在无法转换类型的值)将逐行使用where条件过滤.
+ * <p>
+ * select中只有当前表的列({@link BatchProjection})或者只有不分组的count,sum,avg,min,max({@link BatchAggregation})时,
+ * select也按批次处理,此时输出的是已经转换好的结果.
+ * <p>
+ * 启用指标时按批次统计from,where,columnMapper的输入输出数量,按列处理的操作不统计单条数据的耗时.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class BatchPlan {
+
+    private final Schema schema;
+
+    private final String table;
+
+    private final String alias;
+
+    private final BatchFilter filter;
+
+    private final BatchProjection projection;
+
+    private final BatchAggregation aggregation;
+
+    private BatchPlan(Schema schema, String table, String alias, BatchFilter filter,
+                      BatchProjection projection, BatchAggregation aggregation) {
+        this.schema = schema;
+        this.table = table;
+        this.alias = alias;
+        this.filter = filter;
+        this.projection = projection;
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * 根据元数据创建批处理计划
+     *
+     * @param metadata 元数据
+     * @return 批处理计划, 不支持批处理时返回null
+     */
+    public static BatchPlan create(ReactorQLMetadata metadata) {
+        PlainSelect select = metadata.getSql();
+        if (!(select.getFromItem() instanceof Table) || (select.getJoins() != null && !select.getJoins().isEmpty())) {
+            return null;
+        }
+        Table table = ((Table) select.getFromItem());
+        Schema schema = Schema.lookup(metadata, table).orElse(null);
+        if (schema == null) {
+            return null;
+        }
+        Expression where = select.getWhere();
+        BatchFilter filter = null;
+        if (where != null && (filter = BatchFilter.create(where, metadata, schema)) == null) {
+            return null;
+        }
+        String alias = table.getAlias() != null ? table.getAlias().getName() : table.getName();
+        BatchAggregation aggregation = BatchAggregation.create(select, metadata, schema);
+        BatchProjection projection = aggregation == null ? BatchProjection.create(select, metadata, schema) : null;
+        return new BatchPlan(schema, table.getName(), alias, filter, projection, aggregation);
+    }
+
+    /**
+     * 获取表中的列的位置,只有一个表时,列只能是当前表的列
+     *
+     * @param expression 表达式
+     * @param metadata   元数据
+     * @param schema     表结构
+     * @return 列的位置, 不是当前表的列时返回-1
+     */
+    static int indexOf(Expression expression, ReactorQLMetadata metadata, Schema schema) {
+        if (!(expression instanceof Column)) {
+            return -1;
+        }
+        Column column = ((Column) expression);
+        if (column.getTable() != null && column.getTable().getName() != null
+                && !Schema.lookup(metadata, column.getTable().getName()).filter(schema::equals).isPresent()) {
+            return -1;
+        }
+        return schema.indexOf(SqlUtils.getCleanStr(column.getColumnName()));
+    }
+
+    /**
+     * @return where条件是否按列计算
+     */
+    public boolean isVectorized() {
+        return filter != null;
+    }
+
+    /**
+     * @return select是否按列转换
+     */
+    public boolean isProjected() {
+        return projection != null;
+    }
+
+    /**
+     * @return select中的聚合是否按列计算
+     */
+    public boolean isAggregated() {
+        return aggregation != null;
+    }
+
+    /**
+     * @return 输出的记录是否已经完成select转换, 为true时后续不需要再执行select转换
+     */
+    public boolean isMapped() {
+        return projection != null || aggregation != null;
+    }
+
+    /**
+     * @return 数据源的表名
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * 执行批处理,{@link #isMapped()}为true时输出select转换后的记录,否则输出满足where条件的记录
+     *
+     * @param context   上下文
+     * @param batches   批量数据
+     * @param rowWhere  逐行处理的where条件
+     * @param rowMapper 逐行处理的select转换,无法按列转换的批次使用
+     * @param metrics   指标
+     * @return 记录
+     */
+    public Flux<ReactorQLRecord> apply(ReactorQLContext context,
+                                       Flux<? extends List<?>> batches,
+                                       Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> rowWhere,
+                                       Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> rowMapper,
+                                       ReactorQLMetrics metrics) {
+        OperatorMetrics fromMetrics = metrics.isEnabled() ? metrics.operator("from") : null;
+        OperatorMetrics whereMetrics = metrics.isEnabled() && filter != null ? metrics.operator("where") : null;
+        OperatorMetrics mapperMetrics = metrics.isEnabled() && isMapped() ? metrics.operator("columnMapper") : null;
+        return Flux.defer(() -> {
+            //每次执行时使用新的聚合状态
+            BatchAggregation.State state = aggregation == null ? null : aggregation.newState();
+            Flux<ReactorQLRecord> records = batches
+                    .concatMap(source -> {
+                        ColumnBatch batch = new ColumnBatch(schema, source);
+                        record(fromMetrics, batch.size(), batch.size());
+                        boolean[] selection = new boolean[batch.size()];
+                        Arrays.fill(selection, true);
+                        if (filter == null || filter.filter(batch, selection)) {
+                            record(whereMetrics, batch.size(), count(selection));
+                            return mapSelected(context, batch, selection, rowMapper, state, mapperMetrics);
+                        }
+                        return mapRows(rowWhere.apply(toRecords(context, batch.getRows())), rowMapper, state, mapperMetrics);
+                    });
+            if (state == null) {
+                return records;
+            }
+            return records
+                    .then(Mono.fromSupplier(() -> {
+                        record(mapperMetrics, 0, 1);
+                        return state.toRecord(context);
+                    }))
+                    .flux();
+        });
+    }
+
+    private Flux<ReactorQLRecord> mapSelected(ReactorQLContext context,
+                                              ColumnBatch batch,
+                                              boolean[] selection,
+                                              Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> rowMapper,
+                                              BatchAggregation.State state,
+                                              OperatorMetrics mapperMetrics) {
+        if (state != null && state.accumulate(batch, selection)) {
+            record(mapperMetrics, count(selection), 0);
+            return Flux.empty();
+        }
+        if (projection != null && batch.isTyped()) {
+            List<Object> rows = batch.select(selection);
+            record(mapperMetrics, rows.size(), rows.size());
+            return Flux.fromIterable(rows).map(row -> projection.project(toRecord(context, row)));
+        }
+        return mapRows(toRecords(context, batch.select(selection)), rowMapper, state, mapperMetrics);
+    }
+
+    private Flux<ReactorQLRecord> mapRows(Flux<ReactorQLRecord> records,
+                                          Function<Flux<ReactorQLRecord>, Flux<ReactorQLRecord>> rowMapper,
+                                          BatchAggregation.State state,
+                                          OperatorMetrics mapperMetrics) {
+        if (state != null) {
+            return state
+                    .accumulate(records.doOnNext(record -> record(mapperMetrics, 1, 0)))
+                    .thenMany(Flux.empty());
+        }
+        if (projection != null) {
+            return rowMapper.apply(records);
+        }
+        return records;
+    }
+
+    private Flux<ReactorQLRecord> toRecords(ReactorQLContext context, List<Object> rows) {
+        return Flux.fromIterable(rows).map(row -> toRecord(context, row));
+    }
+
+    private ReactorQLRecord toRecord(ReactorQLContext context, Object row) {
+        return ReactorQLRecord.newRecord(alias, row, context);
+    }
+
+    private static int count(boolean[] selection) {
+        int count = 0;
+        for (boolean selected : selection) {
+            if (selected) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void record(OperatorMetrics metrics, int in, int out) {
+        if (metrics == null) {
+            return;
+        }
+        for (int i = 0; i < in; i++) {
+            metrics.recordIn();
+        }
+        for (int i = 0; i < out; i++) {
+            metrics.recordOut();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.jetlinks.reactor.ql.batch;
+
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.schema.TypedRow;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
+
+import java.util.List;
+
+/**
+ * 按列批量转换结果,select中只有当前表声明了类型的列时(如: select deviceId,temp t from test),
+ * 直接按列的位置从{@link TypedRow}中读取值设置到结果中,不再逐条创建转换函数的{@link reactor.core.publisher.Mono}.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class BatchProjection {
+
+    private final String[] names;
+
+    private final int[] columns;
+
+    private BatchProjection(String[] names, int[] columns) {
+        this.names = names;
+        this.columns = columns;
+    }
+
+    /**
+     * 根据select创建批量转换
+     *
+     * @param select   查询
+     * @param metadata 元数据
+     * @param schema   表结构
+     * @return 批量转换, 不支持时返回null
+     */
+    public static BatchProjection create(PlainSelect select, ReactorQLMetadata metadata, Schema schema) {
+        if (select.getGroupBy() != null) {
+            return null;
+        }
+        List<SelectItem> items = select.getSelectItems();
+        String[] names = new String[items.size()];
+        int[] columns = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            SelectItem item = items.get(i);
+            if (!(item instanceof SelectExpressionItem)) {
+                return null;
+            }
+            SelectExpressionItem expressionItem = ((SelectExpressionItem) item);
+            int index = BatchPlan.indexOf(expressionItem.getExpression(), metadata, schema);
+            if (index < 0) {
+                return null;
+            }
+            names[i] = SqlUtils.getCleanStr(expressionItem.getAlias() == null
+                                                    ? expressionItem.getExpression().toString()
+                                                    : expressionItem.getAlias().getName());
+            columns[i] = index;
+        }
+        return new BatchProjection(names, columns);
+    }
+
+    /**
+     * 转换结果,记录的数据必须为当前表结构的{@link TypedRow}
+     *
+     * @param record 记录
+     * @return 记录
+     * @see ColumnBatch#isTyped()
+     */
+    public ReactorQLRecord project(ReactorQLRecord record) {
+        TypedRow row = ((TypedRow) record.getRecord());
+        for (int i = 0; i < names.length; i++) {
+            record.setResult(names[i], row.get(columns[i]));
+        }
+        return record;
+    }
+}
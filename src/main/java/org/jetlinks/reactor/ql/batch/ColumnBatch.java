@@ -0,0 +1,90 @@
+package org.jetlinks.reactor.ql.batch;
+
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.schema.TypedRow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列式的一批数据,行数据按表结构转换为{@link TypedRow},使用到的列按需提取为{@link ColumnVector}.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class ColumnBatch {
+
+    private final Schema schema;
+
+    private final List<Object> rows;
+
+    private final ColumnVector[] vectors;
+
+    //是否所有行都是当前表结构的行数据
+    private final boolean typed;
+
+    public ColumnBatch(Schema schema, List<?> source) {
+        this.schema = schema;
+        this.rows = new ArrayList<>(source.size());
+        this.vectors = new ColumnVector[schema.size()];
+        boolean typed = true;
+        for (Object row : source) {
+            Object converted = schema.toRow(row);
+            typed &= converted instanceof TypedRow;
+            rows.add(converted);
+        }
+        this.typed = typed;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public List<Object> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return 是否所有行都是当前表结构的行数据({@link TypedRow})
+     */
+    public boolean isTyped() {
+        return typed;
+    }
+
+    /**
+     * 获取列的值,无法按列处理时返回null
+     *
+     * @param column 列的位置
+     * @return 列的值
+     */
+    public ColumnVector getVector(int column) {
+        if (!typed) {
+            return null;
+        }
+        ColumnVector vector = vectors[column];
+        if (vector == null) {
+            vector = vectors[column] = ColumnVector.create(rows, column, schema.getType(column));
+        }
+        return vector;
+    }
+
+    /**
+     * 获取选择标记为true的行
+     *
+     * @param selection 选择标记
+     * @return 行数据
+     */
+    public List<Object> select(boolean[] selection) {
+        List<Object> selected = new ArrayList<>();
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i]) {
+                selected.add(rows.get(i));
+            }
+        }
+        return selected;
+    }
+}
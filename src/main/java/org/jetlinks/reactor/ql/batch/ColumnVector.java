@@ -0,0 +1,123 @@
+package org.jetlinks.reactor.ql.batch;
+
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.TypedRow;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 一批数据中一列的值,按类型保存在数组中.
+ * <ul>
+ *     <li>LONG: longs,doubles</li>
+ *     <li>DOUBLE: doubles</li>
+ *     <li>DATE: longs(时间戳)</li>
+ *     <li>STRING: strings</li>
+ * </ul>
+ * present[i]为false表示第i行没有值.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class ColumnVector {
+
+    final DataType type;
+
+    final boolean[] present;
+
+    long[] longs;
+
+    double[] doubles;
+
+    String[] strings;
+
+    private ColumnVector(DataType type, int size) {
+        this.type = type;
+        this.present = new boolean[size];
+    }
+
+    public DataType getType() {
+        return type;
+    }
+
+    public boolean[] getPresent() {
+        return present;
+    }
+
+    public long[] getLongs() {
+        return longs;
+    }
+
+    public double[] getDoubles() {
+        return doubles;
+    }
+
+    public String[] getStrings() {
+        return strings;
+    }
+
+    /**
+     * 从行数据中提取列的值,存在无法按类型保存的值(如:无法转换类型时保留的原始值)时返回null
+     *
+     * @param rows   行数据
+     * @param column 列的位置
+     * @param type   列的类型
+     * @return 列的值
+     */
+    static ColumnVector create(List<Object> rows, int column, DataType type) {
+        int size = rows.size();
+        ColumnVector vector = new ColumnVector(type, size);
+        switch (type) {
+            case LONG:
+                vector.longs = new long[size];
+                vector.doubles = new double[size];
+                break;
+            case DOUBLE:
+                vector.doubles = new double[size];
+                break;
+            case DATE:
+                vector.longs = new long[size];
+                break;
+            case STRING:
+                vector.strings = new String[size];
+                break;
+            default:
+                return null;
+        }
+        for (int i = 0; i < size; i++) {
+            Object value = ((TypedRow) rows.get(i)).get(column);
+            if (value == null) {
+                continue;
+            }
+            switch (type) {
+                case LONG:
+                    if (!(value instanceof Long)) {
+                        return null;
+                    }
+                    vector.longs[i] = (Long) value;
+                    vector.doubles[i] = (Long) value;
+                    break;
+                case DOUBLE:
+                    if (!(value instanceof Double)) {
+                        return null;
+                    }
+                    vector.doubles[i] = (Double) value;
+                    break;
+                case DATE:
+                    if (!(value instanceof Date)) {
+                        return null;
+                    }
+                    vector.longs[i] = ((Date) value).getTime();
+                    break;
+                default:
+                    if (!(value instanceof String)) {
+                        return null;
+                    }
+                    vector.strings[i] = (String) value;
+                    break;
+            }
+            vector.present[i] = true;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,195 @@
+package org.jetlinks.reactor.ql.explain;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 执行计划节点,操作节点(from,join,where,groupBy,columnMapper,orderBy,distinct,offset,limit)通过{@link PlanNode#getChildren()}
+ * 引用上游操作,操作中使用的表达式通过{@link PlanNode#getExpressions()}描述.
+ * <pre>
+ *  limit [take 10]
+ *    columnMapper [map]
+ *      - deviceId (value-map:property)
+ *      where [filterWhen]
+ *        - temp > 10 (filter:>)
+ *        from [table] (from:table)
+ * </pre>
+ *
+ * @author zhouhao
+ * @see org.jetlinks.reactor.ql.ReactorQL#explain()
+ * @since 1.0.8
+ */
+@Getter
+@Setter
+public class PlanNode {
+
+    /**
+     * 操作名称,如: where,或者表达式类型,如: function
+     */
+    private String name;
+
+    /**
+     * SQL片段
+     */
+    private String sql;
+
+    /**
+     * 执行策略,如: window,group,nested-loop
+     */
+    private String strategy;
+
+    /**
+     * 使用的特性ID
+     *
+     * @see org.jetlinks.reactor.ql.feature.FeatureId
+     */
+    private String feature;
+
+    /**
+     * 是否为表达式节点,否则为操作节点
+     */
+    private boolean expression;
+
+    /**
+     * 是否为异步执行,如: 子查询需要订阅数据源
+     */
+    private boolean async;
+
+    /**
+     * 警告信息,如: 关联子查询
+     */
+    private List<String> warnings = new ArrayList<>();
+
+    /**
+     * 上游操作或者子表达式
+     */
+    private List<PlanNode> children = new ArrayList<>();
+
+    /**
+     * 操作中使用的表达式
+     */
+    private List<PlanNode> expressions = new ArrayList<>();
+
+    /**
+     * 子查询的指标范围,不为null时此节点及其上游操作为子查询中的操作,指标名称以此为前缀
+     *
+     * @see org.jetlinks.reactor.ql.metrics.ReactorQLMetrics#nested(String)
+     */
+    private String scope;
+
+    /* =====以下为分析模式下的实际执行信息===== */
+
+    /**
+     * 输入数量
+     */
+    private Long rowsIn;
+
+    /**
+     * 输出数量
+     */
+    private Long rowsOut;
+
+    /**
+     * 选择率: 输出数量/输入数量
+     */
+    private Double selectivity;
+
+    /**
+     * 耗时(纳秒)
+     */
+    private Long timeNanos;
+
+    public PlanNode() {
+    }
+
+    public PlanNode(String name, String sql) {
+        this.name = name;
+        this.sql = sql;
+    }
+
+    public PlanNode addChild(PlanNode child) {
+        if (child != null) {
+            children.add(child);
+        }
+        return this;
+    }
+
+    public PlanNode addExpression(PlanNode expression) {
+        if (expression != null) {
+            expressions.add(expression);
+        }
+        return this;
+    }
+
+    public PlanNode addWarning(String warning) {
+        warnings.add(warning);
+        return this;
+    }
+
+    /**
+     * @return 节点及其子节点, 表达式中的警告信息
+     */
+    public List<String> getAllWarnings() {
+        List<String> all = new ArrayList<>(warnings);
+        for (PlanNode expression : expressions) {
+            all.addAll(expression.getAllWarnings());
+        }
+        for (PlanNode child : children) {
+            all.addAll(child.getAllWarnings());
+        }
+        return all;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        print(builder, 0);
+        return builder.toString();
+    }
+
+    private void print(StringBuilder builder, int level) {
+        for (int i = 0; i < level; i++) {
+            builder.append("  ");
+        }
+        if (expression) {
+            builder.append("- ").append(sql);
+            if (feature != null) {
+                builder.append(" (").append(feature).append(")");
+            }
+        } else {
+            builder.append(name);
+            if (strategy != null) {
+                builder.append(" [").append(strategy).append("]");
+            }
+            if (feature != null) {
+                builder.append(" (").append(feature).append(")");
+            }
+        }
+        if (async) {
+            builder.append(" async");
+        }
+        if (rowsIn != null) {
+            builder.append(" in=").append(rowsIn)
+                   .append(" out=").append(rowsOut);
+            if (selectivity != null) {
+                builder.append(" selectivity=").append(String.format("%.4f", selectivity));
+            }
+            if (timeNanos != null) {
+                builder.append(" time=").append(String.format("%.3fms", timeNanos / 1000_000D));
+            }
+        }
+        for (String warning : warnings) {
+            builder.append(" !").append(warning);
+        }
+        builder.append("\n");
+        for (PlanNode node : expressions) {
+            node.print(builder, level + 1);
+        }
+        for (PlanNode node : children) {
+            node.print(builder, level + 1);
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package org.jetlinks.reactor.ql.explain;
+
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.*;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.*;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.batch.BatchPlan;
+import org.jetlinks.reactor.ql.feature.Feature;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.metrics.SimpleReactorQLMetricsRegistry;
+import org.jetlinks.reactor.ql.supports.map.CaseMapFeature;
+import org.jetlinks.reactor.ql.supports.map.SelectFeature;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 根据SQL以及特性生成执行计划,执行计划的结构与{@link org.jetlinks.reactor.ql.DefaultReactorQL}中构造的操作一致.
+ *
+ * @author zhouhao
+ * @see PlanNode
+ * @since 1.0.8
+ */
+public class QueryPlanExplainer {
+
+    //窗口类的分组函数,其他分组函数按值分组
+    private static final Set<String> windowGroupFunctions = new HashSet<>(Arrays.asList("interval", "_window", "take"));
+
+    //通过时间戳计算区间的分组函数
+    private static final Set<String> timeBucketGroupFunctions = new HashSet<>(Arrays.asList("time_bucket"));
+
+    public static PlanNode explain(ReactorQLMetadata metadata) {
+        return explain(metadata, BatchPlan.create(metadata));
+    }
+
+    /**
+     * 根据已经构造的批处理计划生成执行计划,批处理只在数据源支持批量获取数据时生效
+     *
+     * @param metadata  元数据
+     * @param batchPlan 批处理计划,为null时不使用批处理
+     * @return 执行计划
+     * @see org.jetlinks.reactor.ql.ReactorQLContext#isBatchDataSource()
+     */
+    public static PlanNode explain(ReactorQLMetadata metadata, BatchPlan batchPlan) {
+        return explain(metadata.getSql(), metadata, batchPlan);
+    }
+
+    public static PlanNode explain(PlainSelect select, ReactorQLMetadata metadata) {
+        return explain(select, metadata, null);
+    }
+
+    private static PlanNode explain(PlainSelect select, ReactorQLMetadata metadata, BatchPlan batchPlan) {
+        PlanNode node = explainFrom(select.getFromItem(), metadata);
+        if (batchPlan != null) {
+            node.setStrategy("table(batch)");
+        }
+
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                node = explainJoin(join, node, metadata);
+            }
+        }
+        Expression where = select.getWhere();
+        if (where != null) {
+            //批处理时按列过滤,无法按列处理的批次逐行过滤
+            node = operator("where", where.toString(), batchPlan != null && batchPlan.isVectorized() ? "vectorized" : "filterWhen")
+                    .addExpression(explainExpression(where, metadata, true))
+                    .addChild(node);
+        }
+        if (select.getGroupBy() != null) {
+            node = explainGroupBy(select, node, metadata);
+        }
+        node = explainColumnMapper(select, node, metadata);
+        if (batchPlan != null && batchPlan.isAggregated()) {
+            node.setStrategy("aggregate(vectorized)");
+        } else if (batchPlan != null && batchPlan.isProjected()) {
+            node.setStrategy("vectorized");
+        }
+
+        List<OrderByElement> orders = select.getOrderByElements();
+        if (orders != null && !orders.isEmpty()) {
+            PlanNode orderBy = operator("orderBy", orders
+                    .stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",")), "sort")
+                    .addWarning("排序会缓存所有数据直到流结束")
+                    .addChild(node);
+            for (OrderByElement order : orders) {
+                orderBy.addExpression(explainExpression(order.getExpression(), metadata, false));
+            }
+            node = orderBy;
+        }
+        if (select.getDistinct() != null) {
+            String distinctBy = metadata.getSetting("distinctBy").map(String::valueOf).orElse("default");
+            PlanNode distinct = operator("distinct", select.getDistinct().toString(), distinctBy)
+                    .addChild(node);
+            distinct.setFeature(resolve(metadata, FeatureId.Distinct.of(distinctBy)));
+            node = distinct;
+        }
+        Limit limit = select.getLimit();
+        if (limit != null) {
+            if (limit.getOffset() instanceof LongValue) {
+                node = operator("offset", limit.getOffset().toString(), "skip").addChild(node);
+            }
+            if (limit.getRowCount() instanceof LongValue) {
+                node = operator("limit", limit.getRowCount().toString(), "take").addChild(node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 将运行时指标填充到执行计划中
+     *
+     * @param plan     执行计划
+     * @param registry 指标
+     * @param query    查询标识
+     * @return 执行计划
+     * @see ReactorQLMetrics#create(org.jetlinks.reactor.ql.metrics.ReactorQLMetricsRegistry, String)
+     */
+    public static PlanNode analyze(PlanNode plan, SimpleReactorQLMetricsRegistry registry, String query) {
+        analyze(plan, registry, query, "");
+        return plan;
+    }
+
+    private static void analyze(PlanNode node, SimpleReactorQLMetricsRegistry registry, String query, String prefix) {
+        //子查询以及关联表的操作使用子查询的SQL作为前缀统计
+        if (node.getScope() != null) {
+            prefix = prefix + node.getScope() + "/";
+        }
+        if (!node.isExpression()) {
+            String name = prefix + node.getName();
+            long in = registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, query, name);
+            long out = registry.getOperatorCount(ReactorQLMetrics.METRIC_OUT, query, name);
+            node.setRowsIn(in);
+            node.setRowsOut(out);
+            node.setSelectivity(in == 0 ? null : (double) out / in);
+            node.setTimeNanos(registry.getOperatorLatency(query, name).getSum());
+        }
+        //表达式中可能包含子查询
+        for (PlanNode expression : node.getExpressions()) {
+            analyze(expression, registry, query, prefix);
+        }
+        for (PlanNode child : node.getChildren()) {
+            analyze(child, registry, query, prefix);
+        }
+    }
+
+    //子查询的计划,与执行时子查询的指标范围一致
+    static PlanNode explainNested(PlainSelect select, ReactorQLMetadata metadata) {
+        PlanNode node = explain(select, metadata);
+        node.setScope(select.toString());
+        return node;
+    }
+
+    static PlanNode operator(String name, String sql, String strategy) {
+        PlanNode node = new PlanNode(name, sql);
+        node.setStrategy(strategy);
+        return node;
+    }
+
+    static PlanNode explainFrom(FromItem from, ReactorQLMetadata metadata) {
+        if (from == null) {
+            return operator("from", null, "datasource");
+        }
+        PlanNode node = operator("from", from.toString(), null);
+        if (from instanceof ParenthesisFromItem) {
+            return explainFrom(((ParenthesisFromItem) from).getFromItem(), metadata);
+        }
+        if (from instanceof Table) {
+            node.setStrategy("table");
+            node.setFeature(resolve(metadata, FeatureId.From.table));
+        } else if (from instanceof SubSelect) {
+            node.setStrategy("sub-select");
+            node.setFeature(resolve(metadata, FeatureId.From.subSelect));
+            SelectBody body = ((SubSelect) from).getSelectBody();
+            if (body instanceof PlainSelect) {
+                node.addChild(explainNested(((PlainSelect) body), metadata));
+            } else {
+                node.setStrategy(body.getClass().getSimpleName());
+            }
+        } else if (from instanceof ValuesList) {
+            node.setStrategy("values");
+            node.setFeature(resolve(metadata, FeatureId.From.values));
+        } else if (from instanceof TableFunction) {
+            net.sf.jsqlparser.expression.Function function = ((TableFunction) from).getFunction();
+            node.setStrategy("function");
+            node.setFeature(resolve(metadata, FeatureId.From.of(function.getName())));
+            if (function.getParameters() != null) {
+                for (Expression expression : function.getParameters().getExpressions()) {
+                    node.addExpression(explainExpression(expression, metadata, false));
+                }
+            }
+        }
+        if (node.getFeature() == null) {
+            node.addWarning("不支持的数据源");
+        }
+        return node;
+    }
+
+    static PlanNode explainJoin(Join join, PlanNode left, ReactorQLMetadata metadata) {
+        String type = join.isLeft() ? "left" : join.isRight() ? "right" : "inner";
+        PlanNode node = operator("join", join.toString(), type + " nested-loop");
+        node.addChild(left);
+        FromItem right = join.getRightItem();
+        if (right instanceof SubSelect && ((SubSelect) right).getSelectBody() instanceof PlainSelect) {
+            node.addChild(explainNested(((PlainSelect) ((SubSelect) right).getSelectBody()), metadata));
+            node.addWarning("每条数据都会执行一次关联子查询");
+        } else if (right instanceof Table) {
+            PlanNode table = operator("from", right.toString(), "table");
+            table.setScope(right.toString());
+            node.addChild(table);
+            node.addWarning("每条数据都会重新订阅关联表的数据源");
+        } else {
+            node.addWarning("不支持的表关联");
+        }
+        node.setAsync(true);
+        if (join.getOnExpression() != null) {
+            node.addExpression(explainExpression(join.getOnExpression(), metadata, true));
+        }
+        return node;
+    }
+
+    static PlanNode explainGroupBy(PlainSelect select, PlanNode input, ReactorQLMetadata metadata) {
+        List<Expression> expressions = select.getGroupBy().getGroupByExpressions();
+        PlanNode node = operator("groupBy", expressions
+                .stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")), null);
+        StringBuilder strategy = new StringBuilder();
+        for (Expression expression : expressions) {
+            PlanNode exprNode = new PlanNode("group", expression.toString());
+            exprNode.setExpression(true);
+            String groupStrategy = "group";
+            if (expression instanceof net.sf.jsqlparser.expression.Function) {
+                String name = ((net.sf.jsqlparser.expression.Function) expression).getName();
+                exprNode.setFeature(resolve(metadata, FeatureId.GroupBy.of(name)));
+                if (windowGroupFunctions.contains(name.toLowerCase())) {
+                    groupStrategy = "window";
+                } else if (timeBucketGroupFunctions.contains(name.toLowerCase())) {
+                    groupStrategy = "time-bucket";
+                }
+            } else if (expression instanceof Column) {
+                exprNode.setFeature(resolve(metadata, FeatureId.GroupBy.property));
+            } else if (expression instanceof BinaryExpression) {
+                exprNode.setFeature(resolve(metadata, FeatureId.GroupBy.of(((BinaryExpression) expression).getStringExpression())));
+            }
+            if (exprNode.getFeature() == null) {
+                exprNode.addWarning("不支持的分组表达式");
+            }
+            exprNode.setStrategy(groupStrategy);
+            if (strategy.length() > 0) {
+                strategy.append(",");
+            }
+            strategy.append(groupStrategy);
+            node.addExpression(exprNode);
+        }
+        node.setStrategy(strategy.toString());
+        if (select.getHaving() != null) {
+            PlanNode having = explainExpression(select.getHaving(), metadata, true);
+            having.setName("having");
+            node.addExpression(having);
+        }
+        return node.addChild(input);
+    }
+
+    static PlanNode explainColumnMapper(PlainSelect select, PlanNode input, ReactorQLMetadata metadata) {
+        PlanNode node = new PlanNode("columnMapper", select
+                .getSelectItems()
+                .stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")));
+        int aggSize = 0;
+        for (SelectItem selectItem : select.getSelectItems()) {
+            if (selectItem instanceof SelectExpressionItem) {
+                Expression expression = ((SelectExpressionItem) selectItem).getExpression();
+                PlanNode exprNode = null;
+                if (expression instanceof net.sf.jsqlparser.expression.Function) {
+                    FeatureId<ValueAggMapFeature> aggId = FeatureId.ValueAggMap.of(((net.sf.jsqlparser.expression.Function) expression).getName());
+                    if (metadata.getFeature(aggId).isPresent()) {
+                        aggSize++;
+                        exprNode = new PlanNode("aggregate", expression.toString());
+                        exprNode.setExpression(true);
+                        exprNode.setFeature(aggId.getId());
+                        explainParameters(((net.sf.jsqlparser.expression.Function) expression), exprNode, metadata);
+                    }
+                }
+                if (exprNode == null) {
+                    exprNode = explainExpression(expression, metadata, false);
+                }
+                if (((SelectExpressionItem) selectItem).getAlias() != null) {
+                    exprNode.setSql(exprNode.getSql() + " as " + ((SelectExpressionItem) selectItem).getAlias().getName());
+                }
+                node.addExpression(exprNode);
+            } else {
+                PlanNode exprNode = new PlanNode("all-columns", selectItem.toString());
+                exprNode.setExpression(true);
+                node.addExpression(exprNode);
+            }
+        }
+        if (aggSize > 1) {
+            node.setStrategy("aggregate(shared " + aggSize + ")");
+        } else if (aggSize == 1) {
+            node.setStrategy("aggregate");
+        } else if (select.getGroupBy() != null) {
+            node.setStrategy("last");
+        } else {
+            node.setStrategy("map");
+        }
+        if (select.getGroupBy() != null) {
+            node.setStrategy("per-group " + node.getStrategy());
+        }
+        return node.addChild(input);
+    }
+
+    public static PlanNode explainExpression(Expression expr, ReactorQLMetadata metadata, boolean predicate) {
+        if (expr instanceof Parenthesis) {
+            return explainExpression(((Parenthesis) expr).getExpression(), metadata, predicate);
+        }
+        PlanNode node = new PlanNode(null, expr.toString());
+        node.setExpression(true);
+        boolean featureRequired = true;
+
+        if (expr instanceof SubSelect) {
+            node.setName("sub-select");
+            node.setFeature(resolve(metadata, FeatureId.ValueMap.select));
+            node.setAsync(true);
+            SelectBody body = ((SubSelect) expr).getSelectBody();
+            if (body instanceof PlainSelect) {
+                if (SqlUtils.isCorrelated(((PlainSelect) body), metadata)) {
+                    node.setStrategy("correlated");
+                    //只通过等值条件关联时,按关联列的值缓存结果
+                    if (SqlUtils.getCorrelationColumns(((PlainSelect) body), metadata) == null) {
+                        node.addWarning("关联子查询,每条数据都会执行一次");
+                    }
+                } else {
+                    node.setStrategy("uncorrelated");
+                    //非关联子查询每次执行只会执行一次
+                    if (!SelectFeature.isMaterializable(((SubSelect) expr), metadata)) {
+                        node.addWarning("子查询,每条数据都会执行一次");
+                    }
+                }
+                node.addChild(explainNested(((PlainSelect) body), metadata));
+            }
+        } else if (expr instanceof ExistsExpression) {
+            node.setName("exists");
+            featureRequired = false;
+            node.addChild(explainExpression(((ExistsExpression) expr).getRightExpression(), metadata, false));
+        } else if (expr instanceof InExpression) {
+            InExpression in = ((InExpression) expr);
+            node.setName("in");
+            node.setFeature(resolve(metadata, FeatureId.Filter.in));
+            if (in.getLeftExpression() != null) {
+                node.addChild(explainExpression(in.getLeftExpression(), metadata, false));
+            }
+            ItemsList items = in.getRightItemsList();
+            if (items instanceof SubSelect) {
+                node.addChild(explainExpression(((SubSelect) items), metadata, false));
+            } else if (items instanceof ExpressionList) {
+                for (Expression expression : ((ExpressionList) items).getExpressions()) {
+                    node.addChild(explainExpression(expression, metadata, false));
+                }
+            }
+        } else if (expr instanceof Between) {
+            Between between = ((Between) expr);
+            node.setName("between");
+            node.setFeature(resolve(metadata, FeatureId.Filter.between));
+            node.addChild(explainExpression(between.getLeftExpression(), metadata, false));
+            node.addChild(explainExpression(between.getBetweenExpressionStart(), metadata, false));
+            node.addChild(explainExpression(between.getBetweenExpressionEnd(), metadata, false));
+        } else if (expr instanceof AndExpression || expr instanceof OrExpression) {
+            BinaryExpression binary = ((BinaryExpression) expr);
+            node.setName(expr instanceof AndExpression ? "and" : "or");
+            node.setFeature(resolve(metadata, expr instanceof AndExpression ? FeatureId.Filter.and : FeatureId.Filter.or));
+            node.addChild(explainExpression(binary.getLeftExpression(), metadata, true));
+            node.addChild(explainExpression(binary.getRightExpression(), metadata, true));
+        } else if (expr instanceof NotExpression) {
+            node.setName("not");
+            featureRequired = false;
+            node.addChild(explainExpression(((NotExpression) expr).getExpression(), metadata, true));
+        } else if (expr instanceof IsNullExpression) {
+            node.setName("is-null");
+            featureRequired = false;
+            node.addChild(explainExpression(((IsNullExpression) expr).getLeftExpression(), metadata, false));
+        } else if (expr instanceof IsBooleanExpression) {
+            node.setName("is-boolean");
+            featureRequired = false;
+            node.addChild(explainExpression(((IsBooleanExpression) expr).getLeftExpression(), metadata, false));
+        } else if (expr instanceof net.sf.jsqlparser.expression.Function) {
+            net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expr);
+            node.setName("function");
+            node.setFeature(predicate
+                                    ? resolve(metadata, FeatureId.Filter.of(function.getName()), FeatureId.ValueMap.of(function.getName()))
+                                    : resolve(metadata, FeatureId.ValueMap.of(function.getName())));
+            explainParameters(function, node, metadata);
+        } else if (expr instanceof BinaryExpression) {
+            BinaryExpression binary = ((BinaryExpression) expr);
+            String operator = binary.getStringExpression();
+            node.setName("binary");
+            node.setFeature(predicate
+                                    ? resolve(metadata, FeatureId.Filter.of(operator), FeatureId.ValueMap.of(operator))
+                                    : resolve(metadata, FeatureId.ValueMap.of(operator), FeatureId.Filter.of(operator)));
+            node.addChild(explainExpression(binary.getLeftExpression(), metadata, false));
+            node.addChild(explainExpression(binary.getRightExpression(), metadata, false));
+        } else if (expr instanceof Column) {
+            node.setName("column");
+            node.setFeature(resolve(metadata, FeatureId.ValueMap.property));
+        } else if (expr instanceof CaseExpression) {
+            CaseExpression caseExpression = ((CaseExpression) expr);
+            node.setName("case");
+            node.setFeature(resolve(metadata, FeatureId.ValueMap.caseWhen));
+            //常量分支通过哈希表定位,其他分支按顺序判断
+            node.setStrategy(CaseMapFeature.isHashDispatch(caseExpression) ? "hash-dispatch" : "sequential");
+            if (caseExpression.getSwitchExpression() != null) {
+                node.addChild(explainExpression(caseExpression.getSwitchExpression(), metadata, false));
+            }
+            for (WhenClause clause : caseExpression.getWhenClauses()) {
+                node.addChild(explainExpression(clause.getWhenExpression(), metadata, caseExpression.getSwitchExpression() == null));
+                node.addChild(explainExpression(clause.getThenExpression(), metadata, false));
+            }
+            if (caseExpression.getElseExpression() != null) {
+                node.addChild(explainExpression(caseExpression.getElseExpression(), metadata, false));
+            }
+        } else if (expr instanceof AnalyticExpression) {
+            AnalyticExpression analytic = ((AnalyticExpression) expr);
+            node.setName("window-function");
+            node.setFeature(resolve(metadata, FeatureId.ValueMap.over));
+            node.setStrategy(analytic.getName().toLowerCase());
+            if (analytic.getExpression() != null) {
+                node.addChild(explainExpression(analytic.getExpression(), metadata, false));
+            }
+            ExpressionList partition = analytic.getPartitionExpressionList();
+            if (partition != null && partition.getExpressions() != null) {
+                for (Expression expression : partition.getExpressions()) {
+                    node.addChild(explainExpression(expression, metadata, false));
+                }
+            }
+            //lead需要等待后续的数据
+            if ("lead".equalsIgnoreCase(analytic.getName())) {
+                node.setAsync(true);
+                node.addWarning("lead需要等待分区中的后续数据,输出会延迟");
+            }
+        } else if (expr instanceof CastExpression) {
+            node.setName("cast");
+            node.setFeature(resolve(metadata, FeatureId.ValueMap.cast));
+            node.addChild(explainExpression(((CastExpression) expr).getLeftExpression(), metadata, false));
+        } else if (expr instanceof SignedExpression) {
+            node.setName("signed");
+            featureRequired = false;
+            node.addChild(explainExpression(((SignedExpression) expr).getExpression(), metadata, false));
+        } else if (expr instanceof ArrayExpression) {
+            node.setName("array");
+            featureRequired = false;
+            node.addChild(explainExpression(((ArrayExpression) expr).getObjExpression(), metadata, false));
+            node.addChild(explainExpression(((ArrayExpression) expr).getIndexExpression(), metadata, false));
+        } else if (expr instanceof JdbcParameter || expr instanceof JdbcNamedParameter || expr instanceof NumericBind) {
+            node.setName("parameter");
+            featureRequired = false;
+        } else if (expr instanceof StringValue
+                || expr instanceof LongValue
+                || expr instanceof DoubleValue
+                || expr instanceof DateValue
+                || expr instanceof TimeValue
+                || expr instanceof TimestampValue
+                || expr instanceof HexValue
+                || expr instanceof NullValue) {
+            node.setName("constant");
+            featureRequired = false;
+        } else {
+            node.setName(expr.getClass().getSimpleName());
+        }
+        if (featureRequired && node.getFeature() == null) {
+            node.addWarning("不支持的表达式");
+        }
+        for (PlanNode child : node.getChildren()) {
+            if (child.isAsync()) {
+                node.setAsync(true);
+                break;
+            }
+        }
+        return node;
+    }
+
+    private static void explainParameters(net.sf.jsqlparser.expression.Function function, PlanNode node, ReactorQLMetadata metadata) {
+        if (function.getParameters() == null) {
+            return;
+        }
+        for (Expression expression : function.getParameters().getExpressions()) {
+            node.addChild(explainExpression(expression, metadata, false));
+        }
+    }
+
+    @SafeVarargs
+    private static String resolve(ReactorQLMetadata metadata, FeatureId<? extends Feature>... ids) {
+        for (FeatureId<? extends Feature> id : ids) {
+            if (metadata.getFeature(id).isPresent()) {
+                return id.getId();
+            }
+        }
+        return null;
+    }
+}
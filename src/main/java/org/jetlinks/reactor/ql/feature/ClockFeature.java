@@ -0,0 +1,74 @@
+package org.jetlinks.reactor.ql.feature;
+
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * 时钟,now(),按时间周期分组(interval),增量输出(emit_every)等功能通过时钟获取当前时间.
+ * <p>
+ * 默认使用系统时钟,可以通过{@link org.jetlinks.reactor.ql.ReactorQL.Builder#feature(Feature...)}替换为其他时钟:
+ * <pre>
+ *     //粗粒度时钟,每100毫秒更新一次时间
+ *     ReactorQL.builder().feature(new CachedClock(Duration.ofMillis(100)))
+ *
+ *     //虚拟时钟,时间由数据推进,用于按照原有的时间回放历史数据
+ *     ReactorQL.builder().feature(new VirtualClock())
+ * </pre>
+ *
+ * @author zhouhao
+ * @see org.jetlinks.reactor.ql.supports.clock.CachedClock
+ * @see org.jetlinks.reactor.ql.supports.clock.VirtualClock
+ * @since 1.0.8
+ */
+public interface ClockFeature extends Feature {
+
+    String ID_STR = "clock";
+
+    FeatureId<ClockFeature> ID = FeatureId.of(ID_STR);
+
+    /**
+     * 系统时钟
+     */
+    ClockFeature SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return 当前时间戳, 毫秒
+     */
+    long currentTimeMillis();
+
+    /**
+     * 是否为虚拟时钟.虚拟时钟的时间由调用方推进,按时间周期分组时不使用定时器,而是根据数据到达时的时钟时间切分窗口.
+     *
+     * @return 是否为虚拟时钟
+     */
+    default boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * 创建在时钟经过指定时长后发出0的Mono,用于等待超时.默认使用定时器,虚拟时钟在时间被推进时触发.
+     *
+     * @param duration 时长
+     * @return Mono
+     */
+    default Mono<Long> delay(Duration duration) {
+        return Mono.delay(duration);
+    }
+
+    @Override
+    default String getId() {
+        return ID_STR;
+    }
+
+    /**
+     * 获取元数据中的时钟,未设置时使用系统时钟
+     *
+     * @param metadata 元数据
+     * @return 时钟
+     */
+    static ClockFeature getClock(ReactorQLMetadata metadata) {
+        return metadata.getFeature(ID).orElse(SYSTEM);
+    }
+}
@@ -23,6 +23,7 @@ public interface FeatureId<T extends Feature> {
         FeatureId<ValueMapFeature> cast = ValueMap.of("cast");
         FeatureId<ValueMapFeature> caseWhen = ValueMap.of("case");
         FeatureId<ValueMapFeature> select = ValueMap.of("select");
+        FeatureId<ValueMapFeature> over = ValueMap.of("over");
 
         static FeatureId<ValueMapFeature> of(String type) {
             return FeatureId.of("value-map:".concat(type));
@@ -3,14 +3,51 @@ package org.jetlinks.reactor.ql.feature;
 import net.sf.jsqlparser.expression.Expression;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public interface ValueAggMapFeature extends Feature {
 
 
     Function<Flux<ReactorQLRecord>, Flux<Object>> createMapper(Expression expression, ReactorQLMetadata metadata);
 
+    /**
+     * 创建增量聚合器,用于在分组结束前增量输出聚合结果(emit_every).
+     * 每个分组(窗口)都会通过Supplier创建新的聚合器.
+     *
+     * @param expression 表达式
+     * @param metadata   元数据
+     * @return 聚合器, 不支持增量聚合时返回null
+     * @since 1.0.8
+     */
+    default Supplier<? extends Accumulator> createAccumulator(Expression expression, ReactorQLMetadata metadata) {
+        return null;
+    }
+
+    /**
+     * 增量聚合器,保存聚合的中间状态.
+     *
+     * @since 1.0.8
+     */
+    interface Accumulator {
+
+        /**
+         * 累加一条数据
+         *
+         * @param record 数据
+         * @return 累加完成信号
+         */
+        Publisher<?> accumulate(ReactorQLRecord record);
+
+        /**
+         * 获取当前的聚合结果,不会修改聚合状态
+         *
+         * @return 聚合结果
+         */
+        Object snapshot();
+    }
 
 }
@@ -7,6 +7,7 @@ import net.sf.jsqlparser.statement.select.SubSelect;
 import org.apache.commons.collections.CollectionUtils;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.supports.SharedExpressionCache;
 import org.jetlinks.reactor.ql.utils.CastUtils;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
@@ -29,6 +30,18 @@ public interface ValueMapFeature extends Feature {
 
     Function<ReactorQLRecord, ? extends Publisher<?>> createMapper(Expression expression, ReactorQLMetadata metadata);
 
+    /**
+     * 是否为确定性的函数,即相同的参数总是返回相同的结果,并且没有副作用.
+     * 确定性函数的计算结果可以在查询组内共享.
+     *
+     * @return 是否为确定性的函数
+     * @see SharedExpressionCache
+     * @since 1.0.8
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+
     static Function<ReactorQLRecord, ? extends Publisher<?>> createMapperNow(Expression expr, ReactorQLMetadata metadata) {
         return createMapperByExpression(expr, metadata).orElseThrow(() -> new UnsupportedOperationException("不支持的操作:" + expr));
     }
@@ -87,6 +100,11 @@ public interface ValueMapFeature extends Feature {
                 ref.set(metadata.getFeatureNow(FeatureId.ValueMap.caseWhen, expr::toString).createMapper(expr, metadata));
             }
 
+            @Override
+            public void visit(AnalyticExpression expr) {
+                ref.set(metadata.getFeatureNow(FeatureId.ValueMap.over, expr::toString).createMapper(expr, metadata));
+            }
+
             @Override
             public void visit(CastExpression expr) {
                 ref.set(metadata.getFeatureNow(FeatureId.ValueMap.cast, expr::toString).createMapper(expr, metadata));
@@ -192,10 +210,31 @@ public interface ValueMapFeature extends Feature {
             }
         });
 
-        return Optional.ofNullable(ref.get());
+        Function<ReactorQLRecord, ? extends Publisher<?>> mapper = ref.get();
+        if (mapper != null
+                && (expr instanceof net.sf.jsqlparser.expression.Function
+                || expr instanceof BinaryExpression
+                || expr instanceof CastExpression)) {
+            //查询组内共享公共表达式的计算结果
+            mapper = SharedExpressionCache.wrap(expr, mapper, metadata);
+        }
+        return Optional.ofNullable(mapper);
     }
 
     static Tuple2<Function<ReactorQLRecord, ? extends Publisher<?>>, Function<ReactorQLRecord, ? extends Publisher<?>>> createBinaryMapper(Expression expression, ReactorQLMetadata metadata) {
+        Tuple2<Expression, Expression> operands = getBinaryExpressions(expression);
+        Function<ReactorQLRecord, ? extends Publisher<?>> leftMapper = createMapperNow(operands.getT1(), metadata);
+        Function<ReactorQLRecord, ? extends Publisher<?>> rightMapper = createMapperNow(operands.getT2(), metadata);
+        return Tuples.of(leftMapper, rightMapper);
+    }
+
+    /**
+     * 获取二元表达式或者两个参数的函数的左右表达式
+     *
+     * @param expression 表达式
+     * @return 左右表达式
+     */
+    static Tuple2<Expression, Expression> getBinaryExpressions(Expression expression) {
         Expression left;
         Expression right;
         if (expression instanceof net.sf.jsqlparser.expression.Function) {
@@ -213,8 +252,6 @@ public interface ValueMapFeature extends Feature {
         } else {
             throw new UnsupportedOperationException("不支持的表达式:" + expression);
         }
-        Function<ReactorQLRecord, ? extends Publisher<?>> leftMapper = createMapperNow(left, metadata);
-        Function<ReactorQLRecord, ? extends Publisher<?>> rightMapper = createMapperNow(right, metadata);
-        return Tuples.of(leftMapper, rightMapper);
+        return Tuples.of(left, right);
     }
 }
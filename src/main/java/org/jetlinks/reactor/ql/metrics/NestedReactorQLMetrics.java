@@ -0,0 +1,50 @@
+package org.jetlinks.reactor.ql.metrics;
+
+/**
+ * 子查询的指标,操作名称使用子查询作为前缀,如: select count(1) FROM devices/where
+ *
+ * @author zhouhao
+ * @see ReactorQLMetrics#nested(String)
+ * @since 1.0.8
+ */
+class NestedReactorQLMetrics implements ReactorQLMetrics {
+
+    private final ReactorQLMetrics parent;
+
+    private final String scope;
+
+    NestedReactorQLMetrics(ReactorQLMetrics parent, String scope) {
+        this.parent = parent;
+        this.scope = scope;
+    }
+
+    @Override
+    public OperatorMetrics operator(String operator) {
+        return parent.operator(scope + "/" + operator);
+    }
+
+    @Override
+    public void groupOpened() {
+        parent.groupOpened();
+    }
+
+    @Override
+    public void groupClosed() {
+        parent.groupClosed();
+    }
+
+    @Override
+    public void windowOpened() {
+        parent.windowOpened();
+    }
+
+    @Override
+    public void windowClosed() {
+        parent.windowClosed();
+    }
+
+    @Override
+    public void recordMemoryUsage(String name, long bytes) {
+        parent.recordMemoryUsage(name, bytes);
+    }
+}
@@ -0,0 +1,55 @@
+package org.jetlinks.reactor.ql.metrics;
+
+enum NoopReactorQLMetrics implements ReactorQLMetrics, OperatorMetrics {
+    INSTANCE;
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public OperatorMetrics operator(String operator) {
+        return this;
+    }
+
+    @Override
+    public void groupOpened() {
+
+    }
+
+    @Override
+    public void groupClosed() {
+
+    }
+
+    @Override
+    public void windowOpened() {
+
+    }
+
+    @Override
+    public void windowClosed() {
+
+    }
+
+    @Override
+    public void recordIn() {
+
+    }
+
+    @Override
+    public void recordOut() {
+
+    }
+
+    @Override
+    public void recordLatency(long nanos) {
+
+    }
+
+    @Override
+    public void recordError(Throwable error) {
+
+    }
+}
@@ -0,0 +1,38 @@
+package org.jetlinks.reactor.ql.metrics;
+
+/**
+ * 单个操作的运行时指标,丢弃率可通过 1 - 输出数量/输入数量 计算.
+ *
+ * @author zhouhao
+ * @see ReactorQLMetrics#operator(String)
+ * @since 1.0.8
+ */
+public interface OperatorMetrics {
+
+    /**
+     * 记录一条输入数据
+     */
+    void recordIn();
+
+    /**
+     * 记录一条输出数据
+     */
+    void recordOut();
+
+    /**
+     * 记录处理单条数据的耗时,从开始处理到处理完成的时间间隔.
+     * 只有逐条处理数据的操作会记录: where,columnMapper以及join(从收到左表数据到关联结果输出完成).
+     * from为数据源本身,groupBy,orderBy,distinct,offset,limit的输出与输入不是一一对应的,不记录耗时.
+     *
+     * @param nanos 纳秒
+     */
+    void recordLatency(long nanos);
+
+    /**
+     * 记录错误
+     *
+     * @param error 错误
+     */
+    void recordError(Throwable error);
+
+}
@@ -0,0 +1,159 @@
+package org.jetlinks.reactor.ql.metrics;
+
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+
+/**
+ * 查询运行时指标,用于统计查询中每个操作(from,join,where,groupBy,columnMapper,orderBy,distinct,offset,limit)的
+ * 输入输出数量,耗时,错误数量以及活跃的分组和窗口数量.
+ * <pre>
+ *    ReactorQL
+ *      .builder()
+ *      .sql("select * from test where temp > 10")
+ *      .metrics(ReactorQLMetrics.create(registry, "rule-1"))
+ *      .build();
+ * </pre>
+ * 默认使用{@link ReactorQLMetrics#noop()},此时不会对查询进行任何包装,没有额外的开销.
+ *
+ * @author zhouhao
+ * @see ReactorQLMetricsRegistry
+ * @since 1.0.8
+ */
+public interface ReactorQLMetrics {
+
+    /**
+     * 操作输入数量,标签: query,operator
+     */
+    String METRIC_IN = "reactorql.operator.in";
+
+    /**
+     * 操作输出数量,标签: query,operator
+     */
+    String METRIC_OUT = "reactorql.operator.out";
+
+    /**
+     * 操作耗时(纳秒),标签: query,operator.
+     * 只有where,join,columnMapper会记录,其他操作的输出与输入不是一一对应的,不记录耗时.
+     */
+    String METRIC_LATENCY = "reactorql.operator.latency";
+
+    /**
+     * 操作错误数量,标签: query,operator
+     */
+    String METRIC_ERROR = "reactorql.operator.error";
+
+    /**
+     * 活跃的分组数量,标签: query
+     */
+    String METRIC_ACTIVE_GROUP = "reactorql.group.active";
+
+    /**
+     * 活跃的窗口数量,标签: query
+     */
+    String METRIC_ACTIVE_WINDOW = "reactorql.window.active";
+
+    /**
+     * 内存占用(字节),如: count(distinct)使用的集合,标签: query,name
+     */
+    String METRIC_MEMORY = "reactorql.memory";
+
+    String TAG_QUERY = "query";
+
+    String TAG_NAME = "name";
+
+    String TAG_OPERATOR = "operator";
+
+    /**
+     * 元数据中保存当前查询指标的配置,用于子查询获取指标
+     *
+     * @see ReactorQLMetrics#of(ReactorQLMetadata)
+     */
+    String SETTING_KEY = "reactorql-metrics";
+
+    /**
+     * @return 不进行任何统计的实现
+     */
+    static ReactorQLMetrics noop() {
+        return NoopReactorQLMetrics.INSTANCE;
+    }
+
+    /**
+     * 使用指标注册中心创建查询指标
+     *
+     * @param registry 注册中心
+     * @param query    查询标识,如规则ID
+     * @return 查询指标
+     */
+    static ReactorQLMetrics create(ReactorQLMetricsRegistry registry, String query) {
+        return new RegistryReactorQLMetrics(registry, query);
+    }
+
+    /**
+     * 获取元数据中的查询指标,未设置时返回{@link ReactorQLMetrics#noop()}
+     *
+     * @param metadata 元数据
+     * @return 查询指标
+     */
+    static ReactorQLMetrics of(ReactorQLMetadata metadata) {
+        return metadata
+                .getSetting(SETTING_KEY)
+                .filter(ReactorQLMetrics.class::isInstance)
+                .map(ReactorQLMetrics.class::cast)
+                .orElse(noop());
+    }
+
+    /**
+     * @return 是否启用, 未启用时查询不会进行任何统计
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * 获取操作的指标
+     *
+     * @param operator 操作名称,如: where
+     * @return 操作指标
+     */
+    OperatorMetrics operator(String operator);
+
+    /**
+     * 获取子查询的指标,子查询中的操作名称以子查询的SQL作为前缀,如: select count(1) FROM devices/where
+     *
+     * @param scope 子查询的SQL
+     * @return 子查询的指标
+     */
+    default ReactorQLMetrics nested(String scope) {
+        return isEnabled() ? new NestedReactorQLMetrics(this, scope) : this;
+    }
+
+    /**
+     * 分组(group by 属性)创建
+     */
+    void groupOpened();
+
+    /**
+     * 分组结束
+     */
+    void groupClosed();
+
+    /**
+     * 窗口(group by interval,take等)创建
+     */
+    void windowOpened();
+
+    /**
+     * 窗口结束
+     */
+    void windowClosed();
+
+    /**
+     * 记录内存占用,如: 在窗口结束时记录去重集合的大小.默认不记录.
+     *
+     * @param name  名称,如: count(distinct deviceId)
+     * @param bytes 字节数
+     */
+    default void recordMemoryUsage(String name, long bytes) {
+
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.jetlinks.reactor.ql.metrics;
+
+import java.util.Map;
+
+/**
+ * 指标注册中心,用于将查询指标对接到具体的监控系统,如: micrometer,prometheus等.
+ * 指标名称和标签见{@link ReactorQLMetrics}中的常量.
+ *
+ * @author zhouhao
+ * @see SimpleReactorQLMetricsRegistry
+ * @since 1.0.8
+ */
+public interface ReactorQLMetricsRegistry {
+
+    /**
+     * 获取计数器,相同名称和标签应该返回相同的计数器
+     *
+     * @param name 名称
+     * @param tags 标签
+     * @return 计数器
+     */
+    Counter counter(String name, Map<String, String> tags);
+
+    /**
+     * 获取直方图,相同名称和标签应该返回相同的直方图
+     *
+     * @param name 名称
+     * @param tags 标签
+     * @return 直方图
+     */
+    Histogram histogram(String name, Map<String, String> tags);
+
+    interface Counter {
+
+        /**
+         * 增加计数,活跃分组等指标会使用负数来减少计数
+         *
+         * @param delta 增量
+         */
+        void increment(long delta);
+    }
+
+    interface Histogram {
+
+        /**
+         * 记录值
+         *
+         * @param value 值
+         */
+        void record(long value);
+    }
+}
@@ -0,0 +1,103 @@
+package org.jetlinks.reactor.ql.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class RegistryReactorQLMetrics implements ReactorQLMetrics {
+
+    private final ReactorQLMetricsRegistry registry;
+
+    private final String query;
+
+    private final Map<String, OperatorMetrics> operators = new ConcurrentHashMap<>();
+
+    private final Map<String, ReactorQLMetricsRegistry.Histogram> memories = new ConcurrentHashMap<>();
+
+    private final ReactorQLMetricsRegistry.Counter activeGroup;
+
+    private final ReactorQLMetricsRegistry.Counter activeWindow;
+
+    RegistryReactorQLMetrics(ReactorQLMetricsRegistry registry, String query) {
+        this.registry = registry;
+        this.query = query;
+        Map<String, String> tags = new HashMap<>();
+        tags.put(TAG_QUERY, query);
+        this.activeGroup = registry.counter(METRIC_ACTIVE_GROUP, tags);
+        this.activeWindow = registry.counter(METRIC_ACTIVE_WINDOW, tags);
+    }
+
+    @Override
+    public OperatorMetrics operator(String operator) {
+        return operators.computeIfAbsent(operator, Operator::new);
+    }
+
+    @Override
+    public void groupOpened() {
+        activeGroup.increment(1);
+    }
+
+    @Override
+    public void groupClosed() {
+        activeGroup.increment(-1);
+    }
+
+    @Override
+    public void windowOpened() {
+        activeWindow.increment(1);
+    }
+
+    @Override
+    public void windowClosed() {
+        activeWindow.increment(-1);
+    }
+
+    @Override
+    public void recordMemoryUsage(String name, long bytes) {
+        memories
+                .computeIfAbsent(name, _name -> {
+                    Map<String, String> tags = new HashMap<>();
+                    tags.put(TAG_QUERY, query);
+                    tags.put(TAG_NAME, _name);
+                    return registry.histogram(METRIC_MEMORY, tags);
+                })
+                .record(bytes);
+    }
+
+    class Operator implements OperatorMetrics {
+        private final ReactorQLMetricsRegistry.Counter in;
+        private final ReactorQLMetricsRegistry.Counter out;
+        private final ReactorQLMetricsRegistry.Counter error;
+        private final ReactorQLMetricsRegistry.Histogram latency;
+
+        Operator(String operator) {
+            Map<String, String> tags = new HashMap<>();
+            tags.put(TAG_QUERY, query);
+            tags.put(TAG_OPERATOR, operator);
+            in = registry.counter(METRIC_IN, tags);
+            out = registry.counter(METRIC_OUT, tags);
+            error = registry.counter(METRIC_ERROR, tags);
+            latency = registry.histogram(METRIC_LATENCY, tags);
+        }
+
+        @Override
+        public void recordIn() {
+            in.increment(1);
+        }
+
+        @Override
+        public void recordOut() {
+            out.increment(1);
+        }
+
+        @Override
+        public void recordLatency(long nanos) {
+            latency.record(nanos);
+        }
+
+        @Override
+        public void recordError(Throwable error) {
+            this.error.increment(1);
+        }
+    }
+}
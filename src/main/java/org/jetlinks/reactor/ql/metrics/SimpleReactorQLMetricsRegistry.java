@@ -0,0 +1,175 @@
+package org.jetlinks.reactor.ql.metrics;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于内存的指标注册中心,可用于调试或者定时将指标输出到日志.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class SimpleReactorQLMetricsRegistry implements ReactorQLMetricsRegistry {
+
+    private final Map<Key, SimpleCounter> counters = new ConcurrentHashMap<>();
+
+    private final Map<Key, SimpleHistogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public SimpleCounter counter(String name, Map<String, String> tags) {
+        return counters.computeIfAbsent(new Key(name, tags), ignore -> new SimpleCounter());
+    }
+
+    @Override
+    public SimpleHistogram histogram(String name, Map<String, String> tags) {
+        return histograms.computeIfAbsent(new Key(name, tags), ignore -> new SimpleHistogram());
+    }
+
+    /**
+     * 获取计数器的值
+     *
+     * @param name 名称
+     * @param tags 标签
+     * @return 值, 计数器不存在时返回0
+     */
+    public long getCount(String name, Map<String, String> tags) {
+        SimpleCounter counter = counters.get(new Key(name, tags));
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * 获取操作的计数
+     *
+     * @param name     指标名称,如: {@link ReactorQLMetrics#METRIC_IN}
+     * @param query    查询标识
+     * @param operator 操作名称
+     * @return 值
+     */
+    public long getOperatorCount(String name, String query, String operator) {
+        return getCount(name, operatorTags(query, operator));
+    }
+
+    /**
+     * 获取操作耗时直方图
+     *
+     * @param query    查询标识
+     * @param operator 操作名称
+     * @return 直方图
+     */
+    public SimpleHistogram getOperatorLatency(String query, String operator) {
+        return histogram(ReactorQLMetrics.METRIC_LATENCY, operatorTags(query, operator));
+    }
+
+    /**
+     * 获取操作的丢弃率: 1 - 输出数量/输入数量
+     *
+     * @param query    查询标识
+     * @param operator 操作名称
+     * @return 丢弃率, 没有输入时返回0
+     */
+    public double getDropRatio(String query, String operator) {
+        long in = getOperatorCount(ReactorQLMetrics.METRIC_IN, query, operator);
+        if (in <= 0) {
+            return 0;
+        }
+        long out = getOperatorCount(ReactorQLMetrics.METRIC_OUT, query, operator);
+        return Math.max(0, 1 - (double) out / in);
+    }
+
+    private static Map<String, String> operatorTags(String query, String operator) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put(ReactorQLMetrics.TAG_QUERY, query);
+        tags.put(ReactorQLMetrics.TAG_OPERATOR, operator);
+        return tags;
+    }
+
+    public static class SimpleCounter implements Counter {
+        private final LongAdder adder = new LongAdder();
+
+        @Override
+        public void increment(long delta) {
+            adder.add(delta);
+        }
+
+        public long get() {
+            return adder.sum();
+        }
+    }
+
+    /**
+     * 以2的幂为桶边界的直方图,分位数的误差不超过2倍
+     */
+    public static class SimpleHistogram implements Histogram {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        @Override
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1));
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return getCount() == 0 ? 0 : max.get();
+        }
+
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getSum() / count;
+        }
+
+        /**
+         * 获取分位数的近似值,返回所在桶的上边界
+         *
+         * @param quantile 分位,如: 0.99
+         * @return 近似值
+         */
+        public long getPercentile(double quantile) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+
+    @EqualsAndHashCode
+    static class Key {
+        private final String name;
+        private final Map<String, String> tags;
+
+        Key(String name, Map<String, String> tags) {
+            this.name = name;
+            this.tags = tags == null ? new HashMap<>() : new HashMap<>(tags);
+        }
+    }
+}
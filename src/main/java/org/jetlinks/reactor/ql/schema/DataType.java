@@ -0,0 +1,115 @@
+package org.jetlinks.reactor.ql.schema;
+
+import org.jetlinks.reactor.ql.utils.CastUtils;
+
+import java.util.Date;
+
+/**
+ * 列的数据类型
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public enum DataType {
+
+    STRING {
+        @Override
+        protected Object doConvert(Object value) {
+            return value instanceof String ? value : CastUtils.castString(value);
+        }
+    },
+    LONG {
+        @Override
+        protected Object doConvert(Object value) {
+            if (value instanceof Long) {
+                return value;
+            }
+            return CastUtils.castNumber(value).longValue();
+        }
+
+        @Override
+        public Object convertConstant(Object constant) {
+            if (constant instanceof Number) {
+                return constant;
+            }
+            return parseNumber(constant);
+        }
+    },
+    DOUBLE {
+        @Override
+        protected Object doConvert(Object value) {
+            if (value instanceof Double) {
+                return value;
+            }
+            return CastUtils.castNumber(value).doubleValue();
+        }
+
+        @Override
+        public Object convertConstant(Object constant) {
+            if (constant instanceof Number) {
+                return ((Number) constant).doubleValue();
+            }
+            return parseNumber(constant).doubleValue();
+        }
+    },
+    BOOLEAN {
+        @Override
+        protected Object doConvert(Object value) {
+            return value instanceof Boolean ? value : CastUtils.castBoolean(value);
+        }
+    },
+    DATE {
+        @Override
+        protected Object doConvert(Object value) {
+            return value instanceof Date ? value : CastUtils.castDate(value);
+        }
+
+        @Override
+        public Object convertConstant(Object constant) {
+            return doConvert(constant);
+        }
+    },
+    OBJECT {
+        @Override
+        protected Object doConvert(Object value) {
+            return value;
+        }
+    };
+
+    protected abstract Object doConvert(Object value);
+
+    /**
+     * 转换数据中的值,无法转换时保留原始值
+     *
+     * @param value 值
+     * @return 转换后的值
+     */
+    public Object convert(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return doConvert(value);
+        } catch (RuntimeException e) {
+            return value;
+        }
+    }
+
+    /**
+     * 转换SQL中与此类型的列进行比较的常量,类型不匹配时抛出{@link UnsupportedOperationException}
+     *
+     * @param constant 常量
+     * @return 转换后的常量
+     */
+    public Object convertConstant(Object constant) {
+        return constant;
+    }
+
+    static Number parseNumber(Object constant) {
+        Number number = constant instanceof CharSequence ? CastUtils.parseNumber((CharSequence) constant) : null;
+        if (number == null) {
+            throw new UnsupportedOperationException("无法将[" + constant + "]转换为数字");
+        }
+        return number;
+    }
+}
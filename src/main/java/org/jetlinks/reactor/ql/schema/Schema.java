@@ -0,0 +1,192 @@
+package org.jetlinks.reactor.ql.schema;
+
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+
+import java.util.*;
+
+import static org.jetlinks.reactor.ql.utils.SqlUtils.getCleanStr;
+
+/**
+ * 表结构,声明表中列的名称和类型.
+ * <pre>
+ *     ReactorQL.builder()
+ *              .sql("select * from device.message where temp > 10")
+ *              .schema("device.message", Schema.of("deviceId", DataType.STRING, "temp", DataType.DOUBLE))
+ *              .build();
+ * </pre>
+ * 声明了表结构后,数据源中的Map会被转换为{@link TypedRow},列的值按照声明的类型进行转换并按顺序保存在数组中.
+ * 创建查询时根据列的类型预先转换比较的常量,按列的位置直接获取值,并在类型不匹配或者列不存在时直接报错.
+ *
+ * @author zhouhao
+ * @see org.jetlinks.reactor.ql.ReactorQL.Builder#schema(String, Schema)
+ * @since 1.0.8
+ */
+public class Schema {
+
+    private final String[] names;
+
+    private final DataType[] types;
+
+    private final Map<String, Integer> indexes;
+
+    private Schema(String[] names, DataType[] types) {
+        this.names = names;
+        this.types = types;
+        this.indexes = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            if (indexes.put(names[i], i) != null) {
+                throw new UnsupportedOperationException("重复的列:" + names[i]);
+            }
+        }
+    }
+
+    /**
+     * 使用列名和类型创建表结构
+     * <pre>
+     *     Schema.of("deviceId", DataType.STRING, "temp", DataType.DOUBLE)
+     * </pre>
+     *
+     * @param nameAndTypes 列名和类型
+     * @return 表结构
+     */
+    public static Schema of(Object... nameAndTypes) {
+        if (nameAndTypes.length % 2 != 0) {
+            throw new UnsupportedOperationException("列名和类型必须成对出现");
+        }
+        int size = nameAndTypes.length / 2;
+        String[] names = new String[size];
+        DataType[] types = new DataType[size];
+        for (int i = 0; i < size; i++) {
+            Object name = nameAndTypes[i * 2];
+            Object type = nameAndTypes[i * 2 + 1];
+            if (!(name instanceof String) || !(type instanceof DataType)) {
+                throw new UnsupportedOperationException("错误的列定义:" + name + " " + type);
+            }
+            names[i] = ((String) name);
+            types[i] = ((DataType) type);
+        }
+        return new Schema(names, types);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param name 列名
+     * @return 列的位置, 列不存在时返回-1
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public DataType getType(int index) {
+        return types[index];
+    }
+
+    public Optional<DataType> getType(String name) {
+        int index = indexOf(name);
+        return index < 0 ? Optional.empty() : Optional.of(types[index]);
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * 将数据源中的数据转换为{@link TypedRow},不是Map的数据不转换.列的值无法按声明的类型转换时保留原始值.
+     *
+     * @param source 数据
+     * @return 转换后的数据
+     */
+    public Object toRow(Object source) {
+        if (source instanceof TypedRow && ((TypedRow) source).getSchema() == this) {
+            return source;
+        }
+        if (source instanceof Map) {
+            return new TypedRow(this, ((Map<?, ?>) source));
+        }
+        return source;
+    }
+
+    /**
+     * 获取表的结构,优先使用完整的表名
+     *
+     * @param metadata 元数据
+     * @param table    表
+     * @return 表结构
+     */
+    public static Optional<Schema> lookup(ReactorQLMetadata metadata, Table table) {
+        Optional<Schema> schema = metadata.getSchema(getCleanStr(table.getFullyQualifiedName()));
+        if (schema.isPresent()) {
+            return schema;
+        }
+        return metadata.getSchema(getCleanStr(table.getName()));
+    }
+
+    /**
+     * 根据SQL中from或者join的表名,别名获取表结构.this表示from中的表,存在关联时不确定this对应的表,返回empty.
+     *
+     * @param metadata 元数据
+     * @param name     表名或者别名
+     * @return 表结构
+     */
+    public static Optional<Schema> lookup(ReactorQLMetadata metadata, String name) {
+        PlainSelect select = metadata.getSql();
+        boolean hasJoin = select.getJoins() != null && !select.getJoins().isEmpty();
+        if ("this".equals(name)) {
+            if (hasJoin || !(select.getFromItem() instanceof Table)) {
+                return Optional.empty();
+            }
+            return lookup(metadata, ((Table) select.getFromItem()));
+        }
+        List<FromItem> items = new ArrayList<>();
+        items.add(select.getFromItem());
+        if (hasJoin) {
+            for (Join join : select.getJoins()) {
+                items.add(join.getRightItem());
+            }
+        }
+        String cleanName = getCleanStr(name);
+        for (FromItem item : items) {
+            if (!(item instanceof Table)) {
+                continue;
+            }
+            Table table = ((Table) item);
+            boolean matched = table.getAlias() != null
+                    ? cleanName.equals(getCleanStr(table.getAlias().getName()))
+                    : cleanName.equals(getCleanStr(table.getName())) || cleanName.equals(getCleanStr(table.getFullyQualifiedName()));
+            if (matched) {
+                return lookup(metadata, table);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 获取SQL中的列声明的类型,列不存在表结构中或者使用了嵌套属性,类型转换时返回empty
+     *
+     * @param metadata 元数据
+     * @param column   列
+     * @return 类型
+     */
+    public static Optional<DataType> lookupType(ReactorQLMetadata metadata, Column column) {
+        String[] fullName = column.getFullyQualifiedName().split("[.]", 2);
+        String name = getCleanStr(fullName.length == 2 ? fullName[1] : fullName[0]);
+        String tableName = fullName.length == 1 ? "this" : fullName[0];
+        if (name.contains(".") || name.contains("::")) {
+            return Optional.empty();
+        }
+        return lookup(metadata, tableName).flatMap(schema -> schema.getType(name));
+    }
+}
@@ -0,0 +1,271 @@
+package org.jetlinks.reactor.ql.schema;
+
+import java.util.*;
+
+/**
+ * 按表结构保存的行数据,声明的列按位置保存在数组中,未声明的列保存在额外的Map中.
+ * <p>
+ * 实现了{@link Map}接口,可以和普通的Map数据一样使用,声明的列显式设置为null时也认为存在此列.
+ * 设置声明的列时使用{@link DataType#convert(Object)}转换类型,无法转换时保留原始值,不会抛出异常,
+ * 此时读取到的值的类型可能与声明的类型不一致.
+ *
+ * @author zhouhao
+ * @see Schema#toRow(Object)
+ * @since 1.0.8
+ */
+public class TypedRow extends AbstractMap<String, Object> {
+
+    private final Schema schema;
+
+    private final Object[] values;
+
+    //已设置的列,用于区分未设置和显式设置为null
+    private final BitSet present;
+
+    //未在表结构中声明的列
+    private Map<String, Object> others;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    public TypedRow(Schema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        this.present = new BitSet(values.length);
+    }
+
+    public TypedRow(Schema schema, Map<?, ?> source) {
+        this(schema);
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 根据列的位置获取值
+     *
+     * @param index 位置
+     * @return 值
+     * @see Schema#indexOf(String)
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /**
+     * 根据列的位置设置值,值会按照列的类型进行转换,无法转换时保留原始值
+     *
+     * @param index 位置
+     * @param value 值
+     * @return 旧值
+     * @see DataType#convert(Object)
+     */
+    public Object set(int index, Object value) {
+        Object old = values[index];
+        values[index] = schema.getType(index).convert(value);
+        present.set(index);
+        return old;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        if (index >= 0) {
+            return values[index];
+        }
+        return others == null ? null : others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        if (index >= 0) {
+            return present.get(index);
+        }
+        return others != null && others.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = schema.indexOf(key);
+        if (index >= 0) {
+            return set(index, value);
+        }
+        if (others == null) {
+            others = new HashMap<>();
+        }
+        return others.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        if (index >= 0) {
+            return removeColumn(index);
+        }
+        return others == null ? null : others.remove(key);
+    }
+
+    private Object removeColumn(int index) {
+        Object old = values[index];
+        values[index] = null;
+        present.clear(index);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return present.cardinality() + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return present.isEmpty() && (others == null || others.isEmpty());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        present.clear();
+        others = null;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        //直接读写数组和额外的Map,不复制数据
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return TypedRow.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    TypedRow.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        //相同表结构时直接比较数组
+        if (o instanceof TypedRow && ((TypedRow) o).schema == schema) {
+            TypedRow other = ((TypedRow) o);
+            Map<String, Object> otherOthers = other.others == null ? Collections.emptyMap() : other.others;
+            Map<String, Object> thisOthers = others == null ? Collections.emptyMap() : others;
+            return present.equals(other.present)
+                    && Arrays.equals(values, other.values)
+                    && thisOthers.equals(otherOthers);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next = present.nextSetBit(0);
+
+        private int last = -1;
+
+        private Iterator<Entry<String, Object>> othersIterator;
+
+        @Override
+        public boolean hasNext() {
+            if (next >= 0) {
+                return true;
+            }
+            if (othersIterator == null) {
+                if (others == null) {
+                    return false;
+                }
+                othersIterator = others.entrySet().iterator();
+            }
+            return othersIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next >= 0) {
+                last = next;
+                next = present.nextSetBit(next + 1);
+                return new ColumnEntry(last);
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = -1;
+            return othersIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                removeColumn(last);
+                last = -1;
+            } else if (othersIterator != null) {
+                othersIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private class ColumnEntry implements Entry<String, Object> {
+        private final int index;
+
+        ColumnEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.getName(index);
+        }
+
+        @Override
+        public Object getValue() {
+            return values[index];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return set(index, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = ((Entry<?, ?>) o);
+            return Objects.equals(getKey(), entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
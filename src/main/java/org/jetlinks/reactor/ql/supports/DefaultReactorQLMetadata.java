@@ -7,8 +7,17 @@ import net.sf.jsqlparser.statement.select.Select;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.feature.Feature;
 import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.supports.agg.ArgAggFeature;
+import org.jetlinks.reactor.ql.supports.agg.CoMoments;
+import org.jetlinks.reactor.ql.supports.agg.CoMomentsAggFeature;
 import org.jetlinks.reactor.ql.supports.agg.CollectListAggFeature;
+import org.jetlinks.reactor.ql.supports.agg.HyperLogLog;
+import org.jetlinks.reactor.ql.supports.agg.QuantileSketch;
+import org.jetlinks.reactor.ql.supports.agg.TimeWeightedAggFeature;
+import org.jetlinks.reactor.ql.supports.agg.TopKAggFeature;
 import org.jetlinks.reactor.ql.supports.agg.MapAggFeature;
+import org.jetlinks.reactor.ql.supports.agg.Moments;
 import org.jetlinks.reactor.ql.supports.agg.CountAggFeature;
 import org.jetlinks.reactor.ql.supports.distinct.DefaultDistinctFeature;
 import org.jetlinks.reactor.ql.supports.filter.*;
@@ -27,6 +36,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class DefaultReactorQLMetadata implements ReactorQLMetadata {
@@ -39,6 +49,8 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
 
     private final Map<String, Object> settings = new ConcurrentHashMap<>();
 
+    private final Map<String, Schema> schemas = new ConcurrentHashMap<>();
+
     static <T> void createCalculator(BiFunction<String, BiFunction<Number, Number, Object>, T> builder, Consumer<T> consumer) {
 
         consumer.accept(builder.apply("+", CalculateUtils::add));
@@ -84,6 +96,7 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
         addGlobal(new PropertyMapFeature());
         addGlobal(new CountAggFeature());
         addGlobal(new CaseMapFeature());
+        addGlobal(new WindowFunctionFeature());
         addGlobal(new SelectFeature());
 
         addGlobal(new EqualsFilter("=", false));
@@ -115,6 +128,7 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
         addGlobal(new NowFeature());
         addGlobal(new CastFeature());
         addGlobal(new DateFormatFeature());
+        addGlobal(new TimeBucketFeature());
 
         // group by interval('1s')
         addGlobal(new GroupByIntervalFeature());
@@ -128,6 +142,7 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
                 "round",
                 "floor",
                 "date_format",
+                "time_bucket",
                 "cast"
         ).forEach(type -> addGlobal(new GroupByValueFeature(type)));
 
@@ -144,7 +159,7 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
             if (right == null) right = "";
             return String.valueOf(left).concat(String.valueOf(right));
         };
-        addGlobal(new BinaryMapFeature("||", concat));
+        addGlobal(new BinaryMapFeature("||", concat).deterministic());
 
         addGlobal(new FunctionMapFeature("concat", 9999, 1, stream -> stream
                 .flatMap(v -> {
@@ -157,7 +172,7 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
                     return Mono.just(v);
                 })
                 .map(String::valueOf)
-                .collect(Collectors.joining())));
+                .collect(Collectors.joining())).deterministic());
 
         addGlobal(new FunctionMapFeature("row_to_array", 9999, 1, stream -> stream
                 .map(m -> {
@@ -193,34 +208,34 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
 
         // addGlobal(new BinaryMapFeature("concat", concat));
 
-        addGlobal(new SingleParameterFunctionMapFeature("bit_not", v -> CalculateUtils.bitNot(CastUtils.castNumber(v))));
-        addGlobal(new SingleParameterFunctionMapFeature("bit_count", v -> CalculateUtils.bitCount(CastUtils.castNumber(v))));
+        addGlobal(new SingleParameterFunctionMapFeature("bit_not", v -> CalculateUtils.bitNot(CastUtils.castNumber(v))).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("bit_count", v -> CalculateUtils.bitCount(CastUtils.castNumber(v))).deterministic());
 
-        addGlobal(new SingleParameterFunctionMapFeature("math.log", v -> Math.log(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.log1p", v -> Math.log1p(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.log10", v -> Math.log10(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.exp", v -> Math.exp(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.expm1", v -> Math.expm1(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.rint", v -> Math.rint(CastUtils.castNumber(v).doubleValue())));
+        addGlobal(new SingleParameterFunctionMapFeature("math.log", v -> Math.log(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.log1p", v -> Math.log1p(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.log10", v -> Math.log10(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.exp", v -> Math.exp(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.expm1", v -> Math.expm1(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.rint", v -> Math.rint(CastUtils.castNumber(v).doubleValue())).deterministic());
 
-        addGlobal(new SingleParameterFunctionMapFeature("math.sin", v -> Math.sin(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.asin", v -> Math.asin(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.sinh", v -> Math.sinh(CastUtils.castNumber(v).doubleValue())));
+        addGlobal(new SingleParameterFunctionMapFeature("math.sin", v -> Math.sin(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.asin", v -> Math.asin(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.sinh", v -> Math.sinh(CastUtils.castNumber(v).doubleValue())).deterministic());
 
-        addGlobal(new SingleParameterFunctionMapFeature("math.cos", v -> Math.cos(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.cosh", v -> Math.cosh(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.acos", v -> Math.acos(CastUtils.castNumber(v).doubleValue())));
+        addGlobal(new SingleParameterFunctionMapFeature("math.cos", v -> Math.cos(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.cosh", v -> Math.cosh(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.acos", v -> Math.acos(CastUtils.castNumber(v).doubleValue())).deterministic());
 
-        addGlobal(new SingleParameterFunctionMapFeature("math.tan", v -> Math.tan(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.tanh", v -> Math.tanh(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.atan", v -> Math.atan(CastUtils.castNumber(v).doubleValue())));
+        addGlobal(new SingleParameterFunctionMapFeature("math.tan", v -> Math.tan(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.tanh", v -> Math.tanh(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.atan", v -> Math.atan(CastUtils.castNumber(v).doubleValue())).deterministic());
 
-        addGlobal(new SingleParameterFunctionMapFeature("math.ceil", v -> Math.ceil(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.round", v -> Math.round(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.floor", v -> Math.floor(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.abs", v -> Math.abs(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.degrees", v -> Math.toDegrees(CastUtils.castNumber(v).doubleValue())));
-        addGlobal(new SingleParameterFunctionMapFeature("math.radians", v -> Math.toRadians(CastUtils.castNumber(v).doubleValue())));
+        addGlobal(new SingleParameterFunctionMapFeature("math.ceil", v -> Math.ceil(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.round", v -> Math.round(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.floor", v -> Math.floor(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.abs", v -> Math.abs(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.degrees", v -> Math.toDegrees(CastUtils.castNumber(v).doubleValue())).deterministic());
+        addGlobal(new SingleParameterFunctionMapFeature("math.radians", v -> Math.toRadians(CastUtils.castNumber(v).doubleValue())).deterministic());
 
 
         // select take(name,1)
@@ -245,26 +260,199 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
             return stream;
         }));
 
-        addGlobal(new MapAggFeature("sum", flux -> MathFlux.sumDouble(flux.map(CastUtils::castNumber).defaultIfEmpty(0D))));
-        addGlobal(new MapAggFeature("avg", flux -> MathFlux.averageDouble(flux.map(CastUtils::castNumber).defaultIfEmpty(0D))));
-
-        addGlobal(new MapAggFeature("max", flux -> MathFlux.max(flux, CompareUtils::compare).defaultIfEmpty(0D)));
-        addGlobal(new MapAggFeature("min", flux -> MathFlux.min(flux, CompareUtils::compare).defaultIfEmpty(0D)));
+        addGlobal(new MapAggFeature(
+                "sum",
+                (args, flux) -> MathFlux.sumDouble(flux.map(CastUtils::castNumber).defaultIfEmpty(0D)),
+                args -> MapAggFeature.accumulator(new double[1],
+                                                  (sum, value) -> sum[0] += CastUtils.castNumber(value).doubleValue(),
+                                                  sum -> sum[0])));
+        addGlobal(new MapAggFeature(
+                "avg",
+                (args, flux) -> MathFlux.averageDouble(flux.map(CastUtils::castNumber).defaultIfEmpty(0D)),
+                //[总和,数量]
+                args -> MapAggFeature.accumulator(new double[2],
+                                                  (avg, value) -> {
+                                                      avg[0] += CastUtils.castNumber(value).doubleValue();
+                                                      avg[1]++;
+                                                  },
+                                                  avg -> avg[1] == 0 ? 0D : avg[0] / avg[1])));
+
+        addGlobal(new MapAggFeature(
+                "max",
+                (args, flux) -> MathFlux.max(flux, CompareUtils::compare).defaultIfEmpty(0D),
+                args -> MapAggFeature.accumulator(new Object[1],
+                                                  (max, value) -> {
+                                                      if (max[0] == null || CompareUtils.compare(value, max[0]) > 0) {
+                                                          max[0] = value;
+                                                      }
+                                                  },
+                                                  max -> max[0] == null ? 0D : max[0])));
+        addGlobal(new MapAggFeature(
+                "min",
+                (args, flux) -> MathFlux.min(flux, CompareUtils::compare).defaultIfEmpty(0D),
+                args -> MapAggFeature.accumulator(new Object[1],
+                                                  (min, value) -> {
+                                                      if (min[0] == null || CompareUtils.compare(value, min[0]) < 0) {
+                                                          min[0] = value;
+                                                      }
+                                                  },
+                                                  min -> min[0] == null ? 0D : min[0])));
+
+        // select approx_count_distinct(deviceId)
+        // select approx_count_distinct(deviceId,16)
+        addGlobal(new MapAggFeature("approx_count_distinct", (args, flux) -> flux
+                .collect(() -> new HyperLogLog(hllPrecision(args)), HyperLogLog::add)
+                .map(HyperLogLog::cardinality),
+                args -> MapAggFeature.accumulator(new HyperLogLog(hllPrecision(args)), HyperLogLog::add, HyperLogLog::cardinality)));
+        // 输出草图用于跨窗口或者跨分区合并(精度需要相同): select approx_count_distinct(sketch) from ...
+        addGlobal(new MapAggFeature("hll_sketch", (args, flux) -> flux
+                .collect(() -> new HyperLogLog(hllPrecision(args)), HyperLogLog::add)));
+
+        // select percentile(latency,0.99)
+        // select percentile(latency,0.99,0.005)
+        addGlobal(new MapAggFeature("percentile", (args, flux) -> {
+            if (args.isEmpty()) {
+                throw new UnsupportedOperationException("percentile函数需要指定分位,如: percentile(val,0.95)");
+            }
+            double quantile = CastUtils.castNumber(args.get(0)).doubleValue();
+            return flux
+                    .collect(() -> new QuantileSketch(quantileAccuracy(args, 1)), QuantileSketch::add)
+                    .map(sketch -> sketch.getCount() == 0 ? 0D : sketch.quantile(quantile));
+        }, args -> {
+            if (args.isEmpty()) {
+                throw new UnsupportedOperationException("percentile函数需要指定分位,如: percentile(val,0.95)");
+            }
+            double quantile = CastUtils.castNumber(args.get(0)).doubleValue();
+            return MapAggFeature.accumulator(new QuantileSketch(quantileAccuracy(args, 1)),
+                                             QuantileSketch::add,
+                                             sketch -> sketch.getCount() == 0 ? 0D : sketch.quantile(quantile));
+        }));
+        // select median(latency)
+        addGlobal(new MapAggFeature("median", (args, flux) -> flux
+                .collect(() -> new QuantileSketch(quantileAccuracy(args, 0)), QuantileSketch::add)
+                .map(sketch -> sketch.getCount() == 0 ? 0D : sketch.quantile(0.5)),
+                args -> MapAggFeature.accumulator(new QuantileSketch(quantileAccuracy(args, 0)),
+                                                  QuantileSketch::add,
+                                                  sketch -> sketch.getCount() == 0 ? 0D : sketch.quantile(0.5))));
+        // select quantiles(latency,0.5,0.9,0.99)
+        // 指定相对误差时,分位使用逗号分隔的字符串: select quantiles(latency,'0.5,0.9,0.99',0.005)
+        addGlobal(new MapAggFeature("quantiles", (args, flux) -> {
+            double[] quantiles = quantilesArgs(args);
+            return flux
+                    .collect(() -> new QuantileSketch(quantilesAccuracy(args)), QuantileSketch::add)
+                    .map(sketch -> quantiles(sketch, quantiles));
+        }, args -> {
+            double[] quantiles = quantilesArgs(args);
+            return MapAggFeature.accumulator(new QuantileSketch(quantilesAccuracy(args)),
+                                             QuantileSketch::add,
+                                             sketch -> quantiles(sketch, quantiles));
+        }));
+        // 输出草图用于跨窗口或者跨分区合并(精度需要相同): select percentile(sketch,0.99) from ...
+        addGlobal(new MapAggFeature("quantile_sketch", (args, flux) -> flux
+                .collect(() -> new QuantileSketch(quantileAccuracy(args, 0)), QuantileSketch::add)));
+
+        // select stddev(temp),variance(temp),skewness(temp)
+        addMomentsAgg("stddev", Moments::sampleStddev);
+        addMomentsAgg("stddev_samp", Moments::sampleStddev);
+        addMomentsAgg("stddev_pop", Moments::populationStddev);
+        addMomentsAgg("variance", Moments::sampleVariance);
+        addMomentsAgg("var_samp", Moments::sampleVariance);
+        addMomentsAgg("var_pop", Moments::populationVariance);
+        addMomentsAgg("skewness", Moments::skewness);
+        addMomentsAgg("kurtosis", Moments::kurtosis);
+        // 输出中间状态用于跨窗口或者跨分区合并: select stddev(moments) from ...
+        addGlobal(new MapAggFeature("moments",
+                                    (args, flux) -> flux.collect(Moments::new, Moments::add),
+                                    //增量输出时返回副本,避免已输出的结果被后续数据修改
+                                    args -> MapAggFeature.accumulator(new Moments(), Moments::add, moments -> new Moments().merge(moments))));
+
+        // select corr(temp,humidity)
+        addGlobal(new CoMomentsAggFeature("corr", CoMoments::correlation));
+        addGlobal(new CoMomentsAggFeature("covar", CoMoments::sampleCovariance));
+        addGlobal(new CoMomentsAggFeature("covar_samp", CoMoments::sampleCovariance));
+        addGlobal(new CoMomentsAggFeature("covar_pop", CoMoments::populationCovariance));
+
+        // select last_value(state,timestamp),arg_max(deviceId,temp)
+        addGlobal(new ArgAggFeature("first_value", false, false, true));
+        addGlobal(new ArgAggFeature("last_value", true, true, true));
+        addGlobal(new ArgAggFeature("arg_max", true, false, false));
+        addGlobal(new ArgAggFeature("arg_min", false, false, false));
+
+        // select time_weighted_avg(temp,timestamp)
+        addGlobal(new TimeWeightedAggFeature("time_weighted_avg", (state, args) -> state.average()));
+        // select integral(power,timestamp,'h')
+        addGlobal(new TimeWeightedAggFeature("integral", (state, args) -> state.integral(TimeWeightedAggFeature.getUnitMillis(args))));
+        // select increase(counter,timestamp),rate(counter,timestamp)
+        addGlobal(new TimeWeightedAggFeature("increase", (state, args) -> state.increase()));
+        addGlobal(new TimeWeightedAggFeature("rate", (state, args) -> state.rate()));
+
+        // select topk(deviceId,10)
+        addGlobal(new TopKAggFeature("topk", false));
+        // select topk_by(deviceId,traffic,10)
+        addGlobal(new TopKAggFeature("topk_by", true));
 
         addGlobal(new FunctionMapFeature("math.max", 9999, 1,
-                flux -> MathFlux.max(flux, CompareUtils::compare).defaultIfEmpty(0D)));
+                flux -> MathFlux.max(flux, CompareUtils::compare).defaultIfEmpty(0D)).deterministic());
 
         addGlobal(new FunctionMapFeature("math.min", 9999, 1,
-                flux -> MathFlux.min(flux, CompareUtils::compare).defaultIfEmpty(0D)));
+                flux -> MathFlux.min(flux, CompareUtils::compare).defaultIfEmpty(0D)).deterministic());
 
         addGlobal(new FunctionMapFeature("math.avg", 9999, 1,
-                flux -> MathFlux.averageDouble(flux.map(CastUtils::castNumber)).defaultIfEmpty(0D)));
+                flux -> MathFlux.averageDouble(flux.map(CastUtils::castNumber)).defaultIfEmpty(0D)).deterministic());
 
-        addGlobal(new FunctionMapFeature("math.count", 9999, 1, Flux::count));
+        addGlobal(new FunctionMapFeature("math.count", 9999, 1, Flux::count).deterministic());
 
 
     }
 
+    private static void addMomentsAgg(String type, Function<Moments, Object> resultMapper) {
+        addGlobal(new MapAggFeature(type, (args, flux) -> flux
+                .collect(Moments::new, Moments::add)
+                .map(resultMapper),
+                args -> MapAggFeature.accumulator(new Moments(), Moments::add, resultMapper)));
+    }
+
+    private static int hllPrecision(List<Object> args) {
+        return args.isEmpty() ? HyperLogLog.DEFAULT_PRECISION : CastUtils.castNumber(args.get(0)).intValue();
+    }
+
+    //quantiles(val,0.5,0.9) 或者 quantiles(val,'0.5,0.9',0.005)
+    private static double[] quantilesArgs(List<Object> args) {
+        if (!args.isEmpty() && args.get(0) instanceof String) {
+            return Arrays
+                    .stream(((String) args.get(0)).split(","))
+                    .mapToDouble(arg -> CastUtils.castNumber(arg.trim()).doubleValue())
+                    .toArray();
+        }
+        return args
+                .stream()
+                .mapToDouble(arg -> CastUtils.castNumber(arg).doubleValue())
+                .toArray();
+    }
+
+    private static double quantilesAccuracy(List<Object> args) {
+        if (!args.isEmpty() && args.get(0) instanceof String) {
+            return quantileAccuracy(args, 1);
+        }
+        return QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+    }
+
+    private static List<Double> quantiles(QuantileSketch sketch, double[] quantiles) {
+        List<Double> values = new ArrayList<>(quantiles.length);
+        if (sketch.getCount() > 0) {
+            for (double quantile : quantiles) {
+                values.add(sketch.quantile(quantile));
+            }
+        }
+        return values;
+    }
+
+    private static double quantileAccuracy(List<Object> args, int index) {
+        return args.size() > index
+                ? CastUtils.castNumber(args.get(index)).doubleValue()
+                : QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+    }
+
     public static void addGlobal(Feature feature) {
         globalFeatures.put(feature.getId().toLowerCase(), feature);
     }
@@ -312,6 +500,19 @@ public class DefaultReactorQLMetadata implements ReactorQLMetadata {
         }
     }
 
+    public void addSchema(String table, Schema schema) {
+        schemas.put(table, schema);
+    }
+
+    public void addSchema(Map<String, Schema> schemas) {
+        this.schemas.putAll(schemas);
+    }
+
+    @Override
+    public Optional<Schema> getSchema(String table) {
+        return Optional.ofNullable(schemas.get(table));
+    }
+
     @Override
     public PlainSelect getSql() {
         return selectSql;
@@ -0,0 +1,287 @@
+package org.jetlinks.reactor.ql.supports;
+
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.supports.filter.EqualsFilter;
+import org.jetlinks.reactor.ql.supports.filter.InFilter;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.CompareUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 谓词索引,根据查询条件中的等值(=)以及IN条件建立(列,值)到查询的哈希索引,用于快速找出可能匹配某条数据的查询.
+ * <pre>
+ *     select * from device.message where deviceId = 'device-1' and temp > 10
+ *     select * from device.message where productId in ('p1','p2')
+ * </pre>
+ * 每个查询只使用一个条件建立索引: 多个条件使用and连接时,选择常量数量最少的条件(等值条件优先于IN条件),
+ * 不使用列的实际数据分布来估算选择性.
+ * 索引只用于筛选候选查询,候选查询仍然需要执行完整的条件判断.
+ * 所以索引的结果可能包含实际上不匹配的查询,但是不会遗漏可能匹配的查询.
+ * 每条数据的匹配耗时只与建立了索引的列的数量有关,与查询数量无关.
+ *
+ * @param <T> 查询类型
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class PredicateIndex<T> {
+
+    private static final Object UNKNOWN = new Object();
+
+    //列 -> (值 -> 查询)
+    private final Map<String, Map<Object, Set<T>>> indexes = new ConcurrentHashMap<>();
+
+    //列 -> 在此列上建立了索引的查询,数据的值无法计算哈希键时使用
+    private final Map<String, Set<T>> columnTargets = new ConcurrentHashMap<>();
+
+    //无法建立索引的查询,每条数据都需要判断
+    private final Set<T> unindexed = ConcurrentHashMap.newKeySet();
+
+    private final Map<T, Condition> conditions = new ConcurrentHashMap<>();
+
+    /**
+     * 注册查询,根据查询的where条件建立索引
+     *
+     * @param target   查询
+     * @param metadata 查询元数据
+     */
+    public void register(T target, ReactorQLMetadata metadata) {
+        unregister(target);
+        Condition condition = analyze(metadata);
+        conditions.put(target, condition);
+        if (condition.column == null) {
+            unindexed.add(target);
+            return;
+        }
+        Map<Object, Set<T>> index = indexes.computeIfAbsent(condition.column, ignore -> new ConcurrentHashMap<>());
+        for (Object key : condition.keys) {
+            index.compute(key, (k, targets) -> add(targets, target));
+        }
+        columnTargets.compute(condition.column, (k, targets) -> add(targets, target));
+    }
+
+    /**
+     * 注销查询
+     *
+     * @param target 查询
+     * @return 查询是否已注册
+     */
+    public boolean unregister(T target) {
+        Condition condition = conditions.remove(target);
+        if (condition == null) {
+            return false;
+        }
+        if (condition.column == null) {
+            unindexed.remove(target);
+            return true;
+        }
+        Map<Object, Set<T>> index = indexes.get(condition.column);
+        if (index != null) {
+            for (Object key : condition.keys) {
+                index.computeIfPresent(key, (k, targets) -> remove(targets, target));
+            }
+        }
+        columnTargets.computeIfPresent(condition.column, (k, targets) -> remove(targets, target));
+        return true;
+    }
+
+    /**
+     * @return 已注册的查询数量
+     */
+    public int size() {
+        return conditions.size();
+    }
+
+    /**
+     * 查找可能匹配数据的查询
+     *
+     * @param row      数据
+     * @param consumer 候选查询消费者
+     */
+    public void match(Object row, Consumer<T> consumer) {
+        unindexed.forEach(consumer);
+        for (Map.Entry<String, Map<Object, Set<T>>> entry : indexes.entrySet()) {
+            Object value = getValue(row, entry.getKey());
+            //null与任何常量都不相等
+            if (value == null) {
+                continue;
+            }
+            Object key = value == UNKNOWN ? null : CompareUtils.hashKey(value);
+            Set<T> targets = key == null
+                    ? columnTargets.get(entry.getKey())
+                    : entry.getValue().get(key);
+            if (targets != null) {
+                targets.forEach(consumer);
+            }
+        }
+    }
+
+    private static Object getValue(Object row, String column) {
+        if ("this".equals(column)) {
+            return row;
+        }
+        if (row instanceof Map) {
+            return ((Map<?, ?>) row).get(column);
+        }
+        return UNKNOWN;
+    }
+
+    private static <T> Set<T> add(Set<T> targets, T target) {
+        if (targets == null) {
+            targets = ConcurrentHashMap.newKeySet();
+        }
+        targets.add(target);
+        return targets;
+    }
+
+    private static <T> Set<T> remove(Set<T> targets, T target) {
+        targets.remove(target);
+        return targets.isEmpty() ? null : targets;
+    }
+
+    static Condition analyze(ReactorQLMetadata metadata) {
+        PlainSelect select = metadata.getSql();
+        Expression where = select.getWhere();
+        if (where == null || !(select.getFromItem() instanceof Table)) {
+            return Condition.none;
+        }
+        //自定义了比较逻辑时不使用索引
+        boolean equalsSupported = metadata
+                .getFeature(FeatureId.Filter.of("="))
+                .filter(EqualsFilter.class::isInstance)
+                .isPresent();
+        boolean inSupported = metadata
+                .getFeature(FeatureId.Filter.in)
+                .filter(InFilter.class::isInstance)
+                .isPresent();
+
+        Table table = ((Table) select.getFromItem());
+        Set<String> tables = new HashSet<>();
+        tables.add("this");
+        tables.add(SqlUtils.getCleanStr(table.getName()));
+        if (table.getAlias() != null) {
+            tables.add(SqlUtils.getCleanStr(table.getAlias().getName()));
+        }
+
+        List<Expression> conjuncts = new ArrayList<>();
+        flatAnd(where, conjuncts);
+
+        //使用常量最少的条件建立索引,匹配到的候选查询最少
+        Condition selected = Condition.none;
+        for (Expression conjunct : conjuncts) {
+            Condition condition = null;
+            if (equalsSupported && conjunct instanceof EqualsTo) {
+                EqualsTo equalsTo = ((EqualsTo) conjunct);
+                condition = createCondition(tables, equalsTo.getLeftExpression(), Collections.singletonList(equalsTo.getRightExpression()));
+                if (condition == null) {
+                    condition = createCondition(tables, equalsTo.getRightExpression(), Collections.singletonList(equalsTo.getLeftExpression()));
+                }
+            } else if (inSupported && conjunct instanceof InExpression) {
+                InExpression in = ((InExpression) conjunct);
+                if (!in.isNot() && in.getRightItemsList() instanceof ExpressionList) {
+                    condition = createCondition(tables, in.getLeftExpression(), ((ExpressionList) in.getRightItemsList()).getExpressions());
+                }
+            }
+            if (condition != null && (selected.column == null || condition.keys.size() < selected.keys.size())) {
+                selected = condition;
+            }
+        }
+        return selected;
+    }
+
+    private static void flatAnd(Expression expression, List<Expression> container) {
+        if (expression instanceof Parenthesis) {
+            flatAnd(((Parenthesis) expression).getExpression(), container);
+        } else if (expression instanceof AndExpression) {
+            flatAnd(((AndExpression) expression).getLeftExpression(), container);
+            flatAnd(((AndExpression) expression).getRightExpression(), container);
+        } else {
+            container.add(expression);
+        }
+    }
+
+    private static Condition createCondition(Set<String> tables, Expression columnExpr, List<Expression> values) {
+        String column = getColumn(tables, columnExpr);
+        if (column == null || values == null || values.isEmpty()) {
+            return null;
+        }
+        Set<Object> keys = new HashSet<>();
+        for (Expression value : values) {
+            Object key = getLiteralKey(value);
+            if (key == null) {
+                return null;
+            }
+            keys.add(key);
+        }
+        return new Condition(column, keys);
+    }
+
+    private static String getColumn(Set<String> tables, Expression expression) {
+        if (!(expression instanceof Column)) {
+            return null;
+        }
+        Column column = ((Column) expression);
+        Table table = column.getTable();
+        if (table != null && table.getName() != null) {
+            if (table.getSchemaName() != null || !tables.contains(SqlUtils.getCleanStr(table.getName()))) {
+                return null;
+            }
+        }
+        String name = SqlUtils.getCleanStr(column.getColumnName());
+        if (name.contains(".") || name.contains("::") || "$".equals(name) || "*".equals(name)) {
+            return null;
+        }
+        return name;
+    }
+
+    private static Object getLiteralKey(Expression expression) {
+        Expression literal = expression;
+        if (literal instanceof SignedExpression) {
+            literal = ((SignedExpression) literal).getExpression();
+        }
+        //数字常量
+        if (literal instanceof LongValue || literal instanceof DoubleValue) {
+            return ExpressionUtils
+                    .getSimpleValue(expression)
+                    .map(CompareUtils::hashKey)
+                    .orElse(null);
+        }
+        if (!(expression instanceof StringValue)) {
+            return null;
+        }
+        String value = ((StringValue) expression).getValue();
+        //以数字开头的日期格式字符串(如:2020-01-01 00:00:00)使用时间戳作为键,与数字以及时间类型的数据比较的结果一致
+        Object key = CompareUtils.hashKey(value);
+        //以字母开头的日期格式字符串不会转换为时间戳,但是会按时间戳与时间类型的数据进行比较,无法使用哈希索引
+        if (key instanceof String && CastUtils.parseDateMillis(value) != null) {
+            return null;
+        }
+        return key;
+    }
+
+    static class Condition {
+        static final Condition none = new Condition(null, Collections.emptySet());
+
+        private final String column;
+
+        private final Set<Object> keys;
+
+        Condition(String column, Set<Object> keys) {
+            this.column = column;
+            this.keys = keys;
+        }
+    }
+}
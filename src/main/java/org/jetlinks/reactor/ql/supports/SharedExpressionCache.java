@@ -0,0 +1,188 @@
+package org.jetlinks.reactor.ql.supports;
+
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.schema.Column;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 公共表达式缓存,同一个查询组内的多个查询对同一条数据执行相同的表达式时,只计算一次.
+ * <p>
+ * 只有仅依赖当前行数据,并且只使用确定性函数({@link ValueMapFeature#isDeterministic()})的表达式才会被缓存,
+ * 如:<code>math.round(temp*1.8+32)</code>.包含子查询,参数,this以及指定了表名的列的表达式不会被缓存.
+ * <p>
+ * 缓存以数据本身(引用)以及表达式引用的列的值作为标识,处理下一条数据,或者数据被修改后自动失效.
+ * 引用的列的值不是不可变类型(如字符串,数字)时不会缓存.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class SharedExpressionCache {
+
+    public static final String SETTING_KEY = "shared-expression-cache";
+
+    private volatile Slot current;
+
+    public static Function<ReactorQLRecord, ? extends Publisher<?>> wrap(Expression expression,
+                                                                      Function<ReactorQLRecord, ? extends Publisher<?>> mapper,
+                                                                      ReactorQLMetadata metadata) {
+        Object cache = metadata.getSetting(SETTING_KEY).orElse(null);
+        if (cache instanceof SharedExpressionCache) {
+            return ((SharedExpressionCache) cache).wrapCached(expression, mapper, metadata);
+        }
+        return mapper;
+    }
+
+    public Function<ReactorQLRecord, ? extends Publisher<?>> wrapCached(Expression expression,
+                                                                     Function<ReactorQLRecord, ? extends Publisher<?>> mapper,
+                                                                     ReactorQLMetadata metadata) {
+        Set<String> columns = new LinkedHashSet<>();
+        if (!isCacheable(expression, metadata, columns) || columns.isEmpty()) {
+            return mapper;
+        }
+        String key = expression.toString();
+        String[] requiredColumns = columns.toArray(new String[0]);
+
+        return record -> {
+            Object row = record.getRecord();
+            if (!(row instanceof Map)) {
+                return mapper.apply(record);
+            }
+            Object[] args = new Object[requiredColumns.length];
+            for (int i = 0; i < requiredColumns.length; i++) {
+                Object value = ((Map<?, ?>) row).get(requiredColumns[i]);
+                //列不存在时会从其他地方获取值,结果可能与查询相关;可变的值无法判断是否被修改,都不能缓存.
+                if (!isImmutable(value)) {
+                    return mapper.apply(record);
+                }
+                args[i] = value;
+            }
+            Slot slot = current;
+            if (slot == null || slot.row != row) {
+                current = slot = new Slot(row);
+            }
+            Entry entry = slot.values.get(key);
+            //数据被修改后重新计算
+            if (entry == null || !Arrays.equals(entry.args, args)) {
+                entry = new Entry(args, Mono.<Object>from(mapper.apply(record)).cache());
+                slot.values.put(key, entry);
+            }
+            return entry.value;
+        };
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String
+                || value instanceof Long
+                || value instanceof Integer
+                || value instanceof Double
+                || value instanceof Float
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof BigDecimal
+                || value instanceof BigInteger
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Enum
+                || value instanceof Temporal;
+    }
+
+    static boolean isCacheable(Expression expression, ReactorQLMetadata metadata, Set<String> columns) {
+        if (expression instanceof Parenthesis) {
+            return isCacheable(((Parenthesis) expression).getExpression(), metadata, columns);
+        }
+        if (expression instanceof Column) {
+            Column column = ((Column) expression);
+            if (column.getTable() != null && column.getTable().getName() != null) {
+                return false;
+            }
+            String name = SqlUtils.getCleanStr(column.getColumnName());
+            //this为整行数据,无法判断是否被修改
+            if (name.contains(".") || name.contains("::") || "this".equals(name)) {
+                return false;
+            }
+            columns.add(name);
+            return true;
+        }
+        if (expression instanceof StringValue
+                || expression instanceof LongValue
+                || expression instanceof DoubleValue
+                || expression instanceof NullValue) {
+            return true;
+        }
+        if (expression instanceof net.sf.jsqlparser.expression.Function) {
+            net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+            if (function.isAllColumns() || !isDeterministic(metadata, FeatureId.ValueMap.of(function.getName()))) {
+                return false;
+            }
+            if (function.getParameters() == null || function.getParameters().getExpressions() == null) {
+                return true;
+            }
+            for (Expression parameter : function.getParameters().getExpressions()) {
+                if (!isCacheable(parameter, metadata, columns)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (expression instanceof CastExpression) {
+            return isDeterministic(metadata, FeatureId.ValueMap.cast)
+                    && isCacheable(((CastExpression) expression).getLeftExpression(), metadata, columns);
+        }
+        if (expression instanceof SignedExpression) {
+            return isCacheable(((SignedExpression) expression).getExpression(), metadata, columns);
+        }
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = ((BinaryExpression) expression);
+            //计算表达式需要为确定性的函数,其他为比较等条件表达式
+            Optional<ValueMapFeature> feature = metadata.getFeature(FeatureId.ValueMap.of(binary.getStringExpression()));
+            if (feature.isPresent() && !feature.get().isDeterministic()) {
+                return false;
+            }
+            return isCacheable(binary.getLeftExpression(), metadata, columns)
+                    && isCacheable(binary.getRightExpression(), metadata, columns);
+        }
+        return false;
+    }
+
+    private static boolean isDeterministic(ReactorQLMetadata metadata, FeatureId<ValueMapFeature> id) {
+        return metadata
+                .getFeature(id)
+                .map(ValueMapFeature::isDeterministic)
+                .orElse(false);
+    }
+
+    static class Slot {
+        private final Object row;
+
+        private final Map<String, Entry> values = new ConcurrentHashMap<>();
+
+        Slot(Object row) {
+            this.row = row;
+        }
+    }
+
+    static class Entry {
+        //计算时引用的列的值
+        private final Object[] args;
+
+        private final Mono<Object> value;
+
+        Entry(Object[] args, Mono<Object> value) {
+            this.args = args;
+            this.value = value;
+        }
+    }
+}
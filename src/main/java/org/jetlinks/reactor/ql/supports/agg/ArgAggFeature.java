@@ -0,0 +1,114 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import net.sf.jsqlparser.expression.Expression;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CompareUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 根据排序值获取对应的值,每个分组只保存一个候选值,支持乱序数据.
+ * <pre>
+ *     select last_value(state,timestamp) from device.message group by deviceId,interval('1m')
+ *     select first_value(state,timestamp) from device.message
+ *     select arg_max(deviceId,temp) hottest from device.message
+ *     select arg_min(deviceId,temp) coldest from device.message
+ * </pre>
+ * 排序值相同时,last_value使用后到达的数据,first_value,arg_max,arg_min使用先到达的数据.
+ * first_value,last_value未指定排序值时按数据到达的顺序.值或者排序值为null的数据将被忽略.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class ArgAggFeature implements ValueAggMapFeature {
+
+    private final String id;
+
+    //是否获取排序值最大的值
+    private final boolean max;
+
+    //排序值相同时是否使用后到达的值
+    private final boolean replaceOnTie;
+
+    //是否允许不指定排序值
+    private final boolean orderOptional;
+
+    public ArgAggFeature(String type, boolean max, boolean replaceOnTie, boolean orderOptional) {
+        this.id = FeatureId.ValueAggMap.of(type).getId();
+        this.max = max;
+        this.replaceOnTie = replaceOnTie;
+        this.orderOptional = orderOptional;
+    }
+
+    @Override
+    public Function<Flux<ReactorQLRecord>, Flux<Object>> createMapper(Expression expression, ReactorQLMetadata metadata) {
+        net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+
+        List<Expression> expressions = function.getParameters() == null ? null : function.getParameters().getExpressions();
+        if (expressions == null || expressions.isEmpty() || expressions.size() > 2 || (expressions.size() == 1 && !orderOptional)) {
+            throw new UnsupportedOperationException("函数[" + function.getName() + "]需要指定值以及排序值,如: " + function.getName() + "(val,timestamp)");
+        }
+        Function<ReactorQLRecord, ? extends Publisher<?>> valueMapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+        if (expressions.size() == 1) {
+            //按到达顺序
+            return max
+                    ? flux -> flux.<Object>flatMap(valueMapper).takeLast(1)
+                    : flux -> flux.<Object>flatMap(valueMapper).take(1);
+        }
+        Function<ReactorQLRecord, ? extends Publisher<?>> orderMapper = ValueMapFeature.createMapperNow(expressions.get(1), metadata);
+
+        return flux -> flux
+                .flatMap(record -> Mono.zip(Mono.from(valueMapper.apply(record)), Mono.from(orderMapper.apply(record))))
+                .collect(Candidate::new, (candidate, tp2) -> candidate.offer(tp2.getT1(), tp2.getT2()))
+                .filter(candidate -> candidate.present)
+                .map(candidate -> candidate.value)
+                .flux();
+    }
+
+    private class Candidate {
+        private boolean present;
+        private Object value;
+        private Object order;
+
+        void offer(Object value, Object order) {
+            if (present) {
+                int compare = compareOrder(order, this.order);
+                if (!max) {
+                    compare = -compare;
+                }
+                if (compare < 0 || (compare == 0 && !replaceOnTie)) {
+                    return;
+                }
+            }
+            this.present = true;
+            this.value = value;
+            this.order = order;
+        }
+    }
+
+    static int compareOrder(Object left, Object right) {
+        //数字和时间统一转换为Double后比较
+        Object leftKey = CompareUtils.hashKey(left);
+        Object rightKey = CompareUtils.hashKey(right);
+        if (leftKey instanceof Double && rightKey instanceof Double) {
+            return Double.compare(((Double) leftKey), ((Double) rightKey));
+        }
+        if (leftKey instanceof String && rightKey instanceof String) {
+            return ((String) leftKey).compareTo(((String) rightKey));
+        }
+        return CompareUtils.compare(left, right);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,93 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+/**
+ * 单次遍历计算两组值的协方差以及相关系数,使用Welford增量算法保证数值稳定性,支持合并.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class CoMoments {
+
+    private long count;
+
+    private double meanX, meanY;
+
+    //与均值之差的平方和
+    private double m2x, m2y;
+
+    //(x-meanX)*(y-meanY)之和
+    private double c;
+
+    public CoMoments add(double x, double y) {
+        long n = ++count;
+        double dx = x - meanX;
+        double dy = y - meanY;
+        meanX += dx / n;
+        meanY += dy / n;
+        c += dx * (y - meanY);
+        m2x += dx * (x - meanX);
+        m2y += dy * (y - meanY);
+        return this;
+    }
+
+    /**
+     * 合并另外一个统计
+     *
+     * @param other 统计
+     * @return this
+     */
+    public CoMoments merge(CoMoments other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            meanX = other.meanX;
+            meanY = other.meanY;
+            m2x = other.m2x;
+            m2y = other.m2y;
+            c = other.c;
+            return this;
+        }
+        double na = count, nb = other.count;
+        double n = na + nb;
+        double dx = other.meanX - meanX;
+        double dy = other.meanY - meanY;
+        double factor = na * nb / n;
+        c += other.c + dx * dy * factor;
+        m2x += other.m2x + dx * dx * factor;
+        m2y += other.m2y + dy * dy * factor;
+        meanX += dx * nb / n;
+        meanY += dy * nb / n;
+        count += other.count;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return 总体协方差, 没有数据时返回0
+     */
+    public double populationCovariance() {
+        return count == 0 ? 0D : c / count;
+    }
+
+    /**
+     * @return 样本协方差, 数据少于2个时返回0
+     */
+    public double sampleCovariance() {
+        return count < 2 ? 0D : c / (count - 1);
+    }
+
+    /**
+     * @return 皮尔逊相关系数, 任意一组值全部相同时返回0
+     */
+    public double correlation() {
+        if (count < 2 || m2x <= 0 || m2y <= 0) {
+            return 0D;
+        }
+        return Math.max(-1, Math.min(1, c / Math.sqrt(m2x * m2y)));
+    }
+}
@@ -0,0 +1,62 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import net.sf.jsqlparser.expression.Expression;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 基于{@link CoMoments}的两组值聚合函数,任意一个值为null时忽略此条数据.
+ * <pre>
+ *     select corr(temp,humidity) from device.message
+ *     select covar_pop(temp,humidity) from device.message
+ * </pre>
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class CoMomentsAggFeature implements ValueAggMapFeature {
+
+    private final String id;
+
+    private final Function<CoMoments, Object> resultMapper;
+
+    public CoMomentsAggFeature(String type, Function<CoMoments, Object> resultMapper) {
+        this.id = FeatureId.ValueAggMap.of(type).getId();
+        this.resultMapper = resultMapper;
+    }
+
+    @Override
+    public Function<Flux<ReactorQLRecord>, Flux<Object>> createMapper(Expression expression, ReactorQLMetadata metadata) {
+        net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+
+        List<Expression> expressions = function.getParameters() == null ? null : function.getParameters().getExpressions();
+        if (expressions == null || expressions.size() != 2) {
+            throw new UnsupportedOperationException("函数[" + function.getName() + "]需要2个参数:" + expression);
+        }
+        Function<ReactorQLRecord, ? extends Publisher<?>> xMapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+        Function<ReactorQLRecord, ? extends Publisher<?>> yMapper = ValueMapFeature.createMapperNow(expressions.get(1), metadata);
+
+        return flux -> flux
+                .flatMap(record -> Mono.zip(Mono.from(xMapper.apply(record)), Mono.from(yMapper.apply(record))))
+                .collect(CoMoments::new, (moments, tp2) -> moments.add(
+                        CastUtils.castNumber(tp2.getT1()).doubleValue(),
+                        CastUtils.castNumber(tp2.getT2()).doubleValue()))
+                .map(resultMapper)
+                .flux();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+}
@@ -9,10 +9,32 @@ import org.jetlinks.reactor.ql.ReactorQLRecord;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FromFeature;
 import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Function;
 
+/**
+ * 收集数据为集合
+ * <pre>
+ *     select collect_list() from test
+ *     select collect_list((select name from t)) from test
+ *     select collect_list(temp) from test
+ *
+ *     -- 最多100个,超过时保留最后100个(first,last,reservoir)
+ *     select collect_list(temp,100,'last') from test
+ *     -- 内存中超过10000个时写入临时文件
+ *     select collect_list(this,0,'first',10000) from test
+ * </pre>
+ */
 public class CollectListAggFeature implements ValueAggMapFeature {
 
    public static final String ID = FeatureId.ValueAggMap.of("collect_list").getId();
@@ -23,21 +45,64 @@ public class CollectListAggFeature implements ValueAggMapFeature {
 
         net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
 
-        if (function.getParameters() == null || CollectionUtils.isEmpty(function.getParameters().getExpressions())) {
-            return flux -> flux.map(ReactorQLRecord::getRecord).collectList().cast(Object.class).flux();
+        List<Expression> expressions = function.getParameters() == null
+                ? Collections.emptyList()
+                : function.getParameters().getExpressions();
+
+        Function<Flux<ReactorQLRecord>, Flux<Object>> valueMapper;
+        if (CollectionUtils.isEmpty(expressions)) {
+            valueMapper = flux -> flux.map(ReactorQLRecord::getRecord);
+        } else if (expressions.get(0) instanceof SubSelect) {
+            Function<ReactorQLContext, Flux<ReactorQLRecord>> mapper = FromFeature.createFromMapperByFrom(((SubSelect) expressions.get(0)), metadata);
+            valueMapper = flux -> mapper
+                    .apply(ReactorQLContext.ofDatasource((r) -> flux))
+                    .map(ReactorQLRecord::getRecord);
+        } else {
+            Function<ReactorQLRecord, ? extends Publisher<?>> mapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+            valueMapper = flux -> flux.flatMap(mapper);
         }
-        {
-            Expression expr = function.getParameters().getExpressions().get(0);
-            if (expr instanceof SubSelect) {
-                Function<ReactorQLContext, Flux<ReactorQLRecord>> mapper = FromFeature.createFromMapperByFrom(((SubSelect) expr), metadata);
-                return flux -> mapper.apply(ReactorQLContext.ofDatasource((r) -> flux))
-                        .map(ReactorQLRecord::getRecord)
-                        .collectList()
-                        .cast(Object.class)
-                        .flux();
+        int maxSize = expressions.size() > 1
+                ? CastUtils.castNumber(getArg(expressions.get(1))).intValue()
+                : 0;
+        ListCollector.Policy policy = expressions.size() > 2
+                ? parsePolicy(String.valueOf(getArg(expressions.get(2))))
+                : ListCollector.Policy.first;
+        int spillThreshold = expressions.size() > 3
+                ? CastUtils.castNumber(getArg(expressions.get(3))).intValue()
+                : 0;
+        String name = function.toString();
+
+        return flux -> Flux
+                .deferWithContext(ctx -> {
+                    ListCollector collector = new ListCollector(maxSize, policy, spillThreshold);
+                    return valueMapper
+                            .apply(flux)
+                            .doOnNext(collector::add)
+                            .then(Mono.<Object>fromSupplier(collector::getResult))
+                            .doFinally(signal -> {
+                                ctx.<ReactorQLMetrics>getOrEmpty(ReactorQLMetrics.class)
+                                   .ifPresent(metrics -> metrics.recordMemoryUsage(name, collector.memoryUsage()));
+                                //取消或者错误时结果不会被使用,删除临时文件
+                                if (signal != SignalType.ON_COMPLETE) {
+                                    collector.close();
+                                }
+                            });
+                });
+    }
+
+    private static Object getArg(Expression expr) {
+        return ExpressionUtils
+                .getSimpleValue(expr)
+                .orElseThrow(() -> new UnsupportedOperationException("unsupported expression:" + expr));
+    }
+
+    private static ListCollector.Policy parsePolicy(String policy) {
+        for (ListCollector.Policy value : ListCollector.Policy.values()) {
+            if (value.name().equalsIgnoreCase(policy)) {
+                return value;
             }
         }
-        throw new UnsupportedOperationException("不支持的表达式:" + expression);
+        throw new UnsupportedOperationException("不支持的策略:" + policy + ",可选值: first,last,reservoir");
     }
 
     @Override
@@ -5,9 +5,12 @@ import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class CountAggFeature implements ValueAggMapFeature {
 
@@ -20,6 +23,24 @@ public class CountAggFeature implements ValueAggMapFeature {
         return flux -> flux.count().cast(Object.class).flux();
     }
 
+    @Override
+    public Supplier<? extends Accumulator> createAccumulator(Expression expression, ReactorQLMetadata metadata) {
+        return () -> new Accumulator() {
+            private long count;
+
+            @Override
+            public Publisher<?> accumulate(ReactorQLRecord record) {
+                count++;
+                return Mono.empty();
+            }
+
+            @Override
+            public Object snapshot() {
+                return count;
+            }
+        };
+    }
+
     @Override
     public String getId() {
         return ID;
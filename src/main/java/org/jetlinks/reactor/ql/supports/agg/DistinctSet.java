@@ -0,0 +1,226 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 用于聚合函数去重(如: count(distinct deviceId))的集合,根据值的类型使用不同的开放寻址哈希表存储,
+ * 避免装箱以及HashMap节点带来的内存开销.
+ * <ul>
+ *     <li>整数以及值为整数的浮点数: long[]</li>
+ *     <li>其他浮点数: long[] (Double.doubleToLongBits)</li>
+ *     <li>字符串: String[]</li>
+ *     <li>其他: {@link HashSet}</li>
+ * </ul>
+ * 非线程安全.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class DistinctSet {
+
+    private LongSet longs;
+
+    private LongSet doubles;
+
+    private StringSet strings;
+
+    private Set<Object> others;
+
+    /**
+     * 添加值
+     *
+     * @param value 值
+     * @return 值是否不存在
+     */
+    public boolean add(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Long
+                || value instanceof Integer
+                || value instanceof Short
+                || value instanceof Byte) {
+            return addLong(((Number) value).longValue());
+        }
+        if (value instanceof Number) {
+            double doubleValue = ((Number) value).doubleValue();
+            long longValue = (long) doubleValue;
+            if (longValue == doubleValue) {
+                return addLong(longValue);
+            }
+            if (doubles == null) {
+                doubles = new LongSet();
+            }
+            return doubles.add(Double.doubleToLongBits(doubleValue));
+        }
+        if (value instanceof CharSequence) {
+            if (strings == null) {
+                strings = new StringSet();
+            }
+            return strings.add(value.toString());
+        }
+        if (others == null) {
+            others = new HashSet<>();
+        }
+        return others.add(value);
+    }
+
+    private boolean addLong(long value) {
+        if (longs == null) {
+            longs = new LongSet();
+        }
+        return longs.add(value);
+    }
+
+    /**
+     * @return 不重复值的数量
+     */
+    public long size() {
+        long size = 0;
+        if (longs != null) {
+            size += longs.size;
+        }
+        if (doubles != null) {
+            size += doubles.size;
+        }
+        if (strings != null) {
+            size += strings.size;
+        }
+        if (others != null) {
+            size += others.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return 估算的内存占用(字节)
+     */
+    public long memoryUsage() {
+        long bytes = 16;
+        if (longs != null) {
+            bytes += longs.memoryUsage();
+        }
+        if (doubles != null) {
+            bytes += doubles.memoryUsage();
+        }
+        if (strings != null) {
+            bytes += strings.memoryUsage();
+        }
+        if (others != null) {
+            //HashMap.Node + 值
+            bytes += others.size() * 64L;
+        }
+        return bytes;
+    }
+
+    static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+
+    static class LongSet {
+        private long[] keys = new long[16];
+        private boolean hasZero;
+        private int size;
+        private int used;
+
+        boolean add(long value) {
+            if (value == 0) {
+                if (hasZero) {
+                    return false;
+                }
+                hasZero = true;
+                size++;
+                return true;
+            }
+            int mask = keys.length - 1;
+            int index = mix(value) & mask;
+            long key;
+            while ((key = keys[index]) != 0) {
+                if (key == value) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = value;
+            size++;
+            if (++used > keys.length >> 1) {
+                rehash();
+            }
+            return true;
+        }
+
+        private void rehash() {
+            long[] old = keys;
+            keys = new long[old.length << 1];
+            int mask = keys.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int index = mix(key) & mask;
+                    while (keys[index] != 0) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = key;
+                }
+            }
+        }
+
+        long memoryUsage() {
+            return 16 + 8L * keys.length;
+        }
+    }
+
+    static class StringSet {
+        private String[] keys = new String[16];
+        private int[] hashes = new int[16];
+        private int size;
+        private long chars;
+
+        boolean add(String value) {
+            int hash = mix(value.hashCode());
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            String key;
+            while ((key = keys[index]) != null) {
+                if (hashes[index] == hash && key.equals(value)) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = value;
+            hashes[index] = hash;
+            size++;
+            chars += value.length();
+            if (size > keys.length >> 1) {
+                rehash();
+            }
+            return true;
+        }
+
+        private void rehash() {
+            String[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            keys = new String[oldKeys.length << 1];
+            hashes = new int[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int index = oldHashes[i] & mask;
+                    while (keys[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    hashes[index] = oldHashes[i];
+                }
+            }
+        }
+
+        long memoryUsage() {
+            //引用 + hash + String对象头及字符数组
+            return 32 + 8L * keys.length + 40L * size + 2 * chars;
+        }
+    }
+}
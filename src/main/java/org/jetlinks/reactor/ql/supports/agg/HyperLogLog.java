@@ -0,0 +1,200 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog基数估算,使用固定大小(2^precision字节)的内存估算不重复值的数量,标准误差约为 1.04/sqrt(2^precision).
+ * <p>
+ * 精度相同的草图可以合并,用于跨窗口或者跨分区汇总.
+ * <pre>
+ *     select approx_count_distinct(deviceId) total from message group by interval('1m')
+ *     select approx_count_distinct(deviceId,16) total from message
+ *     select hll_sketch(deviceId) sketch from message group by interval('1m')
+ * </pre>
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+
+    public static final int MAX_PRECISION = 18;
+
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new UnsupportedOperationException("精度必须在" + MIN_PRECISION + "到" + MAX_PRECISION + "之间:" + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 添加值,如果值为{@link HyperLogLog}则进行合并
+     *
+     * @param value 值
+     * @return this
+     */
+    public HyperLogLog add(Object value) {
+        if (value == null) {
+            return this;
+        }
+        if (value instanceof HyperLogLog) {
+            return merge(((HyperLogLog) value));
+        }
+        return addHash(hash(value));
+    }
+
+    public HyperLogLog addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        //剩余位中第一个1出现的位置
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+        return this;
+    }
+
+    /**
+     * 合并另外一个草图
+     *
+     * @param other 草图
+     * @return this
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new UnsupportedOperationException("无法合并不同精度的HyperLogLog:" + precision + "," + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return 估算的不重复值数量
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1D / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        //小基数时使用线性计数修正
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return 序列化后的数据, 可通过{@link HyperLogLog#fromBytes(byte[])}还原
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION || bytes.length != (1 << precision) + 1) {
+            throw new UnsupportedOperationException("错误的HyperLogLog数据");
+        }
+        byte[] registers = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, registers, 0, registers.length);
+        return new HyperLogLog(precision, registers);
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(cardinality());
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * 计算64位哈希值,值相等的整数和浮点数(如 1 和 1.0)哈希值相同
+     *
+     * @param value 值
+     * @return 哈希值
+     */
+    public static long hash(Object value) {
+        if (value instanceof Number) {
+            Number number = ((Number) value);
+            double doubleValue = number.doubleValue();
+            long longValue = number.longValue();
+            if (doubleValue == longValue) {
+                return mix(longValue ^ 0x2545F4914F6CDD1DL);
+            }
+            return mix(Double.doubleToLongBits(doubleValue) ^ 0x9E3779B97F4A7C15L);
+        }
+        if (value instanceof byte[]) {
+            return hash(((byte[]) value));
+        }
+        return hash(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long hash(byte[] bytes) {
+        //FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash ^ bytes.length);
+    }
+
+    //MurmurHash3 fmix64
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,157 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 可限制数量的集合收集器,超过数量时根据{@link Policy}截断或者采样,并估算内存占用.
+ *
+ * @author zhouhao
+ * @see CollectListAggFeature
+ * @since 1.0.8
+ */
+public class ListCollector {
+
+    public enum Policy {
+        //保留前N个
+        first,
+        //保留最后N个
+        last,
+        //蓄水池采样,每个数据被保留的概率相同
+        reservoir
+    }
+
+    private final int maxSize;
+
+    private final Policy policy;
+
+    private final List<Object> list;
+
+    //环形缓冲的写入位置,用于last策略
+    private int next;
+
+    private long total;
+
+    private long memoryUsage;
+
+    /**
+     * @param maxSize        最大数量,小于等于0时不限制
+     * @param policy         超过数量时的策略
+     * @param spillThreshold 内存中超过此数量时写入临时文件,小于等于0时不写入,只对first策略有效
+     */
+    public ListCollector(int maxSize, Policy policy, int spillThreshold) {
+        this.maxSize = maxSize <= 0 ? Integer.MAX_VALUE : maxSize;
+        this.policy = policy;
+        if (spillThreshold > 0 && policy == Policy.first) {
+            list = new SpillableList(spillThreshold);
+        } else {
+            list = new ArrayList<>(Math.min(this.maxSize, 16));
+        }
+    }
+
+    public void add(Object value) {
+        total++;
+        if (list.size() < maxSize) {
+            list.add(value);
+            memoryUsage += estimateSize(value);
+            return;
+        }
+        int index;
+        switch (policy) {
+            case last:
+                index = next;
+                next = (next + 1) % maxSize;
+                break;
+            case reservoir:
+                long random = ThreadLocalRandom.current().nextLong(total);
+                if (random >= maxSize) {
+                    return;
+                }
+                index = (int) random;
+                break;
+            default:
+                return;
+        }
+        memoryUsage += estimateSize(value) - estimateSize(list.get(index));
+        list.set(index, value);
+    }
+
+    /**
+     * @return 收集到的数据, last策略按到达顺序排序
+     */
+    public List<Object> getResult() {
+        if (policy == Policy.last && next > 0) {
+            List<Object> result = new ArrayList<>(list.size());
+            result.addAll(list.subList(next, list.size()));
+            result.addAll(list.subList(0, next));
+            return result;
+        }
+        return list;
+    }
+
+    /**
+     * 丢弃收集到的数据,删除写入的临时文件.
+     * 结果已经被使用时不需要调用,遍历完成后会自动删除临时文件.
+     *
+     * @see SpillableList#close()
+     */
+    public void close() {
+        if (list instanceof SpillableList) {
+            ((SpillableList) list).close();
+        }
+    }
+
+    /**
+     * @return 收到的数据总量
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return 内存中的数据估算占用的字节数, 已写入临时文件的数据不计算在内
+     */
+    public long memoryUsage() {
+        if (list instanceof SpillableList) {
+            long usage = 0;
+            for (Object value : ((SpillableList) list).getBuffer()) {
+                usage += estimateSize(value);
+            }
+            return usage;
+        }
+        return memoryUsage;
+    }
+
+    /**
+     * 粗略估算对象占用的字节数
+     *
+     * @param value 对象
+     * @return 字节数
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof CharSequence) {
+            return 40 + 2L * ((CharSequence) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Date) {
+            return 24;
+        }
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 40;
+            for (Object element : ((Collection<?>) value)) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        }
+        return 64;
+    }
+}
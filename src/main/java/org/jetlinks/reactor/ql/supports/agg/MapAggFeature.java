@@ -14,8 +14,10 @@ import reactor.core.publisher.Flux;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class MapAggFeature implements ValueAggMapFeature {
 
@@ -23,12 +25,27 @@ public class MapAggFeature implements ValueAggMapFeature {
 
     private final BiFunction<List<Object>, Flux<Object>, Publisher<?>> mapper;
 
+    private Function<List<Object>, ValueAccumulator> accumulator;
+
     public MapAggFeature(String type,
                          BiFunction<List<Object>, Flux<Object>, Publisher<?>> mapper) {
         this.id = FeatureId.ValueAggMap.of(type).getId();
         this.mapper = mapper;
     }
 
+    /**
+     * @param type        函数名
+     * @param mapper      聚合函数
+     * @param accumulator 根据参数创建增量聚合器,用于增量输出聚合结果,结果需要与聚合函数一致
+     * @since 1.0.8
+     */
+    public MapAggFeature(String type,
+                         BiFunction<List<Object>, Flux<Object>, Publisher<?>> mapper,
+                         Function<List<Object>, ValueAccumulator> accumulator) {
+        this(type, mapper);
+        this.accumulator = accumulator;
+    }
+
     public MapAggFeature(String type,
                          Function<Flux<Object>, Publisher<?>> mapper) {
         this.id = FeatureId.ValueAggMap.of(type).getId();
@@ -43,23 +60,94 @@ public class MapAggFeature implements ValueAggMapFeature {
 
         Expression exp = expressions.get(0);
         Function<ReactorQLRecord, ? extends Publisher<?>> columnMapper = ValueMapFeature.createMapperNow(exp, metadata);
+        List<Object> argsMapper = createArgs(expressions);
+
+        return flux -> Flux.from(mapper.apply(argsMapper, flux.flatMap(columnMapper)));
+
+    }
+
+    @Override
+    public Supplier<? extends Accumulator> createAccumulator(Expression expression, ReactorQLMetadata metadata) {
+        if (accumulator == null) {
+            return null;
+        }
+        net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+
+        List<Expression> expressions = function.getParameters().getExpressions();
+
+        Function<ReactorQLRecord, ? extends Publisher<?>> columnMapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+        List<Object> args = createArgs(expressions);
+
+        return () -> {
+            ValueAccumulator valueAccumulator = accumulator.apply(args);
+            return new Accumulator() {
+                @Override
+                public Publisher<?> accumulate(ReactorQLRecord record) {
+                    return Flux.from(columnMapper.apply(record)).doOnNext(valueAccumulator::add);
+                }
+
+                @Override
+                public Object snapshot() {
+                    return valueAccumulator.snapshot();
+                }
+            };
+        };
+    }
+
+    private static List<Object> createArgs(List<Expression> expressions) {
         if (expressions.size() == 1) {
-            return flux -> Flux.from(mapper.apply(Collections.emptyList(), flux.flatMap(columnMapper)));
+            return Collections.emptyList();
         }
-        List<Object> argsMapper = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
 
         for (int i = 1; i < expressions.size(); i++) {
             Expression expr = expressions.get(i);
-            argsMapper.add(ExpressionUtils.getSimpleValue(expr)
+            args.add(ExpressionUtils.getSimpleValue(expr)
                     .orElseThrow(() -> new UnsupportedOperationException("unsupported expression:" + expr)));
         }
-
-        return flux -> Flux.from(mapper.apply(argsMapper, flux.flatMap(columnMapper)));
-
+        return args;
     }
 
     @Override
     public String getId() {
         return id;
     }
+
+    /**
+     * 基于值的增量聚合器
+     *
+     * @since 1.0.8
+     */
+    public interface ValueAccumulator {
+
+        void add(Object value);
+
+        Object snapshot();
+    }
+
+    /**
+     * 使用状态对象创建增量聚合器
+     *
+     * @param state    状态
+     * @param adder    累加函数
+     * @param snapshot 获取结果函数
+     * @param <S>      状态类型
+     * @return 增量聚合器
+     * @since 1.0.8
+     */
+    public static <S> ValueAccumulator accumulator(S state,
+                                                   BiConsumer<S, Object> adder,
+                                                   Function<S, Object> snapshot) {
+        return new ValueAccumulator() {
+            @Override
+            public void add(Object value) {
+                adder.accept(state, value);
+            }
+
+            @Override
+            public Object snapshot() {
+                return snapshot.apply(state);
+            }
+        };
+    }
 }
@@ -0,0 +1,139 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.utils.CastUtils;
+
+/**
+ * 单次遍历计算方差,标准差,偏度以及峰度,使用Welford(Terriberry)增量算法保证数值稳定性.
+ * 只保存5个基本类型的状态,支持合并,可用于分区或者滑动窗口的中间结果.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class Moments {
+
+    private long count;
+
+    private double mean;
+
+    //与均值之差的2,3,4次方之和
+    private double m2, m3, m4;
+
+    /**
+     * 添加值,如果值为{@link Moments}则合并
+     *
+     * @param value 值
+     * @return this
+     */
+    public Moments add(Object value) {
+        if (value instanceof Moments) {
+            return merge(((Moments) value));
+        }
+        return add(CastUtils.castNumber(value).doubleValue());
+    }
+
+    public Moments add(double value) {
+        long n1 = count;
+        long n = ++count;
+        double delta = value - mean;
+        double deltaN = delta / n;
+        double deltaN2 = deltaN * deltaN;
+        double term1 = delta * deltaN * n1;
+        mean += deltaN;
+        m4 += term1 * deltaN2 * ((double) n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+        m2 += term1;
+        return this;
+    }
+
+    /**
+     * 合并另外一个统计
+     *
+     * @param other 统计
+     * @return this
+     */
+    public Moments merge(Moments other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            m3 = other.m3;
+            m4 = other.m4;
+            return this;
+        }
+        double na = count, nb = other.count;
+        double n = na + nb;
+        double delta = other.mean - mean;
+        double delta2 = delta * delta;
+        double delta3 = delta2 * delta;
+        double delta4 = delta3 * delta;
+
+        double newM2 = m2 + other.m2 + delta2 * na * nb / n;
+        double newM3 = m3 + other.m3
+                + delta3 * na * nb * (na - nb) / (n * n)
+                + 3 * delta * (na * other.m2 - nb * m2) / n;
+        double newM4 = m4 + other.m4
+                + delta4 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+                + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (n * n)
+                + 4 * delta * (na * other.m3 - nb * m3) / n;
+
+        mean += delta * nb / n;
+        m2 = newM2;
+        m3 = newM3;
+        m4 = newM4;
+        count += other.count;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return 总体方差, 没有数据时返回0
+     */
+    public double populationVariance() {
+        return count == 0 ? 0D : Math.max(0, m2 / count);
+    }
+
+    /**
+     * @return 样本方差, 数据少于2个时返回0
+     */
+    public double sampleVariance() {
+        return count < 2 ? 0D : Math.max(0, m2 / (count - 1));
+    }
+
+    public double populationStddev() {
+        return Math.sqrt(populationVariance());
+    }
+
+    public double sampleStddev() {
+        return Math.sqrt(sampleVariance());
+    }
+
+    /**
+     * @return 偏度, 数据全部相同时返回0
+     */
+    public double skewness() {
+        if (count == 0 || m2 == 0) {
+            return 0D;
+        }
+        return Math.sqrt(count) * m3 / Math.pow(m2, 1.5);
+    }
+
+    /**
+     * @return 超额峰度(正态分布为0), 数据全部相同时返回0
+     */
+    public double kurtosis() {
+        if (count == 0 || m2 == 0) {
+            return 0D;
+        }
+        return count * m4 / (m2 * m2) - 3;
+    }
+}
@@ -0,0 +1,313 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.utils.CastUtils;
+
+/**
+ * 基于DDSketch的分位数草图,计算结果的相对误差不超过{@link QuantileSketch#getRelativeAccuracy()},
+ * 内存占用与数据量无关,最多使用maxBuckets个桶(超出时合并最小的桶,会降低最小值附近分位数的精度).
+ * <p>
+ * 相对误差相同的草图可以合并,用于跨窗口或者跨分区汇总.
+ * <pre>
+ *     select percentile(latency,0.99) p99 from message group by interval('1m')
+ *     select median(latency) median from message
+ *     select quantiles(latency,0.5,0.9,0.99) q from message
+ *     select quantiles(latency,'0.5,0.9,0.99',0.005) q from message
+ *     select quantile_sketch(latency) sketch from message group by interval('1m')
+ * </pre>
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    //小于此值的数据认为是0
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private final Store positive;
+
+    private final Store negative;
+
+    private long zeroCount;
+
+    private long count;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private double sum;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        this(relativeAccuracy, DEFAULT_MAX_BUCKETS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new UnsupportedOperationException("相对误差必须在0到1之间:" + relativeAccuracy);
+        }
+        if (maxBuckets <= 0) {
+            throw new UnsupportedOperationException("桶数量必须大于0:" + maxBuckets);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.positive = new Store(maxBuckets);
+        this.negative = new Store(maxBuckets);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * 添加值,如果值为{@link QuantileSketch}则进行合并
+     *
+     * @param value 值
+     * @return this
+     */
+    public QuantileSketch add(Object value) {
+        if (value == null) {
+            return this;
+        }
+        if (value instanceof QuantileSketch) {
+            return merge(((QuantileSketch) value));
+        }
+        return add(CastUtils.castNumber(value).doubleValue());
+    }
+
+    public QuantileSketch add(double value) {
+        if (Double.isNaN(value)) {
+            return this;
+        }
+        if (value > MIN_INDEXABLE_VALUE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        return this;
+    }
+
+    /**
+     * 合并另外一个草图
+     *
+     * @param other 草图
+     * @return this
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new UnsupportedOperationException("无法合并不同精度的分位数草图:" + relativeAccuracy + "," + other.relativeAccuracy);
+        }
+        if (other.count == 0) {
+            return this;
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * 获取分位数
+     *
+     * @param quantile 分位,0到1之间
+     * @return 分位数, 没有数据时返回{@link Double#NaN}. 分位为0和1时分别返回准确的最小值和最大值
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new UnsupportedOperationException("分位必须在0到1之间:" + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+        double rank = quantile * (count - 1);
+        long n = 0;
+        double value = max;
+        boolean found = false;
+        for (int i = negative.maxIndex; i >= negative.minIndex && !negative.isEmpty(); i--) {
+            n += negative.get(i);
+            if (n > rank) {
+                value = -value(i);
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            n += zeroCount;
+            if (n > rank) {
+                value = 0;
+                found = true;
+            }
+        }
+        if (!found && !positive.isEmpty()) {
+            for (int i = positive.minIndex; i <= positive.maxIndex; i++) {
+                n += positive.get(i);
+                if (n > rank) {
+                    value = value(i);
+                    break;
+                }
+            }
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * @return 估算的内存占用(字节)
+     */
+    public long memoryUsage() {
+        return 96 + positive.memoryUsage() + negative.memoryUsage();
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch(count=" + count + ",min=" + min + ",max=" + max + ",median=" + quantile(0.5) + ")";
+    }
+
+    /**
+     * 使用连续数组存储桶的计数,桶数量超过限制时合并索引最小的桶
+     */
+    static class Store {
+        private final int maxBuckets;
+
+        private long[] counts;
+
+        //counts[0]对应的索引
+        private int offset;
+
+        private int minIndex = Integer.MAX_VALUE;
+
+        private int maxIndex = Integer.MIN_VALUE;
+
+        Store(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        boolean isEmpty() {
+            return counts == null;
+        }
+
+        long get(int index) {
+            int i = index - offset;
+            return i < 0 || i >= counts.length ? 0 : counts[i];
+        }
+
+        void add(int index, long count) {
+            if (count <= 0) {
+                return;
+            }
+            if (counts == null) {
+                counts = new long[Math.min(32, maxBuckets)];
+                offset = index - counts.length / 2;
+                minIndex = maxIndex = index;
+            } else if (index > maxIndex && index - minIndex + 1 > maxBuckets) {
+                //合并最小的桶
+                int newMin = index - maxBuckets + 1;
+                long folded = 0;
+                for (int i = minIndex; i < newMin && i <= maxIndex; i++) {
+                    folded += get(i);
+                    set(i, 0);
+                }
+                minIndex = newMin;
+                maxIndex = Math.max(maxIndex, newMin);
+                ensureCapacity(minIndex, index);
+                set(newMin, get(newMin) + folded);
+            } else if (index < minIndex && maxIndex - index + 1 > maxBuckets) {
+                index = maxIndex - maxBuckets + 1;
+            }
+            int newMin = Math.min(minIndex, index);
+            int newMax = Math.max(maxIndex, index);
+            ensureCapacity(newMin, newMax);
+            minIndex = newMin;
+            maxIndex = newMax;
+            counts[index - offset] += count;
+        }
+
+        void merge(Store other) {
+            if (other.counts == null) {
+                return;
+            }
+            for (int i = other.minIndex; i <= other.maxIndex; i++) {
+                add(i, other.get(i));
+            }
+        }
+
+        private void set(int index, long value) {
+            int i = index - offset;
+            if (i >= 0 && i < counts.length) {
+                counts[i] = value;
+            }
+        }
+
+        private void ensureCapacity(int low, int high) {
+            if (low >= offset && high < offset + counts.length) {
+                return;
+            }
+            int required = high - low + 1;
+            int length = Math.min(Math.max(counts.length * 2, required + 16), Math.max(maxBuckets + 1, required));
+            int newOffset = low - (length - required) / 2;
+            long[] newCounts = new long[length];
+            for (int i = Math.max(minIndex, low); i <= Math.min(maxIndex, high); i++) {
+                newCounts[i - newOffset] = get(i);
+            }
+            counts = newCounts;
+            offset = newOffset;
+        }
+
+        long memoryUsage() {
+            return 32 + (counts == null ? 0 : 8L * counts.length);
+        }
+    }
+}
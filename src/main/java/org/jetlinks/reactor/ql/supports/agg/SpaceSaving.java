@@ -0,0 +1,176 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import java.util.*;
+
+/**
+ * 基于Space-Saving算法的Top-K统计,最多只保存capacity个键,内存占用与键的数量无关.
+ * 出现次数(或者权重)大于 总数/capacity 的键一定会被保留,每个键的统计值最多偏大{@link Counter#getError()}.
+ *
+ * @author zhouhao
+ * @see TopKAggFeature
+ * @since 1.0.8
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+
+    private final Map<Object, Counter> counters;
+
+    //按统计值排序的最小堆
+    private final Counter[] heap;
+
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new UnsupportedOperationException("容量必须大于0:" + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(Math.min(capacity, 1024) * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 添加键
+     *
+     * @param key    键
+     * @param weight 权重,统计出现次数时为1
+     * @return this
+     */
+    public SpaceSaving add(Object key, double weight) {
+        if (key == null || weight <= 0 || Double.isNaN(weight)) {
+            return this;
+        }
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.index);
+            return this;
+        }
+        if (size < capacity) {
+            counter = new Counter(key);
+            counter.count = weight;
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return this;
+        }
+        //替换统计值最小的键
+        counter = heap[0];
+        counters.remove(counter.key);
+        counter.key = key;
+        counter.error = counter.count;
+        counter.count += weight;
+        counters.put(key, counter);
+        siftDown(0);
+        return this;
+    }
+
+    /**
+     * 合并另外一个统计
+     *
+     * @param other 统计
+     * @return this
+     */
+    public SpaceSaving merge(SpaceSaving other) {
+        for (int i = 0; i < other.size; i++) {
+            Counter counter = other.heap[i];
+            add(counter.key, counter.count);
+            Counter merged = counters.get(counter.key);
+            if (merged != null) {
+                merged.error += counter.error;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 获取统计值最大的k个键,按统计值倒序
+     *
+     * @param k 数量
+     * @return 统计结果
+     */
+    public List<Counter> top(int k) {
+        List<Counter> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(heap[i].copy());
+        }
+        list.sort(Comparator.comparingDouble(Counter::getCount).reversed());
+        return list.size() > k ? new ArrayList<>(list.subList(0, k)) : list;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Counter parentCounter = heap[parent];
+            if (parentCounter.count <= counter.count) {
+                break;
+            }
+            heap[index] = parentCounter;
+            parentCounter.index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    public static class Counter {
+        private Object key;
+        private double count;
+        private double error;
+        private int index;
+
+        Counter(Object key) {
+            this.key = key;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public double getCount() {
+            return count;
+        }
+
+        public double getError() {
+            return error;
+        }
+
+        Counter copy() {
+            Counter counter = new Counter(key);
+            counter.count = count;
+            counter.error = error;
+            return counter;
+        }
+    }
+}
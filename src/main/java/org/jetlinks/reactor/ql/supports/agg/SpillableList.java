@@ -0,0 +1,197 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import lombok.SneakyThrows;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 内存中的数据超过阈值时,将数据分块写入到本地临时文件的集合.
+ * 读取时按块从文件中加载,只缓存最近读取的一块,顺序遍历时每块只加载一次.
+ * <p>
+ * 只有实现了{@link Serializable}的数据才会写入文件,出现无法序列化的数据后,之后的数据都保存在内存中.
+ * 临时文件在调用{@link #close()}或者通过{@link #iterator()}遍历完成后删除,删除后无法再读取已写入文件的数据.
+ * <p>
+ * 此类不是线程安全的.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class SpillableList extends AbstractList<Object> implements Closeable {
+
+    private final int chunkSize;
+
+    private List<Object> buffer;
+
+    //已写入文件的块的起始位置
+    private final List<Long> chunkOffsets = new ArrayList<>();
+
+    private File file;
+
+    private int spilledSize;
+
+    //是否还可以写入文件
+    private boolean spillable = true;
+
+    private boolean closed;
+
+    //最近读取的块
+    private Chunk loaded;
+
+    public SpillableList(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new UnsupportedOperationException("阈值必须大于0:" + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.buffer = new ArrayList<>(Math.min(chunkSize, 1024));
+    }
+
+    @Override
+    public boolean add(Object value) {
+        if (value != null && !(value instanceof Serializable)) {
+            spillable = false;
+        }
+        buffer.add(value);
+        if (spillable && !closed && buffer.size() >= chunkSize) {
+            spill();
+        }
+        return true;
+    }
+
+    @SneakyThrows
+    private void spill() {
+        if (file == null) {
+            file = File.createTempFile("reactor-ql-collect-", ".tmp");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long offset = channel.size();
+            try {
+                ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                output.writeObject(buffer);
+                output.flush();
+            } catch (NotSerializableException e) {
+                //嵌套的数据无法序列化,丢弃写入的内容,数据继续保存在内存中
+                channel.truncate(offset);
+                spillable = false;
+                return;
+            }
+            chunkOffsets.add(offset);
+        }
+        spilledSize += buffer.size();
+        buffer = new ArrayList<>(Math.min(chunkSize, 1024));
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (index >= spilledSize) {
+            return buffer.get(index - spilledSize);
+        }
+        int chunk = index / chunkSize;
+        Chunk loaded = this.loaded;
+        if (loaded == null || loaded.index != chunk) {
+            this.loaded = loaded = new Chunk(chunk, load(chunk));
+        }
+        return loaded.values.get(index % chunkSize);
+    }
+
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    private List<Object> load(int chunk) {
+        if (closed) {
+            throw new IllegalStateException("临时文件已删除");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(chunkOffsets.get(chunk));
+            ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            return (List<Object>) input.readObject();
+        }
+    }
+
+    /**
+     * 遍历数据,遍历完成后删除临时文件
+     *
+     * @return Iterator
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index < size()) {
+                    return true;
+                }
+                close();
+                return false;
+            }
+
+            @Override
+            public Object next() {
+                if (index >= size()) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return spilledSize + buffer.size();
+    }
+
+    /**
+     * @return 是否已写入到文件
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return 临时文件, 没有写入文件时为null
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return 内存中的数据
+     */
+    List<Object> getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 删除临时文件
+     */
+    @Override
+    @SneakyThrows
+    public void close() {
+        loaded = null;
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (file != null) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    static class Chunk {
+        private final int index;
+        private final List<Object> values;
+
+        Chunk(int index, List<Object> values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+/**
+ * 按时间加权的统计状态,每个值的权重为其有效时长(到下一个值的时间),只保存固定数量的基本类型状态.
+ * <p>
+ * 可以使用上一个窗口的最后一个值作为起点({@link #carry(long, double)}),
+ * 此时两个窗口之间的时间段计入当前窗口,所有窗口的积分以及增量之和与整体计算的结果一致.
+ * <p>
+ * 时间戳小于最后一个值的时间戳的乱序数据将被忽略.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class TimeWeighted {
+
+    private boolean started;
+
+    private long startTs;
+
+    private long lastTs;
+
+    private double lastValue;
+
+    //值乘以有效时长(毫秒)之和
+    private double weightedSum;
+
+    private double increase;
+
+    private long count;
+
+    /**
+     * 使用上一个窗口的最后一个值作为起点
+     *
+     * @param ts    时间戳
+     * @param value 值
+     * @return this
+     */
+    public TimeWeighted carry(long ts, double value) {
+        if (!started) {
+            started = true;
+            startTs = lastTs = ts;
+            lastValue = value;
+        }
+        return this;
+    }
+
+    public TimeWeighted add(double value, long ts) {
+        if (!started) {
+            started = true;
+            startTs = lastTs = ts;
+            lastValue = value;
+            count++;
+            return this;
+        }
+        if (ts < lastTs) {
+            return this;
+        }
+        weightedSum += lastValue * (ts - lastTs);
+        double delta = value - lastValue;
+        //值变小时认为计数器已重置
+        increase += delta >= 0 ? delta : value;
+        lastTs = ts;
+        lastValue = value;
+        count++;
+        return this;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return 当前窗口内的数据量, 不包含上一个窗口携带的值
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getLastTs() {
+        return lastTs;
+    }
+
+    public double getLastValue() {
+        return lastValue;
+    }
+
+    /**
+     * @return 持续时长, 毫秒
+     */
+    public long getDuration() {
+        return lastTs - startTs;
+    }
+
+    /**
+     * @return 时间加权平均值, 持续时长为0时返回最后一个值
+     */
+    public double average() {
+        if (!started) {
+            return 0D;
+        }
+        long duration = getDuration();
+        return duration <= 0 ? lastValue : weightedSum / duration;
+    }
+
+    /**
+     * 积分,值乘以有效时长之和
+     *
+     * @param unitMillis 时间单位,毫秒
+     * @return 积分
+     */
+    public double integral(long unitMillis) {
+        return weightedSum / unitMillis;
+    }
+
+    /**
+     * @return 增量, 值变小时认为计数器已重置
+     */
+    public double increase() {
+        return increase;
+    }
+
+    /**
+     * @return 每秒的平均增量
+     */
+    public double rate() {
+        long duration = getDuration();
+        return duration <= 0 ? 0D : increase * 1000 / duration;
+    }
+}
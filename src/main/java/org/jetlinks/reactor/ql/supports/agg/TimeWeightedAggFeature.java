@@ -0,0 +1,153 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import net.sf.jsqlparser.expression.Expression;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 基于{@link TimeWeighted}的按时间加权聚合函数,第一个参数为值,第二个参数为时间戳.
+ * <pre>
+ *     select time_weighted_avg(temp,timestamp) from device.message group by deviceId,interval('1m')
+ *     select integral(power,timestamp,'1h') kwh from device.message group by interval('1h')
+ *     select increase(counter,timestamp),rate(counter,timestamp) from device.message group by interval('1m')
+ * </pre>
+ * 同一次执行中,同一个分组(分组的键相同)的窗口会携带上一个窗口的最后一个值作为起点,每个分组只保存一个值,分组结束时删除.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class TimeWeightedAggFeature implements ValueAggMapFeature {
+
+    /**
+     * 上下文中用于保存各个分组上一个窗口的最后一个值的Map
+     */
+    public static final String CARRY_CONTEXT_KEY = "time-weighted-carry";
+
+    /**
+     * 上下文中当前分组的键,为所有层级中按键分组({@link GroupedFlux})的键
+     */
+    public static final String GROUP_KEY_CONTEXT_KEY = "group-key";
+
+    private final String id;
+
+    private final BiFunction<TimeWeighted, List<Object>, Object> resultMapper;
+
+    public TimeWeightedAggFeature(String type, BiFunction<TimeWeighted, List<Object>, Object> resultMapper) {
+        this.id = FeatureId.ValueAggMap.of(type).getId();
+        this.resultMapper = resultMapper;
+    }
+
+    @Override
+    public Function<Flux<ReactorQLRecord>, Flux<Object>> createMapper(Expression expression, ReactorQLMetadata metadata) {
+        net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+
+        List<Expression> expressions = function.getParameters() == null ? null : function.getParameters().getExpressions();
+        if (expressions == null || expressions.size() < 2) {
+            throw new UnsupportedOperationException("函数[" + function.getName() + "]需要指定值以及时间戳,如: " + function.getName() + "(val,timestamp)");
+        }
+        Function<ReactorQLRecord, ? extends Publisher<?>> valueMapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+        Function<ReactorQLRecord, ? extends Publisher<?>> tsMapper = ValueMapFeature.createMapperNow(expressions.get(1), metadata);
+        List<Object> args = new ArrayList<>();
+        for (int i = 2; i < expressions.size(); i++) {
+            Expression expr = expressions.get(i);
+            args.add(ExpressionUtils.getSimpleValue(expr)
+                    .orElseThrow(() -> new UnsupportedOperationException("unsupported expression:" + expr)));
+        }
+        String callSite = expression.toString();
+
+        return flux -> Flux
+                .deferWithContext(ctx -> {
+                    Map<Tuple2<String, List<Object>>, long[]> carries = ctx
+                            .<Map<Tuple2<String, List<Object>>, long[]>>getOrEmpty(CARRY_CONTEXT_KEY)
+                            .orElse(null);
+                    Tuple2<String, List<Object>> carryKey = carries == null
+                            ? null
+                            : Tuples.of(callSite, ctx.<List<Object>>getOrEmpty(GROUP_KEY_CONTEXT_KEY).orElse(Collections.emptyList()));
+                    TimeWeighted state = new TimeWeighted();
+                    if (carryKey != null) {
+                        long[] carry = carries.get(carryKey);
+                        if (carry != null) {
+                            state.carry(carry[0], Double.longBitsToDouble(carry[1]));
+                        }
+                    }
+                    return flux
+                            .flatMap(record -> Mono.zip(Mono.from(valueMapper.apply(record)), Mono.from(tsMapper.apply(record))))
+                            .collect(() -> state, (tw, tp2) -> tw.add(
+                                    CastUtils.castNumber(tp2.getT1()).doubleValue(),
+                                    CastUtils.castDate(tp2.getT2()).getTime()))
+                            .map(tw -> {
+                                if (carryKey != null && tw.isStarted()) {
+                                    carries.put(carryKey, new long[]{tw.getLastTs(), Double.doubleToLongBits(tw.getLastValue())});
+                                }
+                                return resultMapper.apply(tw, args);
+                            });
+                });
+    }
+
+    /**
+     * 分组结束时删除分组以及子分组携带的值
+     *
+     * @param group    分组
+     * @param groupKey 分组的键
+     * @param <T>      数据类型
+     * @return 分组
+     */
+    public static <T> Flux<T> releaseOnTerminate(Flux<T> group, List<Object> groupKey) {
+        return Flux.deferWithContext(ctx -> {
+            Map<Tuple2<String, List<Object>>, long[]> carries = ctx
+                    .<Map<Tuple2<String, List<Object>>, long[]>>getOrEmpty(CARRY_CONTEXT_KEY)
+                    .orElse(null);
+            if (carries == null) {
+                return group;
+            }
+            return group.doFinally(signal -> carries
+                    .keySet()
+                    .removeIf(key -> key.getT2().size() >= groupKey.size()
+                            && key.getT2().subList(0, groupKey.size()).equals(groupKey)));
+        });
+    }
+
+    /**
+     * 获取积分的时间单位,如: 's','1m','1h',默认为秒
+     *
+     * @param args 参数
+     * @return 毫秒
+     */
+    public static long getUnitMillis(List<Object> args) {
+        if (args.isEmpty()) {
+            return 1000;
+        }
+        String unit = String.valueOf(args.get(0)).trim();
+        if (!unit.isEmpty() && !Character.isDigit(unit.charAt(0))) {
+            unit = "1" + unit;
+        }
+        long millis = CastUtils.parseDuration(unit).toMillis();
+        if (millis <= 0) {
+            throw new UnsupportedOperationException("不支持的时间单位:" + args.get(0));
+        }
+        return millis;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,146 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import net.sf.jsqlparser.expression.Expression;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueAggMapFeature;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 获取出现次数或者权重最大的K个值,使用{@link SpaceSaving}统计,内存占用只与K有关.
+ * <pre>
+ *     select topk(deviceId,10) top from device.message
+ *     select topk(deviceId,10,200) top from device.message
+ *     select topk_by(deviceId,traffic,10) top from device.message
+ * </pre>
+ * 可选的最后一个参数为统计容量,默认为K的{@link #DEFAULT_CAPACITY_FACTOR}倍,容量越大结果越精确.
+ * <p>
+ * 结果为按统计值倒序的集合,每个元素包含: key(值),count或者weight(统计值),error(统计值最大可能偏大的值).
+ * 数字类型的值按数值统计,整数作为Long输出.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class TopKAggFeature implements ValueAggMapFeature {
+
+    public static final int DEFAULT_CAPACITY_FACTOR = 10;
+
+    private final String id;
+
+    private final boolean weighted;
+
+    public TopKAggFeature(String type, boolean weighted) {
+        this.id = FeatureId.ValueAggMap.of(type).getId();
+        this.weighted = weighted;
+    }
+
+    @Override
+    public Function<Flux<ReactorQLRecord>, Flux<Object>> createMapper(Expression expression, ReactorQLMetadata metadata) {
+        net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+
+        List<Expression> expressions = function.getParameters() == null
+                ? Collections.emptyList()
+                : function.getParameters().getExpressions();
+        int valueSize = weighted ? 2 : 1;
+        if (expressions.size() <= valueSize) {
+            throw new UnsupportedOperationException(weighted
+                    ? "topk_by函数需要指定数量,如: topk_by(deviceId,traffic,10)"
+                    : "topk函数需要指定数量,如: topk(deviceId,10)");
+        }
+        int k = getInt(expressions.get(valueSize));
+        if (k <= 0) {
+            throw new UnsupportedOperationException("数量必须大于0:" + expression);
+        }
+        int capacity = expressions.size() > valueSize + 1
+                ? Math.max(k, getInt(expressions.get(valueSize + 1)))
+                : k * DEFAULT_CAPACITY_FACTOR;
+        String countKey = weighted ? "weight" : "count";
+
+        Function<ReactorQLRecord, ? extends Publisher<?>> keyMapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+        Function<Flux<ReactorQLRecord>, Mono<SpaceSaving>> collector;
+        if (weighted) {
+            Function<ReactorQLRecord, ? extends Publisher<?>> weightMapper = ValueMapFeature.createMapperNow(expressions.get(1), metadata);
+            collector = flux -> flux
+                    .flatMap(record -> Mono.zip(Mono.from(keyMapper.apply(record)), Mono.from(weightMapper.apply(record))))
+                    .collect(() -> new SpaceSaving(capacity),
+                             (sketch, tp2) -> sketch.add(normalizeKey(tp2.getT1()), CastUtils.castNumber(tp2.getT2()).doubleValue()));
+        } else {
+            collector = flux -> flux
+                    .flatMap(keyMapper)
+                    .collect(() -> new SpaceSaving(capacity), (sketch, key) -> sketch.add(normalizeKey(key), 1));
+        }
+        return flux -> collector
+                .apply(flux)
+                .map(sketch -> sketch
+                        .top(k)
+                        .stream()
+                        .map(counter -> toMap(counter, countKey))
+                        .collect(Collectors.toList()))
+                .cast(Object.class)
+                .flux();
+    }
+
+    private Map<String, Object> toMap(SpaceSaving.Counter counter, String countKey) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("key", counter.getKey());
+        //统计出现次数时使用整数
+        if (weighted) {
+            value.put(countKey, counter.getCount());
+            value.put("error", counter.getError());
+        } else {
+            value.put(countKey, (long) counter.getCount());
+            value.put("error", (long) counter.getError());
+        }
+        return value;
+    }
+
+    /**
+     * 与{@link DistinctSet}一致,值相同的数字作为同一个值统计,如: Integer 1 与 Long 1.
+     * 整数以及值为整数的浮点数转换为Long,其他浮点数转换为Double.
+     */
+    static Object normalizeKey(Object key) {
+        if (key instanceof Long) {
+            return key;
+        }
+        if (key instanceof Integer
+                || key instanceof Short
+                || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        if (key instanceof Number) {
+            double doubleValue = ((Number) key).doubleValue();
+            long longValue = (long) doubleValue;
+            if (longValue == doubleValue) {
+                return longValue;
+            }
+            return doubleValue;
+        }
+        if (key instanceof CharSequence) {
+            return key.toString();
+        }
+        return key;
+    }
+
+    private static int getInt(Expression expression) {
+        return ExpressionUtils
+                .getSimpleValue(expression)
+                .map(CastUtils::castNumber)
+                .map(Number::intValue)
+                .orElseThrow(() -> new UnsupportedOperationException("unsupported expression:" + expression));
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,63 @@
+package org.jetlinks.reactor.ql.supports.clock;
+
+import org.jetlinks.reactor.ql.feature.ClockFeature;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 粗粒度的缓存时钟,由定时任务按指定的精度更新时间,获取时间时直接返回缓存的值.
+ * <p>
+ * 同一个精度周期内获取到的时间相同,now('pattern')等函数会复用同一个周期内的格式化结果.
+ * 不再使用时需要调用{@link #dispose()}停止定时任务.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class CachedClock implements ClockFeature, Disposable {
+
+    private final long resolutionMillis;
+
+    private final Disposable ticker;
+
+    private volatile long now;
+
+    public CachedClock(Duration resolution) {
+        this(resolution, Schedulers.single());
+    }
+
+    public CachedClock(Duration resolution, Scheduler scheduler) {
+        this.resolutionMillis = resolution.toMillis();
+        if (resolutionMillis <= 0) {
+            throw new UnsupportedOperationException("时钟精度必须大于0:" + resolution);
+        }
+        this.now = System.currentTimeMillis();
+        this.ticker = scheduler.schedulePeriodically(this::tick, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        now = System.currentTimeMillis();
+    }
+
+    public long getResolutionMillis() {
+        return resolutionMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void dispose() {
+        ticker.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return ticker.isDisposed();
+    }
+}
@@ -0,0 +1,131 @@
+package org.jetlinks.reactor.ql.supports.clock;
+
+import org.jetlinks.reactor.ql.feature.ClockFeature;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * 虚拟时钟,时间只会由调用方推进并且不会回退.
+ * <p>
+ * 回放历史数据时,使用数据中的时间推进时钟,按时间周期分组(interval)等功能将按照数据的时间计算,而不需要等待实际的时间:
+ * <pre>
+ *     VirtualClock clock = new VirtualClock();
+ *
+ *     ReactorQL.builder()
+ *              .sql("select count(1) total from history group by interval('1m')")
+ *              .feature(clock)
+ *              .build()
+ *              .start(clock.drive(history, data -> data.getTimestamp()));
+ * </pre>
+ * 通过{@link #delay(Duration)}等待的超时(如: lead_max_delay)在时钟时间经过截止时间时触发.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class VirtualClock implements ClockFeature {
+
+    private final AtomicLong now;
+
+    //按截止时间排序的等待中的定时器
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(Comparator.comparingLong(timer -> timer.deadline));
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long startMillis) {
+        this.now = new AtomicLong(startMillis);
+    }
+
+    /**
+     * 推进时钟到指定的时间,早于当前时钟时间时忽略
+     *
+     * @param epochMillis 时间戳
+     * @return 推进后的时钟时间
+     */
+    public long advanceTo(long epochMillis) {
+        long time = now.accumulateAndGet(epochMillis, Math::max);
+        fire(time);
+        return time;
+    }
+
+    /**
+     * 推进时钟指定的时长
+     *
+     * @param duration 时长
+     * @return 推进后的时钟时间
+     */
+    public long advance(Duration duration) {
+        long time = now.addAndGet(Math.max(0, duration.toMillis()));
+        fire(time);
+        return time;
+    }
+
+    /**
+     * 在数据流转到下游之前使用数据中的时间推进时钟.数据流结束后不会再有数据推进时钟,等待中的定时器将全部触发.
+     *
+     * @param source    数据流
+     * @param timestamp 获取数据时间的函数
+     * @param <T>       数据类型
+     * @return 新的数据流
+     */
+    public <T> Flux<T> drive(Flux<T> source, ToLongFunction<T> timestamp) {
+        return source
+                .doOnNext(data -> advanceTo(timestamp.applyAsLong(data)))
+                .doOnComplete(() -> fire(Long.MAX_VALUE));
+    }
+
+    @Override
+    public Mono<Long> delay(Duration duration) {
+        return Mono.defer(() -> {
+            Timer timer = new Timer(now.get() + Math.max(0, duration.toMillis()));
+            synchronized (timers) {
+                timers.add(timer);
+            }
+            fire(now.get());
+            return timer.processor;
+        });
+    }
+
+    private void fire(long time) {
+        List<Timer> expired = new ArrayList<>();
+        synchronized (timers) {
+            while (!timers.isEmpty() && timers.peek().deadline <= time) {
+                expired.add(timers.poll());
+            }
+        }
+        //在锁之外触发,避免下游处理时再次获取锁
+        for (Timer timer : expired) {
+            timer.processor.onNext(0L);
+        }
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return true;
+    }
+
+    static class Timer {
+        private final long deadline;
+
+        private final MonoProcessor<Long> processor = MonoProcessor.create();
+
+        Timer(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FilterFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.utils.PublisherUtils;
 import reactor.core.publisher.Mono;
 
 import java.util.function.BiFunction;
@@ -14,6 +15,10 @@ public class AndFilter implements FilterFeature {
 
     private static final String id = FeatureId.Filter.and.getId();
 
+    private static final Mono<Boolean> TRUE = Mono.just(true);
+
+    private static final Mono<Boolean> FALSE = Mono.just(false);
+
     @Override
     public BiFunction<ReactorQLRecord, Object, Mono<Boolean>> createPredicate(Expression expression, ReactorQLMetadata metadata) {
         AndExpression and = ((AndExpression) expression);
@@ -24,10 +29,24 @@ public class AndFilter implements FilterFeature {
         BiFunction<ReactorQLRecord, Object, Mono<Boolean>> leftPredicate = FilterFeature.createPredicateNow(left, metadata);
         BiFunction<ReactorQLRecord, Object, Mono<Boolean>> rightPredicate = FilterFeature.createPredicateNow(right, metadata);
 
-        return (ctx, val) -> Mono.zip(
-                leftPredicate.apply(ctx, val),
-                rightPredicate.apply(ctx, val),
-                (v1, v2) -> v1 && v2).defaultIfEmpty(false);
+        return (ctx, val) -> {
+            Mono<Boolean> leftResult = leftPredicate.apply(ctx, val);
+            //左边的条件可以同步判断时,不满足则不再判断右边的条件
+            if (PublisherUtils.isSync(leftResult)) {
+                if (!Boolean.TRUE.equals(PublisherUtils.getSync(leftResult))) {
+                    return FALSE;
+                }
+                Mono<Boolean> rightResult = rightPredicate.apply(ctx, val);
+                if (PublisherUtils.isSync(rightResult)) {
+                    return Boolean.TRUE.equals(PublisherUtils.getSync(rightResult)) ? TRUE : FALSE;
+                }
+                return rightResult.defaultIfEmpty(false);
+            }
+            return Mono.zip(
+                    leftResult,
+                    rightPredicate.apply(ctx, val),
+                    (v1, v2) -> v1 && v2).defaultIfEmpty(false);
+        };
     }
 
 
@@ -1,14 +1,20 @@
 package org.jetlinks.reactor.ql.supports.filter;
 
 import lombok.Getter;
-import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.schema.Column;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FilterFeature;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.Schema;
 import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.jetlinks.reactor.ql.utils.PublisherUtils;
 import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple2;
 
@@ -18,9 +24,22 @@ import java.util.Date;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
+/**
+ * 二元比较条件,如: a = b,a > 1.
+ * <p>
+ * 一边为常量时,创建条件时预先转换常量的类型,根据另外一边的值的类型直接使用long,double,字符串或者时间戳进行比较,
+ * 类型不匹配时才使用通用的比较逻辑.
+ * <p>
+ * 另外一边为声明了类型的列时({@link Schema}),按列的类型转换常量,无法转换时在创建条件时直接报错.
+ */
 public abstract class BinaryFilterFeature implements FilterFeature {
 
+    private static final Mono<Boolean> TRUE = Mono.just(true);
+
+    private static final Mono<Boolean> FALSE = Mono.just(false);
+
     @Getter
     private final String id;
 
@@ -30,13 +49,227 @@ public abstract class BinaryFilterFeature implements FilterFeature {
 
     @Override
     public BiFunction<ReactorQLRecord, Object, Mono<Boolean>> createPredicate(Expression expression, ReactorQLMetadata metadata) {
+        Tuple2<Expression, Expression> operands = ValueMapFeature.getBinaryExpressions(expression);
+        Object leftConstant = getConstant(operands.getT1());
+        Object rightConstant = getConstant(operands.getT2());
+        leftConstant = convertConstant(operands.getT2(), leftConstant, metadata);
+        rightConstant = convertConstant(operands.getT1(), rightConstant, metadata);
+
+        //一边为常量时,使用预先转换的常量进行比较
+        if (leftConstant == null && rightConstant != null) {
+            return createPredicate(ValueMapFeature.createMapperNow(operands.getT1(), metadata), createKernel(rightConstant, false));
+        }
+        if (leftConstant != null && rightConstant == null) {
+            return createPredicate(ValueMapFeature.createMapperNow(operands.getT2(), metadata), createKernel(leftConstant, true));
+        }
+
         Tuple2<Function<ReactorQLRecord, ? extends Publisher<?>>,
                 Function<ReactorQLRecord, ? extends Publisher<?>>> tuple2 = ValueMapFeature.createBinaryMapper(expression, metadata);
 
         Function<ReactorQLRecord, ? extends Publisher<?>> leftMapper = tuple2.getT1();
         Function<ReactorQLRecord, ? extends Publisher<?>> rightMapper = tuple2.getT2();
 
-        return (row, column) -> Mono.zip(Mono.from(leftMapper.apply(row)), Mono.from(rightMapper.apply(row)), this::test).defaultIfEmpty(false);
+        return (row, column) -> {
+            Publisher<?> left = leftMapper.apply(row);
+            Publisher<?> right = rightMapper.apply(row);
+            //两边都可以同步获取值时,直接判断,不再订阅
+            if (PublisherUtils.isSync(left) && PublisherUtils.isSync(right)) {
+                try {
+                    Object leftValue = PublisherUtils.getSync(left);
+                    Object rightValue = PublisherUtils.getSync(right);
+                    return leftValue != null && rightValue != null && test(leftValue, rightValue) ? TRUE : FALSE;
+                } catch (Throwable e) {
+                    return Mono.error(Exceptions.unwrap(e));
+                }
+            }
+            return Mono.zip(Mono.from(left), Mono.from(right), this::test).defaultIfEmpty(false);
+        };
+    }
+
+    private BiFunction<ReactorQLRecord, Object, Mono<Boolean>> createPredicate(Function<ReactorQLRecord, ? extends Publisher<?>> mapper,
+                                                                            Predicate<Object> kernel) {
+        return (row, column) -> {
+            Publisher<?> value = mapper.apply(row);
+            if (PublisherUtils.isSync(value)) {
+                try {
+                    Object val = PublisherUtils.getSync(value);
+                    return val != null && kernel.test(val) ? TRUE : FALSE;
+                } catch (Throwable e) {
+                    return Mono.error(Exceptions.unwrap(e));
+                }
+            }
+            return Mono.from(value).map(kernel::test).defaultIfEmpty(false);
+        };
+    }
+
+    /**
+     * 获取常量值,不是常量时返回null
+     */
+    public static Object getConstant(Expression expression) {
+        if (expression instanceof LongValue
+                || expression instanceof DoubleValue
+                || expression instanceof StringValue
+                || expression instanceof DateValue
+                || expression instanceof TimeValue) {
+            return ExpressionUtils.getSimpleValue(expression).orElse(null);
+        }
+        if (expression instanceof TimestampValue) {
+            return ((TimestampValue) expression).getValue();
+        }
+        if (expression instanceof SignedExpression) {
+            Expression expr = ((SignedExpression) expression).getExpression();
+            if (expr instanceof LongValue || expr instanceof DoubleValue) {
+                return ExpressionUtils.getSimpleValue(expression).orElse(null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据列声明的类型转换常量,不是列或者列没有声明类型时返回原始常量
+     */
+    static Object convertConstant(Expression column, Object constant, ReactorQLMetadata metadata) {
+        if (constant == null || !(column instanceof Column)) {
+            return constant;
+        }
+        DataType type = Schema.lookupType(metadata, ((Column) column)).orElse(null);
+        if (type == null) {
+            return constant;
+        }
+        try {
+            return type.convertConstant(constant);
+        } catch (UnsupportedOperationException e) {
+            throw new UnsupportedOperationException("列[" + column + "]的类型为" + type + ",不能与[" + constant + "]进行比较", e);
+        }
+    }
+
+    /**
+     * 根据常量的类型创建比较函数
+     *
+     * @param constant     常量
+     * @param constantLeft 常量是否在左边
+     * @return 比较函数
+     */
+    protected Predicate<Object> createKernel(Object constant, boolean constantLeft) {
+        if (constant instanceof Long || constant instanceof Integer) {
+            long longValue = ((Number) constant).longValue();
+            double doubleValue = ((Number) constant).doubleValue();
+            return value -> {
+                if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    long val = ((Number) value).longValue();
+                    return constantLeft ? doTest(longValue, val) : doTest(val, longValue);
+                }
+                if (value instanceof Double || value instanceof Float) {
+                    double val = ((Number) value).doubleValue();
+                    return constantLeft ? doTest(doubleValue, val) : doTest(val, doubleValue);
+                }
+                return constantLeft ? test(constant, value) : test(value, constant);
+            };
+        }
+        if (constant instanceof Number) {
+            double doubleValue = ((Number) constant).doubleValue();
+            return value -> {
+                if (value instanceof Number) {
+                    double val = ((Number) value).doubleValue();
+                    return constantLeft ? doTest(doubleValue, val) : doTest(val, doubleValue);
+                }
+                return constantLeft ? test(constant, value) : test(value, constant);
+            };
+        }
+        if (constant instanceof Date) {
+            long millis = ((Date) constant).getTime();
+            return value -> {
+                long val;
+                if (value instanceof Date) {
+                    val = ((Date) value).getTime();
+                } else if (value instanceof Instant) {
+                    val = ((Instant) value).toEpochMilli();
+                } else {
+                    return constantLeft ? test(constant, value) : test(value, constant);
+                }
+                return constantLeft ? doTestEpochMillis(millis, val) : doTestEpochMillis(val, millis);
+            };
+        }
+        if (constant instanceof String) {
+            String string = ((String) constant);
+            //与数字比较时使用的常量,只转换一次,无法转换时为null
+            Number number = tryCastNumber(string);
+            return value -> {
+                if (value instanceof String) {
+                    return constantLeft ? doTest(string, ((String) value)) : doTest(((String) value), string);
+                }
+                if (number != null && value instanceof Number) {
+                    return constantLeft ? doTest(number, ((Number) value)) : doTest(((Number) value), number);
+                }
+                return constantLeft ? test(constant, value) : test(value, constant);
+            };
+        }
+        return value -> constantLeft ? test(constant, value) : test(value, constant);
+    }
+
+    private static Number tryCastNumber(String constant) {
+        try {
+            return CastUtils.castNumber(constant);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 批量比较long类型的值,用于列式批处理.
+     * 只比较selection中为true的位置,值不存在或者比较结果为false时将selection设置为false.
+     *
+     * @param values       值
+     * @param present      值是否存在
+     * @param constant     常量
+     * @param constantLeft 常量是否在左边
+     * @param selection    选择标记
+     */
+    public void testVector(long[] values, boolean[] present, long constant, boolean constantLeft, boolean[] selection) {
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i]) {
+                selection[i] = present[i] && (constantLeft ? doTest(constant, values[i]) : doTest(values[i], constant));
+            }
+        }
+    }
+
+    /**
+     * 批量比较double类型的值,用于列式批处理
+     *
+     * @see #testVector(long[], boolean[], long, boolean, boolean[])
+     */
+    public void testVector(double[] values, boolean[] present, double constant, boolean constantLeft, boolean[] selection) {
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i]) {
+                selection[i] = present[i] && (constantLeft ? doTest(constant, values[i]) : doTest(values[i], constant));
+            }
+        }
+    }
+
+    /**
+     * 批量比较时间戳,用于列式批处理
+     *
+     * @see #testVector(long[], boolean[], long, boolean, boolean[])
+     */
+    public void testEpochMillisVector(long[] values, boolean[] present, long constant, boolean constantLeft, boolean[] selection) {
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i]) {
+                selection[i] = present[i] && (constantLeft ? doTestEpochMillis(constant, values[i]) : doTestEpochMillis(values[i], constant));
+            }
+        }
+    }
+
+    /**
+     * 批量比较字符串,用于列式批处理
+     *
+     * @see #testVector(long[], boolean[], long, boolean, boolean[])
+     */
+    public void testVector(String[] values, boolean[] present, String constant, boolean constantLeft, boolean[] selection) {
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i]) {
+                selection[i] = present[i] && (constantLeft ? doTest(constant, values[i]) : doTest(values[i], constant));
+            }
+        }
     }
 
     protected boolean test(Object left, Object right) {
@@ -58,6 +291,18 @@ public abstract class BinaryFilterFeature implements FilterFeature {
         return doTest(left, right);
     }
 
+    protected boolean doTest(long left, long right) {
+        return doTest((Number) left, (Number) right);
+    }
+
+    protected boolean doTest(double left, double right) {
+        return doTest((Number) left, (Number) right);
+    }
+
+    protected boolean doTestEpochMillis(long left, long right) {
+        return doTest(new Date(left), new Date(right));
+    }
+
     protected abstract boolean doTest(Number left, Number right);
 
     protected abstract boolean doTest(Date left, Date right);
@@ -18,6 +18,40 @@ public class EqualsFilter extends BinaryFilterFeature {
         return not != CompareUtils.equals(left, right);
     }
 
+    @Override
+    protected boolean doTest(long left, long right) {
+        return not != (left == right);
+    }
+
+    @Override
+    protected boolean doTest(double left, double right) {
+        return not != (Double.compare(left, right) == 0);
+    }
+
+    @Override
+    protected boolean doTestEpochMillis(long left, long right) {
+        return not != (left == right);
+    }
+
+    @Override
+    public void testVector(long[] values, boolean[] present, long constant, boolean constantLeft, boolean[] selection) {
+        for (int i = 0; i < selection.length; i++) {
+            selection[i] &= present[i] && (values[i] == constant) != not;
+        }
+    }
+
+    @Override
+    public void testVector(double[] values, boolean[] present, double constant, boolean constantLeft, boolean[] selection) {
+        for (int i = 0; i < selection.length; i++) {
+            selection[i] &= present[i] && (Double.compare(values[i], constant) == 0) != not;
+        }
+    }
+
+    @Override
+    public void testEpochMillisVector(long[] values, boolean[] present, long constant, boolean constantLeft, boolean[] selection) {
+        testVector(values, present, constant, constantLeft, selection);
+    }
+
     @Override
     protected boolean doTest(Date left, Date right) {
         return not != CompareUtils.equals(left, right);
@@ -13,6 +13,52 @@ public class GreaterEqualsTanFilter extends BinaryFilterFeature {
         return left.doubleValue() >= right.doubleValue();
     }
 
+    @Override
+    protected boolean doTest(long left, long right) {
+        return left >= right;
+    }
+
+    @Override
+    protected boolean doTest(double left, double right) {
+        return left >= right;
+    }
+
+    @Override
+    protected boolean doTestEpochMillis(long left, long right) {
+        return left >= right;
+    }
+
+    @Override
+    public void testVector(long[] values, boolean[] present, long constant, boolean constantLeft, boolean[] selection) {
+        if (constantLeft) {
+            for (int i = 0; i < selection.length; i++) {
+                selection[i] &= present[i] && constant >= values[i];
+            }
+        } else {
+            for (int i = 0; i < selection.length; i++) {
+                selection[i] &= present[i] && values[i] >= constant;
+            }
+        }
+    }
+
+    @Override
+    public void testVector(double[] values, boolean[] present, double constant, boolean constantLeft, boolean[] selection) {
+        if (constantLeft) {
+            for (int i = 0; i < selection.length; i++) {
+                selection[i] &= present[i] && constant >= values[i];
+            }
+        } else {
+            for (int i = 0; i < selection.length; i++) {
+                selection[i] &= present[i] && values[i] >= constant;
+            }
+        }
+    }
+
+    @Override
+    public void testEpochMillisVector(long[] values, boolean[] present, long constant, boolean constantLeft, boolean[] selection) {
+        testVector(values, present, constant, constantLeft, selection);
+    }
+
     @Override
     protected boolean doTest(Date left, Date right) {
         return left.getTime() >= right.getTime();
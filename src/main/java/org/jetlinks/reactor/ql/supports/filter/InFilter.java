@@ -10,14 +10,14 @@ import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FilterFeature;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.supports.map.SelectFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
 import org.jetlinks.reactor.ql.utils.CompareUtils;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -33,6 +33,31 @@ public class InFilter implements FilterFeature {
 
         ItemsList in = (inExpression.getRightItemsList());
 
+        Function<ReactorQLRecord, ? extends Publisher<?>> leftMapper = ValueMapFeature.createMapperNow(left, metadata);
+
+        boolean not = inExpression.isNot();
+
+        if (in instanceof SubSelect) {
+            //设置了刷新间隔的非关联子查询,每个刷新间隔执行一次,并将结果转换为索引
+            Function<ReactorQLRecord, Mono<ValueIndex>> indexMapper = SelectFeature
+                    .createMaterializedMapper(((SubSelect) in), metadata, InFilter::createIndex);
+            if (indexMapper != null) {
+                return (ctx, column) -> indexMapper
+                        .apply(ctx)
+                        .flatMap(index -> asFlux(leftMapper.apply(ctx)).any(index::contains))
+                        .map(v -> not != v);
+            }
+            //非关联子查询只订阅一次,流式匹配子查询输出的数据
+            Function<ReactorQLRecord, Flux<Object>> sharedMapper = SelectFeature
+                    .createSharedMapper(((SubSelect) in), metadata);
+            if (sharedMapper != null) {
+                return (ctx, column) ->
+                        doPredicate(not,
+                                asFlux(leftMapper.apply(ctx)),
+                                asFlux(sharedMapper.apply(ctx)));
+            }
+        }
+
         List<Function<ReactorQLRecord, ? extends Publisher<?>>> rightMappers = new ArrayList<>();
 
         if (in instanceof ExpressionList) {
@@ -44,9 +69,6 @@ public class InFilter implements FilterFeature {
             rightMappers.add(ValueMapFeature.createMapperNow(((SubSelect) in), metadata));
         }
 
-        Function<ReactorQLRecord, ? extends Publisher<?>> leftMapper = ValueMapFeature.createMapperNow(left, metadata);
-
-        boolean not = inExpression.isNot();
         return (ctx, column) ->
                 doPredicate(not,
                         asFlux(leftMapper.apply(ctx)),
@@ -70,6 +92,22 @@ public class InFilter implements FilterFeature {
                 });
     }
 
+    private static ValueIndex createIndex(List<Object> values) {
+        ValueIndex index = new ValueIndex();
+        for (Object value : values) {
+            if (value instanceof Iterable) {
+                for (Object val : ((Iterable<?>) value)) {
+                    index.add(val);
+                }
+            } else if (value instanceof Map && ((Map<?, ?>) value).size() == 1) {
+                index.add(((Map<?, ?>) value).values().iterator().next());
+            } else {
+                index.add(value);
+            }
+        }
+        return index;
+    }
+
     protected Mono<Boolean> doPredicate(boolean not, Flux<Object> left, Flux<Object> values) {
         return values
                 .flatMap(v -> left.map(l -> CompareUtils.equals(v, l)))
@@ -81,4 +119,87 @@ public class InFilter implements FilterFeature {
     public String getId() {
         return FeatureId.Filter.in.getId();
     }
+
+    /**
+     * 子查询结果的索引,匹配结果与{@link CompareUtils#equals(Object, Object)}一致.
+     * <p>
+     * 数字按double值,字符串按原始值进行哈希匹配,数字与数字格式的字符串之间按转换后的数字匹配.
+     * 其他类型(如日期,枚举,布尔值)的值与索引中的值逐个比较.
+     */
+    static class ValueIndex {
+        private final Set<Double> numbers = new HashSet<>();
+
+        private final Set<String> strings = new HashSet<>();
+
+        //可以转换为数字的字符串
+        private final Set<Double> numericStrings = new HashSet<>();
+
+        //数字和字符串以外的值
+        private final List<Object> others = new ArrayList<>();
+
+        private final List<Object> values = new ArrayList<>();
+
+        void add(Object value) {
+            if (value == null) {
+                return;
+            }
+            values.add(value);
+            if (value instanceof Number) {
+                numbers.add(((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                strings.add(((String) value));
+                Double number = tryCastNumber(value);
+                if (number != null) {
+                    numericStrings.add(number);
+                }
+            } else {
+                others.add(value);
+            }
+        }
+
+        boolean contains(Object value) {
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                return numbers.contains(number)
+                        || numericStrings.contains(number)
+                        || containsOther(value);
+            }
+            if (value instanceof String) {
+                if (strings.contains(value)) {
+                    return true;
+                }
+                if (!numbers.isEmpty()) {
+                    Double number = tryCastNumber(value);
+                    if (number != null && numbers.contains(number)) {
+                        return true;
+                    }
+                }
+                return containsOther(value);
+            }
+            //其他类型与所有值逐个比较
+            for (Object val : values) {
+                if (CompareUtils.equals(val, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean containsOther(Object value) {
+            for (Object other : others) {
+                if (CompareUtils.equals(other, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Double tryCastNumber(Object value) {
+            try {
+                return CastUtils.castNumber(value).doubleValue();
+            } catch (Exception ignore) {
+                return null;
+            }
+        }
+    }
 }
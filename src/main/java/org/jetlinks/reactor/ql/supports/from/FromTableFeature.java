@@ -7,6 +7,7 @@ import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FromFeature;
+import org.jetlinks.reactor.ql.schema.Schema;
 import reactor.core.publisher.Flux;
 
 import java.util.function.Function;
@@ -20,7 +21,12 @@ public class FromTableFeature implements FromFeature {
         String name = table.getName();
         String alias = table.getAlias() != null ? table.getAlias().getName() : name;
 
-        return ctx -> ctx.getDataSource(name).map(record -> ReactorQLRecord.newRecord(alias,record,ctx));
+        Schema schema = Schema.lookup(metadata, table).orElse(null);
+        if (schema != null) {
+            //按表结构转换数据
+            return ctx -> ctx.getFromDataSource(table).map(record -> ReactorQLRecord.newRecord(alias, schema.toRow(record), ctx));
+        }
+        return ctx -> ctx.getFromDataSource(table).map(record -> ReactorQLRecord.newRecord(alias,record,ctx));
     }
 
     @Override
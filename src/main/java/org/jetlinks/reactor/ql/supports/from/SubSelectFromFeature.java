@@ -7,6 +7,7 @@ import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FromFeature;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
 import org.jetlinks.reactor.ql.supports.DefaultReactorQLMetadata;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -23,7 +24,9 @@ public class SubSelectFromFeature implements FromFeature {
     private Function<ReactorQLContext, Flux<ReactorQLRecord>> doCreateMapper(String alias, SelectBody body, ReactorQLMetadata metadata) {
 
         if (body instanceof PlainSelect) {
-            DefaultReactorQL reactorQL = new DefaultReactorQL(new DefaultReactorQLMetadata(((PlainSelect) body)));
+            //子查询的指标以子查询的SQL作为前缀
+            DefaultReactorQL reactorQL = new DefaultReactorQL(new DefaultReactorQLMetadata(((PlainSelect) body)),
+                                                              ReactorQLMetrics.of(metadata).nested(body.toString()));
             return ctx -> reactorQL.start(ctx).map(record -> record.resultToRecord(alias == null ? record.getName() : alias));
         }
         if (body instanceof SetOperationList) {
@@ -6,6 +6,7 @@ import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
 import net.sf.jsqlparser.expression.StringValue;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.feature.ClockFeature;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.GroupFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
@@ -24,6 +25,8 @@ import static org.jetlinks.reactor.ql.utils.CastUtils.parseDuration;
  *
  *     group by interval('1s')=> flux.window(Duration.ofSeconds(1))
  * </pre>
+ * 使用虚拟时钟({@link ClockFeature#isVirtual()})时,不使用定时器,而是根据数据到达时的时钟时间切分窗口,
+ * 窗口从第一条数据的时间开始,没有数据的周期不会产生窗口.
  *
  * @author zhouhao
  * @since 1.0
@@ -55,8 +58,35 @@ public class GroupByIntervalFeature implements GroupFeature {
             throw new UnsupportedOperationException("不支持的时间参数:" + expr);
         }
         Duration duration = interval;
+        ClockFeature clock = ClockFeature.getClock(metadata);
+        if (clock.isVirtual()) {
+            return createVirtualWindow(duration.toMillis(), clock);
+        }
         return flux -> flux.window(duration);
     }
 
+    private static java.util.function.Function<Flux<ReactorQLRecord>, Flux<? extends Flux<ReactorQLRecord>>> createVirtualWindow(long interval,
+                                                                                                                      ClockFeature clock) {
+        if (interval <= 0) {
+            throw new UnsupportedOperationException("interval函数参数错误:" + interval);
+        }
+        return flux -> Flux.defer(() -> {
+            //当前窗口的结束时间
+            long[] windowEnd = {Long.MIN_VALUE};
+            return flux.windowUntil(record -> {
+                long now = clock.currentTimeMillis();
+                if (windowEnd[0] == Long.MIN_VALUE) {
+                    windowEnd[0] = now + interval;
+                    return false;
+                }
+                if (now < windowEnd[0]) {
+                    return false;
+                }
+                windowEnd[0] += ((now - windowEnd[0]) / interval + 1) * interval;
+                return true;
+            }, true);
+        });
+    }
+
 
 }
@@ -10,4 +10,10 @@ public class BinaryCalculateMapFeature extends BinaryMapFeature {
          super(type,(left,right)-> calculator.apply(CastUtils.castNumber(left), CastUtils.castNumber(right)));
     }
 
+    //四则运算等计算总是确定性的
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
 }
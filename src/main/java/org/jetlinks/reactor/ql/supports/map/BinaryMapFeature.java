@@ -20,6 +20,8 @@ public class BinaryMapFeature implements ValueMapFeature {
 
     private final BiFunction<Object, Object, Object> calculator;
 
+    private boolean deterministic;
+
     public BinaryMapFeature(String type, BiFunction<Object, Object, Object> calculator) {
         this.id = FeatureId.ValueMap.of(type).getId();
         this.calculator = calculator;
@@ -35,5 +37,20 @@ public class BinaryMapFeature implements ValueMapFeature {
         return v -> Mono.zip(Mono.from(leftMapper.apply(v)), Mono.from(rightMapper.apply(v)), calculator);
     }
 
+    /**
+     * 标记为确定性的函数,计算结果可以在查询组内共享
+     *
+     * @return this
+     * @see ValueMapFeature#isDeterministic()
+     * @since 1.0.8
+     */
+    public BinaryMapFeature deterministic() {
+        this.deterministic = true;
+        return this;
+    }
 
+    @Override
+    public boolean isDeterministic() {
+        return deterministic;
+    }
 }
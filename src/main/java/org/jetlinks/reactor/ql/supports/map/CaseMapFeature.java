@@ -6,21 +6,30 @@ import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FilterFeature;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.utils.PublisherUtils;
 import org.reactivestreams.Publisher;
-import reactor.core.publisher.Flux;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Mono;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+/**
+ * case when,按顺序判断条件,返回第一个满足条件的结果.
+ * <p>
+ * case column when 常量 then ... 时,值与常量的类型相同(数字与数字,字符串与字符串)时,常量条件通过哈希表直接定位,不再逐个判断.
+ * 类型不同时(如字符串与数字常量)需要转换后比较,按顺序逐个判断.
+ * 条件可以同步获取结果时(如:比较,常量),直接同步判断,只有异步的条件才会订阅.
+ */
 public class CaseMapFeature implements ValueMapFeature {
 
     private static final  String ID = FeatureId.ValueMap.caseWhen.getId();
 
     @Override
-    @SuppressWarnings("all")
     public Function<ReactorQLRecord, ? extends Publisher<?>> createMapper(Expression expression, ReactorQLMetadata metadata) {
         CaseExpression caseExpression = ((CaseExpression) expression);
         Expression switchExpr = caseExpression.getSwitchExpression();
@@ -30,21 +39,24 @@ public class CaseMapFeature implements ValueMapFeature {
                         ? v -> Mono.just(v.getRecord()) //case when
                         : ValueMapFeature.createMapperNow(switchExpr, metadata); // case column when
 
-        Map<BiFunction<ReactorQLRecord, Object, Mono<Boolean>>, Function<ReactorQLRecord, ? extends Publisher<?>>> cases = new LinkedHashMap<>();
+        List<Branch> branches = new ArrayList<>();
+        Map<Double, Integer> numberDispatch = new HashMap<>();
+        Map<String, Integer> stringDispatch = new HashMap<>();
         for (WhenClause whenClause : caseExpression.getWhenClauses()) {
             Expression when = whenClause.getWhenExpression();
             Expression then = whenClause.getThenExpression();
-            cases.put(createWhen(when, metadata), createThen(then, metadata));
+            Object key = switchExpr == null ? null : getLiteralKey(when);
+            //相同的常量只有第一个生效
+            if (key instanceof Double) {
+                numberDispatch.putIfAbsent(((Double) key), branches.size());
+            } else if (key instanceof String) {
+                stringDispatch.putIfAbsent(((String) key), branches.size());
+            }
+            branches.add(new Branch(createWhen(when, metadata), createThen(then, metadata), key));
         }
         Function<ReactorQLRecord, ? extends Publisher<?>> thenElse = createThen(caseExpression.getElseExpression(), metadata);
 
-        return ctx -> {
-            Mono<?> switchValue = Mono.from(valueMapper.apply(ctx));
-            return Flux.fromIterable(cases.entrySet())
-                    .filterWhen(whenAndThen -> switchValue.flatMap(v -> whenAndThen.getKey().apply(ctx, v)))
-                    .flatMap(whenAndThen -> whenAndThen.getValue().apply(ctx))
-                    .switchIfEmpty((Publisher) thenElse.apply(ctx));
-        };
+        return new CaseWhen(valueMapper, branches.toArray(new Branch[0]), numberDispatch, stringDispatch, thenElse);
     }
 
     protected Function<ReactorQLRecord, ? extends Publisher<?>> createThen(Expression expression, ReactorQLMetadata metadata) {
@@ -61,8 +73,136 @@ public class CaseMapFeature implements ValueMapFeature {
         return FilterFeature.createPredicateNow(expression, metadata);
     }
 
+    /**
+     * 判断是否通过哈希表定位分支,即case column when 1 then ... 中存在常量分支
+     *
+     * @param expression case表达式
+     * @return 是否通过哈希表定位分支
+     */
+    public static boolean isHashDispatch(CaseExpression expression) {
+        if (expression.getSwitchExpression() == null) {
+            return false;
+        }
+        for (WhenClause whenClause : expression.getWhenClauses()) {
+            if (getLiteralKey(whenClause.getWhenExpression()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取可以通过哈希表定位的常量的键,数字常量为Double,字符串常量为原始值,不是常量时返回null
+     */
+    static Object getLiteralKey(Expression expression) {
+        if (expression instanceof LongValue) {
+            return (double) ((LongValue) expression).getValue();
+        }
+        if (expression instanceof DoubleValue) {
+            return ((DoubleValue) expression).getValue();
+        }
+        if (expression instanceof StringValue) {
+            return ((StringValue) expression).getValue();
+        }
+        return null;
+    }
+
     @Override
     public String getId() {
         return ID;
     }
+
+    static class Branch {
+        private final BiFunction<ReactorQLRecord, Object, Mono<Boolean>> when;
+        private final Function<ReactorQLRecord, ? extends Publisher<?>> then;
+        //常量的键,不是常量时为null
+        private final Object literal;
+
+        Branch(BiFunction<ReactorQLRecord, Object, Mono<Boolean>> when,
+               Function<ReactorQLRecord, ? extends Publisher<?>> then,
+               Object literal) {
+            this.when = when;
+            this.then = then;
+            this.literal = literal;
+        }
+    }
+
+    static class CaseWhen implements Function<ReactorQLRecord, Publisher<?>> {
+        private final Function<ReactorQLRecord, ? extends Publisher<?>> valueMapper;
+        private final Branch[] branches;
+        private final Map<Double, Integer> numberDispatch;
+        private final Map<String, Integer> stringDispatch;
+        private final Function<ReactorQLRecord, ? extends Publisher<?>> thenElse;
+
+        CaseWhen(Function<ReactorQLRecord, ? extends Publisher<?>> valueMapper,
+                 Branch[] branches,
+                 Map<Double, Integer> numberDispatch,
+                 Map<String, Integer> stringDispatch,
+                 Function<ReactorQLRecord, ? extends Publisher<?>> thenElse) {
+            this.valueMapper = valueMapper;
+            this.branches = branches;
+            this.numberDispatch = numberDispatch;
+            this.stringDispatch = stringDispatch;
+            this.thenElse = thenElse;
+        }
+
+        @Override
+        public Publisher<?> apply(ReactorQLRecord record) {
+            try {
+                Publisher<?> switchValue = valueMapper.apply(record);
+                if (PublisherUtils.isSync(switchValue)) {
+                    Object value = PublisherUtils.getSync(switchValue);
+                    //没有值时,任何条件都不满足
+                    return value == null ? thenElse.apply(record) : evaluate(record, value);
+                }
+                return Mono
+                        .from(switchValue)
+                        .flatMapMany(value -> evaluate(record, value))
+                        .switchIfEmpty(Mono.defer(() -> Mono.from(thenElse.apply(record))));
+            } catch (Throwable e) {
+                return Mono.error(Exceptions.unwrap(e));
+            }
+        }
+
+        private Publisher<?> evaluate(ReactorQLRecord record, Object value) {
+            //与值类型相同的常量通过哈希表定位,在此之前只需要判断其他条件
+            Class<?> dispatched = null;
+            int limit = branches.length;
+            if (value instanceof Number && !numberDispatch.isEmpty()) {
+                dispatched = Double.class;
+                limit = numberDispatch.getOrDefault(((Number) value).doubleValue(), branches.length);
+            } else if (value instanceof String && !stringDispatch.isEmpty()) {
+                dispatched = String.class;
+                limit = stringDispatch.getOrDefault(value, branches.length);
+            }
+            return evaluate(record, value, dispatched, 0, limit);
+        }
+
+        private Publisher<?> evaluate(ReactorQLRecord record, Object value, Class<?> dispatched, int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                Branch branch = branches[i];
+                if (dispatched != null && dispatched.isInstance(branch.literal)) {
+                    continue;
+                }
+                Mono<Boolean> matched = branch.when.apply(record, value);
+                if (PublisherUtils.isSync(matched)) {
+                    if (Boolean.TRUE.equals(PublisherUtils.getSync(matched))) {
+                        return branch.then.apply(record);
+                    }
+                    continue;
+                }
+                //异步条件,订阅后继续判断后续的条件
+                int next = i + 1;
+                return matched
+                        .defaultIfEmpty(false)
+                        .flatMapMany(match -> match
+                                ? branch.then.apply(record)
+                                : evaluate(record, value, dispatched, next, limit));
+            }
+            if (limit < branches.length) {
+                return branches[limit].then.apply(record);
+            }
+            return thenElse.apply(record);
+        }
+    }
 }
@@ -61,6 +61,11 @@ public class CastFeature implements ValueMapFeature {
         }
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public String getId() {
         return ID;
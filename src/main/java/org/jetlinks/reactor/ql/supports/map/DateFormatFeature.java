@@ -6,12 +6,12 @@ import org.jetlinks.reactor.ql.ReactorQLMetadata;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.utils.CachedDateFormatter;
 import org.jetlinks.reactor.ql.utils.CastUtils;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
 
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.function.Function;
 
@@ -37,8 +37,9 @@ public class DateFormatFeature implements ValueMapFeature {
             if (formatExpr instanceof StringValue) {
                 Function<ReactorQLRecord, ? extends Publisher<?>> mapper = ValueMapFeature.createMapperNow(val, metadata);
                 StringValue format = ((StringValue) formatExpr);
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format.getValue());
-                return ctx -> Mono.from(mapper.apply(ctx)).map(value -> formatter.format(CastUtils.castDate(value).toInstant().atZone(tz)));
+                //同一秒或者分钟内的时间直接使用上一次格式化的结果
+                CachedDateFormatter formatter = new CachedDateFormatter(format.getValue(), tz);
+                return ctx -> Mono.from(mapper.apply(ctx)).map(value -> formatter.format(CastUtils.castDateMillis(value)));
             }
         } catch (Exception e) {
             throw new UnsupportedOperationException("错误的参数,正确例子: date_format(date,'yyyy-MM-dd','Asia/Shanghai')", e);
@@ -46,6 +47,11 @@ public class DateFormatFeature implements ValueMapFeature {
         throw new UnsupportedOperationException("错误的参数,正确例子: date_format(date,'yyyy-MM-dd')");
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public String getId() {
         return ID;
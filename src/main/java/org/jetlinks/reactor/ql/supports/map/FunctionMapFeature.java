@@ -23,6 +23,8 @@ public class FunctionMapFeature implements ValueMapFeature {
     @Getter
     private final String id;
 
+    private boolean deterministic;
+
     public FunctionMapFeature(String function, int max, int min, Function<Flux<Object>, Publisher<?>> mapper) {
         this.maxParamSize = max;
         this.minParamSize = min;
@@ -52,4 +54,21 @@ public class FunctionMapFeature implements ValueMapFeature {
 
         return v -> mapper.apply(Flux.fromIterable(mappers).flatMap(mp->mp.apply(v)));
     }
+
+    /**
+     * 标记为确定性的函数,计算结果可以在查询组内共享
+     *
+     * @return this
+     * @see ValueMapFeature#isDeterministic()
+     * @since 1.0.8
+     */
+    public FunctionMapFeature deterministic() {
+        this.deterministic = true;
+        return this;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return deterministic;
+    }
 }
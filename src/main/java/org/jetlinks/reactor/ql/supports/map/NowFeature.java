@@ -3,17 +3,26 @@ package org.jetlinks.reactor.ql.supports.map;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.StringValue;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.feature.ClockFeature;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.utils.CachedDateFormatter;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
 import java.util.function.Function;
 
 
+/**
+ * 获取当前时间,时间由{@link ClockFeature}提供
+ * <pre>
+ *     select now() now from test
+ *
+ *     select now('yyyy-MM-dd HH:mm') now from test
+ * </pre>
+ */
 public class NowFeature implements ValueMapFeature {
 
     private static final  String ID = FeatureId.ValueMap.of("now").getId();
@@ -21,17 +30,19 @@ public class NowFeature implements ValueMapFeature {
     @Override
     public Function<ReactorQLRecord, ? extends Publisher<?>> createMapper(Expression expression, ReactorQLMetadata metadata) {
         net.sf.jsqlparser.expression.Function now = ((net.sf.jsqlparser.expression.Function) expression);
+        ClockFeature clock = ClockFeature.getClock(metadata);
 
         if (now.getParameters() != null) {
             for (Expression expr : now.getParameters().getExpressions()) {
                 if (expr instanceof StringValue) {
                     StringValue format = ((StringValue) expr);
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format.getValue());
-                    return v -> Mono.just(formatter.format(LocalDateTime.now()));
+                    //同一个时间单位或者同一个时钟周期内复用格式化结果
+                    CachedDateFormatter formatter = new CachedDateFormatter(format.getValue(), ZoneId.systemDefault());
+                    return v -> Mono.just(formatter.format(clock.currentTimeMillis()));
                 }
             }
         }
-        return v -> Mono.just(System.currentTimeMillis());
+        return v -> Mono.just(clock.currentTimeMillis());
     }
 
     @Override
@@ -7,6 +7,9 @@ import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.PropertyFeature;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
 import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.schema.TypedRow;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
 
@@ -26,11 +29,37 @@ public class PropertyMapFeature implements ValueMapFeature {
 
         PropertyFeature feature = metadata.getFeatureNow(PropertyFeature.ID);
 
-        return ctx -> Mono.justOrEmpty(ctx.getRecord(tableName))
+        Function<ReactorQLRecord, Mono<Object>> mapper = ctx -> Mono.justOrEmpty(ctx.getRecord(tableName))
                 .flatMap(record -> Mono.justOrEmpty(feature.getProperty(name, record)))
                 .switchIfEmpty(Mono.fromSupplier(() -> feature.getProperty(name, ctx.asMap()).orElse(null)))
                 .switchIfEmpty(Mono.justOrEmpty(ctx.getRecord(name)))
                 ;
+
+        Schema schema = Schema.lookup(metadata, tableName).orElse(null);
+        if (schema == null) {
+            return mapper;
+        }
+        String cleanName = SqlUtils.getCleanStr(name);
+        int index = schema.indexOf(cleanName);
+        if (index < 0) {
+            //指定了表名时,列必须在表结构中声明
+            String property = cleanName.split("[.:]", 2)[0];
+            if (fullName.length == 2 && schema.indexOf(property) < 0) {
+                throw new UnsupportedOperationException("表[" + tableName + "]中不存在列:" + property);
+            }
+            return mapper;
+        }
+        //按列的位置直接获取值
+        return ctx -> {
+            Object record = ctx.getRecord(tableName).orElse(null);
+            if (record instanceof TypedRow && ((TypedRow) record).getSchema() == schema) {
+                Object value = ((TypedRow) record).get(index);
+                if (value != null) {
+                    return Mono.just(value);
+                }
+            }
+            return mapper.apply(ctx);
+        };
     }
 
     @Override
@@ -1,6 +1,8 @@
 package org.jetlinks.reactor.ql.supports.map;
 
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.SubSelect;
 import org.jetlinks.reactor.ql.ReactorQLContext;
 import org.jetlinks.reactor.ql.ReactorQLMetadata;
@@ -8,25 +10,79 @@ import org.jetlinks.reactor.ql.ReactorQLRecord;
 import org.jetlinks.reactor.ql.feature.FeatureId;
 import org.jetlinks.reactor.ql.feature.FromFeature;
 import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.CompareUtils;
+import org.jetlinks.reactor.ql.utils.SqlUtils;
 import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
-
+/**
+ * 子查询,如: select (select max(val) from t2) max from t1
+ * <p>
+ * 非关联子查询在每次执行中只会订阅一次,输出的数据缓存在执行上下文中,之后的数据重放缓存的结果.
+ * 数据源为无限流时,可以通过设置{@link #SETTING_REFRESH}来定时刷新结果:
+ * <pre>
+ *     select /*+ subselect_refresh('1m') *&#47; * from t1 where id in (select id from t2)
+ * </pre>
+ * 设置了刷新间隔时,每次刷新只获取一个刷新间隔内子查询输出的数据,结果在刷新间隔内有效.
+ * <p>
+ * 只通过等值条件关联外部查询的关联子查询,如:
+ * <pre>
+ *     select (select avg(v) from t2 where t2.id = t1.id) avg from t1
+ * </pre>
+ * 在每次执行中按关联列(t1.id)的值缓存子查询结果,相同的值只会执行一次子查询,
+ * 最多缓存{@link #SETTING_CACHE_SIZE}(默认1024)个值,超过时淘汰最久未使用的值.
+ * 没有设置刷新间隔时,与非关联子查询一样共享子查询的订阅并重放输出的数据,被淘汰的值的订阅在执行结束时才会取消,
+ * 子查询的数据源为无限流时应该设置刷新间隔;设置了刷新间隔时,结果在刷新间隔内有效.
+ * 子查询中没有指定表名的列认为是子查询自身的列,引用外部查询的列需要指定表名.
+ * 子查询的表声明了表结构时,引用了表结构中没有声明的列(可能是外部查询的列)时不会缓存.
+ */
 public class SelectFeature implements ValueMapFeature {
 
     private final static String ID = FeatureId.ValueMap.select.getId();
 
+    /**
+     * 上下文中保存每次执行的非关联子查询结果的Map,执行结束时需要释放其中{@link Disposable}类型的值
+     */
+    public static final String MATERIALIZED_CONTEXT_KEY = "materialized-sub-select";
+
+    public static final String SETTING_REFRESH = "subselect_refresh";
+
+    public static final String SETTING_CACHE_SIZE = "subselect_cache_size";
+
+    private static final Object NULL = new Object();
+
     @Override
     public Function<ReactorQLRecord, ? extends Publisher<?>> createMapper(Expression expression, ReactorQLMetadata metadata) {
         SubSelect select = ((SubSelect) expression);
 
+        Function<ReactorQLRecord, Mono<List<Object>>> materialized = createMaterializedMapper(select, metadata, Function.identity());
+        if (materialized != null) {
+            return record -> materialized
+                    .apply(record)
+                    .flatMapIterable(Function.identity());
+        }
+        Function<ReactorQLRecord, Flux<Object>> shared = createSharedMapper(select, metadata);
+        if (shared != null) {
+            return shared;
+        }
+
         String alias = select.getAlias() != null ? select.getAlias().getName() : null;
 
         Function<ReactorQLContext, Flux<ReactorQLRecord>> mapper = FromFeature.createFromMapperByFrom(select, metadata);
 
-        return record -> mapper
+        Function<ReactorQLRecord, Flux<Object>> executor = record -> mapper
                 .apply(record.getContext()
                         .transfer((table, source) -> source
                                 .map(val -> ReactorQLRecord
@@ -34,10 +90,248 @@ public class SelectFeature implements ValueMapFeature {
                                         .addRecords(record.getRecords(false)))))
                 .map(ReactorQLRecord::getRecord);
 
+        if (!(select.getSelectBody() instanceof PlainSelect)) {
+            return executor;
+        }
+        Duration refresh = getRefreshInterval(metadata);
+        List<Column> correlation = SqlUtils.getCorrelationColumns(((PlainSelect) select.getSelectBody()), metadata);
+        if (correlation == null) {
+            return executor;
+        }
+        return createKeyedMapper(correlation, metadata, refresh, executor);
+    }
+
+    /**
+     * 按关联列的值缓存关联子查询的结果,设置了刷新间隔时结果在刷新间隔内有效,否则共享子查询的订阅
+     */
+    private static Function<ReactorQLRecord, Flux<Object>> createKeyedMapper(List<Column> correlation,
+                                                                           ReactorQLMetadata metadata,
+                                                                           Duration refresh,
+                                                                           Function<ReactorQLRecord, Flux<Object>> executor) {
+        List<Function<ReactorQLRecord, ? extends Publisher<?>>> keyMappers = new ArrayList<>();
+        for (Column column : correlation) {
+            keyMappers.add(ValueMapFeature.createMapperNow(column, metadata));
+        }
+        int cacheSize = metadata
+                .getSetting(SETTING_CACHE_SIZE)
+                .map(v -> CastUtils.castNumber(String.valueOf(v).replace("'", "")).intValue())
+                .orElse(1024);
+
+        Object callSite = new Object();
+
+        return record -> Flux
+                .fromIterable(keyMappers)
+                .concatMap(mapper -> Mono
+                        .from(mapper.apply(record))
+                        .map(SelectFeature::createKey)
+                        .defaultIfEmpty(NULL))
+                .collectList()
+                .flatMapMany(key -> Mono
+                        .subscriberContext()
+                        .flatMapMany(ctx -> ctx
+                                .<Map<Object, Object>>getOrEmpty(MATERIALIZED_CONTEXT_KEY)
+                                .map(states -> {
+                                    KeyedCache cache = (KeyedCache) states.computeIfAbsent(callSite, ignore -> new KeyedCache(cacheSize));
+                                    if (refresh == null) {
+                                        return cache.getShared(key, () -> executor.apply(record));
+                                    }
+                                    return cache.get(key, () -> executor
+                                            .apply(record)
+                                            .take(refresh)
+                                            .collectList()
+                                            .cache(refresh)
+                                            .flatMapIterable(Function.identity()));
+                                })
+                                //没有执行上下文时,每次都执行子查询
+                                .orElseGet(() -> executor.apply(record))));
+    }
+
+    private static Object createKey(Object value) {
+        Object key = CompareUtils.hashKey(value);
+        return key == null ? value : key;
+    }
+
+    private static Duration getRefreshInterval(ReactorQLMetadata metadata) {
+        return metadata
+                .getSetting(SETTING_REFRESH)
+                .map(v -> CastUtils.parseDuration(String.valueOf(v).replace("'", "").trim()))
+                .orElse(null);
+    }
+
+    /**
+     * 判断子查询是否可以物化,即没有引用外部查询的非关联子查询.
+     * 没有from的子查询可能引用外部查询的列,不能物化.
+     *
+     * @param select   子查询
+     * @param metadata 元数据
+     * @return 是否可以物化
+     * @see SqlUtils#isCorrelated(PlainSelect, ReactorQLMetadata)
+     */
+    public static boolean isMaterializable(SubSelect select, ReactorQLMetadata metadata) {
+        if (!(select.getSelectBody() instanceof PlainSelect)) {
+            return false;
+        }
+        PlainSelect body = ((PlainSelect) select.getSelectBody());
+        return body.getFromItem() != null && !SqlUtils.isCorrelated(body, metadata);
+    }
+
+    /**
+     * 创建物化的子查询映射函数,每个刷新间隔({@link #SETTING_REFRESH})获取一次子查询的结果,
+     * 结果经过转换后缓存在执行上下文中,在刷新间隔内有效.
+     * <p>
+     * 没有设置刷新间隔时数据源可能是无限流,无法获取完整的结果,此时返回null,
+     * 应该使用{@link #createSharedMapper(SubSelect, ReactorQLMetadata)}流式处理子查询的数据.
+     *
+     * @param select    子查询
+     * @param metadata  元数据
+     * @param converter 结果转换器,如转换为索引用于in查询
+     * @param <T>       转换后的类型
+     * @return 映射函数, 子查询不能物化或者没有设置刷新间隔时返回null
+     * @see SelectFeature#isMaterializable(SubSelect, ReactorQLMetadata)
+     */
+    public static <T> Function<ReactorQLRecord, Mono<T>> createMaterializedMapper(SubSelect select,
+                                                                               ReactorQLMetadata metadata,
+                                                                               Function<List<Object>, T> converter) {
+        Duration refresh = getRefreshInterval(metadata);
+        if (refresh == null || !isMaterializable(select, metadata)) {
+            return null;
+        }
+        Function<ReactorQLContext, Flux<Object>> executor = createExecutor(select, metadata);
+
+        Function<ReactorQLRecord, Mono<Mono<T>>> mapper = createContextCached(context -> executor
+                .apply(context)
+                .take(refresh)
+                .collectList()
+                .map(converter)
+                .cache(refresh));
+
+        return record -> mapper
+                .apply(record)
+                .flatMap(Function.identity());
+    }
+
+    /**
+     * 创建共享的子查询映射函数,子查询在每次执行中只订阅一次,输出的数据缓存在执行上下文中,
+     * 之后的订阅会重放已经输出的数据并继续接收新的数据,因此子查询为无限流时也能流式处理.
+     *
+     * @param select   子查询
+     * @param metadata 元数据
+     * @return 映射函数, 子查询不能物化时返回null
+     * @see SelectFeature#isMaterializable(SubSelect, ReactorQLMetadata)
+     */
+    public static Function<ReactorQLRecord, Flux<Object>> createSharedMapper(SubSelect select,
+                                                                            ReactorQLMetadata metadata) {
+        if (!isMaterializable(select, metadata)) {
+            return null;
+        }
+        Function<ReactorQLContext, Flux<Object>> executor = createExecutor(select, metadata);
+
+        Object callSite = new Object();
+
+        return record -> Mono
+                .subscriberContext()
+                .flatMapMany(ctx -> ctx
+                        .<Map<Object, Object>>getOrEmpty(MATERIALIZED_CONTEXT_KEY)
+                        .map(cache -> ((SharedSource) cache
+                                .computeIfAbsent(callSite, ignore -> new SharedSource(executor.apply(record.getContext()))))
+                                .flux)
+                        //没有执行上下文时,每次都执行子查询
+                        .orElseGet(() -> executor.apply(record.getContext())));
+    }
+
+    private static Function<ReactorQLContext, Flux<Object>> createExecutor(SubSelect select, ReactorQLMetadata metadata) {
+        String alias = select.getAlias() != null ? select.getAlias().getName() : null;
+
+        Function<ReactorQLContext, Flux<ReactorQLRecord>> mapper = FromFeature.createFromMapperByFrom(select, metadata);
+
+        return context -> mapper
+                .apply(context.transfer((table, source) -> source
+                        .map(val -> ReactorQLRecord.newRecord(alias, val, context))))
+                .map(ReactorQLRecord::getRecord);
+    }
+
+    /**
+     * 在执行上下文中缓存创建的结果,每一个调用点使用独立的缓存
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Function<ReactorQLRecord, Mono<T>> createContextCached(Function<ReactorQLContext, T> factory) {
+        Object callSite = new Object();
+
+        return record -> Mono
+                .subscriberContext()
+                .map(ctx -> ctx
+                        .<Map<Object, Object>>getOrEmpty(MATERIALIZED_CONTEXT_KEY)
+                        .map(cache -> (T) cache.computeIfAbsent(callSite, ignore -> factory.apply(record.getContext())))
+                        //没有执行上下文时,每次都执行子查询
+                        .orElseGet(() -> factory.apply(record.getContext())));
     }
 
     @Override
     public String getId() {
         return ID;
     }
+
+    /**
+     * 共享的子查询数据源,第一次订阅时订阅子查询并缓存输出的数据,执行结束时通过{@link #dispose()}取消订阅
+     */
+    static class SharedSource implements Disposable {
+        private final Disposable.Swap connection = Disposables.swap();
+
+        private final Flux<Object> flux;
+
+        SharedSource(Flux<Object> source) {
+            this.flux = source.replay().autoConnect(1, connection::update);
+        }
+
+        @Override
+        public void dispose() {
+            connection.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return connection.isDisposed();
+        }
+    }
+
+    /**
+     * 按关联列的值缓存的子查询结果,淘汰最久未使用的值.
+     * 共享的子查询订阅在执行结束时通过{@link #dispose()}取消,被淘汰时可能仍有数据在使用,所以不会立即取消.
+     */
+    static class KeyedCache implements Disposable {
+        private final LinkedHashMap<List<Object>, Flux<Object>> cache;
+
+        private final Disposable.Composite shared = Disposables.composite();
+
+        KeyedCache(int maxSize) {
+            this.cache = new LinkedHashMap<List<Object>, Flux<Object>>(16, 0.75F, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Flux<Object>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized Flux<Object> get(List<Object> key, Supplier<Flux<Object>> supplier) {
+            return cache.computeIfAbsent(key, ignore -> supplier.get());
+        }
+
+        synchronized Flux<Object> getShared(List<Object> key, Supplier<Flux<Object>> source) {
+            return cache.computeIfAbsent(key, ignore -> {
+                SharedSource sharedSource = new SharedSource(source.get());
+                shared.add(sharedSource);
+                return sharedSource.flux;
+            });
+        }
+
+        @Override
+        public void dispose() {
+            shared.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return shared.isDisposed();
+        }
+    }
 }
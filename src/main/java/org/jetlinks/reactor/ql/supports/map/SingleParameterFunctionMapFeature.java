@@ -21,6 +21,8 @@ public class SingleParameterFunctionMapFeature implements ValueMapFeature {
 
     private final Function<Object, Object> calculator;
 
+    private boolean deterministic;
+
     public SingleParameterFunctionMapFeature(String type, Function<Object, Object> calculator) {
         this.id = FeatureId.ValueMap.of(type).getId();
         this.calculator = calculator;
@@ -41,5 +43,20 @@ public class SingleParameterFunctionMapFeature implements ValueMapFeature {
         return v -> Flux.from(mapper.apply(v)).map(calculator);
     }
 
+    /**
+     * 标记为确定性的函数,计算结果可以在查询组内共享
+     *
+     * @return this
+     * @see ValueMapFeature#isDeterministic()
+     * @since 1.0.8
+     */
+    public SingleParameterFunctionMapFeature deterministic() {
+        this.deterministic = true;
+        return this;
+    }
 
+    @Override
+    public boolean isDeterministic() {
+        return deterministic;
+    }
 }
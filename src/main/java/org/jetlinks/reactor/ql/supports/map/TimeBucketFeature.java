@@ -0,0 +1,107 @@
+package org.jetlinks.reactor.ql.supports.map;
+
+import net.sf.jsqlparser.expression.Expression;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.jetlinks.reactor.ql.utils.ZoneOffsetCache;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.time.*;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 按固定时间间隔计算时间所在区间的开始时间戳,通过时间戳直接计算,不需要格式化日期.
+ * <pre>
+ *     select time_bucket(timestamp,'1m') ts from device.message
+ *
+ *     select avg(temp) from device.message group by time_bucket(timestamp,'5m','Asia/Shanghai')
+ * </pre>
+ * 区间按当地时间对齐,如'1h'对齐到整点,'1d'对齐到当地时间的0点,夏令时切换时按实际的当地时间计算.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class TimeBucketFeature implements ValueMapFeature {
+
+    private static final String ID = FeatureId.ValueMap.of("time_bucket").getId();
+
+    static final long DAY = Duration.ofDays(1).toMillis();
+
+    @Override
+    public Function<ReactorQLRecord, ? extends Publisher<?>> createMapper(Expression expression, ReactorQLMetadata metadata) {
+        net.sf.jsqlparser.expression.Function function = ((net.sf.jsqlparser.expression.Function) expression);
+        List<Expression> expressions = function.getParameters() == null ? null : function.getParameters().getExpressions();
+        if (expressions == null || expressions.size() < 2) {
+            throw new UnsupportedOperationException("错误的参数,正确例子: time_bucket(timestamp,'1m','Asia/Shanghai')");
+        }
+        Duration interval = CastUtils.parseDuration(String.valueOf(getConstant(expressions.get(1))));
+        ZoneId zone = expressions.size() > 2
+                ? ZoneId.of(String.valueOf(getConstant(expressions.get(2))))
+                : ZoneId.systemDefault();
+        if (interval.toMillis() <= 0) {
+            throw new UnsupportedOperationException("时间间隔必须大于0:" + expression);
+        }
+        Bucket bucket = new Bucket(interval.toMillis(), zone);
+        Function<ReactorQLRecord, ? extends Publisher<?>> mapper = ValueMapFeature.createMapperNow(expressions.get(0), metadata);
+
+        return record -> Mono
+                .from(mapper.apply(record))
+                .map(value -> bucket.apply(CastUtils.castDateMillis(value)));
+    }
+
+    private static Object getConstant(Expression expr) {
+        return ExpressionUtils
+                .getSimpleValue(expr)
+                .orElseThrow(() -> new UnsupportedOperationException("unsupported expression:" + expr));
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    static class Bucket {
+        private final long interval;
+        private final ZoneId zone;
+        private final ZoneOffsetCache offsets;
+
+        Bucket(long interval, ZoneId zone) {
+            this.interval = interval;
+            this.zone = zone;
+            this.offsets = new ZoneOffsetCache(zone);
+        }
+
+        long apply(long timestamp) {
+            int offset = offsets.getOffsetMillis(timestamp);
+            long local = timestamp + offset;
+            //按天对齐时,使用当地日期的开始时间,夏令时切换的日期不一定是24小时
+            if (interval % DAY == 0) {
+                long days = interval / DAY;
+                long epochDay = Math.floorDiv(Math.floorDiv(local, DAY), days) * days;
+                return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            long localStart = Math.floorDiv(local, interval) * interval;
+            long start = localStart - offset;
+            //区间的开始时间与当前时间的时区偏移量不同(夏令时切换)
+            if (offsets.getOffsetMillis(start) != offset) {
+                return LocalDateTime
+                        .ofEpochSecond(Math.floorDiv(localStart, 1000), (int) Math.floorMod(localStart, 1000) * 1000_000, ZoneOffset.UTC)
+                        .atZone(zone)
+                        .toInstant()
+                        .toEpochMilli();
+            }
+            return start;
+        }
+    }
+}
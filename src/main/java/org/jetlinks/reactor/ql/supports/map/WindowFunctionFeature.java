@@ -0,0 +1,369 @@
+package org.jetlinks.reactor.ql.supports.map;
+
+import net.sf.jsqlparser.expression.*;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.feature.ClockFeature;
+import org.jetlinks.reactor.ql.feature.FeatureId;
+import org.jetlinks.reactor.ql.feature.ValueMapFeature;
+import org.jetlinks.reactor.ql.utils.CalculateUtils;
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.ExpressionUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 流式窗口函数(OVER),按分区保存固定大小的状态,数据按到达的顺序计算.
+ * <pre>
+ *     select row_number() over (partition by deviceId) no from device.message
+ *     select lag(temp,1) over (partition by deviceId) prev from device.message
+ *     select lead(temp,1) over (partition by deviceId) next from device.message
+ *     select delta(temp) over (partition by deviceId) delta from device.message
+ *     select moving_avg(temp) over (partition by deviceId order by timestamp rows between 4 preceding and current row) from device.message
+ * </pre>
+ * OVER中的ORDER BY只用于说明数据的顺序,不会对数据进行排序.
+ * <p>
+ * lead需要等待后续数据,最多等待{@link #SETTING_LEAD_MAX_DELAY}(默认10秒),超时或者分区被淘汰时返回默认值.
+ * 使用虚拟时钟时,按时钟时间判断是否超时.
+ * <p>
+ * 每次执行中,每个窗口函数最多保存{@link #SETTING_MAX_PARTITIONS}(默认10000)个分区,
+ * 超过数量或者超过{@link #SETTING_PARTITION_IDLE}(默认30分钟)没有数据的分区将被淘汰.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class WindowFunctionFeature implements ValueMapFeature {
+
+    private static final String ID = FeatureId.ValueMap.over.getId();
+
+    /**
+     * 上下文中保存每次执行的分区状态的Map
+     */
+    public static final String STATE_CONTEXT_KEY = "window-function-state";
+
+    public static final String SETTING_MAX_PARTITIONS = "window_max_partitions";
+
+    public static final String SETTING_PARTITION_IDLE = "window_partition_idle";
+
+    public static final String SETTING_LEAD_MAX_DELAY = "lead_max_delay";
+
+    private static final Object NULL = new Object();
+
+    @Override
+    public Function<ReactorQLRecord, ? extends Publisher<?>> createMapper(Expression expression, ReactorQLMetadata metadata) {
+        AnalyticExpression analytic = ((AnalyticExpression) expression);
+        String name = analytic.getName().toLowerCase();
+
+        Function<ReactorQLRecord, Mono<List<Object>>> partitionMapper = createPartitionMapper(analytic, metadata);
+        Function<ReactorQLRecord, Mono<Object>> valueMapper = analytic.getExpression() == null
+                ? record -> Mono.just(NULL)
+                : createValueMapper(analytic.getExpression(), metadata);
+        int offset = analytic.getOffset() == null ? 1 : CastUtils.castNumber(getConstant(analytic.getOffset())).intValue();
+        Object defaultValue = analytic.getDefaultValue() == null ? null : getConstant(analytic.getDefaultValue());
+        if (offset <= 0) {
+            throw new UnsupportedOperationException("偏移量必须大于0:" + expression);
+        }
+
+        ClockFeature clock = ClockFeature.getClock(metadata);
+        Supplier<WindowState> stateSupplier;
+        switch (name) {
+            case "row_number":
+                stateSupplier = RowNumber::new;
+                break;
+            case "lag":
+                stateSupplier = () -> new Lag(offset, defaultValue);
+                break;
+            case "lead":
+                Duration maxDelay = getDurationSetting(metadata, SETTING_LEAD_MAX_DELAY, Duration.ofSeconds(10));
+                stateSupplier = () -> new Lead(offset, defaultValue, maxDelay, clock);
+                break;
+            case "delta":
+                stateSupplier = Delta::new;
+                break;
+            case "moving_avg":
+                int size = getMovingSize(analytic);
+                stateSupplier = () -> new MovingAvg(size);
+                break;
+            default:
+                throw new UnsupportedOperationException("不支持的窗口函数:" + expression);
+        }
+        int maxPartitions = metadata
+                .getSetting(SETTING_MAX_PARTITIONS)
+                .map(v -> CastUtils.castNumber(String.valueOf(v).replace("'", "")).intValue())
+                .orElse(10000);
+        long idleMillis = getDurationSetting(metadata, SETTING_PARTITION_IDLE, Duration.ofMinutes(30)).toMillis();
+        String callSite = expression.toString();
+
+        //没有执行上下文时使用的状态
+        Partitions fallback = new Partitions(maxPartitions, idleMillis, clock, stateSupplier);
+
+        return record -> Mono
+                .subscriberContext()
+                .flatMap(ctx -> {
+                    Partitions partitions = getPartitions(ctx, callSite, maxPartitions, idleMillis, clock, stateSupplier, fallback);
+                    return Mono
+                            .zip(partitionMapper.apply(record), valueMapper.apply(record))
+                            .flatMap(tp2 -> partitions.apply(tp2.getT1(), tp2.getT2() == NULL ? null : tp2.getT2()));
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Partitions getPartitions(Context ctx,
+                                            String callSite,
+                                            int maxPartitions,
+                                            long idleMillis,
+                                            ClockFeature clock,
+                                            Supplier<WindowState> stateSupplier,
+                                            Partitions fallback) {
+        return ctx
+                .<Map<String, Partitions>>getOrEmpty(STATE_CONTEXT_KEY)
+                .map(states -> states.computeIfAbsent(callSite, ignore -> new Partitions(maxPartitions, idleMillis, clock, stateSupplier)))
+                .orElse(fallback);
+    }
+
+    private static Function<ReactorQLRecord, Mono<List<Object>>> createPartitionMapper(AnalyticExpression analytic, ReactorQLMetadata metadata) {
+        ExpressionList partition = analytic.getPartitionExpressionList();
+        if (partition == null || partition.getExpressions() == null || partition.getExpressions().isEmpty()) {
+            List<Object> all = Collections.emptyList();
+            return record -> Mono.just(all);
+        }
+        List<Function<ReactorQLRecord, Mono<Object>>> mappers = new ArrayList<>();
+        for (Expression expr : partition.getExpressions()) {
+            mappers.add(createValueMapper(expr, metadata));
+        }
+        return record -> Flux
+                .fromIterable(mappers)
+                .concatMap(mapper -> mapper.apply(record))
+                .collectList();
+    }
+
+    private static Function<ReactorQLRecord, Mono<Object>> createValueMapper(Expression expr, ReactorQLMetadata metadata) {
+        Function<ReactorQLRecord, ? extends Publisher<?>> mapper = ValueMapFeature.createMapperNow(expr, metadata);
+        //null值也需要参与计算
+        return record -> Mono.<Object>from(mapper.apply(record)).defaultIfEmpty(NULL);
+    }
+
+    private static int getMovingSize(AnalyticExpression analytic) {
+        WindowElement window = analytic.getWindowElement();
+        WindowOffset start = null;
+        if (window != null) {
+            start = window.getRange() != null ? window.getRange().getStart() : window.getOffset();
+        }
+        if (start != null && start.getType() == WindowOffset.Type.PRECEDING) {
+            //unbounded preceding
+            if (start.getExpression() == null) {
+                return Integer.MAX_VALUE;
+            }
+            return CastUtils.castNumber(getConstant(start.getExpression())).intValue() + 1;
+        }
+        if (start != null && start.getType() == WindowOffset.Type.CURRENT) {
+            return 1;
+        }
+        // moving_avg(val,5)
+        if (analytic.getOffset() != null) {
+            return CastUtils.castNumber(getConstant(analytic.getOffset())).intValue();
+        }
+        throw new UnsupportedOperationException("moving_avg需要指定窗口大小,如: rows between 4 preceding and current row");
+    }
+
+    private static Object getConstant(Expression expr) {
+        return ExpressionUtils
+                .getSimpleValue(expr)
+                .orElseThrow(() -> new UnsupportedOperationException("unsupported expression:" + expr));
+    }
+
+    private static Duration getDurationSetting(ReactorQLMetadata metadata, String key, Duration defaultValue) {
+        return metadata
+                .getSetting(key)
+                .map(v -> CastUtils.parseDuration(String.valueOf(v).replace("'", "").trim()))
+                .orElse(defaultValue);
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    /**
+     * 一个窗口函数在一次执行中的所有分区,按访问顺序淘汰
+     */
+    static class Partitions {
+        private final int maxPartitions;
+        private final long idleMillis;
+        private final ClockFeature clock;
+        private final Supplier<WindowState> stateSupplier;
+        private final LinkedHashMap<List<Object>, WindowState> states = new LinkedHashMap<>(16, 0.75F, true);
+
+        Partitions(int maxPartitions, long idleMillis, ClockFeature clock, Supplier<WindowState> stateSupplier) {
+            this.maxPartitions = maxPartitions;
+            this.idleMillis = idleMillis;
+            this.clock = clock;
+            this.stateSupplier = stateSupplier;
+        }
+
+        synchronized Mono<Object> apply(List<Object> partition, Object value) {
+            long now = clock.currentTimeMillis();
+            WindowState state = states.get(partition);
+            if (state == null) {
+                state = stateSupplier.get();
+                states.put(partition, state);
+            }
+            state.lastAccess = now;
+            evict(now);
+            return state.apply(value);
+        }
+
+        private void evict(long now) {
+            Iterator<WindowState> iterator = states.values().iterator();
+            while (iterator.hasNext()) {
+                WindowState eldest = iterator.next();
+                if (states.size() <= maxPartitions && now - eldest.lastAccess < idleMillis) {
+                    break;
+                }
+                iterator.remove();
+                eldest.evicted();
+            }
+        }
+
+        synchronized int size() {
+            return states.size();
+        }
+    }
+
+    abstract static class WindowState {
+        private long lastAccess;
+
+        abstract Mono<Object> apply(Object value);
+
+        void evicted() {
+        }
+    }
+
+    static class RowNumber extends WindowState {
+        private long number;
+
+        @Override
+        Mono<Object> apply(Object value) {
+            return Mono.just(++number);
+        }
+    }
+
+    static class Lag extends WindowState {
+        private final Object[] buffer;
+        private final Object defaultValue;
+        private long count;
+
+        Lag(int offset, Object defaultValue) {
+            this.buffer = new Object[offset];
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        Mono<Object> apply(Object value) {
+            int index = (int) (count % buffer.length);
+            Object lag = count >= buffer.length ? buffer[index] : defaultValue;
+            buffer[index] = value;
+            count++;
+            return Mono.justOrEmpty(lag);
+        }
+    }
+
+    static class Lead extends WindowState {
+        private final int offset;
+        private final Object defaultValue;
+        private final Duration maxDelay;
+        private final ClockFeature clock;
+        private final Deque<MonoProcessor<Object>> pending = new ArrayDeque<>();
+
+        Lead(int offset, Object defaultValue, Duration maxDelay, ClockFeature clock) {
+            this.offset = offset;
+            this.defaultValue = defaultValue;
+            this.maxDelay = maxDelay;
+            this.clock = clock;
+        }
+
+        @Override
+        Mono<Object> apply(Object value) {
+            MonoProcessor<Object> processor = MonoProcessor.create();
+            pending.add(processor);
+            if (pending.size() > offset) {
+                MonoProcessor<Object> head = pending.poll();
+                if (value == null) {
+                    head.onComplete();
+                } else {
+                    head.onNext(value);
+                }
+            }
+            return processor
+                    //虚拟时钟的超时由时钟时间触发,而不是实际经过的时间
+                    .timeout(clock.delay(maxDelay), Mono.empty())
+                    .switchIfEmpty(Mono.justOrEmpty(defaultValue));
+        }
+
+        @Override
+        void evicted() {
+            for (MonoProcessor<Object> processor : pending) {
+                processor.onComplete();
+            }
+            pending.clear();
+        }
+    }
+
+    static class Delta extends WindowState {
+        private Number last;
+
+        @Override
+        Mono<Object> apply(Object value) {
+            if (value == null) {
+                return Mono.empty();
+            }
+            Number current = CastUtils.castNumber(value);
+            Number previous = last;
+            last = current;
+            if (previous == null) {
+                return Mono.empty();
+            }
+            return Mono.just(CalculateUtils.subtract(current, previous));
+        }
+    }
+
+    static class MovingAvg extends WindowState {
+        private final int size;
+        private final double[] buffer;
+        private long count;
+        private double sum;
+
+        MovingAvg(int size) {
+            this.size = size;
+            //无界窗口只需要总和与数量
+            this.buffer = size == Integer.MAX_VALUE ? null : new double[size];
+        }
+
+        @Override
+        Mono<Object> apply(Object value) {
+            if (value == null) {
+                return count == 0 ? Mono.empty() : Mono.just(sum / Math.min(count, size));
+            }
+            double current = CastUtils.castNumber(value).doubleValue();
+            if (buffer != null) {
+                int index = (int) (count % size);
+                if (count >= size) {
+                    sum -= buffer[index];
+                }
+                buffer[index] = current;
+            }
+            sum += current;
+            count++;
+            return Mono.just(sum / Math.min(count, size));
+        }
+    }
+}
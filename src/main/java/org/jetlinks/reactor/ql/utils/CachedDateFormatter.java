@@ -0,0 +1,122 @@
+package org.jetlinks.reactor.ql.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 缓存上一次格式化结果的日期格式化器.
+ * <p>
+ * 根据格式中精度最小的字段(如:yyyy-MM-dd HH:mm的精度为分钟),在同一秒,分钟,小时或者天内的时间直接返回上一次格式化的结果.
+ * 格式中包含毫秒,时区等字段时只复用同一时刻的结果,配合粗粒度的时钟使用时,同一个时钟周期内的格式化结果相同.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class CachedDateFormatter {
+
+    static final long SECOND = 1000;
+
+    static final long MINUTE = 60 * SECOND;
+
+    static final long HOUR = 60 * MINUTE;
+
+    static final long DAY = 24 * HOUR;
+
+    private final DateTimeFormatter formatter;
+
+    private final ZoneId zone;
+
+    private final ZoneOffsetCache offsets;
+
+    private final long unit;
+
+    private volatile Entry last;
+
+    public CachedDateFormatter(String pattern, ZoneId zone) {
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        this.zone = zone;
+        this.offsets = new ZoneOffsetCache(zone);
+        this.unit = getCacheUnit(pattern);
+    }
+
+    public String format(long epochMillis) {
+        //按当地时间计算,同一个单位内的时间格式化结果相同
+        long key = unit <= 0
+                ? epochMillis
+                : Math.floorDiv(epochMillis + offsets.getOffsetMillis(epochMillis), unit);
+        Entry entry = last;
+        if (entry != null && entry.key == key) {
+            return entry.value;
+        }
+        String value = formatter.format(Instant.ofEpochMilli(epochMillis).atZone(zone));
+        last = new Entry(key, value);
+        return value;
+    }
+
+    /**
+     * 根据格式获取可以缓存的时间单位
+     *
+     * @param pattern 格式
+     * @return 时间单位, 毫秒, 不能缓存时返回0
+     */
+    static long getCacheUnit(String pattern) {
+        long unit = DAY;
+        boolean quoted = false;
+        for (char c : pattern.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted || !Character.isLetter(c)) {
+                continue;
+            }
+            switch (c) {
+                case 's':
+                    unit = Math.min(unit, SECOND);
+                    break;
+                case 'm':
+                    unit = Math.min(unit, MINUTE);
+                    break;
+                case 'H':
+                case 'h':
+                case 'K':
+                case 'k':
+                case 'a':
+                    unit = Math.min(unit, HOUR);
+                    break;
+                case 'G':
+                case 'u':
+                case 'y':
+                case 'D':
+                case 'M':
+                case 'L':
+                case 'd':
+                case 'Q':
+                case 'q':
+                case 'Y':
+                case 'w':
+                case 'W':
+                case 'E':
+                case 'e':
+                case 'c':
+                case 'F':
+                    break;
+                default:
+                    //毫秒,纳秒,时区等
+                    return 0;
+            }
+        }
+        return unit;
+    }
+
+    static class Entry {
+        private final long key;
+        private final String value;
+
+        Entry(long key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -87,20 +87,16 @@ public class CastUtils {
             if (stringValue.startsWith("0x")) {
                 return Long.parseLong(stringValue.substring(2), 16);
             }
-            //日期格式的字符串?
-            DateFormatter dateFormatter = DateFormatter.getFormatter(stringValue);
-            if (null != dateFormatter) {
-                //格式化为相同格式的字符串进行对比
-                return dateFormatter.format(stringValue).getTime();
+            Number number = parseNumber(stringValue);
+            if (number != null) {
+                return number;
             }
-            try {
-                BigDecimal decimal = new BigDecimal(stringValue);
-                if (decimal.scale() == 0) {
-                    return decimal.longValue();
+            //日期格式的字符串?
+            if (maybeDate(stringValue)) {
+                Long millis = parseDateMillis(stringValue);
+                if (millis != null) {
+                    return millis;
                 }
-                return decimal.doubleValue();
-            } catch (NumberFormatException ignore) {
-
             }
         }
         if (value instanceof Character) {
@@ -118,6 +114,125 @@ public class CastUtils {
         throw new UnsupportedOperationException("can not cast to number:" + value);
     }
 
+    /**
+     * 解析数字格式的字符串,不会尝试解析日期.
+     * 整数(如:-12)解析为Long,小数(如:3.14)解析为Double,科学计数法(如:1e3)使用BigDecimal解析,其他格式直接返回null.
+     *
+     * @param value 字符串
+     * @return 数字, 不是数字格式时返回null
+     */
+    public static Number parseNumber(CharSequence value) {
+        int length = value.length();
+        if (length == 0) {
+            return null;
+        }
+        int index = 0;
+        char first = value.charAt(0);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            index++;
+        }
+        long longValue = 0;
+        int digits = 0;
+        int dot = -1;
+        for (int i = index; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (dot < 0) {
+                    longValue = longValue * 10 + (c - '0');
+                }
+                digits++;
+            } else if (c == '.' && dot < 0) {
+                dot = i;
+            } else if ((c == 'e' || c == 'E') && digits > 0 && isExponent(value, i + 1)) {
+                //科学计数法
+                return parseDecimal(value.toString());
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        int integerDigits = dot < 0 ? digits : dot - index;
+        if (integerDigits > 18) {
+            return parseDecimal(value.toString());
+        }
+        //整数,或者以.结尾的数字,如: 1.
+        if (dot < 0 || dot == length - 1) {
+            return negative ? -longValue : longValue;
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    /**
+     * 判断从指定位置开始是否为指数部分,即可选的正负号以及至少一位数字
+     */
+    private static boolean isExponent(CharSequence value, int from) {
+        int length = value.length();
+        if (from < length && (value.charAt(from) == '-' || value.charAt(from) == '+')) {
+            from++;
+        }
+        if (from >= length) {
+            return false;
+        }
+        for (int i = from; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Number parseDecimal(String value) {
+        try {
+            BigDecimal decimal = new BigDecimal(value);
+            if (decimal.scale() == 0) {
+                return decimal.longValue();
+            }
+            return decimal.doubleValue();
+        } catch (NumberFormatException ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析日期格式的字符串为时间戳,不会尝试解析数字.
+     *
+     * @param value 字符串
+     * @return 时间戳, 不是日期格式时返回null
+     */
+    public static Long parseDateMillis(CharSequence value) {
+        String stringValue = value.toString();
+        DateFormatter dateFormatter = DateFormatter.getFormatter(stringValue);
+        if (null != dateFormatter) {
+            return dateFormatter.format(stringValue).getTime();
+        }
+        return null;
+    }
+
+    /**
+     * 判断字符串是否可能是日期,只由数字,小数点,正负号和指数符号组成的字符串不是日期.
+     */
+    static boolean maybeDate(String value) {
+        int dots = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9' || c == 'e' || c == 'E') {
+                continue;
+            }
+            if (c == '.' && ++dots == 1) {
+                continue;
+            }
+            if ((c == '-' || c == '+') && (i == 0 || value.charAt(i - 1) == 'e' || value.charAt(i - 1) == 'E')) {
+                continue;
+            }
+            return true;
+        }
+        return false;
+    }
+
     public static Date castDate(Object value) {
         if (value instanceof String) {
             if (StringUtils.isNumber(value)) {
@@ -151,6 +266,25 @@ public class CastUtils {
         throw new UnsupportedOperationException("can not cast to date:" + value);
     }
 
+    /**
+     * 转换为时间戳,数字和日期类型不会创建新的对象
+     *
+     * @param value 值
+     * @return 时间戳
+     */
+    public static long castDateMillis(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Instant) {
+            return ((Instant) value).toEpochMilli();
+        }
+        return castDate(value).getTime();
+    }
+
     public static Duration parseDuration(String timeString) {
 
         char[] all = timeString.replace("ms", "S").toCharArray();
@@ -22,6 +22,14 @@ public class CompareUtils {
             return 0;
         }
 
+        //相同类型,不需要转换
+        if (source instanceof Number && target instanceof Number) {
+            return Double.compare(((Number) source).doubleValue(), ((Number) target).doubleValue());
+        }
+        if (source instanceof String && target instanceof String) {
+            return ((String) source).compareTo(((String) target));
+        }
+
         //时间
         {
             if (source instanceof Instant) {
@@ -85,6 +93,43 @@ public class CompareUtils {
         return compare(source, target) == 0;
     }
 
+    /**
+     * 获取用于哈希查找的键,数字,时间以及数字格式的字符串统一转换为Double,其他字符串使用原始值.
+     * 以数字开头的日期格式字符串(如:2020-01-01 00:00:00)与{@link CastUtils#castNumber(Object)}一致,转换为时间戳.
+     * 使用{@link CompareUtils#equals(Object, Object)}判断为相等的值,键也相同.
+     * <p>
+     * 注意: 以字母开头的日期格式字符串(如:Tue Jan 01 00:00:00 CST 2020)不会转换为Double.
+     *
+     * @param value 值
+     * @return 键, 无法确定键的类型时返回null
+     */
+    public static Object hashKey(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Date) {
+            return (double) ((Date) value).getTime();
+        }
+        if (value instanceof Instant || value instanceof LocalDateTime || value instanceof LocalDate) {
+            return (double) CastUtils.castDate(value).getTime();
+        }
+        if (value instanceof CharSequence) {
+            String str = value.toString();
+            if (str.isEmpty()) {
+                return str;
+            }
+            char first = str.charAt(0);
+            if ((first >= '0' && first <= '9') || first == '-' || first == '+' || first == '.') {
+                try {
+                    return CastUtils.castNumber(str).doubleValue();
+                } catch (Exception ignore) {
+                }
+            }
+            return str;
+        }
+        return null;
+    }
+
     private static int compare(Number number, Object target) {
 
         try {
@@ -0,0 +1,41 @@
+package org.jetlinks.reactor.ql.utils;
+
+import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 用于在结果可以立即获取时(如:Mono.just,Mono.empty)跳过订阅,直接同步获取结果.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class PublisherUtils {
+
+    /**
+     * 判断是否可以同步获取结果,如{@link reactor.core.publisher.Mono#just(Object)},{@link reactor.core.publisher.Mono#empty()}
+     *
+     * @param publisher Publisher
+     * @return 是否可以同步获取结果
+     */
+    public static boolean isSync(Publisher<?> publisher) {
+        return publisher instanceof Callable;
+    }
+
+    /**
+     * 同步获取结果,调用前需要使用{@link PublisherUtils#isSync(Publisher)}进行判断
+     *
+     * @param publisher Publisher
+     * @param <T>       结果类型
+     * @return 结果, 没有结果时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getSync(Publisher<T> publisher) {
+        try {
+            return ((Callable<T>) publisher).call();
+        } catch (Throwable e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+}
@@ -1,5 +1,19 @@
 package org.jetlinks.reactor.ql.utils;
 
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.*;
+import org.jetlinks.reactor.ql.ReactorQLMetadata;
+import org.jetlinks.reactor.ql.schema.Schema;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class SqlUtils {
 
     public static String getCleanStr(String str) {
@@ -15,4 +29,233 @@ public class SqlUtils {
         return str;
     }
 
+    /**
+     * 获取查询中可以被引用的表名,包括this,from以及join的表名和别名
+     *
+     * @param select 查询
+     * @return 表名
+     */
+    public static Set<String> getTableNames(PlainSelect select) {
+        Set<String> tables = new HashSet<>();
+        tables.add("this");
+        addTableName(select.getFromItem(), tables);
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                addTableName(join.getRightItem(), tables);
+            }
+        }
+        return tables;
+    }
+
+    private static void addTableName(FromItem item, Set<String> tables) {
+        if (item == null) {
+            return;
+        }
+        if (item.getAlias() != null) {
+            tables.add(getCleanStr(item.getAlias().getName()));
+        }
+        if (item instanceof Table) {
+            tables.add(getCleanStr(((Table) item).getName()));
+            tables.add(getCleanStr(((Table) item).getFullyQualifiedName()));
+        }
+    }
+
+    /**
+     * 判断子查询是否为关联子查询,即引用了外部查询的表.
+     * 子查询中嵌套了子查询时,无法准确判断,也认为是关联子查询.
+     * <p>
+     * 没有指定表名的列与SQL标准一致,优先认为是子查询自身的列,引用外部查询的列需要指定表名.
+     * 子查询的表声明了表结构({@link Schema})时,只有this,查询列的别名以及表结构中声明的列认为是子查询自身的列,
+     * 其他没有指定表名的列可能引用外部查询的列,无法判断.
+     *
+     * @param select   子查询
+     * @param metadata 元数据
+     * @return 是否为关联子查询
+     */
+    public static boolean isCorrelated(PlainSelect select, ReactorQLMetadata metadata) {
+        Set<Column> columns = Collections.newSetFromMap(new IdentityHashMap<>());
+        return collectOuterColumns(select, metadata, columns) || !columns.isEmpty();
+    }
+
+    /**
+     * 获取关联子查询中的关联列,即where中通过and连接的等值条件中引用的外部查询的列,如:
+     * <pre>
+     *     select avg(v) from t2 where t2.id = t1.id and t2.type = 'a'
+     * </pre>
+     * 中的t1.id. 子查询的结果只由关联列的值决定,可以按关联列的值缓存结果.
+     * <p>
+     * 在其他位置引用了外部查询的列,引用了没有指定表名的外部列,或者无法判断时返回null.
+     *
+     * @param select   子查询
+     * @param metadata 元数据
+     * @return 关联列
+     * @see SqlUtils#isCorrelated(PlainSelect, ReactorQLMetadata)
+     */
+    public static List<Column> getCorrelationColumns(PlainSelect select, ReactorQLMetadata metadata) {
+        Set<Column> outer = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (collectOuterColumns(select, metadata, outer) || outer.isEmpty()) {
+            return null;
+        }
+        Set<String> tables = getTableNames(select);
+        List<Column> columns = new ArrayList<>();
+        for (Expression expression : getAndExpressions(select.getWhere())) {
+            if (!(expression instanceof EqualsTo)) {
+                continue;
+            }
+            EqualsTo equalsTo = ((EqualsTo) expression);
+            if (isOuterColumn(equalsTo.getLeftExpression(), tables)) {
+                columns.add(((Column) equalsTo.getLeftExpression()));
+            } else if (isOuterColumn(equalsTo.getRightExpression(), tables)) {
+                columns.add(((Column) equalsTo.getRightExpression()));
+            }
+        }
+        //所有外部查询的列都只在等值条件中引用
+        Set<Column> correlation = Collections.newSetFromMap(new IdentityHashMap<>());
+        correlation.addAll(columns);
+        if (!correlation.equals(outer)) {
+            return null;
+        }
+        return columns;
+    }
+
+    private static List<Expression> getAndExpressions(Expression expression) {
+        List<Expression> expressions = new ArrayList<>();
+        if (expression instanceof AndExpression) {
+            expressions.addAll(getAndExpressions(((AndExpression) expression).getLeftExpression()));
+            expressions.addAll(getAndExpressions(((AndExpression) expression).getRightExpression()));
+        } else if (expression instanceof Parenthesis) {
+            expressions.addAll(getAndExpressions(((Parenthesis) expression).getExpression()));
+        } else if (expression != null) {
+            expressions.add(expression);
+        }
+        return expressions;
+    }
+
+    private static boolean isOuterColumn(Expression expression, Set<String> tables) {
+        if (!(expression instanceof Column)) {
+            return false;
+        }
+        Table table = ((Column) expression).getTable();
+        return table != null && table.getName() != null
+                && !tables.contains(getCleanStr(table.getName()))
+                && !tables.contains(getCleanStr(table.getFullyQualifiedName()));
+    }
+
+    /**
+     * 获取子查询中没有指定表名时可以确定属于子查询自身的列名,子查询的表都没有声明表结构时返回null,
+     * 表示没有指定表名的列都属于子查询自身.
+     */
+    private static Set<String> getOwnedColumns(PlainSelect select, ReactorQLMetadata metadata) {
+        Set<String> owned = new HashSet<>();
+        boolean declared = addSchemaColumns(select.getFromItem(), metadata, owned);
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                declared |= addSchemaColumns(join.getRightItem(), metadata, owned);
+            }
+        }
+        if (!declared) {
+            return null;
+        }
+        owned.add("this");
+        for (SelectItem item : select.getSelectItems()) {
+            if (item instanceof SelectExpressionItem && ((SelectExpressionItem) item).getAlias() != null) {
+                owned.add(getCleanStr(((SelectExpressionItem) item).getAlias().getName()));
+            }
+        }
+        return owned;
+    }
+
+    private static boolean addSchemaColumns(FromItem item, ReactorQLMetadata metadata, Set<String> owned) {
+        if (item instanceof Table) {
+            Schema schema = Schema.lookup(metadata, ((Table) item)).orElse(null);
+            if (schema != null) {
+                owned.addAll(schema.getColumns());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOwnedColumn(Column column, Set<String> owned) {
+        if (owned == null) {
+            return true;
+        }
+        String name = getCleanStr(column.getColumnName());
+        return owned.contains(name) || owned.contains(name.split("[.:]", 2)[0]);
+    }
+
+    /**
+     * 收集子查询中引用的外部查询的列
+     *
+     * @param select   子查询
+     * @param metadata 元数据
+     * @param columns  外部查询的列
+     * @return 是否无法判断, 如嵌套了子查询,或者引用了无法确定来源的列
+     */
+    private static boolean collectOuterColumns(PlainSelect select, ReactorQLMetadata metadata, Set<Column> columns) {
+        Set<String> tables = getTableNames(select);
+        Set<String> owned = getOwnedColumns(select, metadata);
+        AtomicBoolean unknown = new AtomicBoolean();
+
+        ExpressionVisitorAdapter visitor = new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                Table table = column.getTable();
+                if (table == null || table.getName() == null) {
+                    //没有指定表名,并且没有在表结构中声明,可能引用了外部查询的列
+                    if (!isOwnedColumn(column, owned)) {
+                        unknown.set(true);
+                    }
+                } else if (isOuterColumn(column, tables)) {
+                    columns.add(column);
+                }
+            }
+
+            @Override
+            public void visit(SubSelect subSelect) {
+                unknown.set(true);
+            }
+        };
+
+        for (SelectItem item : select.getSelectItems()) {
+            item.accept(new SelectItemVisitorAdapter() {
+                @Override
+                public void visit(SelectExpressionItem item) {
+                    item.getExpression().accept(visitor);
+                }
+            });
+        }
+        accept(select.getWhere(), visitor);
+        accept(select.getHaving(), visitor);
+        if (select.getGroupBy() != null) {
+            for (Expression expression : select.getGroupBy().getGroupByExpressions()) {
+                expression.accept(visitor);
+            }
+        }
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                accept(join.getOnExpression(), visitor);
+                if (join.getRightItem() instanceof SubSelect) {
+                    unknown.set(true);
+                }
+            }
+        }
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                accept(element.getExpression(), visitor);
+            }
+        }
+        if (!(select.getFromItem() instanceof Table)) {
+            //from子查询或者函数
+            unknown.set(true);
+        }
+        return unknown.get();
+    }
+
+    private static void accept(Expression expression, ExpressionVisitorAdapter visitor) {
+        if (expression != null) {
+            expression.accept(visitor);
+        }
+    }
+
 }
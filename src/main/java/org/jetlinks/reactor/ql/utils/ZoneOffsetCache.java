@@ -0,0 +1,73 @@
+package org.jetlinks.reactor.ql.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * 缓存时区偏移量,在两次时区变化(如夏令时切换)之间的时间直接使用缓存的偏移量,不再查找时区规则.
+ *
+ * @author zhouhao
+ * @since 1.0.8
+ */
+public class ZoneOffsetCache {
+
+    private final ZoneRules rules;
+
+    private final boolean fixed;
+
+    private final int fixedOffset;
+
+    private volatile Range range;
+
+    public ZoneOffsetCache(ZoneId zone) {
+        this.rules = zone.getRules();
+        this.fixed = rules.isFixedOffset();
+        this.fixedOffset = fixed ? rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000 : 0;
+    }
+
+    /**
+     * 获取指定时间的时区偏移量
+     *
+     * @param epochMillis 时间戳
+     * @return 偏移量, 毫秒
+     */
+    public int getOffsetMillis(long epochMillis) {
+        if (fixed) {
+            return fixedOffset;
+        }
+        Range range = this.range;
+        if (range == null || epochMillis < range.from || epochMillis >= range.to) {
+            this.range = range = createRange(epochMillis);
+        }
+        return range.offset;
+    }
+
+    private Range createRange(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        int offset = rules.getOffset(instant).getTotalSeconds() * 1000;
+
+        ZoneOffsetTransition previous = rules.previousTransition(instant);
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        long from = previous == null ? Long.MIN_VALUE : previous.getInstant().toEpochMilli();
+        long to = next == null ? Long.MAX_VALUE : next.getInstant().toEpochMilli();
+        //正好在切换的时间点上时,上一次切换之后的偏移量与当前不同
+        if (from != Long.MIN_VALUE && rules.getOffset(Instant.ofEpochMilli(from)).getTotalSeconds() * 1000 != offset) {
+            from = epochMillis;
+        }
+        return new Range(from, to, offset);
+    }
+
+    static class Range {
+        private final long from;
+        private final long to;
+        private final int offset;
+
+        Range(long from, long to, int offset) {
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.jetlinks.reactor.ql;
+
+import org.jetlinks.reactor.ql.supports.map.FunctionMapFeature;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactorQLGroupTest {
+
+    static Map<String, Object> message(String deviceId, int temp) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("deviceId", deviceId);
+        message.put("temp", temp);
+        return message;
+    }
+
+    @Test
+    void testShareDataSource() {
+        AtomicInteger subscribed = new AtomicInteger();
+        DirectProcessor<Map<String, Object>> processor = DirectProcessor.create();
+
+        ReactorQLGroup group = ReactorQLGroup.create(table -> processor.doOnSubscribe(s -> subscribed.incrementAndGet()));
+
+        List<Map<String, Object>> high = new CopyOnWriteArrayList<>();
+        List<Map<String, Object>> low = new CopyOnWriteArrayList<>();
+
+        Disposable highDisposable = group
+                .attach("high", group.compile("select deviceId from device.message where temp > 10"))
+                .subscribe(high::add);
+        Disposable lowDisposable = group
+                .attach("low", group.compile("select deviceId from device.message where temp <= 10"))
+                .subscribe(low::add);
+
+        processor.onNext(message("a", 11));
+        processor.onNext(message("b", 5));
+
+        assertEquals(1, subscribed.get());
+        assertEquals(1, high.size());
+        assertEquals("a", high.get(0).get("deviceId"));
+        assertEquals(1, low.size());
+        assertEquals("b", low.get(0).get("deviceId"));
+
+        assertTrue(group.detach("high"));
+        assertFalse(group.getQueries().contains("high"));
+
+        processor.onNext(message("c", 20));
+        processor.onNext(message("d", 1));
+        assertEquals(1, high.size());
+        assertEquals(2, low.size());
+        assertTrue(highDisposable.isDisposed());
+
+        //运行时添加查询,不会重新订阅数据源
+        List<Map<String, Object>> all = new CopyOnWriteArrayList<>();
+        group.attach("all", group.compile("select deviceId from device.message"))
+             .subscribe(all::add);
+        processor.onNext(message("e", 1));
+        assertEquals(1, subscribed.get());
+        assertEquals(1, all.size());
+        assertEquals(3, low.size());
+
+        group.dispose();
+        assertTrue(lowDisposable.isDisposed());
+        assertTrue(group.getQueries().isEmpty());
+    }
+
+    @Test
+    void testBufferOverflow() {
+        DirectProcessor<Map<String, Object>> processor = DirectProcessor.create();
+        ReactorQLGroup group = ReactorQLGroup.create(table -> processor);
+
+        //处理缓慢的查询丢弃最旧的数据
+        StepVerifier
+                .create(group.attach("slow", group.compile("select /*+ group_buffer_size(16) */ deviceId from device.message")), 0)
+                .then(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        processor.onNext(message("d" + i, i));
+                    }
+                    processor.onComplete();
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .recordWith(ArrayList::new)
+                .thenConsumeWhile(ignore -> true)
+                .consumeRecordedWith(list -> {
+                    assertTrue(list.size() < 1000);
+                    assertEquals("d999", new ArrayList<>(list).get(list.size() - 1).get("deviceId"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testSharedExpression() {
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger impure = new AtomicInteger();
+        DirectProcessor<Map<String, Object>> processor = DirectProcessor.create();
+
+        ReactorQLGroup group = ReactorQLGroup.create(
+                table -> processor,
+                new FunctionMapFeature("counter", 1, 1, flux -> flux.doOnNext(v -> counter.incrementAndGet())).deterministic(),
+                new FunctionMapFeature("impure", 1, 1, flux -> flux.doOnNext(v -> impure.incrementAndGet())));
+
+        List<Map<String, Object>> results = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            group.attach("q" + i, group.compile("select counter(temp) t,impure(temp) i from device.message"))
+                 .subscribe(results::add);
+        }
+        processor.onNext(message("a", 1));
+        processor.onNext(message("b", 2));
+
+        assertEquals(20, results.size());
+        assertEquals(2, counter.get());
+        //没有标记为确定性的函数不会共享结果
+        assertEquals(20, impure.get());
+
+        //同一个Map被修改后重新计算
+        Map<String, Object> message = message("c", 3);
+        processor.onNext(message);
+        message.put("temp", 4);
+        processor.onNext(message);
+        assertEquals(4, counter.get());
+        assertEquals(4, results.get(results.size() - 1).get("t"));
+        group.dispose();
+    }
+}
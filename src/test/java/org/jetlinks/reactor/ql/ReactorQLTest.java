@@ -5,9 +5,12 @@ import lombok.SneakyThrows;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
 import org.hswebframework.utils.time.DateFormatter;
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.Schema;
 import org.jetlinks.reactor.ql.supports.map.SingleParameterFunctionMapFeature;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
@@ -20,6 +23,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 class ReactorQLTest {
 
@@ -198,6 +203,240 @@ class ReactorQLTest {
                 .verifyComplete();
     }
 
+    @Test
+    void testMaterializedSubSelect() {
+        AtomicInteger subscribed = new AtomicInteger();
+        ReactorQL.builder()
+                .sql("select this v,(select max(this) from b) max from a where this in (select this from b where this > 2)")
+                .build()
+                .start(name -> {
+                    if ("b".equals(name)) {
+                        return Flux.range(1, 5).doOnSubscribe(s -> subscribed.incrementAndGet());
+                    }
+                    return Flux.range(0, 10);
+                })
+                .as(StepVerifier::create)
+                .expectNextCount(3)
+                .verifyComplete();
+        //非关联子查询每次执行只执行一次
+        Assertions.assertEquals(2, subscribed.get());
+
+        ReactorQL.builder()
+                .sql("select this v from a where this not in (select this from b)")
+                .build()
+                .start(name -> "b".equals(name) ? Flux.just("1", "2.0") : Flux.range(0, 4))
+                .as(StepVerifier::create)
+                .expectNext(Collections.singletonMap("v", 0))
+                .expectNext(Collections.singletonMap("v", 3))
+                .verifyComplete();
+    }
+
+    @Test
+    void testCorrelatedSubSelectCache() {
+        AtomicInteger subscribed = new AtomicInteger();
+        ReactorQL.builder()
+                .sql("select /*+ subselect_refresh('1m') */ t.v v,(select count(1) total from b where b.k = t.k and b.v > 0) c from a t")
+                .build()
+                .start(name -> {
+                    if ("b".equals(name)) {
+                        return Flux.range(0, 6)
+                                   .map(i -> {
+                                       Map<String, Object> data = new HashMap<>();
+                                       data.put("k", i % 3);
+                                       data.put("v", i);
+                                       return data;
+                                   })
+                                   .doOnSubscribe(s -> subscribed.incrementAndGet());
+                    }
+                    return Flux.range(0, 10)
+                               .map(i -> {
+                                   Map<String, Object> data = new HashMap<>();
+                                   data.put("k", i % 3);
+                                   data.put("v", i);
+                                   return data;
+                               });
+                })
+                .map(map -> ((Map<?, ?>) map.get("c")).get("total"))
+                .as(StepVerifier::create)
+                .expectNext(1L)
+                .expectNextCount(9)
+                .verifyComplete();
+        //每个关联值只执行一次子查询
+        Assertions.assertEquals(3, subscribed.get());
+    }
+
+    @Test
+    void testCorrelatedSubSelectKeyed() {
+        AtomicInteger subscribed = new AtomicInteger();
+        Function<String, Publisher<?>> supplier = name -> Flux
+                .range(0, 6)
+                .map(i -> {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("id", i % 3);
+                    data.put("v", i);
+                    return data;
+                })
+                .doOnSubscribe(s -> {
+                    if ("t2".equals(name)) {
+                        subscribed.incrementAndGet();
+                    }
+                });
+        //没有设置刷新间隔时,也按关联列的值共享子查询
+        ReactorQL.builder()
+                .sql("select t1.v v,(select avg(v) avg from t2 where t2.id = t1.id) a from t1")
+                .build()
+                .start(supplier)
+                .collectMap(map -> map.get("v"), map -> ((Map<?, ?>) map.get("a")).get("avg"))
+                .as(StepVerifier::create)
+                .expectNextMatches(map -> map.size() == 6
+                        && map.get(0).equals(1.5D)
+                        && map.get(4).equals(2.5D)
+                        && map.get(5).equals(3.5D))
+                .verifyComplete();
+        Assertions.assertEquals(3, subscribed.get());
+    }
+
+    @Test
+    void testCorrelatedSubSelectNoCache() {
+        AtomicInteger subscribed = new AtomicInteger();
+        Function<String, Publisher<?>> supplier = name -> Flux
+                .range(0, 6)
+                .map(i -> {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("k", i % 3);
+                    data.put("v", i);
+                    return data;
+                })
+                .doOnSubscribe(s -> {
+                    if ("b".equals(name)) {
+                        subscribed.incrementAndGet();
+                    }
+                });
+        //表结构中没有声明的列v可能是外部查询的列
+        ReactorQL.builder()
+                .sql("select /*+ subselect_refresh('1m') */ t.v v,(select count(1) total from b where b.k = t.k and v > 0) c from a t")
+                .schema("b", Schema.of("k", DataType.LONG))
+                .build()
+                .start(supplier)
+                .as(StepVerifier::create)
+                .expectNextCount(6)
+                .verifyComplete();
+        Assertions.assertEquals(6, subscribed.get());
+    }
+
+    @Test
+    void testSubSelectUnqualifiedColumn() {
+        AtomicInteger subscribed = new AtomicInteger();
+        Function<String, Publisher<?>> supplier = name -> {
+            if ("b".equals(name)) {
+                return Flux.just(2, 3, 4)
+                           .map(i -> {
+                               Map<String, Object> data = new HashMap<>();
+                               data.put("id", i);
+                               data.put("type", i < 4 ? "x" : "y");
+                               return data;
+                           })
+                           .doOnSubscribe(s -> subscribed.incrementAndGet());
+            }
+            return Flux.range(1, 4).map(i -> Collections.singletonMap("id", i));
+        };
+        //没有指定表名的列属于子查询,不需要声明表结构也可以物化
+        ReactorQL.builder()
+                .sql("select id from a where id in (select id from b where type = 'x')")
+                .build()
+                .start(supplier)
+                .as(StepVerifier::create)
+                .expectNext(Collections.singletonMap("id", 2))
+                .expectNext(Collections.singletonMap("id", 3))
+                .verifyComplete();
+        Assertions.assertEquals(1, subscribed.get());
+
+        subscribed.set(0);
+        ReactorQL.builder()
+                .sql("select /*+ subselect_refresh('1m') */ id from a where id in (select id from b where type = 'x')")
+                .build()
+                .start(supplier)
+                .as(StepVerifier::create)
+                .expectNext(Collections.singletonMap("id", 2))
+                .expectNext(Collections.singletonMap("id", 3))
+                .verifyComplete();
+        Assertions.assertEquals(1, subscribed.get());
+    }
+
+    @Test
+    @SneakyThrows
+    void testSharedSubSelectInfinite() {
+        AtomicInteger subscribed = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        //没有设置刷新间隔时,流式匹配无限流中的数据
+        ReactorQL.builder()
+                .sql("select this v from a where this in (select this from b)")
+                .build()
+                .start(name -> {
+                    if ("b".equals(name)) {
+                        return Flux.interval(Duration.ofMillis(10))
+                                   .map(Long::intValue)
+                                   .doOnSubscribe(s -> subscribed.incrementAndGet())
+                                   .doOnCancel(cancelled::incrementAndGet);
+                    }
+                    return Flux.just(1, 3);
+                })
+                .as(StepVerifier::create)
+                .expectNext(Collections.singletonMap("v", 1))
+                .expectNext(Collections.singletonMap("v", 3))
+                .verifyComplete();
+        Assertions.assertEquals(1, subscribed.get());
+        //执行结束时取消子查询的订阅
+        for (int i = 0; i < 100 && cancelled.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(1, cancelled.get());
+    }
+
+    @Test
+    void testMaterializedSubSelectRefresh() {
+        AtomicInteger subscribed = new AtomicInteger();
+        ReactorQL.builder()
+                .sql("select /*+ subselect_refresh('100ms') */ this v from a where this in (select this from b)")
+                .build()
+                .start(name -> {
+                    if ("b".equals(name)) {
+                        //无限流,每次刷新只获取一个刷新间隔内的数据
+                        return Flux.interval(Duration.ofMillis(10))
+                                   .map(i -> 1)
+                                   .doOnSubscribe(s -> subscribed.incrementAndGet());
+                    }
+                    return Flux.range(0, 3).delayElements(Duration.ofMillis(150));
+                })
+                .as(StepVerifier::create)
+                .expectNext(Collections.singletonMap("v", 1))
+                .verifyComplete();
+        Assertions.assertTrue(subscribed.get() >= 2);
+    }
+
+    @Test
+    void testTimeBucket() {
+        long time = LocalDateTime.of(2021, 1, 1, 10, 0).atZone(ZoneId.of("Asia/Shanghai")).toInstant().toEpochMilli();
+        ReactorQL.builder()
+                .sql("select time_bucket(this,'1m','Asia/Shanghai') ts,count(1) total from test",
+                     "group by time_bucket(this,'1m','Asia/Shanghai')")
+                .build()
+                .start(Flux.just(time, time + 1000, time + 59_999, time + 60_000, time + 61_000))
+                .as(StepVerifier::create)
+                .expectNextMatches(map -> map.get("ts").equals(time) && map.get("total").equals(3L))
+                .expectNextMatches(map -> map.get("ts").equals(time + 60_000) && map.get("total").equals(2L))
+                .verifyComplete();
+
+        ReactorQL.builder()
+                .sql("select time_bucket(this,'1d','Asia/Shanghai') ts from test")
+                .build()
+                .start(Flux.just(time))
+                .as(StepVerifier::create)
+                .expectNext(Collections.singletonMap("ts",
+                        LocalDateTime.of(2021, 1, 1, 0, 0).atZone(ZoneId.of("Asia/Shanghai")).toInstant().toEpochMilli()))
+                .verifyComplete();
+    }
+
     @Test
     void testBetween() {
 
@@ -857,6 +1096,46 @@ class ReactorQLTest {
     }
 
 
+    @Test
+    void testCaseFirstMatch() {
+        ReactorQL.builder()
+                .sql("select "
+                        , "case this % 4"
+                        , "when 0 then 'zero'"
+                        , "when gt(this,4) then 'gt'"
+                        , "when '1' then 'one'"
+                        , "when 1 then 'one2'"
+                        , "when 2.0 then 'two'"
+                        , "else 'other' end type,"
+                        , "case when this > 1 then 'a' when this > 0 then 'b' when this > 2 then 'c' end v"
+                        , "from test")
+                .build()
+                .start(Flux.range(0, 6))
+                .map(map -> map.get("type") + "," + map.get("v"))
+                .as(StepVerifier::create)
+                .expectNext("zero,null", "one,b", "two,a", "other,a", "zero,a", "gt,a")
+                .verifyComplete();
+    }
+
+    @Test
+    void testCaseStringSwitch() {
+        //字符串只与字符串常量直接匹配,与数字常量转换后比较
+        ReactorQL.builder()
+                .sql("select "
+                        , "case this"
+                        , "when '1' then 'a'"
+                        , "when '01' then 'b'"
+                        , "when 1 then 'c'"
+                        , "else 'd' end type"
+                        , "from test")
+                .build()
+                .start(Flux.<Object>just("01", "1.0", "1", "x", 1))
+                .map(map -> map.get("type"))
+                .as(StepVerifier::create)
+                .expectNext("b", "c", "a", "d", "a")
+                .verifyComplete();
+    }
+
     @Test
     void testWhereCase() {
         ReactorQL.builder()
@@ -1232,4 +1511,55 @@ class ReactorQLTest {
     }
 
 
+    @Test
+    void testEmitEvery() {
+        ReactorQL.builder()
+                .sql("select /*+ emit_every(2) */ count(1) total,sum(this) sum from test")
+                .build()
+                .start(Flux.range(1, 5))
+                .map(map -> map.get("total") + ":" + map.get("sum"))
+                .as(StepVerifier::create)
+                .expectNext("2:3.0", "4:10.0", "5:15.0")
+                .verifyComplete();
+
+        //数量为N的倍数时,不重复输出最终结果
+        ReactorQL.builder()
+                .sql("select /*+ emit_every(2) */ count(1) total,sum(this) sum from test")
+                .build()
+                .start(Flux.range(1, 4))
+                .map(map -> map.get("total") + ":" + map.get("sum"))
+                .as(StepVerifier::create)
+                .expectNext("2:3.0", "4:10.0")
+                .verifyComplete();
+
+        ReactorQL.builder()
+                .sql("select /*+ emit_every(2) */ count(1) total from test")
+                .build()
+                .start(Flux.empty())
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        ReactorQL.builder()
+                .sql("select /*+ emit_every(2) */ type,avg(val) avg from test group by type")
+                .build()
+                .start(Flux.range(1, 6).map(i -> {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("type", i % 2);
+                    data.put("val", i);
+                    return data;
+                }))
+                .filter(map -> Integer.valueOf(1).equals(map.get("type")))
+                .map(map -> map.get("avg"))
+                .as(StepVerifier::create)
+                .expectNext(2D, 3D)
+                .verifyComplete();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> ReactorQL
+                .builder()
+                .sql("select /*+ emit_every(2) */ topk(this,1) top from test")
+                .build()
+                .start(Flux.range(1, 5))
+                .blockLast());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package org.jetlinks.reactor.ql.batch;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.jetlinks.reactor.ql.ReactorQLContext;
+import org.jetlinks.reactor.ql.ReactorQLRecord;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.metrics.SimpleReactorQLMetricsRegistry;
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.jetlinks.reactor.ql.supports.DefaultReactorQLMetadata;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchPlanTest {
+
+    static final Schema SCHEMA = Schema.of(
+            "deviceId", DataType.STRING,
+            "temp", DataType.DOUBLE,
+            "total", DataType.LONG,
+            "ts", DataType.DATE);
+
+    static Map<String, Object> data(int i) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceId", "d" + (i % 3));
+        map.put("temp", i % 2 == 0 ? i : String.valueOf(i + 0.5));
+        if (i % 5 != 0) {
+            map.put("total", i);
+        }
+        map.put("ts", 1609459200000L + i * 1000);
+        return map;
+    }
+
+    static Flux<List<Object>> batches(int size, Object... extra) {
+        List<Object> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            rows.add(data(i));
+        }
+        rows.addAll(Arrays.asList(extra));
+        return Flux.fromIterable(rows).buffer(16);
+    }
+
+    static ReactorQL create(String sql) {
+        return ReactorQL.builder()
+                        .sql(sql)
+                        .schema("test", SCHEMA)
+                        .build();
+    }
+
+    void assertSameResult(String sql, Object... extra) {
+        ReactorQL ql = create(sql);
+        List<Map<String, Object>> expect = ql.start(batches(100, extra).flatMapIterable(batch -> batch)).collectList().block();
+        List<Map<String, Object>> actual = ql.startBatch(batches(100, extra)).collectList().block();
+        assertNotNull(expect);
+        assertFalse(expect.isEmpty());
+        assertEquals(expect, actual);
+    }
+
+    @Test
+    void testCreate() {
+        assertNotNull(BatchPlan.create(metadata("select * from test where temp > 10 and (deviceId = 'd1' or total <= 20)")));
+        assertNotNull(BatchPlan.create(metadata("select count(1) from test")));
+
+        //没有表结构
+        assertNull(BatchPlan.create(new DefaultReactorQLMetadata("select * from test where temp > 10")));
+        //不支持按列计算的条件
+        assertNull(BatchPlan.create(metadata("select * from test where temp + 1 > 10")));
+        assertNull(BatchPlan.create(metadata("select * from test where temp > total")));
+        assertNull(BatchPlan.create(metadata("select * from test where deviceId like 'd%'")));
+    }
+
+    static DefaultReactorQLMetadata metadata(String sql) {
+        DefaultReactorQLMetadata metadata = new DefaultReactorQLMetadata(sql);
+        metadata.addSchema("test", SCHEMA);
+        return metadata;
+    }
+
+    @Test
+    void testFilter() {
+        assertSameResult("select deviceId,temp,total from test where temp > 10 and (deviceId = 'd1' or total <= 20)");
+        assertSameResult("select deviceId,temp from test t where 50 >= t.temp and t.deviceId != 'd0'");
+        assertSameResult("select deviceId,ts from test where ts >= 1609459260000 and total = 71");
+        assertSameResult("select deviceId,temp from test where temp = 10.5 or temp = 12");
+    }
+
+    @Test
+    void testAggregate() {
+        assertSameResult("select deviceId,count(1) total,sum(temp) sum from test where temp < 60 group by deviceId");
+    }
+
+    @Test
+    void testProjection() {
+        assertTrue(BatchPlan.create(metadata("select deviceId,temp t from test where temp > 10")).isProjected());
+        assertFalse(BatchPlan.create(metadata("select deviceId,temp + 1 t from test")).isProjected());
+        assertFalse(BatchPlan.create(metadata("select * from test")).isProjected());
+
+        assertSameResult("select deviceId,temp t,test.total from test where temp > 10 order by t desc limit 10");
+        assertSameResult("select deviceId,ts from test");
+        //无法按列处理的批次逐行转换
+        assertSameResult("select deviceId,temp from test where temp > 90", "not a map");
+    }
+
+    @Test
+    void testVectorizedAggregate() {
+        assertTrue(BatchPlan.create(metadata("select count(1),sum(temp),avg(total) from test")).isAggregated());
+        assertFalse(BatchPlan.create(metadata("select count(1),sum(temp) from test group by deviceId")).isAggregated());
+        assertFalse(BatchPlan.create(metadata("select count(1),deviceId from test")).isAggregated());
+        assertFalse(BatchPlan.create(metadata("select sum(ts) from test")).isAggregated());
+
+        String sql = "select count(1) total,sum(temp) sum,avg(total) avg,max(total) max,min(temp) min from test";
+        assertSameResult(sql);
+        assertSameResult(sql + " where temp > 10 and total < 80");
+        assertSameResult("select max(temp) max from test where deviceId = 'd1'");
+        //没有满足条件的数据
+        assertSameResult(sql + " where temp > 1000");
+        //无法按列处理的批次逐条累加
+        assertSameResult(sql + " where temp > 50", "not a map");
+        assertSameResult(sql + " where temp > 50", Collections.singletonMap("total", "abc"));
+    }
+
+    @Test
+    void testMetrics() {
+        SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+        ReactorQL ql = ReactorQL.builder()
+                                .sql("select count(1) total from test where temp > 90")
+                                .schema("test", SCHEMA)
+                                .metrics(ReactorQLMetrics.create(registry, "batch"))
+                                .build();
+        //启用指标时依然按列处理
+        ql.startBatch(batches(100))
+          .map(map -> map.get("total"))
+          .as(StepVerifier::create)
+          .expectNext(9L)
+          .verifyComplete();
+
+        assertEquals(100, registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "batch", "from"));
+        assertEquals(100, registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "batch", "where"));
+        assertEquals(9, registry.getOperatorCount(ReactorQLMetrics.METRIC_OUT, "batch", "where"));
+        assertEquals(9, registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "batch", "columnMapper"));
+        assertEquals(1, registry.getOperatorCount(ReactorQLMetrics.METRIC_OUT, "batch", "columnMapper"));
+    }
+
+    @Test
+    void testFallback() {
+        //无法按列处理的批次逐行处理
+        assertSameResult("select deviceId,temp from test where temp > 90", "not a map");
+    }
+
+    @Test
+    void testBatchDataSource() {
+        ReactorQLContext context = ReactorQLContext.ofBatchDatasource(table -> batches(100).map(List::toArray));
+        assertTrue(context.isBatchDataSource());
+        assertFalse(ReactorQLContext.ofDatasource(table -> Flux.empty()).isBatchDataSource());
+
+        ReactorQL ql = create("select deviceId,temp from test where temp > 90");
+        List<Map<String, Object>> expect = ql.start(batches(100).flatMapIterable(batch -> batch)).collectList().block();
+
+        //数组形式的批次
+        ql.start(context)
+          .map(ReactorQLRecord::asMap)
+          .collectList()
+          .as(StepVerifier::create)
+          .expectNext(expect)
+          .verifyComplete();
+
+        //不支持批处理的查询逐条处理
+        ReactorQL.builder()
+                 .sql("select count(1) total from test where temp > 90")
+                 .build()
+                 .start(ReactorQLContext.ofBatchDatasource(table -> batches(100)))
+                 .map(record -> record.asMap().get("total"))
+                 .as(StepVerifier::create)
+                 .expectNext(9L)
+                 .verifyComplete();
+    }
+}
@@ -0,0 +1,164 @@
+package org.jetlinks.reactor.ql.explain;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.jetlinks.reactor.ql.ReactorQLContext;
+import org.jetlinks.reactor.ql.schema.DataType;
+import org.jetlinks.reactor.ql.schema.Schema;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryPlanExplainerTest {
+
+    @Test
+    void testExplain() {
+        PlanNode plan = ReactorQL
+                .builder()
+                .sql("select deviceId,avg(temp) avgTemp,max(temp) maxTemp from test where temp > 10 group by deviceId,interval('1s') limit 10")
+                .build()
+                .explain();
+        System.out.println(plan);
+
+        assertEquals("limit", plan.getName());
+
+        PlanNode columnMapper = plan.getChildren().get(0);
+        assertEquals("columnMapper", columnMapper.getName());
+        assertEquals("per-group aggregate(shared 2)", columnMapper.getStrategy());
+        assertEquals("value-map:property", columnMapper.getExpressions().get(0).getFeature());
+        assertEquals("value-agg:avg", columnMapper.getExpressions().get(1).getFeature());
+
+        PlanNode groupBy = columnMapper.getChildren().get(0);
+        assertEquals("groupBy", groupBy.getName());
+        assertEquals("group,window", groupBy.getStrategy());
+
+        PlanNode where = groupBy.getChildren().get(0);
+        assertEquals("where", where.getName());
+        assertEquals("filter:>", where.getExpressions().get(0).getFeature());
+        assertFalse(where.getExpressions().get(0).isAsync());
+
+        assertEquals("from", where.getChildren().get(0).getName());
+        assertTrue(plan.getAllWarnings().isEmpty());
+    }
+
+    @Test
+    void testExplainStrategies() {
+        PlanNode plan = ReactorQL
+                .builder()
+                .sql("select row_number() over (partition by deviceId) rn,",
+                     "case type when 1 then 'a' when 2 then 'b' else 'c' end t1,",
+                     "case when temp > 10 then 'high' else 'low' end t2",
+                     "from test")
+                .build()
+                .explain();
+        System.out.println(plan);
+
+        PlanNode over = plan.getExpressions().get(0);
+        assertEquals("window-function", over.getName());
+        assertEquals("value-map:over", over.getFeature());
+        assertEquals("row_number", over.getStrategy());
+        assertEquals("hash-dispatch", plan.getExpressions().get(1).getStrategy());
+        assertEquals("sequential", plan.getExpressions().get(2).getStrategy());
+        assertTrue(plan.getAllWarnings().isEmpty());
+
+        plan = ReactorQL
+                .builder()
+                .sql("select count(1) total from test where temp > 10 group by time_bucket(timestamp,'1m')")
+                .schema("test", Schema.of("temp", DataType.DOUBLE, "timestamp", DataType.LONG))
+                .build()
+                .explain();
+        System.out.println(plan);
+
+        PlanNode groupBy = plan.getChildren().get(0);
+        assertEquals("time-bucket", groupBy.getStrategy());
+        PlanNode where = groupBy.getChildren().get(0);
+        assertEquals("vectorized", where.getStrategy());
+        assertEquals("table(batch)", where.getChildren().get(0).getStrategy());
+
+        Schema schema = Schema.of("deviceId", DataType.STRING, "temp", DataType.DOUBLE);
+        plan = ReactorQL
+                .builder()
+                .sql("select count(1) total,avg(temp) avg from test where temp > 10")
+                .schema("test", schema)
+                .build()
+                .explain();
+        assertEquals("aggregate(vectorized)", plan.getStrategy());
+
+        plan = ReactorQL
+                .builder()
+                .sql("select deviceId,temp from test where temp > 10")
+                .schema("test", schema)
+                .build()
+                .explain();
+        assertEquals("vectorized", plan.getStrategy());
+    }
+
+    @Test
+    void testExplainSubSelect() {
+        PlanNode plan = ReactorQL
+                .builder()
+                .sql("select /*+ subselect_refresh('1m') */ (select max(h.temp) from history h where h.deviceId = t.deviceId) maxTemp,",
+                     "(select count(1) from devices) total,",
+                     "(select count(1) from history h where h.temp > t.temp) higher",
+                     "from test t")
+                .build()
+                .explain();
+        System.out.println(plan);
+
+        PlanNode correlated = plan.getExpressions().get(0);
+        assertEquals("sub-select", correlated.getName());
+        assertEquals("correlated", correlated.getStrategy());
+        assertTrue(correlated.isAsync());
+        assertEquals("uncorrelated", plan.getExpressions().get(1).getStrategy());
+        assertEquals("correlated", plan.getExpressions().get(2).getStrategy());
+        //非关联子查询只执行一次,等值关联子查询按关联列缓存,只有非等值关联子查询有警告
+        assertEquals(1, plan.getAllWarnings().size());
+        assertEquals(1, plan.getExpressions().get(2).getWarnings().size());
+    }
+
+    @Test
+    void testExplainAnalyze() {
+        ReactorQL
+                .builder()
+                .sql("select this val from test where this > 4")
+                .build()
+                .explainAnalyze(ReactorQLContext.ofDatasource(table -> Flux.range(0, 10)))
+                .doOnNext(System.out::println)
+                .as(StepVerifier::create)
+                .expectNextMatches(plan -> {
+                    PlanNode where = plan.getChildren().get(0);
+                    return plan.getRowsOut() == 5
+                            && where.getRowsIn() == 10
+                            && where.getRowsOut() == 5
+                            && where.getSelectivity() == 0.5D;
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testExplainAnalyzeSubSelect() {
+        ReactorQL
+                .builder()
+                .sql("select t.val from (select this val from test where this > 4) t where t.val < 8")
+                .build()
+                .explainAnalyze(ReactorQLContext.ofDatasource(table -> Flux.range(0, 10)))
+                .doOnNext(System.out::println)
+                .as(StepVerifier::create)
+                .expectNextMatches(plan -> {
+                    PlanNode where = plan.getChildren().get(0);
+                    PlanNode from = where.getChildren().get(0);
+                    //子查询中的操作
+                    PlanNode nested = from.getChildren().get(0);
+                    PlanNode nestedWhere = nested.getChildren().get(0);
+                    return where.getRowsIn() == 5
+                            && where.getRowsOut() == 3
+                            && from.getRowsOut() == 5
+                            && nested.getScope() != null
+                            && nested.getRowsOut() == 5
+                            && nestedWhere.getRowsIn() == 10
+                            && nestedWhere.getRowsOut() == 5;
+                })
+                .verifyComplete();
+    }
+}
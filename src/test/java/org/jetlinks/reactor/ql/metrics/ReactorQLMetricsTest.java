@@ -0,0 +1,84 @@
+package org.jetlinks.reactor.ql.metrics;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactorQLMetricsTest {
+
+    @Test
+    void testOperatorMetrics() {
+        SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+
+        ReactorQL.builder()
+                 .sql("select this val from test where this > 4 limit 3")
+                 .metrics(ReactorQLMetrics.create(registry, "test"))
+                 .build()
+                 .start(Flux.range(0, 20))
+                 .as(StepVerifier::create)
+                 .expectNextCount(3)
+                 .verifyComplete();
+
+        assertEquals(3, registry.getOperatorCount(ReactorQLMetrics.METRIC_OUT, "test", "where"));
+        assertEquals(3, registry.getOperatorCount(ReactorQLMetrics.METRIC_OUT, "test", "limit"));
+        assertEquals(3, registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "test", "columnMapper"));
+        assertTrue(registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "test", "where") >= 8);
+        assertTrue(registry.getDropRatio("test", "where") > 0);
+        //逐条统计每条数据的处理耗时,包括被过滤掉的数据
+        assertTrue(registry.getOperatorLatency("test", "where").getCount() >= 8);
+        assertEquals(3, registry.getOperatorLatency("test", "columnMapper").getCount());
+        //limit的输出与输入不是一一对应的,不统计耗时
+        assertEquals(0, registry.getOperatorLatency("test", "limit").getCount());
+        //没有offset,不会进行统计
+        assertEquals(0, registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "test", "offset"));
+    }
+
+    @Test
+    void testJoinLatency() {
+        SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+
+        ReactorQL.builder()
+                 .sql("select t1.v,t2.v from t1 left join t2 on t1.v=t2.v")
+                 .metrics(ReactorQLMetrics.create(registry, "join"))
+                 .build()
+                 .start(t -> Flux.range(0, t.equals("t1") ? 3 : 2)
+                                 .map(v -> Collections.singletonMap("v", v)))
+                 .as(StepVerifier::create)
+                 .expectNextCount(3)
+                 .verifyComplete();
+
+        //每条左表数据统计一次关联耗时
+        assertEquals(3, registry.getOperatorLatency("join", "join").getCount());
+    }
+
+    @Test
+    void testGroupMetrics() {
+        SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+
+        Map<String, Object> d1 = new HashMap<>();
+        d1.put("deviceId", "d1");
+        Map<String, Object> d2 = new HashMap<>();
+        d2.put("deviceId", "d2");
+
+        ReactorQL.builder()
+                 .sql("select deviceId,count(1) total from test group by deviceId")
+                 .metrics(ReactorQLMetrics.create(registry, "group"))
+                 .build()
+                 .start(Flux.just(d1, d2, d1))
+                 .as(StepVerifier::create)
+                 .expectNextCount(2)
+                 .verifyComplete();
+
+        assertEquals(0, registry.getCount(ReactorQLMetrics.METRIC_ACTIVE_GROUP,
+                                          Collections.singletonMap(ReactorQLMetrics.TAG_QUERY, "group")));
+        assertEquals(3, registry.getOperatorCount(ReactorQLMetrics.METRIC_IN, "group", "groupBy"));
+        assertEquals(2, registry.getOperatorCount(ReactorQLMetrics.METRIC_OUT, "group", "groupBy"));
+    }
+}
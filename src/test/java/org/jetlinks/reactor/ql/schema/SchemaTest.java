@@ -0,0 +1,130 @@
+package org.jetlinks.reactor.ql.schema;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaTest {
+
+    static final Schema SCHEMA = Schema.of(
+            "deviceId", DataType.STRING,
+            "temp", DataType.DOUBLE,
+            "total", DataType.LONG,
+            "ts", DataType.DATE);
+
+    static Map<String, Object> data(Object deviceId, Object temp) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceId", deviceId);
+        map.put("temp", temp);
+        map.put("ts", 1609459200000L);
+        map.put("extra", "e");
+        return map;
+    }
+
+    @Test
+    void testTypedRow() {
+        TypedRow row = new TypedRow(SCHEMA, data(1, "12.5"));
+        assertEquals("1", row.get("deviceId"));
+        assertEquals(12.5D, row.get(SCHEMA.indexOf("temp")));
+        assertEquals(new Date(1609459200000L), row.get("ts"));
+        assertEquals("e", row.get("extra"));
+        assertFalse(row.containsKey("total"));
+        assertEquals(4, row.size());
+
+        //无法转换时保留原始值
+        row.put("total", "abc");
+        assertEquals("abc", row.get("total"));
+        row.put("total", "10");
+        assertEquals(10L, row.get("total"));
+
+        assertSame(row, SCHEMA.toRow(row));
+        assertEquals("str", SCHEMA.toRow("str"));
+
+        assertThrows(UnsupportedOperationException.class, () -> Schema.of("a", DataType.STRING, "a", DataType.LONG));
+        assertThrows(UnsupportedOperationException.class, () -> Schema.of("a"));
+    }
+
+    @Test
+    void testTypedRowMap() {
+        Map<String, Object> source = data("d1", null);
+        TypedRow row = new TypedRow(SCHEMA, source);
+
+        //显式设置为null的列仍然存在
+        assertTrue(row.containsKey("temp"));
+        assertNull(row.get("temp"));
+        assertEquals(source.size(), row.size());
+
+        Map<String, Object> expected = new HashMap<>(source);
+        expected.put("ts", new Date(1609459200000L));
+        assertEquals(expected, row);
+        assertEquals(row, expected);
+        assertEquals(expected.hashCode(), row.hashCode());
+        assertEquals(row, new TypedRow(SCHEMA, source));
+
+        //通过entrySet修改
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if ("deviceId".equals(entry.getKey())) {
+                entry.setValue(1);
+            }
+        }
+        assertEquals("1", row.get("deviceId"));
+        row.entrySet().removeIf(entry -> entry.getValue() == null || "extra".equals(entry.getKey()));
+        assertFalse(row.containsKey("temp"));
+        assertFalse(row.containsKey("extra"));
+        assertEquals(2, row.size());
+
+        row.clear();
+        assertTrue(row.isEmpty());
+        assertTrue(row.entrySet().isEmpty());
+    }
+
+    @Test
+    void testQuery() {
+        ReactorQL.builder()
+                 .sql("select t.deviceId deviceId,t.temp temp,extra from device.message t where t.temp > 10")
+                 .schema("device.message", SCHEMA)
+                 .build()
+                 .start(Flux.just(data("d1", "12.5"), data("d2", 8), data(3, 20L)))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> "d1".equals(map.get("deviceId")) && map.get("temp").equals(12.5D) && "e".equals(map.get("extra")))
+                 .expectNextMatches(map -> "3".equals(map.get("deviceId")) && map.get("temp").equals(20D))
+                 .verifyComplete();
+    }
+
+    @Test
+    void testConstantType() {
+        ReactorQL.builder()
+                 .sql("select deviceId from test where temp = '20' and ts >= '2020-01-01'")
+                 .schema("test", SCHEMA)
+                 .build()
+                 .start(Flux.just(data("d1", 20), data("d2", 21)))
+                 .as(StepVerifier::create)
+                 .expectNext(Collections.singletonMap("deviceId", "d1"))
+                 .verifyComplete();
+    }
+
+    @Test
+    void testReject() {
+        //类型不匹配
+        assertThrows(UnsupportedOperationException.class, () -> ReactorQL
+                .builder()
+                .sql("select * from test where temp > 'abc'")
+                .schema("test", SCHEMA)
+                .build());
+
+        //列不存在
+        assertThrows(UnsupportedOperationException.class, () -> ReactorQL
+                .builder()
+                .sql("select t.humidity from test t")
+                .schema("test", SCHEMA)
+                .build());
+    }
+}
@@ -0,0 +1,107 @@
+package org.jetlinks.reactor.ql.supports;
+
+import org.jetlinks.reactor.ql.utils.CastUtils;
+import org.jetlinks.reactor.ql.utils.CompareUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredicateIndexTest {
+
+    static Map<String, Object> row(String deviceId, String productId, Object temp) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("deviceId", deviceId);
+        row.put("productId", productId);
+        row.put("temp", temp);
+        return row;
+    }
+
+    static Set<String> match(PredicateIndex<String> index, Object row) {
+        Set<String> matched = new HashSet<>();
+        index.match(row, matched::add);
+        return matched;
+    }
+
+    @Test
+    void testMatch() {
+        PredicateIndex<String> index = new PredicateIndex<>();
+        index.register("device", new DefaultReactorQLMetadata("select * from device.message where deviceId = 'd1' and temp > 10"));
+        index.register("product", new DefaultReactorQLMetadata("select * from device.message t where t.productId in ('p1','p2')"));
+        index.register("temp", new DefaultReactorQLMetadata("select * from device.message where temp = 20"));
+        index.register("all", new DefaultReactorQLMetadata("select * from device.message where temp > 10"));
+
+        assertEquals(4, index.size());
+
+        Set<String> matched = match(index, row("d1", "p3", 1));
+        assertTrue(matched.contains("device"));
+        assertTrue(matched.contains("all"));
+        assertFalse(matched.contains("product"));
+        assertFalse(matched.contains("temp"));
+
+        matched = match(index, row("d2", "p2", "20"));
+        assertFalse(matched.contains("device"));
+        assertTrue(matched.contains("product"));
+        assertTrue(matched.contains("temp"));
+        assertTrue(matched.contains("all"));
+
+        //数字类型不同时也能匹配
+        assertTrue(match(index, row("d2", "p3", 20L)).contains("temp"));
+        assertTrue(match(index, row("d2", "p3", 20.0D)).contains("temp"));
+
+        assertTrue(index.unregister("device"));
+        assertFalse(index.unregister("device"));
+        assertFalse(match(index, row("d1", "p3", 1)).contains("device"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testUnindexed() {
+        PredicateIndex<String> index = new PredicateIndex<>();
+        index.register("or", new DefaultReactorQLMetadata("select * from test where deviceId = 'd1' or temp > 10"));
+        index.register("not", new DefaultReactorQLMetadata("select * from test where deviceId not in ('d1')"));
+        index.register("join", new DefaultReactorQLMetadata("select * from test t where other.deviceId = 'd1'"));
+        index.register("none", new DefaultReactorQLMetadata("select * from test"));
+
+        Set<String> matched = match(index, row("d2", "p1", 1));
+        assertEquals(4, matched.size());
+    }
+
+    @Test
+    void testLiteralKey() {
+        PredicateIndex<String> index = new PredicateIndex<>();
+        index.register("string", new DefaultReactorQLMetadata("select * from test where temp = '20'"));
+        index.register("signed", new DefaultReactorQLMetadata("select * from test where temp = -5"));
+        index.register("date", new DefaultReactorQLMetadata("select * from test where temp = '2020-01-01 00:00:00'"));
+
+        Set<String> matched = match(index, row("d1", "p1", 20));
+        assertTrue(matched.contains("string"));
+        assertFalse(matched.contains("signed"));
+        //日期格式的字符串使用时间戳建立索引
+        assertFalse(matched.contains("date"));
+
+        matched = match(index, row("d1", "p1", -5L));
+        assertFalse(matched.contains("string"));
+        assertTrue(matched.contains("signed"));
+        assertFalse(matched.contains("date"));
+
+        long millis = CastUtils.parseDateMillis("2020-01-01 00:00:00");
+        Map<String, Object> row = row("d1", "p1", 0);
+        for (Object value : Arrays.asList(millis, new Date(millis), "2020-01-01 00:00:00")) {
+            row.put("temp", value);
+            assertEquals(Collections.singleton("date"), match(index, row));
+            assertTrue(CompareUtils.equals(value, "2020-01-01 00:00:00"));
+        }
+    }
+
+    @Test
+    void testSelectiveConjunct() {
+        PredicateIndex<String> index = new PredicateIndex<>();
+        //使用常量最少的条件建立索引
+        index.register("q", new DefaultReactorQLMetadata("select * from test where productId in ('p1','p2','p3') and deviceId = 'd1'"));
+
+        assertEquals(Collections.singleton("q"), match(index, row("d1", "p9", 1)));
+        assertTrue(match(index, row("d2", "p1", 1)).isEmpty());
+    }
+}
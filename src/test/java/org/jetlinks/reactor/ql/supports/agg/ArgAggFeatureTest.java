@@ -0,0 +1,64 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArgAggFeatureTest {
+
+    static Map<String, Object> data(String id, Object ts, int val) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("ts", ts);
+        map.put("val", val);
+        return map;
+    }
+
+    @Test
+    void testCompareOrder() {
+        assertTrue(ArgAggFeature.compareOrder(new Date(2), new Date(1)) > 0);
+        assertTrue(ArgAggFeature.compareOrder(2, 1.5D) > 0);
+        assertTrue(ArgAggFeature.compareOrder(new Date(1), 2L) < 0);
+        assertEquals(0, ArgAggFeature.compareOrder(1, 1L));
+    }
+
+    @Test
+    void testOutOfOrder() {
+        ReactorQL.builder()
+                 .sql("select first_value(id,ts) first,last_value(id,ts) last,",
+                      "arg_max(id,val) max,arg_min(id,val) min from test")
+                 .build()
+                 .start(Flux.just(
+                         data("b", 2, 10),
+                         data("c", 3, 5),
+                         data("a", 1, 10),
+                         data("d", 3, 1),
+                         data("e", 2, 5)))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> map.get("first").equals("a")
+                         //排序值相同时,last_value使用后到达的值
+                         && map.get("last").equals("d")
+                         //排序值相同时,arg_max和arg_min使用先到达的值
+                         && map.get("max").equals("b")
+                         && map.get("min").equals("d"))
+                 .verifyComplete();
+    }
+
+    @Test
+    void testArrivalOrder() {
+        ReactorQL.builder()
+                 .sql("select first_value(this) first,last_value(this) last from test")
+                 .build()
+                 .start(Flux.range(1, 10))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> map.get("first").equals(1) && map.get("last").equals(10))
+                 .verifyComplete();
+    }
+}
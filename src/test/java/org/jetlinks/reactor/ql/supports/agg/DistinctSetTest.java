@@ -0,0 +1,81 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import lombok.SneakyThrows;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.metrics.SimpleReactorQLMetricsRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctSetTest {
+
+    @Test
+    void testAdd() {
+        DistinctSet set = new DistinctSet();
+        assertTrue(set.add(1));
+        assertFalse(set.add(1L));
+        assertFalse(set.add(1.0D));
+        assertFalse(set.add(new BigDecimal("1.00")));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0L));
+        assertTrue(set.add(1.5D));
+        assertFalse(set.add(1.5F));
+        assertTrue(set.add("1"));
+        assertFalse(set.add(new StringBuilder("1")));
+        assertTrue(set.add(true));
+        assertFalse(set.add(null));
+        assertEquals(5, set.size());
+
+        for (int i = 0; i < 10000; i++) {
+            set.add(i);
+            set.add("s" + i);
+        }
+        assertEquals(5 - 2 + 20000, set.size());
+        assertTrue(set.memoryUsage() > 10000 * 8);
+    }
+
+    @Test
+    void testCountDistinct() {
+        ReactorQL.builder()
+                 .sql("select count(distinct this % 10) total,sum(distinct this % 10) sum from test group by _window(50)")
+                 .build()
+                 .start(Flux.range(0, 100))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> ((Number) map.get("total")).longValue() == 10 && ((Number) map.get("sum")).intValue() == 45)
+                 .expectNextMatches(map -> ((Number) map.get("total")).longValue() == 10 && ((Number) map.get("sum")).intValue() == 45)
+                 .verifyComplete();
+    }
+
+    @Test
+    @SneakyThrows
+    void testCountDistinctMemoryMetrics() {
+        SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+
+        ReactorQL.builder()
+                 .sql("select count(distinct deviceId) total from test")
+                 .metrics(ReactorQLMetrics.create(registry, "distinct"))
+                 .build()
+                 .start(Flux.range(0, 1000).map(i -> {
+                     Map<String, Object> data = new HashMap<>();
+                     data.put("deviceId", "device-" + (i % 100));
+                     return data;
+                 }))
+                 .map(map -> map.get("total"))
+                 .as(StepVerifier::create)
+                 .expectNext(100L)
+                 .verifyComplete();
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put(ReactorQLMetrics.TAG_QUERY, "distinct");
+        tags.put(ReactorQLMetrics.TAG_NAME, CCJSqlParserUtil.parseExpression("count(distinct deviceId)").toString());
+        assertEquals(1, registry.histogram(ReactorQLMetrics.METRIC_MEMORY, tags).getCount());
+    }
+}
@@ -0,0 +1,73 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void testCardinality() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            hll.add("device-" + (i % 50000));
+        }
+        assertEquals(50000, hll.cardinality(), 50000 * 0.03);
+
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            small.add(i % 10);
+        }
+        assertEquals(10, small.cardinality());
+    }
+
+    @Test
+    void testMerge() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        for (int i = 0; i < 20000; i++) {
+            left.add(i);
+            right.add(i + 10000);
+        }
+        HyperLogLog merged = left.copy().merge(right);
+        assertEquals(30000, merged.cardinality(), 30000 * 0.06);
+
+        HyperLogLog restored = HyperLogLog.fromBytes(merged.toBytes());
+        assertEquals(merged.cardinality(), restored.cardinality());
+
+        assertThrows(UnsupportedOperationException.class, () -> left.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void testNumberHash() {
+        assertEquals(HyperLogLog.hash(1), HyperLogLog.hash(1L));
+        assertEquals(HyperLogLog.hash(1), HyperLogLog.hash(1.0D));
+        assertNotEquals(HyperLogLog.hash(1), HyperLogLog.hash(1.5D));
+    }
+
+    @Test
+    void testApproxCountDistinct() {
+        ReactorQL.builder()
+                 .sql("select approx_count_distinct(this) total from test")
+                 .build()
+                 .start(Flux.range(0, 1000).map(i -> i % 100))
+                 .map(map -> map.get("total"))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(total -> Math.abs(((Number) total).longValue() - 100) <= 2)
+                 .verifyComplete();
+
+        ReactorQL.builder()
+                 .sql("select approx_count_distinct(sketch,10) total from (",
+                      "select hll_sketch(this,10) sketch from test group by _window(100)",
+                      ")")
+                 .build()
+                 .start(Flux.range(0, 1000))
+                 .map(map -> map.get("total"))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(total -> Math.abs(((Number) total).longValue() - 1000) <= 60)
+                 .verifyComplete();
+    }
+}
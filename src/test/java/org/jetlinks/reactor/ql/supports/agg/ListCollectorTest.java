@@ -0,0 +1,118 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.jetlinks.reactor.ql.metrics.ReactorQLMetrics;
+import org.jetlinks.reactor.ql.metrics.SimpleReactorQLMetricsRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListCollectorTest {
+
+    @Test
+    void testPolicy() {
+        ListCollector first = new ListCollector(3, ListCollector.Policy.first, 0);
+        ListCollector last = new ListCollector(3, ListCollector.Policy.last, 0);
+        ListCollector reservoir = new ListCollector(3, ListCollector.Policy.reservoir, 0);
+        for (int i = 0; i < 10; i++) {
+            first.add(i);
+            last.add(i);
+            reservoir.add(i);
+        }
+        assertEquals(Arrays.asList(0, 1, 2), first.getResult());
+        assertEquals(Arrays.asList(7, 8, 9), last.getResult());
+        assertEquals(3, reservoir.getResult().size());
+        assertEquals(10, reservoir.getTotal());
+        assertTrue(first.memoryUsage() > 0);
+    }
+
+    @Test
+    void testSpill() {
+        ListCollector collector = new ListCollector(0, ListCollector.Policy.first, 100);
+        for (int i = 0; i < 1050; i++) {
+            collector.add("value-" + i);
+        }
+        List<Object> list = collector.getResult();
+        assertTrue(list instanceof SpillableList);
+        assertTrue(((SpillableList) list).isSpilled());
+        assertEquals(1050, list.size());
+        assertEquals("value-555", list.get(555));
+        //只有内存中的数据计算内存占用
+        assertTrue(collector.memoryUsage() < ListCollector.estimateSize("value-1000") * 100);
+        File file = ((SpillableList) list).getFile();
+        assertTrue(file.exists());
+        int index = 0;
+        for (Object value : list) {
+            assertEquals("value-" + index++, value);
+        }
+        //遍历完成后删除临时文件
+        assertFalse(file.exists());
+        assertThrows(IllegalStateException.class, () -> list.get(555));
+    }
+
+    @Test
+    void testSpillNotSerializable() {
+        ListCollector collector = new ListCollector(0, ListCollector.Policy.first, 10);
+        for (int i = 0; i < 15; i++) {
+            collector.add("value-" + i);
+        }
+        collector.add(new Object());
+        for (int i = 0; i < 20; i++) {
+            collector.add(Collections.singletonMap("value", new Object()));
+        }
+        SpillableList list = (SpillableList) collector.getResult();
+        assertEquals(36, list.size());
+        assertEquals("value-14", list.get(14));
+        assertEquals(26, list.getBuffer().size());
+        list.close();
+        assertFalse(list.getFile().exists());
+    }
+
+    @Test
+    void testSpillCollectList() {
+        List<File> files = new ArrayList<>();
+        ReactorQL.builder()
+                 .sql("select collect_list(this,0,'first',10) items from test")
+                 .build()
+                 .start(Flux.range(1, 100))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> {
+                     SpillableList list = (SpillableList) map.get("items");
+                     files.add(list.getFile());
+                     int sum = 0;
+                     for (Object value : list) {
+                         sum += (Integer) value;
+                     }
+                     return sum == 5050;
+                 })
+                 .verifyComplete();
+        assertEquals(1, files.size());
+        assertFalse(files.get(0).exists());
+    }
+
+    @Test
+    void testCollectList() {
+        SimpleReactorQLMetricsRegistry registry = new SimpleReactorQLMetricsRegistry();
+
+        ReactorQL.builder()
+                 .sql("select collect_list(this,3,'last') last,collect_list(this) items from test")
+                 .metrics(ReactorQLMetrics.create(registry, "test"))
+                 .build()
+                 .start(Flux.range(1, 10))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> map.get("last").equals(Arrays.asList(8, 9, 10))
+                         && ((List<?>) map.get("items")).size() == 10)
+                 .verifyComplete();
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put(ReactorQLMetrics.TAG_QUERY, "test");
+        tags.put(ReactorQLMetrics.TAG_NAME, "collect_list(this)");
+        assertEquals(1, registry.histogram(ReactorQLMetrics.METRIC_MEMORY, tags).getCount());
+        assertTrue(registry.histogram(ReactorQLMetrics.METRIC_MEMORY, tags).getMax() > 0);
+    }
+}
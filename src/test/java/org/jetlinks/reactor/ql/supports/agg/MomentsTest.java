@@ -0,0 +1,129 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MomentsTest {
+
+    @Test
+    void testMoments() {
+        Moments moments = new Moments();
+        for (double v : new double[]{2, 4, 4, 4, 5, 5, 7, 9}) {
+            moments.add(v);
+        }
+        assertEquals(5, moments.getMean(), 1e-9);
+        assertEquals(4, moments.populationVariance(), 1e-9);
+        assertEquals(2, moments.populationStddev(), 1e-9);
+        assertEquals(32 / 7D, moments.sampleVariance(), 1e-9);
+        assertEquals(0.65625, moments.skewness(), 1e-9);
+        assertEquals(-0.21875, moments.kurtosis(), 1e-9);
+    }
+
+    @Test
+    void testStability() {
+        //较大的偏移量不影响方差的精度
+        Moments moments = new Moments();
+        for (int i = 0; i < 1000; i++) {
+            moments.add(1e9 + (i % 2));
+        }
+        assertEquals(0.25, moments.populationVariance(), 1e-6);
+    }
+
+    @Test
+    void testMerge() {
+        Random random = new Random(1);
+        Moments all = new Moments();
+        Moments left = new Moments();
+        Moments right = new Moments();
+        CoMoments coAll = new CoMoments();
+        CoMoments coLeft = new CoMoments();
+        CoMoments coRight = new CoMoments();
+        for (int i = 0; i < 1000; i++) {
+            double x = random.nextGaussian() * 10 + 100;
+            double y = x * 2 + random.nextGaussian();
+            all.add(x);
+            coAll.add(x, y);
+            if (i < 300) {
+                left.add(x);
+                coLeft.add(x, y);
+            } else {
+                right.add(x);
+                coRight.add(x, y);
+            }
+        }
+        left.merge(right);
+        coLeft.merge(coRight);
+        assertEquals(all.getCount(), left.getCount());
+        assertEquals(all.getMean(), left.getMean(), 1e-9);
+        assertEquals(all.sampleVariance(), left.sampleVariance(), 1e-6);
+        assertEquals(all.skewness(), left.skewness(), 1e-6);
+        assertEquals(all.kurtosis(), left.kurtosis(), 1e-6);
+        assertEquals(coAll.sampleCovariance(), coLeft.sampleCovariance(), 1e-6);
+        assertEquals(coAll.correlation(), coLeft.correlation(), 1e-9);
+        assertTrue(coAll.correlation() > 0.99);
+    }
+
+    static Map<String, Object> data(int x, int y) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("x", x);
+        map.put("y", y);
+        return map;
+    }
+
+    @Test
+    void testAgg() {
+        ReactorQL.builder()
+                 .sql("select stddev_pop(this) std,var_pop(this) var,variance(this) svar from test")
+                 .build()
+                 .start(Flux.just(2, 4, 4, 4, 5, 5, 7, 9))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> Math.abs(((Number) map.get("std")).doubleValue() - 2) < 1e-9
+                         && Math.abs(((Number) map.get("var")).doubleValue() - 4) < 1e-9
+                         && Math.abs(((Number) map.get("svar")).doubleValue() - 32 / 7D) < 1e-9)
+                 .verifyComplete();
+
+        ReactorQL.builder()
+                 .sql("select corr(x,y) corr,covar_pop(x,y) covar from test")
+                 .build()
+                 .start(Flux.just(data(1, 2), data(2, 4), data(3, 6)))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> Math.abs(((Number) map.get("corr")).doubleValue() - 1) < 1e-9
+                         && Math.abs(((Number) map.get("covar")).doubleValue() - 4 / 3D) < 1e-9)
+                 .verifyComplete();
+
+        ReactorQL.builder()
+                 .sql("select stddev_pop(m) std from (",
+                      "select moments(this) m from test group by _window(4)",
+                      ")")
+                 .build()
+                 .start(Flux.just(2, 4, 4, 4, 5, 5, 7, 9))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> Math.abs(((Number) map.get("std")).doubleValue() - 2) < 1e-9)
+                 .verifyComplete();
+    }
+
+    @Test
+    void testMomentsEmitEvery() {
+        //每次输出的都是独立的副本
+        ReactorQL.builder()
+                 .sql("select /*+ emit_every(2) */ moments(this) m from test")
+                 .build()
+                 .start(Flux.range(1, 4))
+                 .map(map -> ((Moments) map.get("m")))
+                 .collectList()
+                 .as(StepVerifier::create)
+                 .expectNextMatches(list -> list.size() == 2
+                         && list.get(0).getCount() == 2
+                         && list.get(1).getCount() == 4
+                         && Math.abs(list.get(1).getMean() - 2.5) < 1e-9)
+                 .verifyComplete();
+    }
+}
@@ -0,0 +1,140 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    static void assertRelative(double expected, double actual, double accuracy) {
+        assertEquals(expected, actual, Math.abs(expected) * accuracy + 1e-9, "expected " + expected + " but " + actual);
+    }
+
+    @Test
+    void testQuantile() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        double[] values = new double[100000];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[]{0, 0.1, 0.5, 0.9, 0.99, 0.999, 1}) {
+            double expected = values[(int) (q * (values.length - 1))];
+            assertRelative(expected, sketch.quantile(q), 0.01);
+        }
+        assertTrue(sketch.memoryUsage() < 64 * 1024);
+    }
+
+    @Test
+    void testNegativeAndZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = -100; i <= 100; i++) {
+            sketch.add(i);
+        }
+        assertEquals(0, sketch.quantile(0.5));
+        assertRelative(-100, sketch.quantile(0), 0.01);
+        assertRelative(100, sketch.quantile(1), 0.01);
+        assertRelative(-50, sketch.quantile(0.25), 0.01);
+        assertRelative(50, sketch.quantile(0.75), 0.01);
+    }
+
+    @Test
+    void testMaxBuckets() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 64);
+        for (int i = 1; i <= 100000; i++) {
+            sketch.add(i);
+        }
+        assertTrue(sketch.memoryUsage() < 2048);
+        //较大的分位数仍然准确
+        assertRelative(99000, sketch.quantile(0.99), 0.01);
+        assertEquals(100000, sketch.quantile(1));
+    }
+
+    @Test
+    void testMerge() {
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = 1; i <= 1000; i++) {
+            left.add(i);
+            right.add(i + 1000);
+        }
+        left.merge(right);
+        assertEquals(2000, left.getCount());
+        assertRelative(1000, left.quantile(0.5), 0.01);
+
+        assertThrows(UnsupportedOperationException.class, () -> left.merge(new QuantileSketch(0.02)));
+    }
+
+    @Test
+    void testPercentile() {
+        ReactorQL.builder()
+                 .sql("select percentile(this,0.9) p90,median(this) median,quantiles(this,0.5,0.99) q from test")
+                 .build()
+                 .start(Flux.range(1, 1000))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> {
+                     double p90 = ((Number) map.get("p90")).doubleValue();
+                     double median = ((Number) map.get("median")).doubleValue();
+                     List<?> q = ((List<?>) map.get("q"));
+                     return Math.abs(p90 - 900) <= 15
+                             && Math.abs(median - 500) <= 10
+                             && q.size() == 2
+                             && Math.abs(((Number) q.get(1)).doubleValue() - 990) <= 15;
+                 })
+                 .verifyComplete();
+
+        //指定相对误差
+        ReactorQL.builder()
+                 .sql("select quantiles(this,'0.5, 0.99',0.001) q from test")
+                 .build()
+                 .start(Flux.range(1, 1000))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> {
+                     List<?> q = ((List<?>) map.get("q"));
+                     return q.size() == 2
+                             && Math.abs(((Number) q.get(0)).doubleValue() - 500) <= 1
+                             && Math.abs(((Number) q.get(1)).doubleValue() - 990) <= 2;
+                 })
+                 .verifyComplete();
+
+        ReactorQL.builder()
+                 .sql("select quantiles(this,'0.5',1.5) q from test")
+                 .build()
+                 .start(Flux.range(1, 10))
+                 .as(StepVerifier::create)
+                 .expectError(UnsupportedOperationException.class)
+                 .verify();
+
+        ReactorQL.builder()
+                 .sql("select percentile(sketch,0.5) median from (",
+                      "select quantile_sketch(this) sketch from test group by _window(100)",
+                      ")")
+                 .build()
+                 .start(Flux.range(1, 1000))
+                 .map(map -> ((Number) map.get("median")).doubleValue())
+                 .as(StepVerifier::create)
+                 .expectNextMatches(median -> Math.abs(median - 500) <= 10)
+                 .verifyComplete();
+    }
+
+    @Test
+    void testQuantilesEmitEvery() {
+        ReactorQL.builder()
+                 .sql("select /*+ emit_every(2) */ quantiles(this,0,1) q from test")
+                 .build()
+                 .start(Flux.range(1, 4))
+                 .map(map -> map.get("q"))
+                 .as(StepVerifier::create)
+                 .expectNext(Arrays.asList(1D, 2D), Arrays.asList(1D, 4D))
+                 .verifyComplete();
+    }
+}
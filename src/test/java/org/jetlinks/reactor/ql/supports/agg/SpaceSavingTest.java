@@ -0,0 +1,118 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    @Test
+    void testHeavyHitters() {
+        SpaceSaving sketch = new SpaceSaving(50);
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            //大约一半的数据为3个热点值
+            if (random.nextBoolean()) {
+                sketch.add("hot-" + random.nextInt(3), 1);
+            } else {
+                sketch.add("cold-" + random.nextInt(10000), 1);
+            }
+        }
+        assertEquals(50, sketch.size());
+        List<SpaceSaving.Counter> top = sketch.top(3);
+        assertEquals(3, top.size());
+        for (SpaceSaving.Counter counter : top) {
+            assertTrue(String.valueOf(counter.getKey()).startsWith("hot-"));
+            //真实值在[count-error,count]之间
+            assertTrue(counter.getCount() - counter.getError() <= 50000 / 3D * 1.1);
+            assertTrue(counter.getCount() >= 50000 / 3D * 0.9);
+        }
+        assertTrue(top.get(0).getCount() >= top.get(1).getCount());
+    }
+
+    @Test
+    void testExact() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i; j++) {
+                sketch.add(i, 1);
+            }
+        }
+        List<SpaceSaving.Counter> top = sketch.top(2);
+        assertEquals(4, top.get(0).getKey());
+        assertEquals(5, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals(3, top.get(1).getKey());
+    }
+
+    @Test
+    void testMerge() {
+        SpaceSaving left = new SpaceSaving(10);
+        SpaceSaving right = new SpaceSaving(10);
+        left.add("a", 5).add("b", 1);
+        right.add("a", 2).add("c", 4);
+        left.merge(right);
+        List<SpaceSaving.Counter> top = left.top(2);
+        assertEquals("a", top.get(0).getKey());
+        assertEquals(7, top.get(0).getCount());
+        assertEquals("c", top.get(1).getKey());
+    }
+
+    static Map<String, Object> traffic(String deviceId, int traffic) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceId", deviceId);
+        map.put("traffic", traffic);
+        return map;
+    }
+
+    @Test
+    void testTopK() {
+        ReactorQL.builder()
+                 .sql("select topk(this,2) top from test")
+                 .build()
+                 .start(Flux.just(1, 2, 2, 3, 3, 3, 4))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> {
+                     List<?> top = (List<?>) map.get("top");
+                     Map<?, ?> first = (Map<?, ?>) top.get(0);
+                     Map<?, ?> second = (Map<?, ?>) top.get(1);
+                     return top.size() == 2
+                             && first.get("key").equals(3L) && first.get("count").equals(3L)
+                             && second.get("key").equals(2L) && second.get("count").equals(2L);
+                 })
+                 .verifyComplete();
+
+        //数值相同的不同类型的数字作为同一个值统计
+        ReactorQL.builder()
+                 .sql("select topk(this,1) top from test")
+                 .build()
+                 .start(Flux.just(1, 1L, 1.0D, 2, 2L))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> {
+                     List<?> top = (List<?>) map.get("top");
+                     Map<?, ?> first = (Map<?, ?>) top.get(0);
+                     return top.size() == 1 && first.get("key").equals(1L) && first.get("count").equals(3L);
+                 })
+                 .verifyComplete();
+
+        ReactorQL.builder()
+                 .sql("select topk_by(deviceId,traffic,1) top from test")
+                 .build()
+                 .start(Flux.just(traffic("a", 10), traffic("b", 1), traffic("b", 2), traffic("a", 5), traffic("c", 14)))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> {
+                     List<?> top = (List<?>) map.get("top");
+                     Map<?, ?> first = (Map<?, ?>) top.get(0);
+                     return top.size() == 1 && first.get("key").equals("a") && first.get("weight").equals(15D);
+                 })
+                 .verifyComplete();
+    }
+}
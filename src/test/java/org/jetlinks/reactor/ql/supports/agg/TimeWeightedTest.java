@@ -0,0 +1,96 @@
+package org.jetlinks.reactor.ql.supports.agg;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeWeightedTest {
+
+    @Test
+    void testTimeWeighted() {
+        TimeWeighted state = new TimeWeighted();
+        //10持续9秒,100持续1秒
+        state.add(10, 0).add(100, 9000).add(20, 10000);
+        assertEquals(19, state.average(), 1e-9);
+        assertEquals(190, state.integral(1000), 1e-9);
+        //100 -> 20 视为计数器重置
+        assertEquals(110, state.increase(), 1e-9);
+        assertEquals(11, state.rate(), 1e-9);
+
+        //乱序数据被忽略
+        state.add(1000, 5000);
+        assertEquals(3, state.getCount());
+    }
+
+    @Test
+    void testCarry() {
+        TimeWeighted first = new TimeWeighted().add(10, 0).add(20, 1000);
+        TimeWeighted second = new TimeWeighted()
+                .carry(first.getLastTs(), first.getLastValue())
+                .add(30, 3000);
+        //两个窗口之间的时间段计入第二个窗口
+        assertEquals(40, second.integral(1000), 1e-9);
+        assertEquals(10, second.increase(), 1e-9);
+        assertEquals(20, second.average(), 1e-9);
+
+        TimeWeighted all = new TimeWeighted().add(10, 0).add(20, 1000).add(30, 3000);
+        assertEquals(all.integral(1000), first.integral(1000) + second.integral(1000), 1e-9);
+        assertEquals(all.increase(), first.increase() + second.increase(), 1e-9);
+    }
+
+    static Map<String, Object> data(long ts, double val) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("timestamp", ts);
+        map.put("val", val);
+        return map;
+    }
+
+    @Test
+    void testAgg() {
+        ReactorQL.builder()
+                 .sql("select time_weighted_avg(val,timestamp) avg, integral(val,timestamp,'s') integral,",
+                      "increase(val,timestamp) increase from test")
+                 .build()
+                 .start(Flux.just(data(0, 10), data(9000, 100), data(10000, 20)))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> ((Number) map.get("avg")).doubleValue() == 19
+                         && ((Number) map.get("integral")).doubleValue() == 190
+                         && ((Number) map.get("increase")).doubleValue() == 110)
+                 .verifyComplete();
+
+        //窗口之间携带上一个值
+        ReactorQL.builder()
+                 .sql("select integral(val,timestamp,'1s') integral from test group by _window(2)")
+                 .build()
+                 .start(Flux.just(data(0, 10), data(1000, 20), data(3000, 30), data(4000, 40)))
+                 .map(map -> ((Number) map.get("integral")).doubleValue())
+                 .as(StepVerifier::create)
+                 .expectNext(10D, 70D)
+                 .verifyComplete();
+
+        //不同分组分别携带上一个值
+        ReactorQL.builder()
+                 .sql("select integral(val,timestamp,'1s') integral from test group by concat('t',type),_window(2)")
+                 .build()
+                 .start(Flux.just(data(0, 10, 1), data(0, 100, 2),
+                                  data(1000, 20, 1), data(1000, 100, 2),
+                                  data(3000, 30, 1), data(3000, 100, 2),
+                                  data(4000, 40, 1), data(4000, 100, 2)))
+                 .map(map -> ((Number) map.get("integral")).doubleValue())
+                 .as(StepVerifier::create)
+                 .expectNext(10D, 100D, 70D, 300D)
+                 .verifyComplete();
+    }
+
+    static Map<String, Object> data(long ts, double val, int type) {
+        Map<String, Object> map = data(ts, val);
+        map.put("type", type);
+        return map;
+    }
+}
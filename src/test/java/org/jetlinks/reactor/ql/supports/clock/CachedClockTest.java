@@ -0,0 +1,27 @@
+package org.jetlinks.reactor.ql.supports.clock;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedClockTest {
+
+    @Test
+    void testTick() {
+        CachedClock clock = new CachedClock(Duration.ofMillis(20));
+        try {
+            long first = clock.currentTimeMillis();
+            assertTrue(Math.abs(System.currentTimeMillis() - first) < 1000);
+
+            Mono.delay(Duration.ofMillis(200)).block();
+            assertTrue(clock.currentTimeMillis() > first);
+        } finally {
+            clock.dispose();
+        }
+        assertTrue(clock.isDisposed());
+        assertThrows(UnsupportedOperationException.class, () -> new CachedClock(Duration.ZERO));
+    }
+}
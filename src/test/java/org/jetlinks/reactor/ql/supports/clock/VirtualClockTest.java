@@ -0,0 +1,89 @@
+package org.jetlinks.reactor.ql.supports.clock;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualClockTest {
+
+    @Test
+    void testAdvance() {
+        VirtualClock clock = new VirtualClock(1000);
+        assertEquals(2000, clock.advanceTo(2000));
+        //时钟不会回退
+        assertEquals(2000, clock.advanceTo(1500));
+        assertEquals(3000, clock.advance(Duration.ofSeconds(1)));
+        assertEquals(3000, clock.currentTimeMillis());
+    }
+
+    @Test
+    void testDelay() {
+        VirtualClock clock = new VirtualClock(1000);
+        MonoProcessor<Long> delay = clock.delay(Duration.ofSeconds(1)).toProcessor();
+        clock.advanceTo(1999);
+        assertFalse(delay.isTerminated());
+        clock.advanceTo(2000);
+        assertEquals(0L, delay.peek());
+    }
+
+    @Test
+    void testNow() {
+        long time = 1609466400000L;
+        VirtualClock clock = new VirtualClock(time);
+
+        ReactorQL.builder()
+                 .sql("select now() t,now('yyyy-MM-dd HH:mm:ss') s from dual")
+                 .feature(clock)
+                 .build()
+                 .start(Flux.just(1))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> map.get("t").equals(time)
+                         && map.get("s").equals(DateTimeFormatter
+                                                        .ofPattern("yyyy-MM-dd HH:mm:ss")
+                                                        .format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()))))
+                 .verifyComplete();
+    }
+
+    @Test
+    void testInterval() {
+        VirtualClock clock = new VirtualClock();
+
+        //按数据的时间回放,不需要等待实际的时间
+        ReactorQL.builder()
+                 .sql("select count(1) total from test group by interval('1s')")
+                 .feature(clock)
+                 .build()
+                 .start(clock.drive(Flux.range(0, 25).map(i -> Collections.singletonMap("ts", i * 100L)),
+                                    data -> data.get("ts")))
+                 .map(map -> ((Number) map.get("total")).intValue())
+                 .as(StepVerifier::create)
+                 .expectNext(10, 10, 5)
+                 .verifyComplete();
+    }
+
+    @Test
+    void testIntervalGap() {
+        VirtualClock clock = new VirtualClock();
+
+        ReactorQL.builder()
+                 .sql("select count(1) total from test group by interval('1s')")
+                 .feature(clock)
+                 .build()
+                 .start(clock.drive(Flux.just(0L, 500L, 3200L, 3900L, 4000L), Long::longValue))
+                 .map(map -> ((Number) map.get("total")).intValue())
+                 .as(StepVerifier::create)
+                 .expectNext(2, 2, 1)
+                 .verifyComplete();
+    }
+}
@@ -2,7 +2,10 @@ package org.jetlinks.reactor.ql.supports.filter;
 
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Date;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -54,4 +57,34 @@ class EqualsFilterTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void testKernel() {
+        EqualsFilter filter = new EqualsFilter("=", false);
+
+        Predicate<Object> kernel = filter.createKernel(1L, false);
+        assertTrue(kernel.test(1));
+        assertTrue(kernel.test(1.0D));
+        assertTrue(kernel.test("1"));
+        assertTrue(kernel.test(new BigDecimal("1.00")));
+        assertFalse(kernel.test(2L));
+        //long类型精确比较
+        assertFalse(filter.createKernel(Long.MAX_VALUE, false).test(Long.MAX_VALUE - 1));
+
+        long now = System.currentTimeMillis();
+        Predicate<Object> dateKernel = filter.createKernel(new Date(now), true);
+        assertTrue(dateKernel.test(new Date(now)));
+        assertTrue(dateKernel.test(Instant.ofEpochMilli(now)));
+        assertTrue(dateKernel.test(now));
+        assertFalse(dateKernel.test(now + 1));
+
+        Predicate<Object> stringKernel = filter.createKernel("1", false);
+        assertTrue(stringKernel.test("1"));
+        assertTrue(stringKernel.test(1));
+        assertFalse(stringKernel.test("1D"));
+
+        Predicate<Object> notKernel = new EqualsFilter("!=", true).createKernel(1L, false);
+        assertFalse(notKernel.test(1));
+        assertTrue(notKernel.test(2.5D));
+    }
+
+}
@@ -3,6 +3,7 @@ package org.jetlinks.reactor.ql.supports.filter;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,4 +27,58 @@ class GreaterTanFilterTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void testKernel() {
+        GreaterTanFilter filter = new GreaterTanFilter(">");
+
+        // this > 10
+        Predicate<Object> kernel = filter.createKernel(10L, false);
+        assertTrue(kernel.test(11));
+        assertTrue(kernel.test(10.5D));
+        assertTrue(kernel.test("11"));
+        assertFalse(kernel.test(10L));
+
+        // 10 > this
+        Predicate<Object> leftKernel = filter.createKernel(10L, true);
+        assertTrue(leftKernel.test(9));
+        assertFalse(leftKernel.test(11.5F));
+
+        Predicate<Object> doubleKernel = filter.createKernel(1.5D, false);
+        assertTrue(doubleKernel.test(2));
+        assertFalse(doubleKernel.test(1.5F));
+
+        //字符串常量与数字比较,常量只转换一次
+        Predicate<Object> stringKernel = filter.createKernel("10", false);
+        assertTrue(stringKernel.test(11));
+        assertFalse(stringKernel.test(9.5D));
+        assertTrue(stringKernel.test("2"));
+        assertTrue(filter.createKernel("10", true).test(9L));
+
+        //无法转换为数字的常量,与数字比较时仍然报错
+        Predicate<Object> illegalKernel = filter.createKernel("abc", false);
+        assertThrows(UnsupportedOperationException.class, () -> illegalKernel.test(1));
+    }
+
+    @Test
+    void testVector() {
+        GreaterTanFilter filter = new GreaterTanFilter(">");
+        long[] values = {9, 10, 11, 12};
+        boolean[] present = {true, true, true, false};
+
+        // this > 10
+        boolean[] selection = {true, true, true, true};
+        filter.testVector(values, present, 10, false, selection);
+        assertArrayEquals(new boolean[]{false, false, true, false}, selection);
+
+        // 10 > this
+        selection = new boolean[]{true, true, true, true};
+        filter.testVector(values, present, 10, true, selection);
+        assertArrayEquals(new boolean[]{true, false, false, false}, selection);
+
+        //已经被过滤的行不会再被选中
+        selection = new boolean[]{true, true, false, true};
+        filter.testVector(new double[]{9.5, 10.5, 11.5, 12.5}, present, 10D, false, selection);
+        assertArrayEquals(new boolean[]{false, true, false, false}, selection);
+    }
+
+}
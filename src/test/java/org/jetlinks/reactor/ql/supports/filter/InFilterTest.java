@@ -0,0 +1,32 @@
+package org.jetlinks.reactor.ql.supports.filter;
+
+import org.jetlinks.reactor.ql.utils.CompareUtils;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFilterTest {
+
+    @Test
+    void testIndex() {
+        List<Object> values = Arrays.asList(1, "true", "MONDAY", "1.5", "abc", new Date(1000));
+        InFilter.ValueIndex index = new InFilter.ValueIndex();
+        values.forEach(index::add);
+
+        List<Object> probes = Arrays.asList(1, 1L, 1.0D, "1", "1.0", "01", 1.5F, "1.5", "1.50",
+                                            true, "true", DayOfWeek.MONDAY, "abc", "ABC",
+                                            1000L, new Date(1000), "2", 2);
+        for (Object probe : probes) {
+            boolean expect = values.stream().anyMatch(value -> CompareUtils.equals(value, probe));
+            assertEquals(expect, index.contains(probe), "probe:" + probe);
+        }
+        assertTrue(index.contains(true));
+        assertTrue(index.contains(DayOfWeek.MONDAY));
+        assertFalse(index.contains("1.50"));
+    }
+}
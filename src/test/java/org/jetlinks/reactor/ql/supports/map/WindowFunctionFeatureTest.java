@@ -0,0 +1,121 @@
+package org.jetlinks.reactor.ql.supports.map;
+
+import org.jetlinks.reactor.ql.ReactorQL;
+import org.jetlinks.reactor.ql.supports.clock.VirtualClock;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowFunctionFeatureTest {
+
+    static Map<String, Object> data(String deviceId, int temp) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceId", deviceId);
+        map.put("temp", temp);
+        return map;
+    }
+
+    static Flux<Map<String, Object>> data() {
+        return Flux.just(
+                data("a", 1),
+                data("b", 10),
+                data("a", 3),
+                data("b", 15),
+                data("a", 8));
+    }
+
+    @Test
+    void testRowNumberAndLag() {
+        ReactorQL.builder()
+                 .sql("select deviceId,",
+                      "row_number() over (partition by deviceId) no,",
+                      "lag(temp,1,0) over (partition by deviceId) prev,",
+                      "delta(temp) over (partition by deviceId) delta",
+                      "from test")
+                 .build()
+                 .start(data())
+                 .filter(map -> "a".equals(map.get("deviceId")))
+                 .map(map -> map.get("no") + ":" + map.get("prev") + ":" + map.get("delta"))
+                 .as(StepVerifier::create)
+                 .expectNext("1:0:null", "2:1:2", "3:3:5")
+                 .verifyComplete();
+    }
+
+    @Test
+    void testMovingAvg() {
+        ReactorQL.builder()
+                 .sql("select moving_avg(temp) over (partition by deviceId order by ts rows between 1 preceding and current row) avg",
+                      "from test")
+                 .build()
+                 .start(data())
+                 .map(map -> ((Number) map.get("avg")).doubleValue())
+                 .as(StepVerifier::create)
+                 .expectNext(1D, 10D, 2D, 12.5D, 5.5D)
+                 .verifyComplete();
+    }
+
+    @Test
+    void testLeadVirtualClock() {
+        VirtualClock clock = new VirtualClock();
+        Map<String, Object> a1 = data("a", 1), b2 = data("b", 2), a3 = data("a", 3);
+        a1.put("ts", 0L);
+        b2.put("ts", 5000L);
+        a3.put("ts", 6000L);
+
+        //按时钟时间超时,a在5秒时已经超时,不会等到6秒时的数据
+        ReactorQL.builder()
+                 .sql("select /*+ lead_max_delay('1s') */ temp,lead(temp,1,-1) over (partition by deviceId) next_temp from test")
+                 .feature(clock)
+                 .build()
+                 .start(clock.drive(Flux.just(a1, b2, a3), data -> (Long) data.get("ts")))
+                 .collectMap(map -> map.get("temp"), map -> map.get("next_temp"))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> ((Number) map.get(1)).intValue() == -1
+                         //数据流结束时,等待中的lead返回默认值
+                         && ((Number) map.get(2)).intValue() == -1
+                         && ((Number) map.get(3)).intValue() == -1)
+                 .expectComplete()
+                 .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testLead() {
+        ReactorQL.builder()
+                 .sql("select /*+ lead_max_delay('200ms') */ temp,lead(temp,1,-1) over (partition by deviceId) next_temp from test")
+                 .build()
+                 .start(data())
+                 .collectMap(map -> map.get("temp"), map -> map.get("next_temp"))
+                 .as(StepVerifier::create)
+                 .expectNextMatches(map -> map.get(1).equals(3)
+                         && map.get(3).equals(8)
+                         && map.get(10).equals(15)
+                         //没有后续数据时,超时后返回默认值
+                         && ((Number) map.get(8)).intValue() == -1
+                         && ((Number) map.get(15)).intValue() == -1)
+                 .verifyComplete();
+    }
+
+    @Test
+    void testEvict() {
+        VirtualClock clock = new VirtualClock();
+        WindowFunctionFeature.Partitions partitions = new WindowFunctionFeature.Partitions(2, 60000, clock, WindowFunctionFeature.RowNumber::new);
+        for (int i = 0; i < 10; i++) {
+            partitions.apply(Collections.singletonList(i), null).block();
+        }
+        assertEquals(2, partitions.size());
+        //被淘汰的分区重新计数
+        assertEquals(1L, partitions.apply(Collections.singletonList(0), null).block());
+
+        //超过空闲时间的分区被淘汰
+        clock.advance(Duration.ofMinutes(1));
+        partitions.apply(Collections.singletonList(5), null).block();
+        assertEquals(1, partitions.size());
+    }
+}
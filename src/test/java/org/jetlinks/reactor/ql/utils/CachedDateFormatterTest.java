@@ -0,0 +1,56 @@
+package org.jetlinks.reactor.ql.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedDateFormatterTest {
+
+    static long millis(String dateTime, ZoneId zone) {
+        return ZonedDateTime.of(LocalDateTime.parse(dateTime), zone).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void testCacheUnit() {
+        assertEquals(CachedDateFormatter.DAY, CachedDateFormatter.getCacheUnit("yyyy-MM-dd"));
+        assertEquals(CachedDateFormatter.HOUR, CachedDateFormatter.getCacheUnit("yyyy-MM-dd HH"));
+        assertEquals(CachedDateFormatter.MINUTE, CachedDateFormatter.getCacheUnit("HH:mm"));
+        assertEquals(CachedDateFormatter.SECOND, CachedDateFormatter.getCacheUnit("HH:mm:ss"));
+        assertEquals(CachedDateFormatter.HOUR, CachedDateFormatter.getCacheUnit("yyyy'T'HH"));
+        assertEquals(0, CachedDateFormatter.getCacheUnit("HH:mm:ss.SSS"));
+        assertEquals(0, CachedDateFormatter.getCacheUnit("yyyy-MM-dd HH:mm Z"));
+    }
+
+    @Test
+    void testFormat() {
+        ZoneId zone = ZoneId.of("America/New_York");
+        CachedDateFormatter formatter = new CachedDateFormatter("yyyy-MM-dd HH:mm", zone);
+        long time = millis("2021-01-01T10:00:00", zone);
+
+        assertEquals("2021-01-01 10:00", formatter.format(time));
+        assertEquals("2021-01-01 10:00", formatter.format(time + 59999));
+        assertEquals("2021-01-01 10:01", formatter.format(time + 60000));
+        assertEquals("2021-01-01 09:59", formatter.format(time - 1));
+
+        //夏令时切换
+        long dst = millis("2021-03-14T03:00:00", zone);
+        assertEquals("2021-03-14 01:59", formatter.format(dst - 1));
+        assertEquals("2021-03-14 03:00", formatter.format(dst));
+    }
+
+    @Test
+    void testZoneOffset() {
+        ZoneId zone = ZoneId.of("America/New_York");
+        ZoneOffsetCache cache = new ZoneOffsetCache(zone);
+        long dst = millis("2021-03-14T03:00:00", zone);
+
+        assertEquals(-4 * 3600_000, cache.getOffsetMillis(dst));
+        assertEquals(-5 * 3600_000, cache.getOffsetMillis(dst - 1));
+        assertEquals(-4 * 3600_000, cache.getOffsetMillis(dst + 1000));
+        assertEquals(8 * 3600_000, new ZoneOffsetCache(ZoneId.of("+08:00")).getOffsetMillis(dst));
+    }
+}
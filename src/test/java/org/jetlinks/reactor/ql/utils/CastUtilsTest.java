@@ -3,6 +3,7 @@ package org.jetlinks.reactor.ql.utils;
 import org.hswebframework.utils.time.DateFormatter;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
 import java.time.*;
 import java.util.Arrays;
 import java.util.Collections;
@@ -75,6 +76,42 @@ class CastUtilsTest {
                 DateFormatter.fromString("2020-02-01").getTime());
     }
 
+    @Test
+    void testParseNumber() {
+        assertEquals(CastUtils.parseNumber("123"), 123L);
+        assertEquals(CastUtils.parseNumber("-123"), -123L);
+        assertEquals(CastUtils.parseNumber("+1"), 1L);
+        assertEquals(CastUtils.parseNumber("1."), 1L);
+        assertEquals(CastUtils.parseNumber("-1.25"), -1.25D);
+        assertEquals(CastUtils.parseNumber(".5"), 0.5D);
+        assertEquals(CastUtils.parseNumber("1e3"), 1000D);
+        assertEquals(CastUtils.parseNumber("-1.5E-3"), -0.0015D);
+        assertEquals(CastUtils.parseNumber("2e+2"), 200D);
+        assertEquals(CastUtils.parseNumber("123456789012345678901"), new BigDecimal("123456789012345678901").longValue());
+        assertEquals(CastUtils.parseNumber(new StringBuilder("42")), 42L);
+
+        assertNull(CastUtils.parseNumber(""));
+        assertNull(CastUtils.parseNumber("-"));
+        assertNull(CastUtils.parseNumber("1.2.3"));
+        assertNull(CastUtils.parseNumber("2020-02-01"));
+        assertNull(CastUtils.parseNumber("abc"));
+        assertNull(CastUtils.parseNumber("1e"));
+        assertNull(CastUtils.parseNumber("1e-"));
+        assertNull(CastUtils.parseNumber("e3"));
+        assertNull(CastUtils.parseNumber("1e3x"));
+    }
+
+    @Test
+    void testParseDateMillis() {
+        assertEquals(CastUtils.parseDateMillis("2020-02-01"), DateFormatter.fromString("2020-02-01").getTime());
+        assertNull(CastUtils.parseDateMillis("abc"));
+
+        assertTrue(CastUtils.maybeDate("2020-02-01"));
+        assertTrue(CastUtils.maybeDate("2020.02.01"));
+        assertFalse(CastUtils.maybeDate("-1.5e-3"));
+        assertFalse(CastUtils.maybeDate("123"));
+    }
+
     @Test
     void testDuration() {
         assertEquals(CastUtils.parseDuration("PT1s"), Duration.ofSeconds(1));